@@ -5,12 +5,139 @@ import java.util.*;
  * The main class
  */
 public class AssEx3 {
+	//class constants
+	public static final String METRICS_PROPERTY = "gym.metrics"; //seconds between metrics dumps
+	public static final String TERM_START_PROPERTY = "gym.termStart"; //first day of week 1, as yyyy-mm-dd
+
 	/**
-	 * The main method
+	 * The main method. Starts the GUI, or with --headless [port] serves
+	 * the programme over HTTP instead (see ProgramService), or with
+	 * --report [file] writes the attendance report to the console or a file.
+	 * The metrics can always be read over JMX; run with -Dgym.metrics=N
+	 * to have them printed every N seconds as well. Check-ins posted to
+	 * the service count from the day given by -Dgym.termStart=yyyy-mm-dd,
+	 * or from when the service started.
 	 * @param args the arguments
 	 */
 	public static void main(String[] args) {
+		startMetrics();
+		if(args.length > 0 && args[0].equals("--headless")) {
+			int port = (args.length > 1) ? Integer.parseInt(args[1]) : ProgramService.DEFAULT_PORT;
+			startHeadless(port);
+			return;
+		}
+		if(args.length > 0 && args[0].equals("--report")) {
+			exportReport((args.length > 1) ? args[1] : null);
+			return;
+		}
 		SportsCentreGUI display = new SportsCentreGUI();
-		display.setVisible(true);			
+		display.setVisible(true);
+	}
+
+	/**
+	 * registers the metrics with JMX and starts printing them if asked to
+	 */
+	private static void startMetrics() {
+		try {
+			ProgramMetrics.register();
+		}
+		catch(IllegalStateException e) { //the programme runs as well without them
+			System.out.println(e.getMessage());
+		}
+		String period = System.getProperty(METRICS_PROPERTY);
+		if(period != null) {
+			try {
+				ProgramMetrics.startDump(Long.parseLong(period), System.out);
+			}
+			catch(IllegalArgumentException e) { //includes NumberFormatException
+				System.out.println("Ignoring " + METRICS_PROPERTY + "=" + period
+						+ ": expected a positive number of seconds");
+			}
+		}
+	}
+
+	/**
+	 * reads the programme from the same files as the GUI, without changing
+	 * them, and writes its attendance report, in the same layout as the
+	 * GUI shows it. A GUI or service may be running on the same files.
+	 * @param file the file to write to, or null for the console
+	 */
+	private static void exportReport(String file) {
+		try {
+			FitnessProgram fp = ProgramService.read("ClassesIn.txt", "AttendancesIn.txt", "Programme.snap",
+					"Programme.journal");
+			if(file == null) {
+				ReportWriter.export(fp, System.out);
+				System.out.println();
+			}
+			else {
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+				try {
+					ReportWriter.export(fp, out);
+				}
+				finally {
+					out.close();
+				}
+			}
+		}
+		catch(IOException e) {
+			System.out.println("Could not write the report: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * returns the time week 1 starts, from the term start property, or now
+	 */
+	private static long termStart() {
+		String day = System.getProperty(TERM_START_PROPERTY);
+		if(day != null) {
+			try {
+				return java.time.LocalDate.parse(day).atStartOfDay(java.time.ZoneId.systemDefault())
+						.toInstant().toEpochMilli();
+			}
+			catch(java.time.format.DateTimeParseException e) {
+				System.out.println("Ignoring " + TERM_START_PROPERTY + "=" + day + ": expected yyyy-mm-dd");
+			}
+		}
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * loads the programme from the same files as the GUI and serves it
+	 * until the process is stopped, when the journal is closed
+	 * @param port the port to listen on
+	 */
+	private static void startHeadless(int port) {
+		try {
+			ProgramJournal journal;
+			try {
+				journal = new ProgramJournal("Programme.journal", "Programme.snap");
+			}
+			catch(IOException e) {
+				System.out.println("Could not open Programme.journal, changes will not be saved");
+				journal = null;
+			}
+			FitnessProgram fp = ProgramService.load("ClassesIn.txt", "AttendancesIn.txt",
+					"Programme.snap", journal);
+			final ProgramService service = new ProgramService(fp, journal, port, termStart());
+			final ProgramJournal toClose = journal;
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				public void run() {
+					service.stop(1);
+					try {
+						if(toClose != null)
+							toClose.close();
+					}
+					catch(IOException e) {
+						System.out.println("Could not save the last changes: " + e.getMessage());
+					}
+				}
+			});
+			service.start();
+			System.out.println("Serving " + fp.getNumClasses() + " classes on port " + service.getPort());
+		}
+		catch(IOException e) {
+			System.out.println("Could not start the service: " + e.getMessage());
+		}
 	}
 }
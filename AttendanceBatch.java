@@ -0,0 +1,108 @@
+import java.util.*;
+
+/**
+ * Attendance lines parsed but not yet applied to their classes.
+ * Lines are kept in the order they were read, each as a class and its
+ * weekly figures from its first week, in flat primitive arrays. Applying
+ * the batch sets the figures in that same order, so applying batches in
+ * file order gives the same result as reading the files one line at
+ * a time. The figures of classes in a programme are set through
+ * FitnessProgram.setAttendances, under one write lock and as one change.
+ */
+public class AttendanceBatch {
+	//instance variables
+	private FitnessClass [] lineClasses; //class of each line
+	private int [] lineStarts; //position in values of each line's first figure
+	private int [] lineWeeks; //week of each line's first figure
+	private int numLines;
+	private int [] values; //weekly figures of all lines, one after another
+	private int numValues;
+
+	//AttendanceBatch constructor
+	public AttendanceBatch() {
+		lineClasses = new FitnessClass [16];
+		lineStarts = new int [16];
+		lineWeeks = new int [16];
+		values = new int [16 * FitnessClass.NUM_WEEKS];
+		numLines = 0;
+		numValues = 0;
+	}
+
+	/**
+	 * returns the number of lines in the batch
+	 */
+	public int getNumLines() {
+		return numLines;
+	}
+
+	/**
+	 * starts a new line for the given class, from week 1
+	 * @param fc the class the line is for
+	 */
+	public void startLine(FitnessClass fc) {
+		startLine(fc, 1);
+	}
+
+	/**
+	 * starts a new line for the given class
+	 * @param fc the class the line is for, or null if its figures are to be skipped
+	 * @param week the week of the line's first figure
+	 */
+	public void startLine(FitnessClass fc, int week) {
+		if(numLines == lineClasses.length) {
+			lineClasses = Arrays.copyOf(lineClasses, numLines * 2);
+			lineStarts = Arrays.copyOf(lineStarts, numLines * 2);
+			lineWeeks = Arrays.copyOf(lineWeeks, numLines * 2);
+		}
+		lineClasses[numLines] = fc;
+		lineStarts[numLines] = numValues;
+		lineWeeks[numLines] = week;
+		numLines++;
+	}
+
+	/**
+	 * adds the next week's figure to the current line
+	 * @param attendance the attendance figure
+	 */
+	public void addWeek(int attendance) {
+		if(numValues == values.length)
+			values = Arrays.copyOf(values, numValues * 2);
+		values[numValues++] = attendance;
+	}
+
+	/**
+	 * sets every line's figures on its class, in the order the lines were
+	 * read. The figures of classes in the programme of the first line's
+	 * class are set under one write lock, with the listeners told once;
+	 * any other class's are set one by one.
+	 */
+	public void apply() {
+		FitnessProgram fp = null;
+		for(int line = 0; line < numLines && fp == null; line++)
+			if(lineClasses[line] != null)
+				fp = lineClasses[line].getProgram();
+		FitnessClass [] classes = new FitnessClass [numValues];
+		int [] weeks = new int [numValues];
+		int [] figures = new int [numValues];
+		int count = 0;
+		for(int line = 0; line < numLines; line++) {
+			int start = lineStarts[line];
+			int end = (line + 1 < numLines) ? lineStarts[line + 1] : numValues;
+			FitnessClass fc = lineClasses[line];
+			if(fc == null)
+				continue;
+			for(int i = start; i < end; i++) {
+				int week = lineWeeks[line] + i - start;
+				if(fp != null && fc.getProgram() == fp) {
+					classes[count] = fc;
+					weeks[count] = week;
+					figures[count++] = values[i];
+				}
+				else
+					fc.setAttendance(week, values[i]);
+			}
+		}
+		if(count > 0)
+			fp.setAttendances(classes, weeks, figures, count);
+	}
+}
@@ -0,0 +1,231 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Reads many AttendancesIn files, or large ones split into byte ranges,
+ * in parallel on a fork-join pool. Each shard is parsed by its own
+ * ProgramFileLoader into an AttendanceBatch; nothing is changed while
+ * the shards are parsed. The batches are then applied to the programme
+ * on the calling thread in file order and byte order, so the result is
+ * the same as reading every line in turn, whatever the number of threads.
+ * If any line is bad, nothing is applied and the first bad line in file
+ * order is reported. Likewise nothing is applied if the LoadProgress
+ * given to setProgress is cancelled while the shards are parsed.
+ */
+public class AttendanceIngester {
+	//class constants
+	public static final long MIN_SHARD_SIZE = 1L << 20; //don't split files into less than 1MB
+	private static final int BOUNDARY_SCAN_SIZE = 4096;
+
+	//instance variables
+	private FitnessProgram program;
+	private ForkJoinPool pool;
+	private Charset charset;
+	private LoadProgress progress; //where progress is reported, or null
+
+	/**
+	 * AttendanceIngester constructor using the common fork-join pool
+	 * @param fp the programme to set attendances in
+	 */
+	public AttendanceIngester(FitnessProgram fp) {
+		this(fp, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * AttendanceIngester constructor
+	 * @param fp the programme to set attendances in
+	 * @param pool the pool to parse shards on
+	 */
+	public AttendanceIngester(FitnessProgram fp, ForkJoinPool pool) {
+		program = fp;
+		this.pool = pool;
+		charset = Charset.defaultCharset();
+	}
+
+	/**
+	 * reports the bytes parsed to the given progress from now on, and stops
+	 * with an InterruptedIOException, applying nothing, if it is cancelled
+	 * @param progress the progress, or null
+	 */
+	public void setProgress(LoadProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * reads the given files, splitting each into as many shards as the
+	 * pool has threads (but none smaller than MIN_SHARD_SIZE)
+	 * @param files the names of the files, in the order they apply
+	 * @return the number of attendance lines applied
+	 * @throws IOException if a file cannot be read
+	 * @throws ProgramFileException if a line is malformed or names an unknown class
+	 */
+	public long ingest(List<String> files) throws IOException {
+		return ingest(files, pool.getParallelism());
+	}
+
+	/**
+	 * reads the given files, splitting each into at most the given number of shards
+	 * @param files the names of the files, in the order they apply
+	 * @param shardsPerFile the most shards to split each file into
+	 * @return the number of attendance lines applied
+	 * @throws IOException if a file cannot be read
+	 * @throws ProgramFileException if a line is malformed or names an unknown class
+	 */
+	public long ingest(List<String> files, int shardsPerFile) throws IOException {
+		long start = System.nanoTime();
+		List<Shard> shards = new ArrayList<Shard>();
+		List<FileChannel> channels = new ArrayList<FileChannel>();
+		try {
+			for(String file : files) {
+				FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+				channels.add(channel);
+				if(progress != null)
+					progress.addTotal(channel.size());
+				split(file, channel, shardsPerFile, shards);
+			}
+			ProgramFileLoader.IdByteIndex index =
+					new ProgramFileLoader.IdByteIndex(program.getClasses(), charset);
+			pool.invoke(new ShardTask(shards, 0, shards.size(), index));
+			if(progress != null) //nothing has been applied yet, so stopping here changes nothing
+				progress.checkCancelled();
+			checkForErrors(shards);
+			long applied = 0;
+			for(Shard shard : shards) { //apply in file order, then byte order
+				shard.batch.apply();
+				applied += shard.batch.getNumLines();
+			}
+			return applied;
+		}
+		finally {
+			for(FileChannel channel : channels)
+				channel.close();
+			ProgramMetrics.LOAD.recordSince(start);
+		}
+	}
+
+	/**
+	 * splits a file into shards that each start at the start of a line
+	 */
+	private void split(String file, FileChannel channel, int maxShards, List<Shard> shards)
+			throws IOException {
+		long size = channel.size();
+		int count = (int) Math.max(1, Math.min(maxShards, size / MIN_SHARD_SIZE));
+		long start = 0;
+		for(int i = 1; i <= count && start < size; i++) {
+			long end = (i == count) ? size : nextLineStart(channel, size * i / count, size);
+			if(end > start)
+				shards.add(new Shard(file, channel, start, end));
+			start = Math.max(start, end);
+		}
+	}
+
+	/**
+	 * returns the position just after the first '\n' at or after pos, or size
+	 */
+	private static long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+		while(pos < size) {
+			buf.clear();
+			int n = channel.read(buf, pos);
+			if(n <= 0)
+				break;
+			for(int i = 0; i < n; i++)
+				if(buf.get(i) == '\n')
+					return pos + i + 1;
+			pos += n;
+		}
+		return size;
+	}
+
+	/**
+	 * throws the error from the first bad shard in order, with its line
+	 * number counted from the start of its file
+	 */
+	private static void checkForErrors(List<Shard> shards) throws IOException {
+		long linesBefore = 0; //lines in earlier shards of the same file
+		FileChannel file = null;
+		for(Shard shard : shards) {
+			if(shard.channel != file) { //first shard of the next file
+				file = shard.channel;
+				linesBefore = 0;
+			}
+			if(shard.error instanceof ProgramFileException) {
+				ProgramFileException e = (ProgramFileException) shard.error;
+				throw new ProgramFileException(shard.file, linesBefore + e.getLineNumber(),
+						e.getProblem());
+			}
+			if(shard.error != null)
+				throw shard.error;
+			linesBefore += shard.linesRead;
+		}
+	}
+
+	/**
+	 * A byte range of one file, and the result of parsing it
+	 */
+	private static class Shard {
+		final String file;
+		final FileChannel channel;
+		final long start;
+		final long end;
+		AttendanceBatch batch;
+		long linesRead;
+		IOException error;
+
+		Shard(String file, FileChannel channel, long start, long end) {
+			this.file = file;
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * parses the range into a batch, keeping any error to report later
+		 */
+		void parse(ProgramFileLoader.IdByteIndex index, Charset charset, LoadProgress progress) {
+			batch = new AttendanceBatch();
+			ProgramFileLoader loader = new ProgramFileLoader(index, charset, batch);
+			loader.setProgress(progress);
+			try {
+				loader.parseRange(file, channel, start, end, false);
+			}
+			catch(IOException e) {
+				error = e;
+			}
+			linesRead = loader.getLinesRead();
+		}
+	}
+
+	/**
+	 * Fork-join task that parses a run of shards, splitting the run in half
+	 * until each task has one shard
+	 */
+	private class ShardTask extends RecursiveAction {
+		private final List<Shard> shards;
+		private final int from;
+		private final int to;
+		private final ProgramFileLoader.IdByteIndex index;
+
+		ShardTask(List<Shard> shards, int from, int to, ProgramFileLoader.IdByteIndex index) {
+			this.shards = shards;
+			this.from = from;
+			this.to = to;
+			this.index = index;
+		}
+
+		protected void compute() {
+			if(to - from <= 1) {
+				if(to > from)
+					shards.get(from).parse(index, charset, progress);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ShardTask(shards, from, mid, index), new ShardTask(shards, mid, to, index));
+		}
+	}
+}
@@ -0,0 +1,91 @@
+import java.util.*;
+
+/**
+ * Attendance figures of a group of classes: how many classes there are,
+ * the sum of their attendance totals over NUM_WEEKS, and the lowest and
+ * highest of those totals. Averages are per class per week, like the
+ * average attendance in the report.
+ */
+public class AttendanceStats {
+	//class constants
+	public static final AttendanceStats EMPTY = new AttendanceStats(0, 0, 0, 0);
+
+	//instance variables
+	private final int count;
+	private final long total;
+	private final int minTotal;
+	private final int maxTotal;
+
+	/**
+	 * AttendanceStats constructor
+	 * @param count the number of classes
+	 * @param total the sum of their attendance totals
+	 * @param minTotal the lowest attendance total (0 if there are no classes)
+	 * @param maxTotal the highest attendance total (0 if there are no classes)
+	 */
+	public AttendanceStats(int count, long total, int minTotal, int maxTotal) {
+		this.count = count;
+		this.total = total;
+		this.minTotal = minTotal;
+		this.maxTotal = maxTotal;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public int getMinTotal() {
+		return minTotal;
+	}
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	/**
+	 * returns the average attendance of the group's classes, per class
+	 * per week, or 0 if there are no classes
+	 */
+	public double getAverage() {
+		if(count == 0)
+			return 0;
+		return (double) total / count / FitnessClass.NUM_WEEKS;
+	}
+
+	/**
+	 * returns the lowest average attendance of a class in the group
+	 */
+	public double getMinAverage() {
+		return (double) minTotal / FitnessClass.NUM_WEEKS;
+	}
+
+	/**
+	 * returns the highest average attendance of a class in the group
+	 */
+	public double getMaxAverage() {
+		return (double) maxTotal / FitnessClass.NUM_WEEKS;
+	}
+
+	/**
+	 * returns the figures of two groups taken together
+	 * @param other the figures of the other group
+	 * @return the combined figures
+	 */
+	public AttendanceStats merge(AttendanceStats other) {
+		if(other.count == 0)
+			return this;
+		if(count == 0)
+			return other;
+		return new AttendanceStats(count + other.count, total + other.total,
+				Math.min(minTotal, other.minTotal), Math.max(maxTotal, other.maxTotal));
+	}
+
+	public String toString() {
+		return String.format("count=%d total=%d avg=%.2f min=%.2f max=%.2f", count, total,
+				getAverage(), getMinAverage(), getMaxAverage());
+	}
+}
@@ -0,0 +1,182 @@
+import java.util.*;
+
+/**
+ * Columnar store of weekly attendance figures for many classes.
+ * Each class is given a row, and each week is a column held as one
+ * contiguous int array indexed by row, so a scan of one week over
+ * all classes walks a single array. Weeks are numbered from 1 and
+ * columns are added on demand, so any number of weeks can be kept.
+ * Rows given back by releaseRow are cleared and reused.
+ */
+public class AttendanceStore {
+	//class constants
+	/** most weeks that can be kept, ten years' worth, so a stray week number cannot take the whole heap */
+	public static final int MAX_WEEKS = 520;
+	private static final int MIN_ROWS = 1;
+
+	//instance variables
+	private int [][] columns; //columns[week-1][row] is the attendance for that week
+	private int numWeeks; //number of weeks with a column
+	private int rowCapacity; //length of each column
+	private int numRows; //number of rows ever handed out
+	private int [] freeRows; //stack of released rows
+	private int numFreeRows;
+
+	/**
+	 * AttendanceStore constructor
+	 * @param weeks the number of week columns to start with
+	 * @param rows the number of rows to allow for at first
+	 */
+	public AttendanceStore(int weeks, int rows) {
+		rowCapacity = Math.max(rows, MIN_ROWS);
+		columns = new int [Math.max(weeks, 1)][];
+		numWeeks = 0;
+		ensureWeeks(weeks);
+		numRows = 0;
+		freeRows = new int [MIN_ROWS];
+		numFreeRows = 0;
+	}
+
+	/**
+	 * returns the number of weeks that have a column
+	 */
+	public int getNumWeeks() {
+		return numWeeks;
+	}
+
+	/**
+	 * returns the number of rows in use
+	 */
+	public int getNumRowsInUse() {
+		return numRows - numFreeRows;
+	}
+
+	/**
+	 * hands out a row with every week set to 0
+	 * @return the row
+	 */
+	public int allocateRow() {
+		if(numFreeRows > 0)
+			return freeRows[--numFreeRows];
+		if(numRows == rowCapacity)
+			growRows(rowCapacity * 2);
+		return numRows++;
+	}
+
+	/**
+	 * clears a row and makes it available to allocateRow again
+	 * @param row the row to give back
+	 */
+	public void releaseRow(int row) {
+		for(int w = 0; w < numWeeks; w++)
+			columns[w][row] = 0;
+		if(numFreeRows == freeRows.length)
+			freeRows = Arrays.copyOf(freeRows, freeRows.length * 2);
+		freeRows[numFreeRows++] = row;
+	}
+
+	/**
+	 * returns the attendance of a row for a week; weeks with
+	 * no column yet have attendance 0
+	 * @param row the row of the class
+	 * @param week the week (1 upwards)
+	 * @return the attendance figure
+	 */
+	public int get(int row, int week) {
+		if(week > numWeeks)
+			return 0;
+		return columns[week-1][row];
+	}
+
+	/**
+	 * sets the attendance of a row for a week, adding week columns as needed
+	 * @param row the row of the class
+	 * @param week the week (1 to MAX_WEEKS)
+	 * @param att the attendance figure
+	 * @throws IllegalArgumentException if there is no such week
+	 */
+	public void set(int row, int week, int att) {
+		checkWeek(week);
+		ensureWeeks(week);
+		columns[week-1][row] = att;
+	}
+
+	/**
+	 * sums the attendance of a row over a range of weeks
+	 * @param row the row of the class
+	 * @param fromWeek the first week of the range
+	 * @param toWeek the last week of the range (inclusive)
+	 * @return the sum
+	 */
+	public long sumRow(int row, int fromWeek, int toWeek) {
+		long sum = 0;
+		int last = Math.min(toWeek, numWeeks);
+		for(int w = Math.max(fromWeek, 1); w <= last; w++)
+			sum += columns[w-1][row];
+		return sum;
+	}
+
+	/**
+	 * sums the attendance of every row for one week. Released rows are
+	 * cleared, so the whole column can be summed in one pass.
+	 * @param week the week (1 upwards)
+	 * @return the sum
+	 */
+	public long sumWeek(int week) {
+		if(week < 1 || week > numWeeks)
+			return 0;
+		int [] column = columns[week-1];
+		long sum = 0;
+		for(int row = 0; row < numRows; row++)
+			sum += column[row];
+		return sum;
+	}
+
+	/**
+	 * copies every week of a row of another store into a row of this store
+	 * @param from the store to copy from
+	 * @param fromRow the row to copy from
+	 * @param toRow the row to copy to
+	 */
+	public void copyRow(AttendanceStore from, int fromRow, int toRow) {
+		ensureWeeks(from.numWeeks);
+		for(int w = 0; w < from.numWeeks; w++)
+			columns[w][toRow] = from.columns[w][fromRow];
+	}
+
+	/**
+	 * checks that a week can be kept
+	 * @param week the week
+	 * @throws IllegalArgumentException unless the week is 1 to MAX_WEEKS
+	 */
+	public static void checkWeek(int week) {
+		if(week < 1 || week > MAX_WEEKS)
+			throw new IllegalArgumentException("No such week " + week + " (weeks are 1 to " + MAX_WEEKS + ")");
+	}
+
+	/**
+	 * adds week columns so that the given week has one
+	 * @param weeks the number of weeks needed
+	 * @throws IllegalArgumentException if that is more than MAX_WEEKS
+	 */
+	public void ensureWeeks(int weeks) {
+		if(weeks <= numWeeks)
+			return;
+		if(weeks > MAX_WEEKS)
+			throw new IllegalArgumentException("No such week " + weeks + " (weeks are 1 to " + MAX_WEEKS + ")");
+		if(weeks > columns.length)
+			columns = Arrays.copyOf(columns, Math.max(weeks, columns.length * 2));
+		for(int w = numWeeks; w < weeks; w++)
+			columns[w] = new int [rowCapacity];
+		numWeeks = weeks;
+	}
+
+	/**
+	 * lengthens every column to the given number of rows
+	 */
+	private void growRows(int capacity) {
+		for(int w = 0; w < numWeeks; w++)
+			columns[w] = Arrays.copyOf(columns[w], capacity);
+		rowCapacity = capacity;
+	}
+}
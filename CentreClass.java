@@ -0,0 +1,44 @@
+import java.util.*;
+
+/**
+ * A FitnessClass together with the centre whose programme it is in, as
+ * returned by ProgramRegistry's cross-centre queries.
+ */
+public class CentreClass {
+	//class constants
+	/** Order of a cross-centre ranking: RANKING_ORDER, then by centre */
+	public static final Comparator<CentreClass> RANKING_ORDER = new Comparator<CentreClass>() {
+		public int compare(CentreClass a, CentreClass b) {
+			int byClass = FitnessClass.RANKING_ORDER.compare(a.fitnessClass, b.fitnessClass);
+			if(byClass != 0)
+				return byClass;
+			return a.centre.compareTo(b.centre);
+		}
+	};
+
+	//instance variables
+	private final String centre;
+	private final FitnessClass fitnessClass;
+
+	/**
+	 * CentreClass constructor
+	 * @param centre the centre
+	 * @param fc the class
+	 */
+	public CentreClass(String centre, FitnessClass fc) {
+		this.centre = centre;
+		fitnessClass = fc;
+	}
+
+	public String getCentre() {
+		return centre;
+	}
+
+	public FitnessClass getFitnessClass() {
+		return fitnessClass;
+	}
+
+	public String toString() {
+		return centre + " " + fitnessClass.getClassID();
+	}
+}
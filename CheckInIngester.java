@@ -0,0 +1,285 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Counts turnstile check-ins, each a class ID and a time, into the weekly
+ * attendance figures of a FitnessProgram. Any number of threads can call
+ * checkIn at once: each check-in only adds one to a LongAdder for its
+ * class and week, so check-ins never wait for each other or for the
+ * programme's lock. The counts are added to the programme by flush, which
+ * makes everything counted since the last flush as one change under one
+ * write lock. Call start to flush every so often on a thread of its own,
+ * so the programme (and so the report) stays current.
+ *
+ * Week 1 starts at the term start given to the constructor and each week
+ * is seven days long. Check-ins add to whatever figures are already set,
+ * e.g. from AttendancesIn.txt.
+ */
+public class CheckInIngester {
+	//class constants
+	public static final long WEEK_MILLIS = 7L * 24 * 60 * 60 * 1000;
+	public static final int MAX_WEEK = AttendanceStore.MAX_WEEKS; //check-ins beyond the weeks that can be kept are refused
+
+	//instance variables
+	private final FitnessProgram program;
+	private final long termStart; //time week 1 starts, in milliseconds since the epoch
+	private final ConcurrentHashMap<FitnessClass, WeekCounts> counts =
+			new ConcurrentHashMap<FitnessClass, WeekCounts>();
+	private final LongAdder numCounted = new LongAdder(); //check-ins counted so far
+	private final LongAdder numRefused = new LongAdder(); //check-ins and lines refused so far
+	private ScheduledExecutorService flusher; //flushes every so often, or null
+	//increments of the next flush, reused from one flush to the next
+	private FitnessClass [] batchClasses = new FitnessClass [64];
+	private int [] batchWeeks = new int [64];
+	private int [] batchIncrements = new int [64];
+
+	/**
+	 * CheckInIngester constructor
+	 * @param fp the programme to count check-ins into
+	 * @param termStartMillis the time week 1 starts, in milliseconds since the epoch
+	 */
+	public CheckInIngester(FitnessProgram fp, long termStartMillis) {
+		program = fp;
+		termStart = termStartMillis;
+	}
+
+	/**
+	 * returns the week a time falls in, or 0 if it is before the term
+	 * starts or after MAX_WEEK
+	 * @param timeMillis the time, in milliseconds since the epoch
+	 */
+	public int weekOf(long timeMillis) {
+		if(timeMillis < termStart)
+			return 0;
+		long week = (timeMillis - termStart) / WEEK_MILLIS + 1;
+		return (week <= MAX_WEEK) ? (int) week : 0;
+	}
+
+	/**
+	 * counts one check-in. It reaches the programme at the next flush.
+	 * @param classId the ID of the class checked in to
+	 * @param timeMillis the time of the check-in, in milliseconds since the epoch
+	 * @return true if it was counted, false if there is no such class or
+	 * the time is outside the term
+	 */
+	public boolean checkIn(String classId, long timeMillis) {
+		int week = weekOf(timeMillis);
+		FitnessClass fc = (week == 0) ? null : program.getClassFromId(classId);
+		if(fc == null) {
+			refused();
+			return false;
+		}
+		WeekCounts classCounts = counts.get(fc);
+		if(classCounts == null) { //first check-in to this class
+			WeekCounts newCounts = new WeekCounts();
+			classCounts = counts.putIfAbsent(fc, newCounts);
+			if(classCounts == null)
+				classCounts = newCounts;
+		}
+		classCounts.week(week).increment();
+		numCounted.increment();
+		ProgramMetrics.CHECK_INS.increment();
+		return true;
+	}
+
+	/**
+	 * counts one refused check-in or line
+	 */
+	private void refused() {
+		numRefused.increment();
+		ProgramMetrics.CHECK_INS_REFUSED.increment();
+	}
+
+	/**
+	 * returns the number of check-ins counted by this ingester so far
+	 */
+	public long getNumCounted() {
+		return numCounted.sum();
+	}
+
+	/**
+	 * returns the number of check-ins, and lines of check-ins, this
+	 * ingester has refused so far
+	 */
+	public long getNumRefused() {
+		return numRefused.sum();
+	}
+
+	/**
+	 * reads check-ins from a stream until it ends, one per line as a class
+	 * ID and a time in milliseconds since the epoch, separated by spaces.
+	 * Blank lines are skipped; lines that cannot be understood, or that
+	 * checkIn refuses, are counted as refused and skipped.
+	 * @param in the stream
+	 * @return the number of check-ins counted
+	 * @throws IOException if the stream cannot be read
+	 */
+	public long readCheckIns(BufferedReader in) throws IOException {
+		long counted = 0;
+		String line;
+		while((line = in.readLine()) != null) {
+			line = line.trim();
+			if(line.isEmpty())
+				continue;
+			String [] tokens = line.split("[ \t]+");
+			try {
+				if(tokens.length == 2 && checkIn(tokens[0], Long.parseLong(tokens[1])))
+					counted++;
+				else if(tokens.length != 2)
+					refused();
+			}
+			catch(NumberFormatException e) {
+				refused();
+			}
+		}
+		return counted;
+	}
+
+	/**
+	 * adds everything counted since the last flush to the programme, as
+	 * one change. Check-ins counted while this runs are either included
+	 * or left for the next flush; none are lost.
+	 * @return the number of attendance figures changed
+	 */
+	public synchronized int flush() {
+		long start = System.nanoTime();
+		int size = 0;
+		Iterator<Map.Entry<FitnessClass, WeekCounts>> entries = counts.entrySet().iterator();
+		while(entries.hasNext()) {
+			Map.Entry<FitnessClass, WeekCounts> entry = entries.next();
+			FitnessClass fc = entry.getKey();
+			if(fc.getProgram() != program) { //class deleted, so its check-ins go too
+				entries.remove();
+				continue;
+			}
+			WeekCounts classCounts = entry.getValue();
+			for(int week = 1; week <= classCounts.getNumWeeks(); week++) {
+				long increment = classCounts.takeIncrement(week);
+				if(increment == 0)
+					continue;
+				if(size == batchClasses.length)
+					growBatch();
+				batchClasses[size] = fc;
+				batchWeeks[size] = week;
+				batchIncrements[size] = (int) increment;
+				size++;
+			}
+		}
+		int changed = (size == 0) ? 0 : program.addAttendances(batchClasses, batchWeeks, batchIncrements, size);
+		Arrays.fill(batchClasses, 0, size, null); //don't keep deleted classes alive
+		ProgramMetrics.CHECK_IN_FLUSH.recordSince(start);
+		return changed;
+	}
+
+	private void growBatch() {
+		int length = batchClasses.length * 2;
+		batchClasses = Arrays.copyOf(batchClasses, length);
+		batchWeeks = Arrays.copyOf(batchWeeks, length);
+		batchIncrements = Arrays.copyOf(batchIncrements, length);
+	}
+
+	/**
+	 * flushes every so often on a daemon thread, until close is called
+	 * @param periodMillis the milliseconds between flushes
+	 */
+	public synchronized void start(long periodMillis) {
+		if(periodMillis <= 0)
+			throw new IllegalArgumentException("The period must be positive");
+		if(flusher != null)
+			throw new IllegalStateException("Already started");
+		flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "check-in-flush");
+				t.setDaemon(true); //don't keep the programme running
+				return t;
+			}
+		});
+		flusher.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					flush();
+				}
+				catch(RuntimeException e) { //keep flushing, but say what went wrong
+					System.out.println("Could not add check-ins: " + e);
+				}
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * stops flushing every so often, and flushes what is left
+	 */
+	public void close() {
+		ScheduledExecutorService stopping;
+		synchronized(this) {
+			stopping = flusher;
+			flusher = null;
+		}
+		if(stopping != null) {
+			stopping.shutdown();
+			try {
+				stopping.awaitTermination(1, TimeUnit.MINUTES);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+	}
+
+	/**
+	 * Check-in counts of one class, one LongAdder per week. The adders
+	 * are only ever added to; flush works out what is new by keeping
+	 * the sum it has already passed on for each week.
+	 */
+	private static class WeekCounts {
+		private volatile LongAdder [] weeks; //weeks[w-1] counts week w
+		private long [] flushed = new long [FitnessClass.NUM_WEEKS]; //sums passed on, used by flush only
+
+		WeekCounts() {
+			weeks = newAdders(new LongAdder [0], FitnessClass.NUM_WEEKS);
+		}
+
+		/**
+		 * returns the counter for a week, adding weeks if needed
+		 */
+		LongAdder week(int week) {
+			LongAdder [] current = weeks;
+			if(week <= current.length)
+				return current[week - 1];
+			return grow(week);
+		}
+
+		private synchronized LongAdder grow(int week) {
+			if(week > weeks.length) //not grown by another thread meanwhile
+				weeks = newAdders(weeks, Math.max(week, weeks.length * 2));
+			return weeks[week - 1];
+		}
+
+		private static LongAdder [] newAdders(LongAdder [] old, int length) {
+			LongAdder [] adders = Arrays.copyOf(old, length);
+			for(int i = old.length; i < length; i++)
+				adders[i] = new LongAdder();
+			return adders;
+		}
+
+		int getNumWeeks() {
+			return weeks.length;
+		}
+
+		/**
+		 * returns how much a week's count has grown since this was last
+		 * called for it, up to Integer.MAX_VALUE. A check-in still being
+		 * added may be missed, but is then taken next time.
+		 */
+		long takeIncrement(int week) {
+			if(week > flushed.length)
+				flushed = Arrays.copyOf(flushed, weeks.length);
+			long increment = Math.min(weeks[week - 1].sum() - flushed[week - 1], Integer.MAX_VALUE);
+			flushed[week - 1] += increment; //anything over is left for next time
+			return increment;
+		}
+	}
+}
@@ -0,0 +1,28 @@
+import java.util.*;
+
+/**
+ * Thrown when a batch of classes to add to or delete from a
+ * FitnessProgram cannot be applied. Every problem found in the batch is
+ * recorded, not just the first, and nothing in the batch has been applied.
+ */
+public class ClassBatchException extends IllegalArgumentException {
+	//instance variables
+	private final List<String> problems;
+
+	/**
+	 * ClassBatchException constructor
+	 * @param problems what is wrong with the batch, one item per problem
+	 */
+	public ClassBatchException(List<String> problems) {
+		super(problems.size() + " problem(s) in batch: " + problems.get(0)
+				+ (problems.size() > 1 ? " ..." : ""));
+		this.problems = Collections.unmodifiableList(new ArrayList<String>(problems));
+	}
+
+	/**
+	 * returns every problem found, in the order of the batch
+	 */
+	public List<String> getProblems() {
+		return problems;
+	}
+}
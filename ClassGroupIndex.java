@@ -0,0 +1,218 @@
+import java.util.*;
+
+/**
+ * Index of a programme's classes grouped by one of their properties, such
+ * as their tutor, given by keyOf as a small non-negative int: a code
+ * from a SymbolTable, or a start time. Groups are held in an array
+ * indexed by key, so finding a class's group compares no Strings and
+ * hashes nothing. Each group keeps the count and sum of
+ * its classes' attendance totals up to date as classes are added and
+ * removed and attendances change, so group figures are read without
+ * visiting the classes. The lowest and highest totals are kept too, but
+ * when the class holding one of them drops out or changes the other way
+ * they are found again from the group's classes the next time they are
+ * asked for.
+ *
+ * Changes must be made by one thread at a time (FitnessProgram makes
+ * them under its write lock). Each group is locked while it is changed
+ * or read, so it can be read while changes are being made without being
+ * harmed, though what is read is only consistent with the rest of the
+ * programme if no change was made meanwhile (FitnessProgram reads it
+ * with optimistic reads that it checks). As with the ID index, a class's
+ * key must not change while it is in a programme.
+ */
+public abstract class ClassGroupIndex {
+	//class constants
+	/** Order of the timetable: by day, room, then time */
+	static final Comparator<FitnessClass> TIMETABLE_ORDER = new Comparator<FitnessClass>() {
+		public int compare(FitnessClass a, FitnessClass b) {
+			return Long.compare(a.getSlotKey(), b.getSlotKey());
+		}
+	};
+
+	//instance variables
+	private Group [] groups = new Group [16]; //groups[key] is the group with that key, or null
+
+	/**
+	 * returns the key of the group a class belongs to
+	 * @param fc the class
+	 * @return the key, 0 or more
+	 */
+	protected abstract int keyOf(FitnessClass fc);
+
+	/**
+	 * returns the group with a key, or null if there is none
+	 */
+	private Group group(int key) {
+		return (key >= 0 && key < groups.length) ? groups[key] : null;
+	}
+
+	/**
+	 * adds a class to its group
+	 * @param fc the class
+	 * @throws IllegalArgumentException if the class's key is negative
+	 */
+	public void add(FitnessClass fc) {
+		int key = keyOf(fc);
+		if(key < 0)
+			throw new IllegalArgumentException("No group for key " + key);
+		if(key >= groups.length)
+			groups = Arrays.copyOf(groups, Math.max(key + 1, groups.length * 2));
+		if(groups[key] == null)
+			groups[key] = new Group();
+		groups[key].add(fc);
+	}
+
+	/**
+	 * removes a class from its group, and the group if it is then empty
+	 * @param fc the class
+	 */
+	public void remove(FitnessClass fc) {
+		int key = keyOf(fc);
+		Group group = group(key);
+		if(group == null || !group.remove(fc))
+			return;
+		if(group.isEmpty())
+			groups[key] = null;
+	}
+
+	/**
+	 * updates the figures of a class's group after its attendance total changes
+	 * @param fc the class, whose total is already newTotal
+	 * @param oldTotal the total before the change
+	 * @param newTotal the total after the change
+	 */
+	public void totalChanged(FitnessClass fc, int oldTotal, int newTotal) {
+		Group group = group(keyOf(fc));
+		if(group != null) //always there for a class of the programme
+			group.totalChanged(oldTotal, newTotal);
+	}
+
+	/**
+	 * returns the classes in a group, in timetable order
+	 * @param key the group's key
+	 * @return the classes, empty if there is no such group
+	 */
+	public List<FitnessClass> getClasses(int key) {
+		Group group = group(key);
+		if(group == null)
+			return new ArrayList<FitnessClass>();
+		List<FitnessClass> classes = group.getClasses();
+		Collections.sort(classes, TIMETABLE_ORDER);
+		return classes;
+	}
+
+	/**
+	 * returns the figures of one group
+	 * @param key the group's key
+	 * @return the figures, with a count of 0 if there is no such group
+	 */
+	public AttendanceStats getStats(int key) {
+		Group group = group(key);
+		return (group == null) ? AttendanceStats.EMPTY : group.getStats();
+	}
+
+	/**
+	 * returns the figures of every group, by key in key order
+	 */
+	public SortedMap<Integer, AttendanceStats> getAllStats() {
+		SortedMap<Integer, AttendanceStats> stats = new TreeMap<Integer, AttendanceStats>();
+		for(int key = 0; key < groups.length; key++)
+			if(groups[key] != null)
+				stats.put(key, groups[key].getStats());
+		return stats;
+	}
+
+	/**
+	 * returns the figures of every group, by the Strings the keys are
+	 * codes of, in alphabetical order
+	 * @param symbols the table the keys are codes in
+	 */
+	public SortedMap<String, AttendanceStats> getAllStats(SymbolTable symbols) {
+		SortedMap<String, AttendanceStats> stats = new TreeMap<String, AttendanceStats>();
+		for(int key = 0; key < groups.length; key++)
+			if(groups[key] != null)
+				stats.put(symbols.decode(key), groups[key].getStats());
+		return stats;
+	}
+
+	/**
+	 * The classes of one group and their running figures
+	 */
+	private static class Group {
+		private final Set<FitnessClass> classes = new HashSet<FitnessClass>();
+		private long total; //sum of the classes' attendance totals
+		private int minTotal;
+		private int maxTotal;
+		private boolean extremesStale; //minTotal and maxTotal must be found again
+
+		synchronized void add(FitnessClass fc) {
+			if(!classes.add(fc))
+				return;
+			int t = fc.getAttendanceTotal();
+			total += t;
+			if(classes.size() == 1) {
+				minTotal = t;
+				maxTotal = t;
+				extremesStale = false;
+			}
+			else if(!extremesStale) {
+				minTotal = Math.min(minTotal, t);
+				maxTotal = Math.max(maxTotal, t);
+			}
+		}
+
+		synchronized boolean remove(FitnessClass fc) {
+			if(!classes.remove(fc))
+				return false;
+			int t = fc.getAttendanceTotal();
+			total -= t;
+			if(t == minTotal || t == maxTotal) //may have been the only class with it
+				extremesStale = true;
+			return true;
+		}
+
+		synchronized void totalChanged(int oldTotal, int newTotal) {
+			total += newTotal - oldTotal;
+			if(extremesStale)
+				return;
+			if((oldTotal == minTotal && newTotal > oldTotal) || (oldTotal == maxTotal && newTotal < oldTotal))
+				extremesStale = true; //the class may have held the lowest or highest
+			else {
+				minTotal = Math.min(minTotal, newTotal);
+				maxTotal = Math.max(maxTotal, newTotal);
+			}
+		}
+
+		synchronized boolean isEmpty() {
+			return classes.isEmpty();
+		}
+
+		/**
+		 * returns a new list of the classes, in no particular order
+		 */
+		synchronized List<FitnessClass> getClasses() {
+			return new ArrayList<FitnessClass>(classes);
+		}
+
+		/**
+		 * returns the figures, finding the lowest and highest totals again
+		 * if needed. A class's total may change while they are found, but
+		 * its group is then told after, and folds the new total in again.
+		 */
+		synchronized AttendanceStats getStats() {
+			if(extremesStale) {
+				int min = Integer.MAX_VALUE;
+				int max = Integer.MIN_VALUE;
+				for(FitnessClass fc : classes) {
+					min = Math.min(min, fc.getAttendanceTotal());
+					max = Math.max(max, fc.getAttendanceTotal());
+				}
+				minTotal = min;
+				maxTotal = max;
+				extremesStale = false;
+			}
+			return new AttendanceStats(classes.size(), total, minTotal, maxTotal);
+		}
+	}
+}
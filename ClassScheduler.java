@@ -0,0 +1,196 @@
+import java.util.*;
+
+/**
+ * Chooses slots for new classes so that no tutor is given two classes
+ * at once and the rooms are used evenly. Rooms are tried least used
+ * first, and in each room the earliest hour of the week at which both
+ * the room and the tutor are free is taken. A room's free hours on a
+ * day are a word of the programme's FreeSlotMap and the tutor's busy
+ * hours a word of its TutorOccupancy, so checking a room on a day for
+ * a clash is one AND of two words.
+ *
+ * The slots chosen are only planned: the scheduler keeps them in words
+ * of its own laid over the maps, so a whole batch can be placed before
+ * any of it is added, and the programme is left as it was if one class
+ * of the batch cannot be placed. The programme keeps one scheduler and
+ * tells it of each class added or removed, so the rooms' loads are never
+ * counted again; it is used with the programme's write lock held, and
+ * dropPlans is called once a batch has been added or refused.
+ */
+public class ClassScheduler {
+	//instance variables
+	private final FreeSlotMap freeSlots;
+	private final TutorOccupancy tutors;
+	private final int numDays;
+	private final int firstHour;
+	private final long fullWord; //word with a bit set for every hour of the day
+	private final int slotsPerRoom;
+	private int [] loads; //loads[room-1] is the number of classes, and classes planned, in that room
+	private final TreeSet<Long> byLoad; //rooms with a vacant slot, as load << 32 | room, least used first
+	private final Map<Long, Long> plannedRooms; //hours planned, by day and room
+	private final Map<Long, Long> plannedTutors; //hours planned, by tutor and day
+	private final List<Integer> plannedLoads; //room of each slot planned, to be taken off its load
+
+	/**
+	 * ClassScheduler constructor. Works out how much each room is used,
+	 * in one pass over the free slot map.
+	 * @param freeSlots the programme's free slot map
+	 * @param tutors the hours the programme's tutors are teaching
+	 * @param days the number of days
+	 * @param rooms the number of rooms
+	 * @param first the start hour of the first slot of each day
+	 * @param hours the number of slots in each day
+	 */
+	public ClassScheduler(FreeSlotMap freeSlots, TutorOccupancy tutors, int days, int rooms,
+			int first, int hours) {
+		this.freeSlots = freeSlots;
+		this.tutors = tutors;
+		numDays = days;
+		firstHour = first;
+		fullWord = (hours == Long.SIZE) ? -1L : (1L << hours) - 1;
+		slotsPerRoom = days * hours;
+		loads = new int [rooms];
+		byLoad = new TreeSet<Long>();
+		for(int room = 1; room <= rooms; room++) {
+			for(int day = 1; day <= days; day++)
+				loads[room - 1] += Long.bitCount(freeSlots.getOccupiedHours(day, room));
+			if(loads[room - 1] < slotsPerRoom)
+				byLoad.add(loadKey(room));
+		}
+		plannedRooms = new HashMap<Long, Long>();
+		plannedTutors = new HashMap<Long, Long>();
+		plannedLoads = new ArrayList<Integer>();
+	}
+
+	/**
+	 * returns the number of rooms the scheduler knows of
+	 */
+	public int getNumRooms() {
+		return loads.length;
+	}
+
+	/**
+	 * adds empty rooms, up to the given number
+	 * @param rooms the number of rooms there now are
+	 */
+	public void addRooms(int rooms) {
+		int old = loads.length;
+		if(rooms <= old)
+			return;
+		loads = Arrays.copyOf(loads, rooms);
+		for(int room = old + 1; room <= rooms; room++)
+			byLoad.add(loadKey(room));
+	}
+
+	/**
+	 * records that a class has been put in a room
+	 * @param room the room
+	 */
+	public void classAdded(int room) {
+		changeLoad(room, 1);
+	}
+
+	/**
+	 * records that a class has been taken out of a room
+	 * @param room the room
+	 */
+	public void classRemoved(int room) {
+		changeLoad(room, -1);
+	}
+
+	/**
+	 * forgets the slots planned so far, taking them off their rooms'
+	 * loads. Called once the classes planned have been added, and
+	 * classAdded called for each, or when the batch is refused.
+	 */
+	public void dropPlans() {
+		for(int room : plannedLoads)
+			changeLoad(room, -1);
+		plannedLoads.clear();
+		plannedRooms.clear();
+		plannedTutors.clear();
+	}
+
+	/**
+	 * plans a slot for a class of a tutor: the earliest hour of the week,
+	 * in the least used room, at which the room is vacant and the tutor
+	 * is not teaching
+	 * @param tutor the tutor's code
+	 * @return the slot, or null if there is no such slot
+	 */
+	public TimeSlot place(int tutor) {
+		long [] free = new long [numDays]; //hours the tutor is free, by day
+		boolean anyFree = false;
+		for(int day = 1; day <= numDays; day++) {
+			free[day - 1] = ~tutorHours(tutor, day) & fullWord;
+			anyFree |= free[day - 1] != 0;
+		}
+		if(!anyFree) //the tutor is teaching at every hour of the week
+			return null;
+		for(long key : byLoad) {
+			int room = (int) key;
+			for(int day = 1; day <= numDays; day++) {
+				long vacant = free[day - 1] & ~roomHours(day, room);
+				if(vacant != 0) {
+					TimeSlot slot = new TimeSlot(day, room, firstHour + Long.numberOfTrailingZeros(vacant));
+					plan(tutor, slot, Long.lowestOneBit(vacant));
+					return slot;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * records a planned slot and moves its room along the order of use
+	 */
+	private void plan(int tutor, TimeSlot slot, long bit) {
+		int day = slot.getDay();
+		int room = slot.getRoom();
+		plannedRooms.put(roomDayKey(day, room), planned(plannedRooms, roomDayKey(day, room)) | bit);
+		plannedTutors.put(tutorDayKey(tutor, day), planned(plannedTutors, tutorDayKey(tutor, day)) | bit);
+		plannedLoads.add(room);
+		changeLoad(room, 1);
+	}
+
+	/**
+	 * changes the load of a room and moves it along the order of use
+	 */
+	private void changeLoad(int room, int change) {
+		byLoad.remove(loadKey(room));
+		loads[room - 1] += change;
+		if(loads[room - 1] < slotsPerRoom)
+			byLoad.add(loadKey(room));
+	}
+
+	/**
+	 * returns the hours of a room on a day that are taken or planned
+	 */
+	private long roomHours(int day, int room) {
+		return freeSlots.getOccupiedHours(day, room) | planned(plannedRooms, roomDayKey(day, room));
+	}
+
+	/**
+	 * returns the hours a tutor is teaching or planned to teach on a day
+	 */
+	private long tutorHours(int tutor, int day) {
+		return tutors.getBusyHours(tutor, day) | planned(plannedTutors, tutorDayKey(tutor, day));
+	}
+
+	private static long planned(Map<Long, Long> plannedHours, long key) {
+		Long hours = plannedHours.get(key);
+		return (hours == null) ? 0 : hours;
+	}
+
+	private long loadKey(int room) {
+		return ((long) loads[room - 1] << 32) | room;
+	}
+
+	private static long roomDayKey(int day, int room) {
+		return ((long) room << 8) | day;
+	}
+
+	private static long tutorDayKey(int tutor, int day) {
+		return ((long) tutor << 8) | day;
+	}
+}
@@ -0,0 +1,876 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Programme of fitness classes held as parallel arrays of primitives
+ * rather than as FitnessClass objects, for programmes of a million
+ * classes or more. Each class is given a row: its ID, name and tutor
+ * codes, day, room, start time and running attendance total are kept at
+ * that row of one array each, and its weekly figures at that row of an
+ * AttendanceStore. Slots are a dense array of rows, laid out room by
+ * room so that adding rooms only lengthens it, and IDs are found through
+ * an open-addressed table of rows. So a class costs a few dozen bytes
+ * besides its ID, and scans over the whole programme - the report, the
+ * ClassesOut and attendances text, week totals - walk a few arrays from
+ * start to end.
+ *
+ * FitnessClass objects are only made on demand, as views of a row: what
+ * they return is read from the arrays, and setting an ID, name, tutor,
+ * slot or attendance through them changes the programme. As with a class
+ * of a FitnessProgram, a slot outside the timetable or another class's,
+ * or an ID another class has, is refused. A view of a deleted class, or
+ * of a class whose ID was changed through another view, can no longer be read;
+ * to copy a class into a FitnessProgram, add a new FitnessClass made
+ * from its getClassesOutLine. Classes are added, replaced and deleted
+ * in the same way as in FitnessProgram, and the report, the sorted list
+ * and the output texts are the same as FitnessProgram gives for the
+ * same classes. A programme can be read by many threads at once; changes
+ * are made under a write lock.
+ */
+public class CompactProgram {
+	//class constants
+	private static final int MIN_ROWS = 16;
+
+	//instance variables
+	private final int numDays; //number of days (1 to Timetable.DAYS_PER_WEEK)
+	private volatile int numRooms; //number of rooms, growing on demand
+	private final int firstHour; //start time of the first slot of each day
+	private final int hoursPerDay;
+	private String [] ids; //ids[row] is the ID of the class at that row, or null if the row is free
+	private int [] nameCodes; //codes in FitnessClass.CLASS_NAMES
+	private int [] tutorCodes; //codes in FitnessClass.TUTORS
+	private byte [] days;
+	private byte [] times;
+	private int [] rooms;
+	private int [] totals; //attendance totals over NUM_WEEKS
+	private int [] generations; //goes up each time the class at a row is added or removed
+	private final AttendanceStore attendances; //weekly figures, and the handing out of rows
+	private int [] slotRows; //row + 1 of the class in each slot (see slotIndex), or 0 if vacant
+	private int [] idTable; //open-addressed table of row + 1 by ID hash, 0 for an empty place
+	private volatile int numClasses;
+	private long totalAttendance; //sum of the attendance totals of all classes
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * CompactProgram constructor
+	 * @param days the number of days in the programme (1 to 7)
+	 * @param rooms the initial number of rooms (grows when classes use more)
+	 * @param firstStart the start time of the first class of each day
+	 * @param lastStart the start time of the last class of each day
+	 */
+	public CompactProgram(int days, int rooms, int firstStart, int lastStart) {
+		if(days < 1 || days > Timetable.DAYS_PER_WEEK)
+			throw new IllegalArgumentException("Number of days must be 1 to " + Timetable.DAYS_PER_WEEK);
+		if(rooms < 1 || rooms > Timetable.MAX_ROOMS)
+			throw new IllegalArgumentException("Number of rooms must be 1 to " + Timetable.MAX_ROOMS);
+		if(firstStart < 0 || lastStart > Timetable.LATEST_HOUR || firstStart > lastStart)
+			throw new IllegalArgumentException("Invalid hours " + firstStart + " to " + lastStart);
+		numDays = days;
+		numRooms = rooms;
+		firstHour = firstStart;
+		hoursPerDay = lastStart - firstStart + 1;
+		ids = new String [MIN_ROWS];
+		nameCodes = new int [MIN_ROWS];
+		tutorCodes = new int [MIN_ROWS];
+		this.days = new byte [MIN_ROWS];
+		times = new byte [MIN_ROWS];
+		this.rooms = new int [MIN_ROWS];
+		totals = new int [MIN_ROWS];
+		generations = new int [MIN_ROWS];
+		attendances = new AttendanceStore(FitnessClass.NUM_WEEKS, MIN_ROWS);
+		slotRows = new int [slotsPerRoom() * rooms];
+		idTable = new int [MIN_ROWS * 2];
+	}
+
+	//accessor methods
+	public int getNumClasses() {
+		return numClasses;
+	}
+
+	public int getNumDays() {
+		return numDays;
+	}
+
+	public int getNumRooms() {
+		return numRooms;
+	}
+
+	public int getFirstStartTime() {
+		return firstHour;
+	}
+
+	public int getLastStartTime() {
+		return firstHour + hoursPerDay - 1;
+	}
+
+	/**
+	 * returns the number of weeks of attendance held, at least NUM_WEEKS
+	 */
+	public int getNumWeeks() {
+		lock.readLock().lock();
+		try {
+			return attendances.getNumWeeks();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * adds a class from a line of the ClassesIn file, as
+	 * FitnessProgram.addClassFromFile does
+	 * @param classInfo the line
+	 */
+	public void addClassFromFile(String classInfo) {
+		if(classInfo.isEmpty())
+			return;
+		String [] tokens = classInfo.split("[ ]+");
+		int day = 1;
+		int room = 1;
+		if(tokens.length >= 6) { //day and room are optional
+			day = Integer.parseInt(tokens[4]);
+			room = Integer.parseInt(tokens[5]);
+		}
+		addClass(tokens[0], tokens[1], tokens[2], day, room, Integer.parseInt(tokens[3]));
+	}
+
+	/**
+	 * adds a class in a given slot. Rooms beyond the current number of
+	 * rooms are added as needed. A class already in that slot, or already
+	 * using the same ID, is removed first.
+	 * @param id the class ID
+	 * @param name the class name
+	 * @param tutor the tutor
+	 * @param day the day
+	 * @param room the room
+	 * @param time the start time
+	 * @throws IllegalArgumentException if the slot is outside the timetable
+	 */
+	public void addClass(String id, String name, String tutor, int day, int room, int time) {
+		lock.writeLock().lock();
+		try {
+			checkSlot(day, room, time); //before adding any rooms, so a bad slot leaves the programme as it was
+			if(room > numRooms)
+				ensureRooms(room);
+			int sameId = findRow(id);
+			if(sameId >= 0) //if the ID is being reused, remove the older class
+				removeRow(sameId);
+			int slot = slotIndex(day, room, time);
+			if(slotRows[slot] != 0) //if a class is being replaced, remove it first
+				removeRow(slotRows[slot] - 1);
+			int row = attendances.allocateRow();
+			if(row == ids.length)
+				growRows(ids.length * 2);
+			ids[row] = id;
+			nameCodes[row] = FitnessClass.CLASS_NAMES.encode(name);
+			tutorCodes[row] = FitnessClass.TUTORS.encode(tutor);
+			days[row] = (byte) day;
+			times[row] = (byte) time;
+			rooms[row] = room;
+			totals[row] = 0; //rows are handed out with every week at 0
+			generations[row]++; //views of an earlier class at this row are now stale
+			slotRows[slot] = row + 1;
+			insertId(row);
+			numClasses++;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * removes the class with a given ID
+	 * @param id the ID
+	 * @return true if the class was removed, false if there was no such class
+	 */
+	public boolean deleteClass(String id) {
+		lock.writeLock().lock();
+		try {
+			int row = findRow(id);
+			if(row < 0)
+				return false;
+			removeRow(row);
+			return true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * takes the class at a row out of every array and gives back the row.
+	 * Called with the write lock held.
+	 */
+	private void removeRow(int row) {
+		removeId(row);
+		slotRows[slotIndex(days[row], rooms[row], times[row])] = 0;
+		totalAttendance -= totals[row];
+		attendances.releaseRow(row);
+		ids[row] = null;
+		totals[row] = 0;
+		generations[row]++;
+		numClasses--;
+	}
+
+	/**
+	 * adds rooms so that there are at least the given number. The slot
+	 * array is laid out room by room, so it is only lengthened.
+	 * Called with the write lock held.
+	 */
+	private void ensureRooms(int room) {
+		slotRows = Arrays.copyOf(slotRows, slotsPerRoom() * room);
+		numRooms = room;
+	}
+
+	/**
+	 * lengthens every array held by row
+	 */
+	private void growRows(int capacity) {
+		ids = Arrays.copyOf(ids, capacity);
+		nameCodes = Arrays.copyOf(nameCodes, capacity);
+		tutorCodes = Arrays.copyOf(tutorCodes, capacity);
+		days = Arrays.copyOf(days, capacity);
+		times = Arrays.copyOf(times, capacity);
+		rooms = Arrays.copyOf(rooms, capacity);
+		totals = Arrays.copyOf(totals, capacity);
+		generations = Arrays.copyOf(generations, capacity);
+	}
+
+	/**
+	 * checks that a slot would lie within the timetable once rooms are
+	 * added up to its room
+	 * @throws IllegalArgumentException if it would not
+	 */
+	private void checkSlot(int day, int room, int time) {
+		if(day < 1 || day > numDays || room < 1 || room > Timetable.MAX_ROOMS
+				|| time < firstHour || time >= firstHour + hoursPerDay)
+			throw new IllegalArgumentException("No such slot: day " + day + ", room " + room
+					+ ", time " + time);
+	}
+
+	/**
+	 * gives the class at a row a new ID. Called with the write lock held.
+	 * @throws IllegalArgumentException if the ID is null or another class has it
+	 */
+	private void changeId(int row, String id) {
+		if(id == null)
+			throw new IllegalArgumentException("A class must have an ID");
+		int sameId = findRow(id);
+		if(sameId == row)
+			return;
+		if(sameId >= 0)
+			throw new IllegalArgumentException("Class ID " + id + " is already in use");
+		removeId(row);
+		ids[row] = id;
+		placeId(row); //the table holds as many rows as before, so needs no room
+	}
+
+	/**
+	 * moves the class at a row to a new slot, adding rooms as needed.
+	 * Called with the write lock held.
+	 * @throws IllegalArgumentException if the slot is outside the timetable or another class's
+	 */
+	private void moveRow(int row, int day, int room, int time) {
+		checkSlot(day, room, time);
+		if(room <= numRooms) {
+			int occupant = slotRows[slotIndex(day, room, time)];
+			if(occupant != 0 && occupant != row + 1)
+				throw new IllegalArgumentException("Class " + ids[occupant - 1] + " is already at day "
+						+ day + ", room " + room + ", time " + time);
+		}
+		else
+			ensureRooms(room);
+		slotRows[slotIndex(days[row], rooms[row], times[row])] = 0;
+		days[row] = (byte) day;
+		rooms[row] = room;
+		times[row] = (byte) time;
+		slotRows[slotIndex(day, room, time)] = row + 1;
+	}
+
+	private boolean isValidSlot(int day, int room, int time) {
+		return day >= 1 && day <= numDays && room >= 1 && room <= numRooms
+				&& time >= firstHour && time < firstHour + hoursPerDay;
+	}
+
+	private int slotsPerRoom() {
+		return numDays * hoursPerDay;
+	}
+
+	/**
+	 * returns the place of a slot in slotRows: each room's slots are
+	 * together, by day then start time
+	 */
+	private int slotIndex(int day, int room, int time) {
+		return (room - 1) * slotsPerRoom() + (day - 1) * hoursPerDay + (time - firstHour);
+	}
+
+	/**
+	 * returns the place an ID's search in idTable starts at
+	 */
+	private int idHome(String id) {
+		int h = id.hashCode() * 0x9E3779B9; //spread the bits of similar IDs
+		return (h ^ (h >>> 16)) & (idTable.length - 1);
+	}
+
+	/**
+	 * returns the row of the class with a given ID, or -1 if there is none
+	 */
+	private int findRow(String id) {
+		if(id == null)
+			return -1;
+		int mask = idTable.length - 1;
+		for(int i = idHome(id); idTable[i] != 0; i = (i + 1) & mask) {
+			int row = idTable[i] - 1;
+			if(ids[row].equals(id))
+				return row;
+		}
+		return -1;
+	}
+
+	/**
+	 * puts a row in idTable, doubling the table once it is half full
+	 */
+	private void insertId(int row) {
+		if((numClasses + 1) * 2 > idTable.length) {
+			int [] old = idTable;
+			idTable = new int [old.length * 2];
+			for(int entry : old)
+				if(entry != 0)
+					placeId(entry - 1);
+		}
+		placeId(row);
+	}
+
+	private void placeId(int row) {
+		int mask = idTable.length - 1;
+		int i = idHome(ids[row]);
+		while(idTable[i] != 0)
+			i = (i + 1) & mask;
+		idTable[i] = row + 1;
+	}
+
+	/**
+	 * takes a row out of idTable, moving back any later entries of the
+	 * same run that could not be placed where they belong
+	 */
+	private void removeId(int row) {
+		int mask = idTable.length - 1;
+		int i = idHome(ids[row]);
+		while(idTable[i] != row + 1)
+			i = (i + 1) & mask;
+		idTable[i] = 0;
+		for(int j = (i + 1) & mask; idTable[j] != 0; j = (j + 1) & mask) {
+			int home = idHome(ids[idTable[j] - 1]);
+			//move the entry into the gap unless its home lies after the gap, up to j
+			if(((j - home) & mask) >= ((j - i) & mask)) {
+				idTable[i] = idTable[j];
+				idTable[j] = 0;
+				i = j;
+			}
+		}
+	}
+
+	/**
+	 * sets the attendance figures of a class from a line of the
+	 * attendances file, as FitnessProgram.populateAttendances does
+	 * @param attLine the line
+	 * @throws IllegalArgumentException if there is no class with the line's ID
+	 */
+	public void populateAttendances(String attLine) {
+		String [] tokens = attLine.split("[ ]+");
+		int [] figures = new int [tokens.length - 1];
+		for(int week = 1; week < tokens.length; week++)
+			figures[week - 1] = Integer.parseInt(tokens[week]);
+		lock.writeLock().lock(); //the whole line is set in one change
+		try {
+			int row = findRow(tokens[0]);
+			if(row < 0)
+				throw new IllegalArgumentException("No class with ID " + tokens[0]);
+			for(int week = 1; week <= figures.length; week++)
+				writeAttendance(row, week, figures[week - 1]);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * sets an attendance figure of a class
+	 * @param id the class ID
+	 * @param week the week (1 upwards)
+	 * @param att the figure
+	 * @return true if it was set, false if there is no such class
+	 */
+	public boolean setAttendance(String id, int week, int att) {
+		lock.writeLock().lock();
+		try {
+			int row = findRow(id);
+			if(row < 0)
+				return false;
+			writeAttendance(row, week, att);
+			return true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * sets a figure and keeps the running totals up to date.
+	 * Called with the write lock held.
+	 * @throws IllegalArgumentException if the week cannot be kept
+	 */
+	private void writeAttendance(int row, int week, int att) {
+		AttendanceStore.checkWeek(week);
+		int old = attendances.get(row, week);
+		attendances.set(row, week, att);
+		if(week <= FitnessClass.NUM_WEEKS) { //only weeks 1 to NUM_WEEKS count towards the average
+			totals[row] += att - old;
+			totalAttendance += att - old;
+		}
+	}
+
+	/**
+	 * returns a view of the class with a given ID, or null if there is none
+	 * @param id the ID
+	 */
+	public FitnessClass getClassFromId(String id) {
+		lock.readLock().lock();
+		try {
+			int row = findRow(id);
+			return (row < 0) ? null : new ClassView(row);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * returns a view of the class in a given slot, or null if it is vacant
+	 * @param day the day
+	 * @param room the room
+	 * @param t the start time
+	 */
+	public FitnessClass getClassAtSlot(int day, int room, int t) {
+		lock.readLock().lock();
+		try {
+			if(!isValidSlot(day, room, t) || slotRows[slotIndex(day, room, t)] == 0)
+				return null;
+			return new ClassView(slotRows[slotIndex(day, room, t)] - 1);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * returns the overall average attendance of all classes, from the
+	 * running total
+	 * @return the average, or 0 if there are no classes
+	 */
+	public double getOverallAvg() {
+		lock.readLock().lock();
+		try {
+			if(numClasses == 0)
+				return 0;
+			return (double) totalAttendance / ((long) FitnessClass.NUM_WEEKS * numClasses);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * returns the total attendance of all classes in a given week,
+	 * summed in one pass over that week's column
+	 * @param week the week (1 upwards)
+	 */
+	public long getWeekTotal(int week) {
+		lock.readLock().lock();
+		try {
+			return attendances.sumWeek(week);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * returns the rows of the classes in timetable order (by day, then
+	 * room, then start time). Called with the lock held.
+	 */
+	private int [] rowsInSlotOrder() {
+		int [] ordered = new int [numClasses];
+		int n = 0;
+		int perRoom = slotsPerRoom();
+		for(int day = 0; day < numDays; day++)
+			for(int room = 0; room < numRooms; room++) {
+				int slot = room * perRoom + day * hoursPerDay;
+				for(int end = slot + hoursPerDay; slot < end; slot++)
+					if(slotRows[slot] != 0)
+						ordered[n++] = slotRows[slot] - 1;
+			}
+		return ordered;
+	}
+
+	/**
+	 * returns the rows of the classes in FitnessClass.RANKING_ORDER. Each
+	 * class is given a long key, its total turned round so that higher
+	 * totals sort first above its place in timetable order, and the keys
+	 * are sorted as primitives. Called with the lock held.
+	 */
+	private int [] rowsInRankingOrder() {
+		int [] bySlot = rowsInSlotOrder();
+		long [] keys = new long [bySlot.length];
+		for(int i = 0; i < bySlot.length; i++) //Integer.MAX_VALUE - total fits in 32 unsigned bits
+			keys[i] = ((Integer.MAX_VALUE - (long) totals[bySlot[i]]) << 32 | i) ^ Long.MIN_VALUE;
+		Arrays.sort(keys);
+		int [] ranked = new int [keys.length];
+		for(int i = 0; i < keys.length; i++)
+			ranked[i] = bySlot[(int) keys[i]];
+		return ranked;
+	}
+
+	/**
+	 * returns views of the classes sorted as FitnessProgram.makeSortedList
+	 * sorts them: highest average first, then in timetable order
+	 * @return the sorted views
+	 */
+	public FitnessClass[] makeSortedList() {
+		long start = System.nanoTime();
+		lock.readLock().lock();
+		try {
+			int [] ranked = rowsInRankingOrder();
+			FitnessClass [] sorted = new FitnessClass [ranked.length];
+			for(int i = 0; i < ranked.length; i++)
+				sorted[i] = new ClassView(ranked[i]);
+			return sorted;
+		}
+		finally {
+			lock.readLock().unlock();
+			ProgramMetrics.SORT.recordSince(start);
+		}
+	}
+
+	/**
+	 * writes the attendance report, the same as ReportWriter writes for a
+	 * FitnessProgram with the same classes. Each row is written straight
+	 * from the arrays, so no object is made per class.
+	 * @param out where the report is written; flushed but not closed
+	 * @throws IOException if the report cannot be written
+	 */
+	public void writeReport(Writer out) throws IOException {
+		long start = System.nanoTime();
+		lock.readLock().lock(); //the programme must not change while reporting
+		try {
+			ReportWriter writer = new ReportWriter(out);
+			writer.writeHeader();
+			int [] weekly = new int [FitnessClass.NUM_WEEKS];
+			for(int row : rowsInRankingOrder()) {
+				for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++)
+					weekly[week - 1] = attendances.get(row, week);
+				writer.writeRow(ids[row], FitnessClass.CLASS_NAMES.decode(nameCodes[row]),
+						FitnessClass.TUTORS.decode(tutorCodes[row]), weekly);
+			}
+			writer.writeOverallAverage();
+			writer.flush();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		ProgramMetrics.REPORT.recordSince(start);
+	}
+
+	/**
+	 * makes the whole report as one String, as ReportWriter.makeReport does
+	 */
+	public String makeReport() {
+		StringWriter text = new StringWriter();
+		try {
+			writeReport(text);
+		}
+		catch(IOException e) { //a StringWriter never throws
+			throw new UncheckedIOException(e);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * prepares the text of the ClassesOut file, with classes in timetable
+	 * order, as FitnessProgram.makeClassesOutText does
+	 * @return the text
+	 */
+	public String makeClassesOutText() {
+		StringBuilder out = new StringBuilder();
+		lock.readLock().lock();
+		try {
+			int [] ordered = rowsInSlotOrder();
+			for(int i = 0; i < ordered.length; i++) {
+				int row = ordered[i];
+				out.append(ids[row]).append(' ').append(FitnessClass.CLASS_NAMES.decode(nameCodes[row]))
+						.append(' ').append(FitnessClass.TUTORS.decode(tutorCodes[row]))
+						.append(' ').append(times[row]);
+				if(days[row] != 1 || rooms[row] != 1)
+					out.append(' ').append(days[row]).append(' ').append(rooms[row]);
+				if(i != ordered.length - 1)
+					out.append("\r\n");
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		return out.toString();
+	}
+
+	/**
+	 * prepares the text of an attendances file, with classes in timetable
+	 * order, as FitnessProgram.makeAttendancesOutText does
+	 * @return the text
+	 */
+	public String makeAttendancesOutText() {
+		StringBuilder out = new StringBuilder();
+		lock.readLock().lock();
+		try {
+			int weeks = attendances.getNumWeeks();
+			int [] ordered = rowsInSlotOrder();
+			for(int i = 0; i < ordered.length; i++) {
+				int row = ordered[i];
+				out.append(ids[row]);
+				for(int week = 1; week <= weeks; week++)
+					out.append(' ').append(attendances.get(row, week));
+				if(i != ordered.length - 1)
+					out.append("\r\n");
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		return out.toString();
+	}
+
+	/**
+	 * A FitnessClass that reads and writes one row of the programme's
+	 * arrays rather than fields of its own. It is told apart from a view
+	 * of a later class given the same row by the row's generation, which
+	 * changes whenever a class is added to or removed from the row.
+	 * Made with the lock held.
+	 */
+	private class ClassView extends FitnessClass {
+		private final int row;
+		private final int generation; //generation of the row when the view was made
+		private String id; //ID of the class at row when the view was made, or given through it
+
+		ClassView(int row) {
+			super(null, null, null);
+			this.row = row;
+			generation = generations[row];
+			id = ids[row];
+		}
+
+		/**
+		 * returns the row, checking that it still holds the class viewed.
+		 * Called with the lock held.
+		 * @throws IllegalStateException if the class has been deleted
+		 */
+		private int row() {
+			if(generations[row] != generation)
+				throw new IllegalStateException("Class " + id + " is no longer in the programme");
+			return row;
+		}
+
+		public String getClassID() {
+			return id;
+		}
+
+		public String getClassName() {
+			return FitnessClass.CLASS_NAMES.decode(getClassNameCode());
+		}
+
+		public String getClassTutor() {
+			return FitnessClass.TUTORS.decode(getClassTutorCode());
+		}
+
+		public int getClassNameCode() {
+			lock.readLock().lock();
+			try {
+				return nameCodes[row()];
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		public int getClassTutorCode() {
+			lock.readLock().lock();
+			try {
+				return tutorCodes[row()];
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		public int getClassTime() {
+			lock.readLock().lock();
+			try {
+				return times[row()];
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		public int getClassDay() {
+			lock.readLock().lock();
+			try {
+				return days[row()];
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		public int getClassRoom() {
+			lock.readLock().lock();
+			try {
+				return rooms[row()];
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		public void setClassName(String name) {
+			lock.writeLock().lock();
+			try {
+				nameCodes[row()] = FitnessClass.CLASS_NAMES.encode(name);
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		public void setClassTutor(String tutor) {
+			lock.writeLock().lock();
+			try {
+				tutorCodes[row()] = FitnessClass.TUTORS.encode(tutor);
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		public void setClassID(String idNumber) {
+			lock.writeLock().lock();
+			try {
+				changeId(row(), idNumber);
+				id = idNumber;
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		public void setClassTime(int time) {
+			lock.writeLock().lock();
+			try {
+				int r = row();
+				moveRow(r, days[r], rooms[r], time);
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		public void setClassDay(int day) {
+			lock.writeLock().lock();
+			try {
+				int r = row();
+				moveRow(r, day, rooms[r], times[r]);
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		public void setClassRoom(int room) {
+			lock.writeLock().lock();
+			try {
+				int r = row();
+				moveRow(r, days[r], room, times[r]);
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		public void setAttendance(int week, int att) {
+			lock.writeLock().lock();
+			try {
+				CompactProgram.this.writeAttendance(row(), week, att);
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		public void addAttendance(int week, int increment) {
+			lock.writeLock().lock();
+			try {
+				int r = row();
+				CompactProgram.this.writeAttendance(r, week, FitnessProgram.addClamped(attendances.get(r, week), increment));
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		public long getAttendanceTotal(int fromWeek, int toWeek) {
+			lock.readLock().lock();
+			try {
+				return attendances.sumRow(row(), fromWeek, toWeek);
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		public int getAttendanceTotal() {
+			lock.readLock().lock();
+			try {
+				return totals[row()];
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		public double getAvgAttendance() {
+			return (double) getAttendanceTotal() / NUM_WEEKS;
+		}
+
+		long getSlotKey() {
+			return Timetable.slotKey(getClassDay(), getClassRoom(), getClassTime());
+		}
+
+		public int compareTo(FitnessClass other) {
+			return Integer.compare(other.getAttendanceTotal(), getAttendanceTotal());
+		}
+
+		public boolean equals(Object o) {
+			if(!(o instanceof ClassView))
+				return false;
+			ClassView other = (ClassView) o;
+			return other.owner() == owner() && other.row == row && other.id == id;
+		}
+
+		public int hashCode() {
+			return row;
+		}
+
+		private CompactProgram owner() {
+			return CompactProgram.this;
+		}
+	}
+}
@@ -1,31 +1,63 @@
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
 /** Defines an object representing a single fitness class
  */
 public class FitnessClass implements Comparable<FitnessClass> {
 	//class constant
 	public static final int NUM_WEEKS = 5;
+	/** Class names, each stored once; classes hold their name's code */
+	public static final SymbolTable CLASS_NAMES = new SymbolTable();
+	/** Tutors, each stored once; classes hold their tutor's code */
+	public static final SymbolTable TUTORS = new SymbolTable();
+	/** Order of the attendance report: highest average first, and classes
+	 * with equal averages in timetable order (by day, room, then time) */
+	public static final Comparator<FitnessClass> RANKING_ORDER = new Comparator<FitnessClass>() {
+		public int compare(FitnessClass a, FitnessClass b) {
+			int byAverage = a.compareTo(b);
+			if(byAverage != 0)
+				return byAverage;
+			return Long.compare(a.getSlotKey(), b.getSlotKey());
+		}
+	};
 	
 	//instance variables
 	private String classID;
-	private String className;
-	private String classTutor;
+	private int classNameCode; //code of the class name in CLASS_NAMES
+	private int classTutorCode; //code of the tutor in TUTORS
 	private int classTime;
-	private int [] attendances;
+	private int classDay; //day of the week the class runs on (1 upwards)
+	private int classRoom; //room the class runs in (1 upwards)
+	private AttendanceStore attendanceStore; //store holding this class's attendances, or null
+	private int attendanceRow; //row of this class in attendanceStore
+	private volatile int attendanceTotal; //running sum of attendances over NUM_WEEKS, kept up to date by setAttendance
+	private volatile FitnessProgram program; //programme this class belongs to, or null
 	
     //constructor methods
 	/**
 	 * FitnessClass constructor. Sets instance variables based on
-	 * a line of information read in from ClassesIn file
+	 * a line of information read in from ClassesIn file.
+	 * The day and room are optional 5th and 6th items on the line,
+	 * and default to day 1, room 1 when absent.
 	 * @param classData string containing class info
 	 */
 	public FitnessClass(String classData) {
 		String [] dataTokens = classData.split("[ ]+"); //turn info line into a String array
 		classID = dataTokens[0]; //get classId from 1st position of array
-		className = dataTokens[1]; //get className from 2nd position of array
-		classTutor = dataTokens[2]; //get classTutor from 3rd position of array
+		classNameCode = CLASS_NAMES.encode(dataTokens[1]); //get className from 2nd position of array
+		classTutorCode = TUTORS.encode(dataTokens[2]); //get classTutor from 3rd position of array
 		//get classTime from 4th position of array (must parse to int)
 		classTime = Integer.parseInt(dataTokens[3]); 
-		
-		attendances = new int [NUM_WEEKS]; //instantiate attendances array
+		if(dataTokens.length >= 6) { //get day and room from 5th and 6th positions, if present
+			classDay = Integer.parseInt(dataTokens[4]);
+			classRoom = Integer.parseInt(dataTokens[5]);
+		}
+		else {
+			classDay = 1;
+			classRoom = 1;
+		}
+		attendanceStore = null; //no store needed until an attendance is set
 	}
 	
 	/**
@@ -37,9 +69,11 @@ public class FitnessClass implements Comparable<FitnessClass> {
 	 */
 	public FitnessClass(String idNum, String name, String tutor) {
 		classID = idNum; //set classID to idNum
-		className = name; //set className to name
-		classTutor = tutor; //set classTutor to tutor
-		attendances = new int [NUM_WEEKS]; //instantiate attendances array
+		classNameCode = CLASS_NAMES.encode(name); //set className to name
+		classTutorCode = TUTORS.encode(tutor); //set classTutor to tutor
+		classDay = 1; //day and room default to the first ones
+		classRoom = 1;
+		attendanceStore = null; //no store needed until an attendance is set
 	}
 	
 	//accessor methods
@@ -48,117 +82,354 @@ public class FitnessClass implements Comparable<FitnessClass> {
 	}
 	
 	public String getClassName() {
-		return className;
+		return CLASS_NAMES.decode(classNameCode);
 	}
 	
 	public String getClassTutor() {
-		return classTutor;
+		return TUTORS.decode(classTutorCode);
+	}
+
+	/**
+	 * returns the code of the class name in CLASS_NAMES; classes have
+	 * the same name exactly when they have the same code
+	 */
+	public int getClassNameCode() {
+		return classNameCode;
+	}
+
+	/**
+	 * returns the code of the tutor in TUTORS; classes have the same
+	 * tutor exactly when they have the same code
+	 */
+	public int getClassTutorCode() {
+		return classTutorCode;
 	}
 	
 	public int getClassTime() {
 		return classTime;
 	}
 	
+	public int getClassDay() {
+		return classDay;
+	}
+	
+	public int getClassRoom() {
+		return classRoom;
+	}
+	
 	//mutator methods
-	public void setClassID(String idNumber) {
-		classID = idNumber;
+	/**
+	 * The details of a class in a programme are changed through the
+	 * programme, which moves the class in its timetable and indexes under
+	 * its write lock. A change that would put the class outside the
+	 * timetable, in another class's slot, or under another class's ID is
+	 * refused with an IllegalArgumentException, and the class is left as it was.
+	 */
+	public void setClassID(final String idNumber) {
+		change(new Consumer<FitnessClass>() {
+			public void accept(FitnessClass fc) {
+				fc.classID = idNumber;
+			}
+		});
 	}
 	
 	public void setClassName(String name) {
-		className = name;
+		final int code = CLASS_NAMES.encode(name);
+		change(new Consumer<FitnessClass>() {
+			public void accept(FitnessClass fc) {
+				fc.classNameCode = code;
+			}
+		});
 	}
 	
 	public void setClassTutor(String tutor) {
-		classTutor = tutor;
+		final int code = TUTORS.encode(tutor);
+		change(new Consumer<FitnessClass>() {
+			public void accept(FitnessClass fc) {
+				fc.classTutorCode = code;
+			}
+		});
+	}
+	
+	public void setClassTime(final int time) {
+		change(new Consumer<FitnessClass>() {
+			public void accept(FitnessClass fc) {
+				fc.classTime = time;
+			}
+		});
+	}
+	
+	public void setClassDay(final int day) {
+		change(new Consumer<FitnessClass>() {
+			public void accept(FitnessClass fc) {
+				fc.classDay = day;
+			}
+		});
 	}
 	
-	public void setClassTime(int time) {
-		classTime = time;
+	public void setClassRoom(final int room) {
+		change(new Consumer<FitnessClass>() {
+			public void accept(FitnessClass fc) {
+				fc.classRoom = room;
+			}
+		});
+	}
+
+	/**
+	 * makes a change to this class's details, straight away if the class
+	 * is not in a programme, or else through its programme
+	 * @param change sets the new details on the class it is given
+	 */
+	private void change(Consumer<FitnessClass> change) {
+		while(true) {
+			FitnessProgram fp = program;
+			if(fp == null) {
+				change.accept(this);
+				return;
+			}
+			if(fp.changeClass(this, change)) //false if the class was deleted meanwhile
+				return;
+		}
+	}
+
+	/**
+	 * returns a new class with this class's ID, name, tutor and slot,
+	 * in no programme and with no attendances
+	 */
+	FitnessClass copyDetails() {
+		FitnessClass copy = new FitnessClass(classID, null, null);
+		copy.takeDetails(this);
+		return copy;
+	}
+
+	/**
+	 * gives this class the ID, name, tutor and slot of another.
+	 * Called by FitnessProgram with the class out of its indexes.
+	 */
+	void takeDetails(FitnessClass other) {
+		classID = other.classID;
+		classNameCode = other.classNameCode;
+		classTutorCode = other.classTutorCode;
+		classDay = other.classDay;
+		classRoom = other.classRoom;
+		classTime = other.classTime;
 	}
 	
 	//mutator and accessor methods for attendance
 	/**
 	 * Sets the attendance figure for a given week of this class.
-	 * Note that each week (1 to 5) is positioned at week-1
-	 * within the attendances array (which has indices 0 to 4)
+	 * Weeks are numbered from 1 and any number of weeks can be kept;
+	 * weeks 1 to NUM_WEEKS make up the running total and the average.
+	 * The figure is held in this class's row of an AttendanceStore,
+	 * which is the programme's store once the class is in a programme;
+	 * the figure is then set under the programme's write lock.
 	 * @param week the week for which attendance is set
 	 * @param att the attendance value 
 	 */
 	public void setAttendance(int week, int att) {
-		int index = week-1; //given week, get relevant position in the array
-		attendances[index] = att; //set attendance value for that position
+		while(true) {
+			FitnessProgram fp = program;
+			if(fp == null) {
+				writeAttendance(week, att);
+				return;
+			}
+			if(fp.setAttendance(this, week, att)) //false if the class was deleted meanwhile
+				return;
+		}
+	}
+
+	/**
+	 * Adds to the attendance figure for a given week of this class, as
+	 * one check-in or a number of them. Made under the programme's write
+	 * lock, like setAttendance, so no increment is lost to another
+	 * thread. CheckInIngester batches many increments into one change.
+	 * @param week the week (1 upwards)
+	 * @param increment the number to add
+	 */
+	public void addAttendance(int week, int increment) {
+		FitnessClass [] classes = {this};
+		int [] weeks = {week};
+		int [] increments = {increment};
+		while(true) {
+			FitnessProgram fp = program;
+			if(fp == null) {
+				writeAttendance(week, FitnessProgram.addClamped(sumAttendances(week, week), increment));
+				return;
+			}
+			if(fp.addAttendances(classes, weeks, increments, 1) == 1) //0 if the class was deleted meanwhile
+				return;
+		}
+	}
+
+	/**
+	 * sets an attendance figure and keeps the running totals up to date.
+	 * Called with the programme's write lock held if the class is in one.
+	 * @throws IllegalArgumentException if the week cannot be kept
+	 */
+	void writeAttendance(int week, int att) {
+		AttendanceStore.checkWeek(week); //before anything is changed
+		if(attendanceStore == null) //class is not in a programme and has no store yet
+			moveAttendances(null);
+		int old = attendanceStore.get(attendanceRow, week);
+		if(att == old && week <= attendanceStore.getNumWeeks()) //nothing to change
+			return;
+		boolean counted = (week <= NUM_WEEKS); //only weeks 1 to NUM_WEEKS count towards the average
+		if(counted && program != null) //let the programme take this class out of its ranking first
+			program.attendanceChanging(this);
+		attendanceStore.set(attendanceRow, week, att); //set attendance value for that week
+		int change = counted ? att - old : 0; //change to the running total
+		attendanceTotal += change;
+		if(program != null) //let the programme update its own total and tell its listeners
+			program.attendanceChanged(this, week, att, change);
 	}
 	
 	public int getAttendance(int week) {
-		int index = week-1; //given week, get relevant position in the array
-		return attendances[index]; //set attendance value for that position
+		return (int) getAttendanceTotal(week, week); //get attendance value for that week
+	}
+	
+	/**
+	 * returns the sum of the attendance figures over a range of weeks
+	 * @param fromWeek the first week of the range
+	 * @param toWeek the last week of the range (inclusive)
+	 * @return the total attendance for those weeks
+	 */
+	public long getAttendanceTotal(int fromWeek, int toWeek) {
+		FitnessProgram fp = program;
+		if(fp != null) //read safely from the programme's store
+			return fp.readAttendances(this, fromWeek, toWeek);
+		return sumAttendances(fromWeek, toWeek);
+	}
+
+	/**
+	 * sums the attendance figures over a range of weeks without any locking
+	 */
+	long sumAttendances(int fromWeek, int toWeek) {
+		if(attendanceStore == null) //no attendance has been set
+			return 0;
+		return attendanceStore.sumRow(attendanceRow, fromWeek, toWeek);
+	}
+	
+	/**
+	 * moves this class's attendances into a new row of the given store,
+	 * giving back its row in the old store. Called by FitnessProgram so
+	 * that the attendances of all its classes are held in one store.
+	 * @param store the store to move to, or null for a store of this class's own
+	 */
+	void moveAttendances(AttendanceStore store) {
+		if(store == null) //class is leaving a programme, or has not joined one
+			store = new AttendanceStore(NUM_WEEKS, 1);
+		int row = store.allocateRow();
+		if(attendanceStore != null) { //copy across any attendances already set
+			store.copyRow(attendanceStore, attendanceRow, row);
+			attendanceStore.releaseRow(attendanceRow);
+		}
+		attendanceStore = store;
+		attendanceRow = row;
+	}
+
+	/**
+	 * sets this class's figures straight in its row of its store, from
+	 * columns[week-1][c], and works out its running total, with no one
+	 * told. Called by FitnessProgram.loadClasses before the class is indexed.
+	 */
+	void loadAttendances(int [][] columns, int c) {
+		int total = 0;
+		for(int week = 1; week <= columns.length; week++) {
+			int att = columns[week-1][c];
+			if(att == 0) //new rows start at 0
+				continue;
+			attendanceStore.set(attendanceRow, week, att);
+			if(week <= NUM_WEEKS)
+				total += att;
+		}
+		attendanceTotal = total;
+	}
+
+	/**
+	 * returns true if this class's attendances are kept in the given store
+	 */
+	boolean keepsAttendancesIn(AttendanceStore store) {
+		return attendanceStore == store;
 	}
 	
+	/**
+	 * returns the sum of the attendance figures over NUM_WEEKS
+	 * @return the total attendance
+	 */
+	public int getAttendanceTotal() {
+		return attendanceTotal;
+	}
 	
 	/**
-	 * calculates the average attendance figure over NUM_WEEKS
-	 * for a class
+	 * returns the average attendance figure over NUM_WEEKS
+	 * for a class, from the running total
 	 * @return double representing the average attendance
 	 */
 	public double getAvgAttendance() {
-		int sum = 0;
-		for(int att : attendances)
-			sum += att;
-		double avg = (double)(sum)/attendances.length;
-		return avg;
+		return (double)(attendanceTotal)/NUM_WEEKS;
+	}
+	
+	/**
+	 * sets the programme this class belongs to, which is told about
+	 * attendance changes. Called by FitnessProgram on add and delete.
+	 * @param fp the programme, or null when the class is removed
+	 */
+	void setProgram(FitnessProgram fp) {
+		program = fp;
+	}
+
+	FitnessProgram getProgram() {
+		return program;
+	}
+	
+	/**
+	 * returns a key for this class's slot that sorts by day, room, then time
+	 */
+	long getSlotKey() {
+		return Timetable.slotKey(classDay, classRoom, classTime);
 	}
 	
 	/**
 	 * compareTo method to sort FitnessClass objects on avg attendance.
+	 * Every class is averaged over NUM_WEEKS, so comparing the running
+	 * totals gives the same order without working out any averages.
 	 * @param other the FitnessClass object being compared to this FC object
 	 */
 	public int compareTo(FitnessClass other) {
-		double thisAvg = this.getAvgAttendance(); //get avg for this object
-		double otherAvg = other.getAvgAttendance(); //get avg for object being compared
-		if(thisAvg < otherAvg)
-		//as we want to sort in non-increasing order, here we return 1	
-			return 1;
-		else if(thisAvg == otherAvg)
-			return 0;
-		else
-		//as we want to sort in non-increasing order, here we return -1		
-			return -1;
-    }
+		//as we want to sort in non-increasing order, compare other to this
+		return Integer.compare(other.getAttendanceTotal(), getAttendanceTotal());
+	}
 	
 	/**
 	 * Constructs a String to be displayed as a line of the attendances report,
-	 * with info on classID, className, classTutor and attendances
+	 * with info on classID, className, classTutor and attendances.
+	 * The line is laid out by ReportWriter, which writes whole reports.
 	 * @return String to be displayed
 	 */
 	public String makeReportLine() {
-		String attendances = makeAttendancePart(); //construct attendances part of line
-		double avgAtt = getAvgAttendance(); //get average attendance
-		//add above to relevant instance variables in a properly formatted string
-		String reportLine = String.format("%-5s%-15s%-15s%-25s%-15.2f%n", classID, className,
-				classTutor, attendances, avgAtt);
-		return reportLine;
-	}
-	
-	/**
-	 * Constructs the part of the attendances report line above 
-	 * that has the information on attendances over the 5 weeks
-	 * @return String with attendance info, appropriately formatted
-	 */
-	private String makeAttendancePart() {
-		StringBuilder attendanceBuilder = new StringBuilder();
-		for(int i=0; i < NUM_WEEKS; i++) { //loop through attendances array
-			int attendance = attendances[i];
-			attendanceBuilder.append(String.format("%3d", attendance));
+		StringWriter line = new StringWriter();
+		try {
+			ReportWriter writer = new ReportWriter(line);
+			writer.writeRow(this);
+			writer.flush();
+		}
+		catch(IOException e) { //a StringWriter never throws
+			throw new UncheckedIOException(e);
 		}
-		return attendanceBuilder.toString(); //convert StringBuilder to string and return
+		return line.toString();
 	}
 	
 	/**
-	 * Constructs a String to be displayed as a line of the ClassesOut file
+	 * Constructs a String to be displayed as a line of the ClassesOut file.
+	 * Day and room are only written when the class is not in day 1, room 1,
+	 * so single-room programmes keep the original four item lines.
 	 * @return the String
 	 */
 	public String getClassesOutLine() {
 		//concatenate relevant instance variables (and ensure new line) and return
-		return classID + " " + className + " " + classTutor + " " + classTime;
+		String line = getClassID() + " " + getClassName() + " " + getClassTutor() + " " + getClassTime();
+		if(getClassDay() != 1 || getClassRoom() != 1)
+			line += " " + getClassDay() + " " + getClassRoom();
+		return line;
 	}
 }
@@ -1,237 +1,1464 @@
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
 
 /**
  * Maintains a list of Fitness Class objects
  * The list is initialised in order of start time
  * The methods allow objects to be added and deleted from the list
  * In addition an array can be returned in order of average attendance
+ * Classes are held in a Timetable keyed by day, room and start hour.
+ * The default programme has one day and one room with MAX_CLASSES slots,
+ * but any number of days in a week and any number of rooms can be used.
+ *
+ * A programme can be shared by many threads. Every change - adding or
+ * deleting a class, setting an attendance - is made under the write lock
+ * of a StampedLock, so a change (including the choice of slot in
+ * addClassFromGui) is atomic. Lookups by ID or slot go to concurrent maps
+ * and take no lock, and attendance figures, averages and vacancy queries
+ * are optimistic reads that are retried under the read lock only if a
+ * change got in the way, so readers don't hold up writers. Whole-programme
+ * reads over the concurrent maps and the store's arrays, such as the output
+ * texts and week totals, are optimistic reads too (see readWhole): they see
+ * a single consistent state, and only take the read lock if changes spoil
+ * them again and again. Reads over the ranking and group indexes, which are
+ * plain TreeSets and HashSets, such as makeSortedList and the group
+ * queries, take the read lock (see readLocked), as a read of one of those
+ * during a change may go wrong without throwing.
+ * Listeners are called with the write lock held, in the order the changes
+ * are made, and may read or change the programme.
  */
 public class FitnessProgram {
 	//class constants
-	public static final int MAX_CLASSES = 7;
+	public static final int MAX_CLASSES = 7; //default number of slots per room per day
 	private static final int CLASS_LENGTH = 1;
 	public static final int FIRST_START_TIME = 9;
 	public static final int LAST_START_TIME = FIRST_START_TIME + MAX_CLASSES - CLASS_LENGTH;
 	public static final int LIST_IS_FULL = -1;
+	private static final int OPTIMISTIC_TRIES = 3; //spoilt optimistic reads of the whole programme before locking
 	//instance variables
-	private FitnessClass [] fitnessClasses; //array of FitnessClass objects
-	private int numClasses; //counter to keep track of number of objects in array
+	private Timetable timetable; //the FitnessClass objects, by day, room and start time
+	private Map<String, FitnessClass> classesById; //index of classes by their classID
+	private volatile int numClasses; //counter to keep track of number of objects in timetable
+	private volatile long totalAttendance; //sum of the attendance totals of all classes
+	private AttendanceStore attendances; //weekly attendances of all classes, by column
+	private volatile TreeSet<FitnessClass> ranking; //classes in RANKING_ORDER, or null if not kept
+	private ClassGroupIndex byTutor; //classes and their figures grouped by tutor code
+	private ClassGroupIndex byName; //... by class name code
+	private ClassGroupIndex byTime; //... by start time
+	private TutorOccupancy tutorHours; //hours each tutor is teaching, for scheduling without clashes
+	private ClassScheduler scheduler; //places new classes, kept up to date once made, or null
+	private List<ProgramListener> listeners; //told of every change
+	private final StampedLock lock = new StampedLock(); //held for writing by every change
+	private volatile Thread writer; //thread holding the write lock, or null
+	private volatile long version; //number of changes made so far
+	private boolean batchingAttendances; //attendance changes are told to the listeners once, as a batch
 
 	//FitnessProgram constructor
 	public FitnessProgram() {
-		fitnessClasses = new FitnessClass [MAX_CLASSES]; //instantiate array of size MAX_CLASSES
-		numClasses = 0; //set number of classes in array at 0
+		this(1, 1, FIRST_START_TIME, LAST_START_TIME); //one day, one room, MAX_CLASSES slots
+	}
+
+	/**
+	 * FitnessProgram constructor for a multi-day, multi-room programme
+	 * @param days the number of days in the programme (1 to 7)
+	 * @param rooms the initial number of rooms (grows when classes use more)
+	 * @param firstStart the start time of the first class of each day
+	 * @param lastStart the start time of the last class of each day
+	 */
+	public FitnessProgram(int days, int rooms, int firstStart, int lastStart) {
+		timetable = new Timetable(days, rooms, firstStart, lastStart);
+		classesById = new ConcurrentHashMap<String, FitnessClass>(); //instantiate empty ID index
+		numClasses = 0; //set number of classes in timetable at 0
+		totalAttendance = 0;
+		attendances = new AttendanceStore(FitnessClass.NUM_WEEKS, timetable.getHoursPerDay());
+		listeners = new CopyOnWriteArrayList<ProgramListener>();
+		tutorHours = new TutorOccupancy(days, firstStart);
+		byTutor = new ClassGroupIndex() {
+			protected int keyOf(FitnessClass fc) {
+				return fc.getClassTutorCode();
+			}
+		};
+		byName = new ClassGroupIndex() {
+			protected int keyOf(FitnessClass fc) {
+				return fc.getClassNameCode();
+			}
+		};
+		byTime = new ClassGroupIndex() {
+			protected int keyOf(FitnessClass fc) {
+				return fc.getClassTime();
+			}
+		};
+	}
+
+	/**
+	 * returns the number of changes made to the programme so far. Every
+	 * class added or removed, attendance figure changed and room added
+	 * counts as one, so if the version is the same as before, nothing
+	 * has changed. Read under the read lock to go with what is read.
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
 	}
 
 	/**
 	 * returns the number of FitnessClass objects currently in 
-	 * the fitnessClasses array
+	 * the timetable
 	 * @return numClasses
 	 */
 	public int getNumClasses() {
 		return numClasses;
 	}
+
+	/**
+	 * returns all the classes in the programme, in no particular order.
+	 * The collection is a read-only view that follows later changes.
+	 * @return the classes
+	 */
+	public Collection<FitnessClass> getClasses() {
+		return Collections.unmodifiableCollection(classesById.values());
+	}
+
+	/**
+	 * returns all the classes in the programme in timetable order
+	 * (by day, then room, then start time)
+	 * @return a new list of the classes
+	 */
+	public List<FitnessClass> getClassesInTimetableOrder() {
+		return readWhole(new Supplier<List<FitnessClass>>() {
+			public List<FitnessClass> get() {
+				return timetable.classesInSlotOrder();
+			}
+		});
+	}
+
+	//accessor methods for the shape of the timetable
+	public int getNumDays() {
+		return timetable.getNumDays();
+	}
+
+	public int getNumRooms() {
+		return timetable.getNumRooms();
+	}
+
+	public int getFirstStartTime() {
+		return timetable.getFirstHour();
+	}
+
+	public int getLastStartTime() {
+		return timetable.getLastHour();
+	}
+
+	/**
+	 * returns the total number of slots in the timetable
+	 * @return the capacity of the programme
+	 */
+	public long getCapacity() {
+		return timetable.getNumSlots();
+	}
+
+	/**
+	 * adds rooms to the programme so that it has at least the given number
+	 * @param rooms the number of rooms needed
+	 */
+	public void ensureRooms(int rooms) {
+		long stamp = lockForWriting();
+		try {
+			if(rooms > timetable.getNumRooms()) {
+				timetable.ensureRoom(rooms);
+				version++;
+			}
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
+	}
 	
 	/**
 	 * instantiates new FitnessClass object based on info from
-	 * ClassesIn file and adds it to fitnessClasses array according
-	 * to its start time.
+	 * ClassesIn file and adds it to the timetable according
+	 * to its day, room and start time. Rooms beyond the current
+	 * number of rooms are added as needed.
 	 * @param classInfo a line from the ClassesIn file that contains class information
 	 */
 	public void addClassFromFile(String classInfo) {
 		if(!(classInfo.isEmpty())) {
 			FitnessClass fc = new FitnessClass(classInfo); //instantiate new FitnessClass object
-			int position = fc.getClassTime() - FIRST_START_TIME; //get its position within array
-			fitnessClasses[position] = fc; //add class to array
-			numClasses++; //keep count of number of classes in array
+			addClass(fc);
+		}
+	}
+
+	/**
+	 * adds a FitnessClass object to the timetable in the slot given by its
+	 * day, room and start time. Rooms beyond the current number of rooms
+	 * are added as needed. A class already in that slot, or already using
+	 * the same ID, is removed first.
+	 * @param fc the class to be added
+	 * @throws IllegalArgumentException if the class's slot is outside the timetable
+	 */
+	public void addClass(FitnessClass fc) {
+		long stamp = lockForWriting();
+		try {
+			//check the whole slot before adding any rooms, so a bad slot leaves the programme as it was
+			if(!timetable.canHoldSlot(fc.getClassDay(), fc.getClassRoom(), fc.getClassTime()))
+				throw new IllegalArgumentException("No such slot: day " + fc.getClassDay() + ", room "
+						+ fc.getClassRoom() + ", time " + fc.getClassTime());
+			if(fc.getClassRoom() > timetable.getNumRooms()) { //make sure the class's room exists
+				timetable.ensureRoom(fc.getClassRoom());
+				version++;
+			}
+			FitnessClass sameId = classesById.get(fc.getClassID());
+			if(sameId != null) //if the ID is being reused, remove the older class
+				removeClass(sameId);
+			FitnessClass replaced = timetable.getClass(fc.getClassDay(), fc.getClassRoom(),
+					fc.getClassTime());
+			if(replaced != null) //if a class is being replaced, remove it first
+				removeClass(replaced);
+			insertClass(fc); //add class to timetable
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
+	}
+
+	/**
+	 * adds a FitnessClass object as addClass does, but only if no class
+	 * already has its ID or its slot, so no class is replaced. Checking
+	 * and adding are one atomic step, so of two threads adding classes
+	 * with the same ID or in the same slot at once, only one succeeds.
+	 * @param fc the class to be added
+	 * @return true if the class was added, false if its ID is in use or its slot taken
+	 * @throws IllegalArgumentException if the class's slot is outside the timetable
+	 */
+	public boolean addClassIfAbsent(FitnessClass fc) {
+		long stamp = lockForWriting();
+		try {
+			if(classesById.containsKey(fc.getClassID())
+					|| timetable.getClass(fc.getClassDay(), fc.getClassRoom(), fc.getClassTime()) != null)
+				return false;
+			addClass(fc);
+			return true;
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
+	}
+
+	/**
+	 * fills an empty programme with classes and their attendances in one
+	 * go, under one write lock. Each class's figures are put straight in
+	 * its row of the programme's store before it is put in the timetable
+	 * and indexes, so no figure is set one at a time, and the listeners
+	 * are not told. Used by ProgramSnapshot.load; if it fails the
+	 * programme is left part filled and should be dropped.
+	 * @param classes the classes, not in any programme
+	 * @param columns columns[week-1][c] is the attendance of classes[c] that week
+	 * @throws IllegalStateException if the programme already has classes
+	 * @throws IllegalArgumentException if a class's slot is outside the
+	 * timetable or taken, or its ID is in use, or there are too many weeks
+	 */
+	void loadClasses(FitnessClass [] classes, int [][] columns) {
+		long stamp = lockForWriting();
+		try {
+			if(numClasses != 0)
+				throw new IllegalStateException("Classes can only be loaded into an empty programme");
+			attendances.ensureWeeks(columns.length);
+			for(int c = 0; c < classes.length; c++) {
+				FitnessClass fc = classes[c];
+				int day = fc.getClassDay();
+				int room = fc.getClassRoom();
+				int time = fc.getClassTime();
+				if(!timetable.canHoldSlot(day, room, time))
+					throw new IllegalArgumentException("No such slot: day " + day + ", room " + room
+							+ ", time " + time);
+				if(room > timetable.getNumRooms())
+					timetable.ensureRoom(room);
+				if(timetable.getClass(day, room, time) != null)
+					throw new IllegalArgumentException("There is already a class at day " + day + ", room "
+							+ room + ", time " + time);
+				if(classesById.containsKey(fc.getClassID()))
+					throw new IllegalArgumentException("Class ID " + fc.getClassID() + " is already in use");
+				fc.moveAttendances(attendances);
+				fc.loadAttendances(columns, c);
+				insertClass(fc, false);
+			}
+		}
+		finally {
+			unlockForWriting(stamp);
 		}
 	}
 
 	/**
 	 * instantiates new FitnessClass object based on info input
-	 * in GUI textfields, gives it the earliest available start time
-	 * and adds it to the fitnessClasses array in this timeslot.
+	 * in GUI textfields, places it with a ClassScheduler as
+	 * scheduleNewClasses does, so that its tutor is not given two classes
+	 * at once, and adds it to the timetable in this timeslot. Finding the
+	 * slot and taking it is one atomic step, so two threads adding at once
+	 * never get the same slot.
 	 * @param id the class ID input by user
-	 * @param n the class name input by user
-	 * @param t the class time input by user 
+	 * @param name the class name input by user
+	 * @param tutor the class tutor input by user
+	 * @return the slot the class was given, or null if there was no vacant slot
+	 * when the tutor is free
+	 * @throws IllegalArgumentException if a class with that ID already exists
 	 */
-	public void addClassFromGui(String id, String name, String tutor) {
+	public TimeSlot addClassFromGui(String id, String name, String tutor) {
 		FitnessClass fc = new FitnessClass(id, name, tutor); //instantiate new FitnessClass object
-		int time = getEarliestTime(); //get earliest available time slot
-		fc.setClassTime(time); //set time of class to earliest available time
-		int position = time - FIRST_START_TIME; //get position within array
-		fitnessClasses[position] = fc; //add new FitnessClass obj to array
-		numClasses++; //increment number of classes in array
+		long stamp = lockForWriting();
+		try {
+			if(classesById.containsKey(id))
+				throw new IllegalArgumentException("Class ID " + id + " is already in use");
+			ClassScheduler scheduler = getScheduler();
+			TimeSlot slot = scheduler.place(fc.getClassTutorCode()); //get a slot free of clashes
+			scheduler.dropPlans(); //the slot is taken by insertClass below
+			if(slot == null)
+				return null;
+			fc.setClassDay(slot.getDay()); //set slot of class to the slot found
+			fc.setClassRoom(slot.getRoom());
+			fc.setClassTime(slot.getHour());
+			insertClass(fc); //add new FitnessClass obj to timetable
+			return slot;
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
 	}
 	
 	/**
 	 * removes a FitnessClass object with a given ID from
-	 * the fitnessClasses array.
+	 * the timetable.
 	 * @param id the ID of the class to be removed
+	 * @return true if the class was removed, false if there was no such class
+	 */
+	public boolean deleteClass(String id) {
+		long stamp = lockForWriting();
+		try {
+			FitnessClass fc = getClassFromId(id); //get FitnessClass obj with input ID
+			if(fc == null) //already gone, perhaps deleted by another thread
+				return false;
+			removeClass(fc);
+			return true;
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
+	}
+
+	/**
+	 * adds a batch of new classes, as addClassFromGui does for one. The
+	 * whole batch is checked in one pass before anything is added: every
+	 * class must have a one word ID, name and tutor, no ID may be in use
+	 * or appear twice in the batch, and there must be a vacant slot for
+	 * every class. The classes are then placed with a ClassScheduler: no
+	 * tutor is given two classes at the same time on the same day, and
+	 * each class goes in the least used room that has a slot free of
+	 * clashes. The whole batch is placed before any of it is added, so if
+	 * anything is wrong or a class cannot be placed nothing is added.
+	 * Otherwise the classes are added under one write lock, and the
+	 * listeners are told once, by classesChanged.
+	 * @param classes the classes to add; their day, room and time are set
+	 * @return the slots given, in the order of the classes
+	 * @throws ClassBatchException listing every problem with the batch,
+	 * including each class that could not be placed without a clash
 	 */
-	public void deleteClass(String id) {
-		FitnessClass fc = getClassFromId(id); //get FitnessClass obj with input ID
-		int position = fc.getClassTime() - FIRST_START_TIME; //get its position within array
-		fitnessClasses[position] = null; //remove class by setting its position to null
-		numClasses--; //decrement number of classes in array
+	public List<TimeSlot> scheduleNewClasses(List<FitnessClass> classes) {
+		long stamp = lockForWriting();
+		try {
+			List<String> problems = checkNewClasses(classes);
+			if(!problems.isEmpty())
+				throw new ClassBatchException(problems);
+			ClassScheduler scheduler = getScheduler();
+			List<TimeSlot> slots = new ArrayList<TimeSlot>(classes.size());
+			for(FitnessClass fc : classes) {
+				TimeSlot slot = scheduler.place(fc.getClassTutorCode());
+				if(slot == null)
+					problems.add("There is no slot for class " + fc.getClassID() + " when "
+							+ fc.getClassTutor() + " is free");
+				slots.add(slot);
+			}
+			scheduler.dropPlans(); //the slots are taken by insertBatch below
+			if(!problems.isEmpty())
+				throw new ClassBatchException(problems);
+			insertBatch(classes, slots);
+			return slots;
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
+	}
+
+	/**
+	 * returns the programme's scheduler, making it over the timetable as
+	 * it is the first time, and telling it of any rooms added since.
+	 * It is then kept up to date by insertClass and removeClass, so
+	 * placing a class does not count every room's classes again.
+	 * Called with the write lock held.
+	 */
+	private ClassScheduler getScheduler() {
+		if(scheduler == null)
+			scheduler = new ClassScheduler(timetable.getFreeSlots(), tutorHours, timetable.getNumDays(),
+					timetable.getNumRooms(), timetable.getFirstHour(), timetable.getHoursPerDay());
+		else
+			scheduler.addRooms(timetable.getNumRooms());
+		return scheduler;
+	}
+
+	/**
+	 * checks a batch of new classes in one pass: every class must have a
+	 * one word ID, name and tutor, no ID may be in use or appear twice,
+	 * and there must be a vacant slot for every class.
+	 * Called with the write lock held.
+	 * @return the problems found, empty if there are none
+	 */
+	private List<String> checkNewClasses(List<FitnessClass> classes) {
+		List<String> problems = new ArrayList<String>();
+		Set<String> ids = new HashSet<String>();
+		for(FitnessClass fc : classes) {
+			checkFields(fc, problems);
+			String id = fc.getClassID();
+			if(id == null)
+				continue;
+			if(classesById.containsKey(id))
+				problems.add("The class ID " + id + " already exists");
+			else if(!ids.add(id))
+				problems.add("The class ID " + id + " is in the batch more than once");
+			if(fc.getProgram() != null)
+				problems.add("Class " + id + " is already in a programme");
+		}
+		long free = timetable.getFreeSlots().getNumFree();
+		if(classes.size() > free)
+			problems.add("There are " + classes.size() + " classes but only " + free + " vacant slots");
+		return problems;
+	}
+
+	/**
+	 * puts each class of a checked batch in its slot and tells the
+	 * listeners once. Called with the write lock held.
+	 * @param classes the classes
+	 * @param slots the slot of each class, all vacant and different
+	 */
+	private void insertBatch(List<FitnessClass> classes, List<TimeSlot> slots) {
+		for(int i = 0; i < classes.size(); i++)
+			placeClass(classes.get(i), slots.get(i));
+		tellClassesChanged(Collections.<FitnessClass>emptyList(), new ArrayList<FitnessClass>(classes));
+	}
+
+	/**
+	 * puts a class of a batch in a vacant slot without telling the listeners
+	 */
+	private void placeClass(FitnessClass fc, TimeSlot slot) {
+		fc.setClassDay(slot.getDay());
+		fc.setClassRoom(slot.getRoom());
+		fc.setClassTime(slot.getHour());
+		insertClass(fc, false);
+	}
+
+	/**
+	 * checks whether a tutor is free at a given time, i.e. has no class
+	 * then in any room
+	 * @param tutor the tutor's name
+	 * @param day the day
+	 * @param t the start time
+	 * @return true if the tutor has no class at that time
+	 */
+	public boolean isTutorFree(String tutor, int day, int t) {
+		long stamp = lockForReading();
+		try {
+			return tutorHours.isFree(FitnessClass.TUTORS.codeOf(tutor), day, t);
+		}
+		finally {
+			unlockForReading(stamp);
+		}
+	}
+
+	/**
+	 * deletes a batch of classes by ID. Every ID is checked before
+	 * anything is deleted: each must be the ID of a class and appear only
+	 * once. If anything is wrong nothing is deleted. Otherwise the classes
+	 * are deleted under one write lock, and the listeners are told once.
+	 * @param ids the IDs of the classes to delete
+	 * @return the classes deleted
+	 * @throws ClassBatchException listing every problem with the batch
+	 */
+	public List<FitnessClass> deleteClasses(Collection<String> ids) {
+		long stamp = lockForWriting();
+		try {
+			List<String> problems = new ArrayList<String>();
+			Set<String> seen = new HashSet<String>();
+			List<FitnessClass> removed = new ArrayList<FitnessClass>(ids.size());
+			for(String id : ids) {
+				FitnessClass fc = classesById.get(id);
+				if(fc == null)
+					problems.add("There is no class with the ID " + id);
+				else if(!seen.add(id))
+					problems.add("The class ID " + id + " is in the batch more than once");
+				else
+					removed.add(fc);
+			}
+			if(!problems.isEmpty())
+				throw new ClassBatchException(problems);
+			for(FitnessClass fc : removed)
+				removeClass(fc, false);
+			tellClassesChanged(removed, Collections.<FitnessClass>emptyList());
+			return removed;
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
+	}
+
+	/**
+	 * adds to a list what is wrong with a new class's ID, name and tutor:
+	 * each must be filled in and be one word, as the GUI asks for
+	 */
+	private static void checkFields(FitnessClass fc, List<String> problems) {
+		String id = fc.getClassID();
+		String label = (id == null || id.isEmpty()) ? "A class" : "Class " + id;
+		if(id == null || id.isEmpty() || fc.getClassName() == null || fc.getClassName().isEmpty()
+				|| fc.getClassTutor() == null || fc.getClassTutor().isEmpty())
+			problems.add(label + " does not have an ID, name and tutor");
+		else if(id.indexOf(' ') != -1 || fc.getClassName().indexOf(' ') != -1
+				|| fc.getClassTutor().indexOf(' ') != -1)
+			problems.add(label + " has an ID, name or tutor of more than one word");
+	}
+
+	/**
+	 * tells the listeners of a batch of classes removed and added.
+	 * Called with the write lock held.
+	 */
+	private void tellClassesChanged(List<FitnessClass> removed, List<FitnessClass> added) {
+		removed = Collections.unmodifiableList(removed);
+		added = Collections.unmodifiableList(added);
+		for(ProgramListener listener : listeners)
+			listener.classesChanged(removed, added);
+	}
+
+	/**
+	 * puts the given class in its slot and in the ID index,
+	 * and adds its attendance to the programme total.
+	 * Called with the write lock held.
+	 * @param fc the class to be added
+	 */
+	private void insertClass(FitnessClass fc) {
+		insertClass(fc, true);
+	}
+
+	/**
+	 * insertClass, telling the listeners only if tell is true
+	 */
+	private void insertClass(FitnessClass fc, boolean tell) {
+		timetable.put(fc.getClassDay(), fc.getClassRoom(), fc.getClassTime(), fc);
+		classesById.put(fc.getClassID(), fc); //add class to ID index
+		numClasses++; //increment number of classes in timetable
+		totalAttendance += fc.getAttendanceTotal();
+		if(!fc.keepsAttendancesIn(attendances)) //already there if loaded by loadClasses
+			fc.moveAttendances(attendances); //class keeps its attendances in the programme's store
+		fc.setProgram(this); //class now reports attendance changes to this programme
+		version++;
+		if(ranking != null)
+			ranking.add(fc);
+		byTutor.add(fc);
+		byName.add(fc);
+		byTime.add(fc);
+		if(fc.getClassTutorCode() >= 0)
+			tutorHours.occupy(fc.getClassTutorCode(), fc.getClassDay(), fc.getClassTime());
+		if(scheduler != null)
+			getScheduler().classAdded(fc.getClassRoom());
+		if(tell)
+			for(ProgramListener listener : listeners)
+				listener.classAdded(fc);
+	}
+
+	/**
+	 * removes the given class from its slot and from the ID index,
+	 * and takes its attendance off the programme total.
+	 * Called with the write lock held.
+	 * @param fc the class to be removed
+	 */
+	private void removeClass(FitnessClass fc) {
+		removeClass(fc, true);
+	}
+
+	/**
+	 * removeClass, telling the listeners only if tell is true
+	 */
+	private void removeClass(FitnessClass fc, boolean tell) {
+		//remove class by vacating its slot
+		timetable.remove(fc.getClassDay(), fc.getClassRoom(), fc.getClassTime());
+		classesById.remove(fc.getClassID()); //remove class from ID index
+		numClasses--; //decrement number of classes in timetable
+		if(ranking != null) //must go before the class's slot or total changes
+			ranking.remove(fc);
+		totalAttendance -= fc.getAttendanceTotal();
+		byTutor.remove(fc);
+		byName.remove(fc);
+		byTime.remove(fc);
+		if(fc.getClassTutorCode() >= 0)
+			tutorHours.release(fc.getClassTutorCode(), fc.getClassDay(), fc.getClassTime());
+		if(scheduler != null)
+			getScheduler().classRemoved(fc.getClassRoom());
+		fc.moveAttendances(null); //give back the class's row of the programme's store
+		fc.setProgram(null);
+		version++;
+		if(tell)
+			for(ProgramListener listener : listeners)
+				listener.classRemoved(fc);
+	}
+
+	/**
+	 * sets an attendance figure of a class of this programme under the
+	 * write lock. Called by FitnessClass.setAttendance.
+	 * @param fc the class
+	 * @param week the week
+	 * @param att the attendance figure
+	 * @return true if it was set, false if the class is no longer in this programme
+	 */
+	boolean setAttendance(FitnessClass fc, int week, int att) {
+		long stamp = lockForWriting();
+		try {
+			if(fc.getProgram() != this) //deleted while we waited for the lock
+				return false;
+			fc.writeAttendance(week, att);
+			return true;
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
+	}
+
+	/**
+	 * changes the ID, name, tutor or slot of a class of this programme
+	 * under the write lock. The change is made to a copy of the class's
+	 * details and checked first; the class is then taken out of the
+	 * timetable and indexes and put back with its new details, keeping
+	 * its attendances, and the listeners are told of it as one batch.
+	 * Rooms beyond the current number of rooms are added as needed.
+	 * Called by FitnessClass's setters.
+	 * @param fc the class
+	 * @param change sets the new details on the copy it is given
+	 * @return true if the change was made, false if the class is no longer in this programme
+	 * @throws IllegalArgumentException if the new slot is outside the timetable or another
+	 * class's, or the new ID is another class's
+	 */
+	boolean changeClass(FitnessClass fc, Consumer<FitnessClass> change) {
+		long stamp = lockForWriting();
+		try {
+			if(fc.getProgram() != this) //deleted while we waited for the lock
+				return false;
+			FitnessClass old = fc.copyDetails();
+			FitnessClass changed = fc.copyDetails();
+			change.accept(changed);
+			int day = changed.getClassDay();
+			int room = changed.getClassRoom();
+			int time = changed.getClassTime();
+			if(!timetable.canHoldSlot(day, room, time))
+				throw new IllegalArgumentException("No such slot: day " + day + ", room " + room
+						+ ", time " + time);
+			FitnessClass inSlot = timetable.getClass(day, room, time);
+			if(inSlot != null && inSlot != fc)
+				throw new IllegalArgumentException("Class " + inSlot.getClassID() + " is already at day "
+						+ day + ", room " + room + ", time " + time);
+			FitnessClass sameId = classesById.get(changed.getClassID());
+			if(sameId != null && sameId != fc)
+				throw new IllegalArgumentException("Class ID " + changed.getClassID() + " is already in use");
+			removeClass(fc, false);
+			fc.takeDetails(changed);
+			if(room > timetable.getNumRooms()) //make sure the class's new room exists
+				timetable.ensureRoom(room);
+			insertClass(fc, false);
+			tellClassesChanged(Collections.singletonList(old), Collections.singletonList(fc));
+			return true;
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
+	}
+
+	/**
+	 * sets attendance figures of classes of this programme, all under one
+	 * write lock, so that a batch of figures read from a file is made as
+	 * one change. The figures are set in the order given, and the
+	 * listeners are told of them once, by attendancesChanged. Classes no
+	 * longer in this programme are skipped. Every week is checked before
+	 * any figure is set, so a bad week sets nothing.
+	 * @param classes the class of each figure
+	 * @param weeks the week of each figure
+	 * @param figures the figures
+	 * @param count the number of figures
+	 * @return the number of figures set
+	 * @throws IllegalArgumentException if a week cannot be kept
+	 */
+	int setAttendances(FitnessClass [] classes, int [] weeks, int [] figures, int count) {
+		return changeAttendances(classes, weeks, figures, count, false);
+	}
+
+	/**
+	 * adds to attendance figures of classes of this programme, all under
+	 * one write lock, so that a batch of check-ins is made as one change.
+	 * Each increment is made as a setAttendance of the new figure, and the
+	 * listeners are told of the new figures once, by attendancesChanged.
+	 * Classes no longer in this programme are skipped.
+	 * @param classes the class of each increment
+	 * @param weeks the week of each increment
+	 * @param increments the amount to add to each figure
+	 * @param count the number of increments
+	 * @return the number of increments made
+	 * @throws IllegalArgumentException if a week cannot be kept
+	 */
+	int addAttendances(FitnessClass [] classes, int [] weeks, int [] increments, int count) {
+		return changeAttendances(classes, weeks, increments, count, true);
+	}
+
+	/**
+	 * setAttendances, or addAttendances if add is true
+	 */
+	private int changeAttendances(FitnessClass [] classes, int [] weeks, int [] values, int count, boolean add) {
+		long stamp = lockForWriting();
+		try {
+			for(int i = 0; i < count; i++)
+				AttendanceStore.checkWeek(weeks[i]);
+			FitnessClass [] setClasses = new FitnessClass [count];
+			int [] setWeeks = new int [count];
+			int [] setFigures = new int [count];
+			int made = 0;
+			boolean batching = batchingAttendances;
+			batchingAttendances = true; //attendanceChanged tells no listener
+			try {
+				for(int i = 0; i < count; i++) {
+					FitnessClass fc = classes[i];
+					if(fc.getProgram() != this) //deleted since the figures were read
+						continue;
+					int att = add ? addClamped(fc.sumAttendances(weeks[i], weeks[i]), values[i]) : values[i];
+					fc.writeAttendance(weeks[i], att);
+					setClasses[made] = fc;
+					setWeeks[made] = weeks[i];
+					setFigures[made] = att;
+					made++;
+				}
+			}
+			finally {
+				batchingAttendances = batching;
+			}
+			if(made > 0 && !batching)
+				for(ProgramListener listener : listeners)
+					listener.attendancesChanged(setClasses, setWeeks, setFigures, made);
+			return made;
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
+	}
+
+	/**
+	 * returns figure + increment, or Integer.MAX_VALUE if that is larger
+	 */
+	static int addClamped(long figure, long increment) {
+		return (int) Math.min(Integer.MAX_VALUE, figure + increment);
+	}
+
+	/**
+	 * reads the sum of a class's attendance figures over a range of weeks,
+	 * optimistically: the figures are read without locking and read again
+	 * under the read lock only if a change was made meanwhile.
+	 * Called by FitnessClass for a class of this programme.
+	 * @param fc the class
+	 * @param fromWeek the first week of the range
+	 * @param toWeek the last week of the range (inclusive)
+	 * @return the sum
+	 */
+	long readAttendances(FitnessClass fc, int fromWeek, int toWeek) {
+		long stamp = lock.tryOptimisticRead();
+		if(stamp != 0) {
+			try {
+				long sum = fc.sumAttendances(fromWeek, toWeek);
+				if(lock.validate(stamp))
+					return sum;
+			}
+			catch(RuntimeException e) {
+				//read half way through a change (e.g. the store growing), so read again
+			}
+		}
+		stamp = lockForReading();
+		try {
+			return fc.sumAttendances(fromWeek, toWeek);
+		}
+		finally {
+			unlockForReading(stamp);
+		}
+	}
+
+	/**
+	 * called by a FitnessClass of this programme just before its
+	 * attendance total changes, while it can still be found in the ranking
+	 * @param fc the class whose attendance is about to change
+	 */
+	void attendanceChanging(FitnessClass fc) {
+		if(ranking != null)
+			ranking.remove(fc);
+	}
+
+	/**
+	 * called by a FitnessClass of this programme when one of its
+	 * attendance figures changes, to keep the programme total up to date
+	 * and tell the listeners
+	 * @param fc the class whose attendance changed
+	 * @param week the week whose figure changed
+	 * @param att the new figure
+	 * @param change the change in the class's attendance total
+	 */
+	void attendanceChanged(FitnessClass fc, int week, int att, int change) {
+		totalAttendance += change;
+		version++;
+		if(ranking != null && week <= FitnessClass.NUM_WEEKS) //put the class back in at its new place
+			ranking.add(fc);
+		if(change != 0) { //update the figures of the class's groups
+			int total = fc.getAttendanceTotal();
+			byTutor.totalChanged(fc, total - change, total);
+			byName.totalChanged(fc, total - change, total);
+			byTime.totalChanged(fc, total - change, total);
+		}
+		if(!batchingAttendances)
+			for(ProgramListener listener : listeners)
+				listener.attendanceChanged(fc, week, att);
+	}
+
+	/**
+	 * takes the write lock, unless this thread holds it already (for
+	 * instance when a listener makes a change)
+	 * @return the stamp to unlock with, 0 if the lock was already held
+	 */
+	private long lockForWriting() {
+		if(writer == Thread.currentThread())
+			return 0;
+		long stamp = lock.writeLock();
+		writer = Thread.currentThread();
+		return stamp;
+	}
+
+	private void unlockForWriting(long stamp) {
+		if(stamp != 0) {
+			writer = null;
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * takes the read lock so that the programme cannot change until
+	 * unlockForReading, unless this thread holds the write lock already.
+	 * Must not be called again by a thread that already holds the read lock.
+	 * @return the stamp to unlock with
+	 */
+	long lockForReading() {
+		if(writer == Thread.currentThread())
+			return 0;
+		return lock.readLock();
+	}
+
+	void unlockForReading(long stamp) {
+		if(stamp != 0)
+			lock.unlockRead(stamp);
+	}
+
+	/**
+	 * makes a read of the whole programme without holding up writers. The
+	 * read is made optimistically and its result kept only if no change was
+	 * made meanwhile; if a change is being made when it starts, it waits for
+	 * that change and then reads. After OPTIMISTIC_TRIES reads spoilt by
+	 * changes, it is made under the read lock, so it always finishes. A
+	 * spoilt read may see the programme half way through a change, so it
+	 * may throw a RuntimeException (which counts as spoilt), and it must
+	 * not change anything that it would not change again on the next try.
+	 * It must only read plain fields, the concurrent maps and the store's
+	 * arrays, which a change never leaves looping; reads of the indexes
+	 * go through readLocked.
+	 * @param read the read
+	 * @return the result of the read
+	 */
+	<T> T readWhole(Supplier<T> read) {
+		if(writer == Thread.currentThread()) //nothing can change under this thread
+			return read.get();
+		for(int tries = 0; tries < OPTIMISTIC_TRIES; tries++) {
+			long stamp = lock.tryOptimisticRead();
+			if(stamp == 0) //a change is being made, so wait for it and read from there
+				stamp = lock.tryConvertToOptimisticRead(lock.readLock());
+			try {
+				T result = read.get();
+				if(lock.validate(stamp))
+					return result;
+			}
+			catch(RuntimeException e) {
+				//read half way through a change, so read again
+			}
+		}
+		long stamp = lockForReading();
+		try {
+			return read.get();
+		}
+		finally {
+			unlockForReading(stamp);
+		}
+	}
+
+	/**
+	 * makes a read of the programme under the read lock, or straight away
+	 * if this thread holds the write lock. Used for reads over the ranking
+	 * and group indexes: a TreeSet or HashSet read while a change is made
+	 * to it may loop or miss entries rather than throw, so such reads are
+	 * not made optimistically.
+	 * Must not be called by a thread that already holds the read lock.
+	 * @param read the read
+	 * @return the result of the read
+	 */
+	<T> T readLocked(Supplier<T> read) {
+		long stamp = lockForReading();
+		try {
+			return read.get();
+		}
+		finally {
+			unlockForReading(stamp);
+		}
+	}
+
+	/**
+	 * registers a listener to be told of every change to the programme
+	 * @param listener the listener
+	 */
+	public void addProgramListener(ProgramListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * stops telling a listener of changes to the programme
+	 * @param listener the listener
+	 */
+	public void removeProgramListener(ProgramListener listener) {
+		listeners.remove(listener);
 	}
 	
 	/**
-	 * returns the FitnessClass object at a given position within the array
-	 * or null if there is no object in such position
+	 * returns the FitnessClass object at a given position within the timetable
+	 * or null if there is no object in such position. Positions count
+	 * through the slots of each room of each day in turn.
 	 * @param index the position of the class to be returned
 	 * @return the FitnessClass object at index
 	 */
 	public FitnessClass getClassFromIndex(int index) {
-		return fitnessClasses[index];
+		int hours = timetable.getHoursPerDay();
+		int slotsPerDay = hours * timetable.getNumRooms();
+		int day = index / slotsPerDay + 1;
+		int room = (index % slotsPerDay) / hours + 1;
+		int hour = index % hours + timetable.getFirstHour();
+		return timetable.getClass(day, room, hour);
 	}
 	
 	/**
 	 * returns the FitnessClass object with the given ID, if no class has that ID
-	 * returns null
+	 * returns null. The lookup goes through the ID index rather than
+	 * scanning the timetable, so it takes constant time.
 	 * @param idNumber the ID of the class to be returned
 	 * @return the FitnessClass object with the relevant ID, or null if no such
-	 * object exists in the array
+	 * object exists in the timetable
 	 */
 	public FitnessClass getClassFromId(String idNumber){
-		FitnessClass fc = null;
-		boolean found = false;
-		int index = 0;
-		//loop through fitnessClasses array while class with ID not found
-		while(!found && index < MAX_CLASSES) {
-			fc = fitnessClasses[index];
-			if(fc != null) { //check if position of array has an object
-				if(fc.getClassID().equals(idNumber))
-					found = true; //if input ID matches classID, set found to true and exit loop
-				else
-					index++; //if there is no match, check next position of array
-			}
-			else //if position of array is null, check next position
-				index++;
-		}
-		//after loop is over
-		if(!found) //if there was no match, return null
-			return null;
-		else //if there was a match, return the corresponding FitnessClass object
-			return fc;
-	}		
+		ProgramMetrics.LOOKUPS.increment();
+		long start = ProgramMetrics.sampleLookup() ? System.nanoTime() : 0; //only some lookups are timed
+		FitnessClass fc = classesById.get(idNumber);
+		if(start != 0)
+			ProgramMetrics.LOOKUP.recordSince(start);
+		if(fc == null)
+			ProgramMetrics.LOOKUP_MISSES.increment();
+		return fc;
+	}
 	
 	/**
-	 * returns the FitnessClass object at the array position corresponding to
-	 * a given start time (or null if there is no FC object in that position)
+	 * returns the FitnessClass object at a given start time on the first
+	 * day in the first room (or null if there is no FC object in that slot)
 	 * @param t the start time of the FitnessClass
-	 * @return the object at the position corresponding to the given time
+	 * @return the object in the slot corresponding to the given time
 	 */
 	public FitnessClass getClassAtTime(int t) {
-		int position = t - FIRST_START_TIME; //get array position corresponding to given time
-		return fitnessClasses[position]; //return whatever is in that position
+		return timetable.getClass(1, 1, t);
+	}
+
+	/**
+	 * returns the FitnessClass object in a given slot (or null if the slot is vacant)
+	 * @param day the day of the slot
+	 * @param room the room of the slot
+	 * @param t the start time of the slot
+	 * @return the object in that slot
+	 */
+	public FitnessClass getClassAtSlot(int day, int room, int t) {
+		return timetable.getClass(day, room, t);
 	}
 	
 	/**
-	 * returns the earliest vacant start time for a FitnessClass.
+	 * returns the earliest vacant start time for a FitnessClass,
+	 * or LIST_IS_FULL if there are no vacancies.
 	 */
 	public int getEarliestTime() {
-		//first check if array is already full
-		if(numClasses == MAX_CLASSES)
-			return -1; //if there are no vacancies return -1
-		//if there are vacancies look for the earliest one
-		int t = FIRST_START_TIME;
-		boolean foundVacancy = false;
-		//loop through fitnessClasses array at each start time
-		while(!foundVacancy && t <= LAST_START_TIME) {
-			if(getClassAtTime(t) == null) //if there is no class at time t
-				foundVacancy = true; //vacancy is found, change boolean to true and exit loop
-			else
-				t++; //if timeslot not vacant, check next timeslot
+		TimeSlot slot = getEarliestSlot();
+		if(slot == null)
+			return LIST_IS_FULL; //if there are no vacancies return -1
+		return slot.getHour();
+	}
+
+	/**
+	 * returns the earliest vacant slot, looking through the rooms of
+	 * each day in turn, or null if every slot is taken.
+	 * @return the slot
+	 */
+	public TimeSlot getEarliestSlot() {
+		return findFreeSlot(0, 0);
+	}
+
+	/**
+	 * returns the earliest vacant slot on a given day, or null if that day is full
+	 * @param day the day to look in
+	 * @return the slot
+	 */
+	public TimeSlot getEarliestSlotOnDay(int day) {
+		return findFreeSlot(day, 0);
+	}
+
+	/**
+	 * returns the earliest vacant slot in a given room over the week,
+	 * or null if that room is full
+	 * @param room the room to look in
+	 * @return the slot
+	 */
+	public TimeSlot getEarliestSlotInRoom(int room) {
+		return findFreeSlot(0, room);
+	}
+
+	/**
+	 * checks whether every slot of the programme is taken
+	 * @return true if there is no room for another class
+	 */
+	public boolean isFull() {
+		return findFreeSlot(0, 0) == null;
+	}
+
+	/**
+	 * looks up the earliest vacant slot in the free slot map with an
+	 * optimistic read, reading again under the read lock if a change was
+	 * made meanwhile. The slot may of course be taken by the time it is used.
+	 * @param day the day to look in, or 0 for any day
+	 * @param room the room to look in, or 0 for any room
+	 * @return the slot, or null if there is none
+	 */
+	private TimeSlot findFreeSlot(int day, int room) {
+		long stamp = lock.tryOptimisticRead();
+		if(stamp != 0) {
+			try {
+				TimeSlot slot = firstFree(day, room);
+				if(lock.validate(stamp))
+					return slot;
+			}
+			catch(RuntimeException e) {
+				//read half way through a change (e.g. rooms being added), so read again
+			}
+		}
+		stamp = lockForReading();
+		try {
+			return firstFree(day, room);
 		}
-		return t; //return final value of t
+		finally {
+			unlockForReading(stamp);
+		}
+	}
+
+	private TimeSlot firstFree(int day, int room) {
+		FreeSlotMap freeSlots = timetable.getFreeSlots();
+		if(day != 0)
+			return freeSlots.firstFreeOnDay(day);
+		if(room != 0)
+			return freeSlots.firstFreeInRoom(room);
+		return freeSlots.firstFree();
 	}
 
 	/**
 	 * sets the attendance figures for a FitnessClass based on information
-	 * obtained from a line of the attendances file
+	 * obtained from a line of the attendances file. The line holds one
+	 * figure per week from week 1, usually NUM_WEEKS of them, but any
+	 * number of weeks is accepted.
 	 * @param attLine the line of text from the attendances file
 	 */
 	public void populateAttendances(String attLine) {
+		long start = System.nanoTime();
 		String [] attTokens = attLine.split("[ ]+"); //convert attLine into array of strings
 		String id = attTokens[0]; //get classID from first position of array
-		FitnessClass fc = getClassFromId(id); //get FitnessClass with that ID
-		//loop through weeks 1 to NUM_WEEKS (number of weeks attendance is monitored for)
-		for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++) {
-			//for each week, get attendance figure from attTokens array
-			int attendance = Integer.parseInt(attTokens[week]);
-			//call setAttendance method of the relevant FC to set attendance for that week
-			fc.setAttendance(week, attendance);
+		int [] attendances = new int [attTokens.length - 1];
+		for(int week = 1; week < attTokens.length; week++) //get attendance figures from attTokens array
+			attendances[week - 1] = Integer.parseInt(attTokens[week]);
+		long stamp = lockForWriting(); //the whole line is set in one change
+		try {
+			FitnessClass fc = getClassFromId(id); //get FitnessClass with that ID
+			//loop through the weeks given on the line
+			for(int week = 1; week <= attendances.length; week++) {
+				//call setAttendance method of the relevant FC to set attendance for that week
+				fc.setAttendance(week, attendances[week - 1]);
+			}
+		}
+		finally {
+			unlockForWriting(stamp);
 		}
+		ProgramMetrics.ATTENDANCE_LINES.increment();
+		ProgramMetrics.POPULATE.recordSince(start);
+	}
+
+	/**
+	 * returns the number of weeks of attendance held, which is at
+	 * least NUM_WEEKS. The number only grows, so this takes no lock.
+	 * @return the number of weeks
+	 */
+	public int getNumWeeks() {
+		return attendances.getNumWeeks();
+	}
+
+	/**
+	 * returns the total attendance of all classes in a given week,
+	 * summed in one pass over that week's column of the store
+	 * @param week the week (1 upwards)
+	 * @return the total attendance
+	 */
+	public long getWeekTotal(final int week) {
+		return readWhole(new Supplier<Long>() {
+			public Long get() {
+				return attendances.sumWeek(week);
+			}
+		});
 	}
 
 	/**
 	 * makes new array from existing fitness classes (i.e. with no
 	 * null values) and sorts it in non-decreasing order according
-	 * to average attendance
+	 * to average attendance. Classes with equal averages are in time order.
+	 * If the ranking index is kept, the array is copied from it without sorting.
 	 * @return the sorted list
 	 */
 	public FitnessClass[] makeSortedList() {
-		FitnessClass [] sortedClasses; //declare new array
-		if(numClasses == MAX_CLASSES) {
-			//if fitnessClasses array has no null values, new array can be the same
-			sortedClasses = (FitnessClass []) fitnessClasses.clone();
-		}
-		else { //if there are null values in original array, remove them
-			//set size of new array to current amount of existing classes
-			sortedClasses = new FitnessClass [numClasses];
-			int j=0; //index of new array
-			for(int i=0; i < MAX_CLASSES; i++) { //loop through original array
-				FitnessClass fc = fitnessClasses[i]; 
-				if(fc != null) { //if FitnessClass at i in original array is not null
-					sortedClasses[j] = fc; //put FitnessClass in position j of new array
-					j++; //move to next position of new array
+		long start = System.nanoTime();
+		try {
+			return readLocked(new Supplier<FitnessClass[]>() { //totals must not change while sorting
+				public FitnessClass[] get() {
+					return makeSortedListLocked();
 				}
-			}
+			});
+		}
+		finally {
+			ProgramMetrics.SORT.recordSince(start);
 		}
+	}
+
+	/**
+	 * makeSortedList for a caller holding the read or write lock
+	 */
+	FitnessClass[] makeSortedListLocked() {
+		TreeSet<FitnessClass> index = ranking;
+		if(index != null) { //ranking is already in order
+			return index.toArray(new FitnessClass [index.size()]);
+		}
+		//copy existing classes, in timetable order, into an array the size of the
+		//current amount of classes (so classes with equal averages stay in time order)
+		FitnessClass [] sortedClasses = timetable.classesInSlotOrder().toArray(new FitnessClass [numClasses]);
 		//sort new array on avg attendance (see FitnessClass.compareTo())
 		Arrays.sort(sortedClasses);
 		return sortedClasses; //return the sorted array
 	}
 
 	/**
-	 * calculates the overall average attendance for all classes
-	 * @return the overall average
+	 * starts or stops keeping an ordered index of the classes by average
+	 * attendance. While it is kept it is updated on every add, delete and
+	 * attendance change, at O(log n) each, and makeSortedList, getTopClasses
+	 * and getBottomClasses read from it without sorting.
+	 * @param keep true to keep the index, false to drop it
+	 */
+	public void setRankingIndexed(boolean keep) {
+		long stamp = lockForWriting();
+		try {
+			if(!keep)
+				ranking = null;
+			else if(ranking == null) {
+				TreeSet<FitnessClass> index = new TreeSet<FitnessClass>(FitnessClass.RANKING_ORDER);
+				index.addAll(classesById.values());
+				ranking = index;
+			}
+		}
+		finally {
+			unlockForWriting(stamp);
+		}
+	}
+
+	/**
+	 * checks whether the ordered index by average attendance is being kept
+	 */
+	public boolean isRankingIndexed() {
+		return ranking != null;
+	}
+
+	/**
+	 * returns the k classes with the highest average attendance, highest
+	 * first; these are the first k classes of makeSortedList. Without the
+	 * ranking index this keeps a heap of k classes over one pass of the
+	 * programme, taking O(n log k) rather than a full sort.
+	 * @param k the number of classes wanted
+	 * @return up to k classes
+	 */
+	public FitnessClass[] getTopClasses(int k) {
+		return selectClasses(k, FitnessClass.RANKING_ORDER);
+	}
+
+	/**
+	 * returns the k classes with the lowest average attendance, in the
+	 * order they appear at the end of makeSortedList (so lowest last)
+	 * @param k the number of classes wanted
+	 * @return up to k classes
+	 */
+	public FitnessClass[] getBottomClasses(int k) {
+		FitnessClass [] bottom = selectClasses(k, Collections.reverseOrder(FitnessClass.RANKING_ORDER));
+		Collections.reverse(Arrays.asList(bottom)); //put back in report order
+		return bottom;
+	}
+
+	/**
+	 * returns the first k classes in the given order, first first
+	 */
+	private FitnessClass[] selectClasses(final int k, final Comparator<FitnessClass> order) {
+		return readLocked(new Supplier<FitnessClass[]>() { //totals must not change while selecting
+			public FitnessClass[] get() {
+				return selectClassesLocked(k, order);
+			}
+		});
+	}
+
+	private FitnessClass[] selectClassesLocked(int k, Comparator<FitnessClass> order) {
+		k = Math.max(0, Math.min(k, numClasses));
+		FitnessClass [] selected = new FitnessClass [k];
+		TreeSet<FitnessClass> index = ranking;
+		if(index != null) { //read from the front or back of the index
+			Iterator<FitnessClass> it = (order == FitnessClass.RANKING_ORDER)
+					? index.iterator() : index.descendingIterator();
+			for(int i = 0; i < k; i++)
+				selected[i] = it.next();
+			return selected;
+		}
+		if(k == 0)
+			return selected;
+		//heap with the worst of the best k so far at its head
+		PriorityQueue<FitnessClass> heap = new PriorityQueue<FitnessClass>(k, Collections.reverseOrder(order));
+		for(FitnessClass fc : classesById.values()) {
+			if(heap.size() < k)
+				heap.add(fc);
+			else if(order.compare(fc, heap.peek()) < 0) { //better than the worst kept
+				heap.poll();
+				heap.add(fc);
+			}
+		}
+		for(int i = k - 1; i >= 0; i--) //heap gives the worst first
+			selected[i] = heap.poll();
+		return selected;
+	}
+
+	/**
+	 * returns the classes taught by a tutor, in timetable order, from
+	 * the tutor index
+	 * @param tutor the tutor's name
+	 * @return the classes, empty if there are none
+	 */
+	public List<FitnessClass> getClassesByTutor(String tutor) {
+		return getGroupClasses(byTutor, FitnessClass.TUTORS.codeOf(tutor));
+	}
+
+	/**
+	 * returns the classes with a given name (e.g. all Spin classes), in
+	 * timetable order, from the name index
+	 * @param name the class name
+	 * @return the classes, empty if there are none
+	 */
+	public List<FitnessClass> getClassesByName(String name) {
+		return getGroupClasses(byName, FitnessClass.CLASS_NAMES.codeOf(name));
+	}
+
+	/**
+	 * returns the classes starting at a given time on any day in any
+	 * room, in timetable order
+	 * @param t the start time
+	 * @return the classes, empty if there are none
+	 */
+	public List<FitnessClass> getClassesByTime(int t) {
+		return getGroupClasses(byTime, t);
+	}
+
+	private List<FitnessClass> getGroupClasses(final ClassGroupIndex index, final int key) {
+		return readLocked(new Supplier<List<FitnessClass>>() {
+			public List<FitnessClass> get() {
+				return index.getClasses(key);
+			}
+		});
+	}
+
+	/**
+	 * returns the attendance figures of one tutor's classes
+	 * @param tutor the tutor's name
+	 * @return the figures, with a count of 0 if the tutor has no classes
+	 */
+	public AttendanceStats getTutorStats(String tutor) {
+		return getGroupStats(byTutor, FitnessClass.TUTORS.codeOf(tutor));
+	}
+
+	/**
+	 * returns the attendance figures of the classes with a given name
+	 * @param name the class name
+	 * @return the figures, with a count of 0 if there are no such classes
+	 */
+	public AttendanceStats getNameStats(String name) {
+		return getGroupStats(byName, FitnessClass.CLASS_NAMES.codeOf(name));
+	}
+
+	/**
+	 * returns the attendance figures of the classes starting at a given time
+	 * @param t the start time
+	 * @return the figures, with a count of 0 if there are no such classes
+	 */
+	public AttendanceStats getTimeStats(int t) {
+		return getGroupStats(byTime, t);
+	}
+
+	private AttendanceStats getGroupStats(final ClassGroupIndex index, final int key) {
+		return readLocked(new Supplier<AttendanceStats>() {
+			public AttendanceStats get() {
+				return index.getStats(key);
+			}
+		});
+	}
+
+	/**
+	 * returns the attendance figures of all the classes, made up from
+	 * the figures of each start time
+	 * @return the figures, with a count of 0 if there are no classes
+	 */
+	public AttendanceStats getOverallStats() {
+		return readLocked(new Supplier<AttendanceStats>() {
+			public AttendanceStats get() {
+				AttendanceStats stats = AttendanceStats.EMPTY;
+				for(AttendanceStats timeStats : byTime.getAllStats().values())
+					stats = stats.merge(timeStats);
+				return stats;
+			}
+		});
+	}
+
+	/**
+	 * returns the attendance figures of every tutor's classes (e.g. the
+	 * average attendance per tutor), by tutor in alphabetical order.
+	 * Each group's count and total are kept up to date as the programme
+	 * changes, so this takes time in the number of tutors, not classes.
+	 */
+	public SortedMap<String, AttendanceStats> getStatsByTutor() {
+		return readLocked(new Supplier<SortedMap<String, AttendanceStats>>() {
+			public SortedMap<String, AttendanceStats> get() {
+				return byTutor.getAllStats(FitnessClass.TUTORS);
+			}
+		});
+	}
+
+	/**
+	 * returns the attendance figures of the classes of each name, by name
+	 */
+	public SortedMap<String, AttendanceStats> getStatsByName() {
+		return readLocked(new Supplier<SortedMap<String, AttendanceStats>>() {
+			public SortedMap<String, AttendanceStats> get() {
+				return byName.getAllStats(FitnessClass.CLASS_NAMES);
+			}
+		});
+	}
+
+	/**
+	 * returns the attendance figures of the classes at each start time, by time
+	 */
+	public SortedMap<Integer, AttendanceStats> getStatsByTime() {
+		return readLocked(new Supplier<SortedMap<Integer, AttendanceStats>>() {
+			public SortedMap<Integer, AttendanceStats> get() {
+				return byTime.getAllStats();
+			}
+		});
+	}
+
+	/**
+	 * returns the overall average attendance for all classes, i.e. the
+	 * average of the classes' average attendances. This is read from the
+	 * running total, so it takes constant time.
+	 * @return the overall average, or 0 if there are no classes
 	 */
 	public double getOverallAvg() {
-		double sum = 0; // variable to store sum of averages of each class
-		for(int i=0; i<MAX_CLASSES; i++) { //loop through fitnessClasses array
-			FitnessClass fc = fitnessClasses[i];
-			if(fc != null) //add the avg attendance for each existing class to sum
-				sum += fc.getAvgAttendance();
+		long stamp = lock.tryOptimisticRead(); //the count and total must be from the same moment
+		int classes = numClasses;
+		long total = totalAttendance;
+		if(!lock.validate(stamp)) {
+			stamp = lockForReading();
+			try {
+				classes = numClasses;
+				total = totalAttendance;
+			}
+			finally {
+				unlockForReading(stamp);
+			}
 		}
-		//if numClasses is 0, change to 1 to avoid dividing by 0
-		if(numClasses == 0)
-			numClasses = 1;
-		
-		double overallAvg = sum/numClasses; //calculate overall average
-		return overallAvg; //return the overall average
+		if(classes == 0) //avoid dividing by 0
+			return 0;
+		//every class is averaged over NUM_WEEKS, so the average of averages
+		//is the total attendance over NUM_WEEKS x numClasses
+		return (double) total / ((long) FitnessClass.NUM_WEEKS * classes);
 	}
 
 	/**
-	 * prepares the text to be written to the ClassesOut file
+	 * prepares the text to be written to the ClassesOut file,
+	 * with classes in timetable order
 	 * @return the ClassesOutFile text as 1 string
 	 */
 	public String makeClassesOutText() {
-		StringBuilder cOutBuilder = new StringBuilder();
-		FitnessClass fc = null;
-		int j = 0;
-		for(int i = 0; i < MAX_CLASSES; i++) { //loop through fitnessClasses array
-			fc = fitnessClasses[i];
-			if(fc != null) { //get information line from each existing class
-				j++;
-				String classLine = fc.getClassesOutLine();
-				cOutBuilder.append(classLine); //add line to cOutBuilder
-				if(j != numClasses)
-					cOutBuilder.append("\r\n");
-			}
-		}
-		String classesOutText = cOutBuilder.toString(); //convert cOutBuilder to string
-		return classesOutText; //return string with full text to be written
+		return readWhole(new Supplier<String>() {
+			public String get() {
+				StringBuilder cOutBuilder = new StringBuilder();
+				List<FitnessClass> classes = timetable.classesInSlotOrder();
+				int j = 0;
+				for(FitnessClass fc : classes) { //loop through timetable in order
+					j++; //get information line from each existing class
+					String classLine = fc.getClassesOutLine();
+					cOutBuilder.append(classLine); //add line to cOutBuilder
+					if(j != classes.size())
+						cOutBuilder.append("\r\n");
+				}
+				String classesOutText = cOutBuilder.toString(); //convert cOutBuilder to string
+				return classesOutText; //return string with full text to be written
+			}
+		});
+	}
+
+	/**
+	 * prepares the text to be written to an attendances file, in the same
+	 * layout as AttendancesIn, with classes in timetable order
+	 * @return the attendances text as 1 string
+	 */
+	public String makeAttendancesOutText() {
+		return readWhole(new Supplier<String>() {
+			public String get() {
+				StringBuilder aOutBuilder = new StringBuilder();
+				List<FitnessClass> classes = timetable.classesInSlotOrder();
+				int weeks = getNumWeeks();
+				int j = 0;
+				for(FitnessClass fc : classes) { //loop through timetable in order
+					j++;
+					aOutBuilder.append(fc.getClassID());
+					for(int week = 1; week <= weeks; week++)
+						aOutBuilder.append(' ').append(fc.getAttendance(week));
+					if(j != classes.size())
+						aOutBuilder.append("\r\n");
+				}
+				return aOutBuilder.toString();
+			}
+		});
 	}
 }
@@ -0,0 +1,243 @@
+/**
+ * Bitmap of the occupied slots of a Timetable, used to find vacant
+ * slots without scanning the timetable.
+ * Each (day, room) pair has one long word with a bit per hour of the day,
+ * so a day never holds more than 64 slots. A second, summary bitmap has a
+ * bit per word that is set while that word still has a vacant hour.
+ * Finding the earliest vacant slot is then a scan of the summary for its
+ * first set bit, 64 rooms at a time, and "is full" is a counter check.
+ * Words are laid out day by day, so the rooms of one day are contiguous.
+ */
+public class FreeSlotMap {
+	//class constants
+	private static final int BITS_PER_WORD = 64;
+
+	//instance variables
+	private int numDays;
+	private int numRooms; //number of rooms in use
+	private int roomCapacity; //number of rooms allowed for in the word layout
+	private int firstHour;
+	private int hoursPerDay;
+	private long fullWord; //word with a bit set for every hour of the day
+	private long [] occupied; //occupied hours, one word per (day, room)
+	private long [] nonFull; //summary, one bit per word of occupied
+	private long numFree; //number of vacant slots
+
+	/**
+	 * FreeSlotMap constructor. All slots start vacant.
+	 * @param days the number of days
+	 * @param rooms the number of rooms
+	 * @param first the start hour of the first slot of each day
+	 * @param hours the number of slots in each day (at most 64)
+	 */
+	public FreeSlotMap(int days, int rooms, int first, int hours) {
+		if(hours < 1 || hours > BITS_PER_WORD)
+			throw new IllegalArgumentException("A day must have 1 to " + BITS_PER_WORD + " slots");
+		numDays = days;
+		numRooms = 0;
+		roomCapacity = 0;
+		firstHour = first;
+		hoursPerDay = hours;
+		fullWord = (hours == BITS_PER_WORD) ? -1L : (1L << hours) - 1;
+		occupied = new long [0];
+		nonFull = new long [0];
+		numFree = 0;
+		addRooms(rooms);
+	}
+
+	/**
+	 * grows the number of rooms to the given number; the new rooms start vacant.
+	 * The layout is rebuilt with double the room capacity when it runs out,
+	 * so growing one room at a time costs amortised constant time per slot.
+	 * @param rooms the new number of rooms
+	 */
+	public void addRooms(int rooms) {
+		if(rooms <= numRooms)
+			return;
+		if(rooms > roomCapacity)
+			relayout(Math.max(rooms, roomCapacity * 2));
+		for(int day = 1; day <= numDays; day++)
+			for(int room = numRooms + 1; room <= rooms; room++)
+				setSummaryBit(wordIndex(day, room)); //new rooms are wholly vacant
+		numFree += (long) numDays * (rooms - numRooms) * hoursPerDay;
+		numRooms = rooms;
+	}
+
+	/**
+	 * copies the occupied words into a layout with room for the given number of rooms
+	 */
+	private void relayout(int capacity) {
+		long [] newOccupied = new long [numDays * capacity];
+		long [] newNonFull = new long [(newOccupied.length + BITS_PER_WORD - 1) / BITS_PER_WORD];
+		for(int day = 1; day <= numDays; day++) {
+			for(int room = 1; room <= numRooms; room++) {
+				long word = occupied[wordIndex(day, room)];
+				int newIndex = (day - 1) * capacity + (room - 1);
+				newOccupied[newIndex] = word;
+				if(word != fullWord)
+					newNonFull[newIndex / BITS_PER_WORD] |= 1L << newIndex;
+			}
+		}
+		occupied = newOccupied;
+		nonFull = newNonFull;
+		roomCapacity = capacity;
+	}
+
+	/**
+	 * marks a slot as occupied
+	 */
+	public void occupy(int day, int room, int hour) {
+		int index = wordIndex(day, room);
+		long bit = 1L << (hour - firstHour);
+		if((occupied[index] & bit) != 0)
+			return; //already occupied
+		occupied[index] |= bit;
+		numFree--;
+		if(occupied[index] == fullWord) //last vacant hour of this word just went
+			nonFull[index / BITS_PER_WORD] &= ~(1L << index);
+	}
+
+	/**
+	 * marks a slot as vacant
+	 */
+	public void release(int day, int room, int hour) {
+		int index = wordIndex(day, room);
+		long bit = 1L << (hour - firstHour);
+		if((occupied[index] & bit) == 0)
+			return; //already vacant
+		occupied[index] &= ~bit;
+		numFree++;
+		setSummaryBit(index);
+	}
+
+	/**
+	 * checks whether a slot is vacant
+	 * @return true if there is no class in the slot
+	 */
+	public boolean isFree(int day, int room, int hour) {
+		return (occupied[wordIndex(day, room)] & (1L << (hour - firstHour))) == 0;
+	}
+
+	/**
+	 * returns the bitmap of occupied hours for one room on one day,
+	 * with bit 0 standing for the first hour of the day
+	 */
+	public long getOccupiedHours(int day, int room) {
+		return occupied[wordIndex(day, room)];
+	}
+
+	/**
+	 * returns the number of vacant slots
+	 */
+	public long getNumFree() {
+		return numFree;
+	}
+
+	/**
+	 * checks whether every slot is occupied
+	 * @return true if there are no vacant slots
+	 */
+	public boolean isFull() {
+		return numFree == 0;
+	}
+
+	/**
+	 * returns the earliest vacant slot, by day, then room, then hour
+	 * @return the slot, or null if every slot is occupied
+	 */
+	public TimeSlot firstFree() {
+		if(numFree == 0)
+			return null;
+		return firstFreeInWords(0, occupied.length);
+	}
+
+	/**
+	 * returns the earliest vacant slot on a given day, by room, then hour
+	 * @param day the day to look in
+	 * @return the slot, or null if that day is full
+	 */
+	public TimeSlot firstFreeOnDay(int day) {
+		int from = wordIndex(day, 1);
+		return firstFreeInWords(from, from + numRooms);
+	}
+
+	/**
+	 * returns the earliest vacant slot in a given room, by day, then hour
+	 * @param room the room to look in
+	 * @return the slot, or null if that room is full all week
+	 */
+	public TimeSlot firstFreeInRoom(int room) {
+		for(int day = 1; day <= numDays; day++) {
+			TimeSlot slot = firstFreeInRoomOnDay(day, room);
+			if(slot != null)
+				return slot;
+		}
+		return null;
+	}
+
+	/**
+	 * returns the earliest vacant slot in a given room on a given day
+	 * @return the slot, or null if that room is full on that day
+	 */
+	public TimeSlot firstFreeInRoomOnDay(int day, int room) {
+		long vacant = ~occupied[wordIndex(day, room)] & fullWord;
+		if(vacant == 0)
+			return null;
+		return new TimeSlot(day, room, firstHour + Long.numberOfTrailingZeros(vacant));
+	}
+
+	/**
+	 * checks whether every room is full on a given day
+	 */
+	public boolean isDayFull(int day) {
+		return firstFreeOnDay(day) == null;
+	}
+
+	/**
+	 * checks whether a given room is full on every day
+	 */
+	public boolean isRoomFull(int room) {
+		return firstFreeInRoom(room) == null;
+	}
+
+	/**
+	 * finds the first word in [from, to) with a vacant hour using the summary
+	 * bitmap, and returns the earliest vacant slot in that word
+	 */
+	private TimeSlot firstFreeInWords(int from, int to) {
+		int index = nextSummaryBit(from, to);
+		if(index < 0)
+			return null;
+		int day = index / roomCapacity + 1;
+		int room = index % roomCapacity + 1;
+		return firstFreeInRoomOnDay(day, room);
+	}
+
+	/**
+	 * returns the index of the first set summary bit in [from, to), or -1
+	 */
+	private int nextSummaryBit(int from, int to) {
+		if(from >= to)
+			return -1;
+		int w = from / BITS_PER_WORD;
+		long bits = nonFull[w] & (-1L << from); //ignore bits below from
+		while(true) {
+			if(bits != 0) {
+				int index = w * BITS_PER_WORD + Long.numberOfTrailingZeros(bits);
+				return (index < to) ? index : -1;
+			}
+			w++;
+			if(w * BITS_PER_WORD >= to)
+				return -1;
+			bits = nonFull[w];
+		}
+	}
+
+	private void setSummaryBit(int index) {
+		nonFull[index / BITS_PER_WORD] |= 1L << index;
+	}
+
+	private int wordIndex(int day, int room) {
+		return (day - 1) * roomCapacity + (room - 1);
+	}
+}
@@ -0,0 +1,155 @@
+import java.util.concurrent.atomic.*;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, in the style of an
+ * HdrHistogram: values below SUB_BUCKETS are counted exactly, and above
+ * that each power of two is split into SUB_BUCKETS equal buckets, so any
+ * percentile is accurate to within about 1/SUB_BUCKETS (3%) of its value.
+ * Recording is a few atomic adds and never allocates. Percentiles are
+ * read from the counts as they are, so a reading taken while other
+ * threads record may be slightly out of step with the count and mean.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+	//class constants
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 42; //values of 2^42 ns (over an hour) or more go in the top bucket
+	private static final int NUM_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	//instance variables
+	private final String name;
+	private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder(); //total of all values, for the mean
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * LatencyHistogram constructor
+	 * @param name the name the histogram is shown and registered under
+	 */
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * records one duration
+	 * @param nanos the duration in nanoseconds; negative values count as 0
+	 */
+	public void record(long nanos) {
+		if(nanos < 0)
+			nanos = 0;
+		counts.incrementAndGet(bucketOf(nanos));
+		count.increment();
+		sum.add(nanos);
+		long m = max.get();
+		while(nanos > m && !max.compareAndSet(m, nanos))
+			m = max.get();
+	}
+
+	/**
+	 * records the time since start, as given by System.nanoTime
+	 * @param start the time the operation started
+	 */
+	public void recordSince(long start) {
+		record(System.nanoTime() - start);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMeanMicros() {
+		long n = count.sum();
+		return (n == 0) ? 0 : sum.sum() / 1000.0 / n;
+	}
+
+	public double getMaxMicros() {
+		return max.get() / 1000.0;
+	}
+
+	public double getP50Micros() {
+		return getPercentile(50) / 1000.0;
+	}
+
+	public double getP99Micros() {
+		return getPercentile(99) / 1000.0;
+	}
+
+	public double getP999Micros() {
+		return getPercentile(99.9) / 1000.0;
+	}
+
+	/**
+	 * returns the value at the given percentile, as the middle of the
+	 * bucket it falls in, or 0 if nothing has been recorded
+	 * @param percentile from 0 to 100
+	 * @return the value in nanoseconds
+	 */
+	public long getPercentile(double percentile) {
+		long [] snapshot = new long [NUM_BUCKETS];
+		long total = 0;
+		for(int i = 0; i < NUM_BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if(total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for(int i = 0; i < NUM_BUCKETS; i++) {
+			seen += snapshot[i];
+			if(seen >= rank)
+				return Math.min(middleOf(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * clears everything recorded so far
+	 */
+	public void reset() {
+		for(int i = 0; i < NUM_BUCKETS; i++)
+			counts.set(i, 0);
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	/**
+	 * returns one line giving the count and the main percentiles
+	 */
+	public String toString() {
+		return String.format("%s count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+				name, getCount(), getMeanMicros(), getP50Micros(), getP99Micros(), getP999Micros(),
+				getMaxMicros());
+	}
+
+	/**
+	 * returns the bucket holding a non-negative value
+	 */
+	static int bucketOf(long value) {
+		if(value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if(exponent > MAX_EXPONENT)
+			return NUM_BUCKETS - 1;
+		int shift = exponent - SUB_BUCKET_BITS;
+		int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * returns the middle of the range of values held by a bucket
+	 */
+	static long middleOf(int bucket) {
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return low + ((1L << shift) >> 1);
+	}
+}
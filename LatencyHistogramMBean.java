@@ -0,0 +1,21 @@
+/**
+ * JMX view of a LatencyHistogram. Durations are in microseconds.
+ */
+public interface LatencyHistogramMBean {
+	long getCount();
+
+	double getMeanMicros();
+
+	double getP50Micros();
+
+	double getP99Micros();
+
+	double getP999Micros();
+
+	double getMaxMicros();
+
+	/**
+	 * clears everything recorded so far
+	 */
+	void reset();
+}
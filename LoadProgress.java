@@ -0,0 +1,71 @@
+import java.io.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Progress of a load, in bytes of input, shared between the threads doing
+ * the load and the one showing it. Loaders add the size of each file
+ * before reading it and advance as they go, and stop with an
+ * InterruptedIOException at their next check once the load is cancelled.
+ * Other long jobs, such as saving, can count steps in the same way.
+ */
+public class LoadProgress {
+	//instance variables
+	private final AtomicLong total = new AtomicLong(); //bytes to be read
+	private final AtomicLong done = new AtomicLong(); //bytes read so far
+	private volatile boolean cancelled;
+
+	/**
+	 * adds bytes to the amount to be read
+	 * @param bytes the size of a file or part of a file
+	 */
+	public void addTotal(long bytes) {
+		total.addAndGet(bytes);
+	}
+
+	/**
+	 * records that some bytes have been read
+	 * @param bytes the number of bytes
+	 */
+	public void advance(long bytes) {
+		done.addAndGet(bytes);
+	}
+
+	public long getTotal() {
+		return total.get();
+	}
+
+	public long getDone() {
+		return done.get();
+	}
+
+	/**
+	 * returns how far the load has got, from 0 to 100, or -1 if the
+	 * amount to be read is not known yet
+	 */
+	public int getPercent() {
+		long t = total.get();
+		if(t == 0)
+			return -1;
+		return (int) Math.min(100, done.get() * 100 / t);
+	}
+
+	/**
+	 * asks the load to stop at its next check
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * called by loaders between pieces of work
+	 * @throws InterruptedIOException if the load has been cancelled
+	 */
+	public void checkCancelled() throws InterruptedIOException {
+		if(cancelled)
+			throw new InterruptedIOException("Load cancelled");
+	}
+}
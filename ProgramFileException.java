@@ -0,0 +1,37 @@
+import java.io.*;
+
+/**
+ * Thrown when a line of a ClassesIn or AttendancesIn file cannot be
+ * understood. Records the file and the line number of the bad line.
+ */
+public class ProgramFileException extends IOException {
+	//instance variables
+	private final String fileName;
+	private final long lineNumber;
+	private final String problem;
+
+	/**
+	 * ProgramFileException constructor
+	 * @param fileName the file being read
+	 * @param lineNumber the number of the bad line (counting from 1)
+	 * @param problem what is wrong with the line
+	 */
+	public ProgramFileException(String fileName, long lineNumber, String problem) {
+		super(fileName + ", line " + lineNumber + ": " + problem);
+		this.fileName = fileName;
+		this.lineNumber = lineNumber;
+		this.problem = problem;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	public String getProblem() {
+		return problem;
+	}
+}
@@ -0,0 +1,399 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Loads ClassesIn and AttendancesIn files into a FitnessProgram.
+ * Files are memory-mapped a window at a time and split into lines and
+ * items directly from the bytes, with numbers parsed in place, so no
+ * Strings are made except the IDs, names and tutors of new classes.
+ * Attendance lines look their class up through an index keyed by the
+ * bytes of the ID, so loading attendances allocates nothing per line.
+ * Items are separated by spaces or tabs and blank lines are skipped.
+ * A line that cannot be understood stops the load with a
+ * ProgramFileException giving its line number. Progress can be followed,
+ * and the load cancelled, through a LoadProgress.
+ */
+public class ProgramFileLoader {
+	//class constants
+	private static final long WINDOW_SIZE = 1L << 28; //map at most 256MB at a time
+	private static final int MIN_CLASS_ITEMS = 4; //ID, name, tutor, start time
+	private static final int MAX_CLASS_ITEMS = 6; //... then day and room
+	private static final long PROGRESS_MASK = (1 << 16) - 1; //report progress every 65536 lines
+
+	//instance variables
+	private FitnessProgram program; //the programme being loaded
+	private Charset charset; //charset the files are written in
+	private byte [] scratch; //reused buffer for decoding IDs, names and tutors
+	private IdByteIndex idIndex; //index of the programme's classes by ID bytes
+	private AttendanceBatch batch; //where attendances go when not set directly, or null
+	private String fileName; //file being loaded, for error messages
+	private long lineNumber; //number of the line being parsed
+	private int pos; //position of the parser within the mapped window
+	private LoadProgress progress; //where progress is reported, or null
+	private long reported; //file position up to which progress has been reported
+
+	/**
+	 * ProgramFileLoader constructor. Files are read in the platform's
+	 * default charset, as FileReader does.
+	 * @param fp the programme to load into
+	 */
+	public ProgramFileLoader(FitnessProgram fp) {
+		program = fp;
+		charset = Charset.defaultCharset();
+		scratch = new byte [64];
+	}
+
+	/**
+	 * ProgramFileLoader constructor for parsing attendances in parallel.
+	 * Figures are recorded in the given batch instead of being set on
+	 * the classes, so that many loaders can share one index.
+	 * @param index the shared index of the programme's classes
+	 * @param charset the charset the files are written in
+	 * @param batch the batch to record attendances in
+	 */
+	ProgramFileLoader(IdByteIndex index, Charset charset, AttendanceBatch batch) {
+		this.idIndex = index;
+		this.charset = charset;
+		this.batch = batch;
+		scratch = new byte [64];
+	}
+
+	/**
+	 * reports the bytes read to the given progress from now on, and stops
+	 * with an InterruptedIOException if it is cancelled
+	 * @param progress the progress, or null
+	 */
+	public void setProgress(LoadProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * adds the classes in a ClassesIn file to the programme. Each line
+	 * holds an ID, name, tutor and start time, optionally followed by
+	 * a day and a room.
+	 * @param file the name of the file
+	 * @return the number of classes loaded
+	 * @throws IOException if the file cannot be read
+	 * @throws ProgramFileException if a line is malformed
+	 */
+	public long loadClasses(String file) throws IOException {
+		return load(file, true);
+	}
+
+	/**
+	 * sets attendances from an AttendancesIn file. Each line holds a
+	 * class ID followed by the attendance for week 1, week 2 and so on.
+	 * @param file the name of the file
+	 * @return the number of lines loaded
+	 * @throws IOException if the file cannot be read
+	 * @throws ProgramFileException if a line is malformed or names an unknown class
+	 */
+	public long loadAttendances(String file) throws IOException {
+		idIndex = new IdByteIndex(program.getClasses(), charset);
+		return load(file, false);
+	}
+
+	/**
+	 * opens the file and parses all of it
+	 */
+	private long load(String file, boolean classes) throws IOException {
+		long start = System.nanoTime();
+		FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+		try {
+			if(progress != null)
+				progress.addTotal(channel.size());
+			return parseRange(file, channel, 0, channel.size(), classes);
+		}
+		finally {
+			channel.close();
+			ProgramMetrics.LOAD.recordSince(start);
+		}
+	}
+
+	/**
+	 * returns the number of lines seen by the last parse, including blank lines
+	 */
+	long getLinesRead() {
+		return lineNumber;
+	}
+
+	/**
+	 * maps the bytes [from, to) of the file a window at a time and parses
+	 * each complete line. A line cut off at the end of a window is parsed
+	 * from the next window. The range must start at the start of a line;
+	 * line numbers in errors count from the start of the range.
+	 * @return the number of lines that held data
+	 */
+	long parseRange(String file, FileChannel channel, long from, long to, boolean classes)
+			throws IOException {
+		fileName = file;
+		lineNumber = 0;
+		reported = from;
+		long loaded = 0;
+		long offset = from;
+		while(offset < to) {
+			int length = (int) Math.min(WINDOW_SIZE, to - offset);
+			boolean lastWindow = (offset + length == to);
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+			int lineStart = 0;
+			while(lineStart < length) {
+				int lineEnd = findLineEnd(buf, lineStart, length);
+				if(lineEnd == length && !lastWindow)
+					break; //line carries on into the next window
+				lineNumber++;
+				if(parseLine(buf, lineStart, trimCarriageReturn(buf, lineStart, lineEnd), classes))
+					loaded++;
+				lineStart = lineEnd + 1;
+				if(progress != null && (lineNumber & PROGRESS_MASK) == 0)
+					reportProgress(offset + Math.min(lineStart, length));
+			}
+			if(lineStart == 0 && !lastWindow) {
+				ProgramMetrics.PARSE_ERRORS.increment();
+				throw new ProgramFileException(fileName, lineNumber + 1, "line is too long");
+			}
+			offset += Math.min(lineStart, length);
+		}
+		ProgramMetrics.LINES_PARSED.add(loaded);
+		if(progress != null)
+			reportProgress(to);
+		return loaded;
+	}
+
+	/**
+	 * reports the bytes read since the last report, and checks for cancellation
+	 * @param position the file position reached
+	 */
+	private void reportProgress(long position) throws InterruptedIOException {
+		progress.advance(position - reported);
+		reported = position;
+		progress.checkCancelled();
+	}
+
+	/**
+	 * parses one line of either file
+	 * @return true if the line held data, false if it was blank
+	 */
+	private boolean parseLine(ByteBuffer buf, int start, int end, boolean classes)
+			throws ProgramFileException {
+		pos = start;
+		skipSpaces(buf, end);
+		if(pos == end) //blank line
+			return false;
+		if(classes)
+			parseClassLine(buf, end);
+		else
+			parseAttendanceLine(buf, end);
+		return true;
+	}
+
+	/**
+	 * makes a FitnessClass from a ClassesIn line and adds it to the programme
+	 */
+	private void parseClassLine(ByteBuffer buf, int end) throws ProgramFileException {
+		String id = nextString(buf, end, "class ID");
+		String name = nextString(buf, end, "class name");
+		String tutor = nextString(buf, end, "tutor");
+		int time = nextInt(buf, end, "start time");
+		FitnessClass fc = new FitnessClass(id, name, tutor);
+		fc.setClassTime(time);
+		if(pos < end) { //day and room are optional, but come as a pair
+			fc.setClassDay(nextInt(buf, end, "day"));
+			fc.setClassRoom(nextInt(buf, end, "room"));
+		}
+		if(pos < end)
+			throw error("expected at most " + MAX_CLASS_ITEMS + " items");
+		try {
+			program.addClass(fc);
+		}
+		catch(IllegalArgumentException e) {
+			throw error(e.getMessage());
+		}
+	}
+
+	/**
+	 * sets the attendances of the class named on an AttendancesIn line
+	 */
+	private void parseAttendanceLine(ByteBuffer buf, int end) throws ProgramFileException {
+		int idStart = pos;
+		int idEnd = tokenEnd(buf, end);
+		FitnessClass fc = idIndex.get(buf, idStart, idEnd);
+		if(fc == null)
+			throw error("there is no class with the ID " + decode(buf, idStart, idEnd));
+		pos = idEnd;
+		skipSpaces(buf, end);
+		if(pos == end)
+			throw error("expected attendance figures after the class ID");
+		if(batch != null) //record the line to be applied later
+			batch.startLine(fc);
+		int week = 1;
+		while(pos < end) {
+			int attendance = nextInt(buf, end, "attendance");
+			if(batch != null)
+				batch.addWeek(attendance);
+			else
+				fc.setAttendance(week, attendance);
+			week++;
+		}
+	}
+
+	/**
+	 * reads the next item of the line as a String
+	 */
+	private String nextString(ByteBuffer buf, int end, String what) throws ProgramFileException {
+		if(pos == end)
+			throw error("missing " + what + " (expected at least " + MIN_CLASS_ITEMS + " items)");
+		int start = pos;
+		pos = tokenEnd(buf, end);
+		String s = decode(buf, start, pos);
+		skipSpaces(buf, end);
+		return s;
+	}
+
+	/**
+	 * reads the next item of the line as a non-negative int
+	 */
+	private int nextInt(ByteBuffer buf, int end, String what) throws ProgramFileException {
+		if(pos == end)
+			throw error("missing " + what);
+		int start = pos;
+		long value = 0;
+		int tokenEnd = tokenEnd(buf, end);
+		for(int i = start; i < tokenEnd; i++) {
+			int digit = buf.get(i) - '0';
+			if(digit < 0 || digit > 9)
+				throw error(what + " is not a whole number: " + decode(buf, start, tokenEnd));
+			value = value * 10 + digit;
+			if(value > Integer.MAX_VALUE)
+				throw error(what + " is too large: " + decode(buf, start, tokenEnd));
+		}
+		pos = tokenEnd;
+		skipSpaces(buf, end);
+		return (int) value;
+	}
+
+	/**
+	 * builds the exception for the current line
+	 */
+	private ProgramFileException error(String problem) {
+		ProgramMetrics.PARSE_ERRORS.increment();
+		return new ProgramFileException(fileName, lineNumber, problem);
+	}
+
+	/**
+	 * decodes bytes of the mapped window into a String, through the scratch buffer
+	 */
+	private String decode(ByteBuffer buf, int start, int end) {
+		int length = end - start;
+		if(length > scratch.length)
+			scratch = new byte [Math.max(length, scratch.length * 2)];
+		for(int i = 0; i < length; i++)
+			scratch[i] = buf.get(start + i);
+		return new String(scratch, 0, length, charset);
+	}
+
+	private void skipSpaces(ByteBuffer buf, int end) {
+		while(pos < end && isSpace(buf.get(pos)))
+			pos++;
+	}
+
+	/**
+	 * returns the position just after the item starting at pos
+	 */
+	private int tokenEnd(ByteBuffer buf, int end) {
+		int i = pos;
+		while(i < end && !isSpace(buf.get(i)))
+			i++;
+		return i;
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t';
+	}
+
+	/**
+	 * returns the position of the next '\n' at or after start, or end if there is none
+	 */
+	private static int findLineEnd(ByteBuffer buf, int start, int end) {
+		for(int i = start; i < end; i++)
+			if(buf.get(i) == '\n')
+				return i;
+		return end;
+	}
+
+	/**
+	 * returns the end of the line without any '\r' before the '\n'
+	 */
+	private static int trimCarriageReturn(ByteBuffer buf, int start, int end) {
+		if(end > start && buf.get(end - 1) == '\r')
+			return end - 1;
+		return end;
+	}
+
+	/**
+	 * Open-addressing hash table from the encoded bytes of class IDs
+	 * to classes, so IDs read from a file can be looked up in place.
+	 */
+	static class IdByteIndex {
+		private byte [][] keys;
+		private FitnessClass [] values;
+		private int mask;
+
+		/**
+		 * builds the index over the given classes
+		 */
+		IdByteIndex(Collection<FitnessClass> classes, Charset charset) {
+			int size = Integer.highestOneBit(Math.max(classes.size() * 2, 2) - 1) << 1;
+			keys = new byte [size][];
+			values = new FitnessClass [size];
+			mask = size - 1;
+			for(FitnessClass fc : classes) {
+				byte [] key = fc.getClassID().getBytes(charset);
+				int slot = hash(key) & mask;
+				while(keys[slot] != null)
+					slot = (slot + 1) & mask;
+				keys[slot] = key;
+				values[slot] = fc;
+			}
+		}
+
+		/**
+		 * returns the class whose ID is the bytes [start, end) of buf, or null
+		 */
+		FitnessClass get(ByteBuffer buf, int start, int end) {
+			int slot = hash(buf, start, end) & mask;
+			while(keys[slot] != null) {
+				if(matches(keys[slot], buf, start, end))
+					return values[slot];
+				slot = (slot + 1) & mask;
+			}
+			return null;
+		}
+
+		private static boolean matches(byte [] key, ByteBuffer buf, int start, int end) {
+			if(key.length != end - start)
+				return false;
+			for(int i = 0; i < key.length; i++)
+				if(key[i] != buf.get(start + i))
+					return false;
+			return true;
+		}
+
+		private static int hash(byte [] key) {
+			int h = 0;
+			for(byte b : key)
+				h = 31 * h + b;
+			return h ^ (h >>> 16);
+		}
+
+		private static int hash(ByteBuffer buf, int start, int end) {
+			int h = 0;
+			for(int i = start; i < end; i++)
+				h = 31 * h + buf.get(i);
+			return h ^ (h >>> 16);
+		}
+	}
+}
@@ -0,0 +1,553 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Write-ahead journal of the changes made to a FitnessProgram since its
+ * last snapshot. Each added class, deleted class and attendance change
+ * is appended as a small record, so saving costs the size of the change
+ * rather than the size of the programme. A batch of classes added or
+ * deleted together is one record, so it is recovered all or nothing, and
+ * so is a batch of attendance figures, unless it is too large for one.
+ *
+ * Records are collected in memory and written and forced to disk in
+ * groups on the commit thread, every commit interval or as soon as enough
+ * are waiting, so many changes share one fsync and no change waits for
+ * the disk. Once the journal grows past a limit it
+ * is compacted: the programme is saved as a ProgramSnapshot and the
+ * journal emptied. Recovery loads the snapshot and replays the journal
+ * on top of it; a record cut short by a crash ends the replay there.
+ *
+ * Each record is its payload length, the CRC32 of its payload, then the
+ * payload: a type byte followed by the fields written by DataOutputStream.
+ *
+ * The programme calls the journal with its write lock held, so records are
+ * in the order the changes were made. Records are queued under the
+ * journal's lock, and taken from the queue under it, but only written
+ * and forced with the file lock held, which changes never take.
+ * Compaction holds the programme's read lock while it saves and empties
+ * the journal, and always takes it before the journal's locks, in the
+ * same order as the programme does; the file lock is taken before the
+ * journal's lock.
+ */
+public class ProgramJournal implements ProgramListener {
+	//class constants
+	private static final byte ADD = 1;
+	private static final byte DELETE = 2;
+	private static final byte ATTENDANCE = 3;
+	private static final byte BATCH = 4; //classes removed and added as one change
+	private static final byte ATTENDANCES = 5; //attendance figures set as one change
+	private static final int RECORD_HEADER_BYTES = 8;
+	private static final int MAX_RECORD_BYTES = 1 << 26; //room for a batch of many thousand classes
+	private static final int SPLIT_RECORD_BYTES = MAX_RECORD_BYTES / 2; //attendance batches are split past this
+	public static final long DEFAULT_COMMIT_INTERVAL = 50; //milliseconds
+	public static final int GROUP_COMMIT_BYTES = 64 * 1024; //write at once when this much is waiting
+	public static final long DEFAULT_COMPACT_SIZE = 16L * 1024 * 1024;
+
+	//instance variables
+	private final String snapshotFile;
+	private final long compactSize; //journal size that triggers compaction
+	private final Object fileLock = new Object(); //held while writing to the file, taken before lock
+	private final Object lock = new Object(); //guards everything below
+	private FileChannel channel; //journal file, open for appending
+	private ByteArrayOutputStream pending; //records not yet written
+	private ByteArrayOutputStream payload; //record being built
+	private DataOutputStream payloadOut;
+	private CRC32 crc;
+	private FitnessProgram program; //programme being journalled, or null
+	private IOException failure; //first write failure, reported by sync and close
+	private boolean commitQueued; //a group commit has been handed to the committer
+	private ScheduledExecutorService committer;
+	private final Runnable commitTask = new Runnable() {
+		public void run() {
+			commitQuietly();
+		}
+	};
+
+	/**
+	 * ProgramJournal constructor with the default commit interval and compaction size
+	 * @param journalFile the name of the journal file
+	 * @param snapshotFile the name of the snapshot file the journal applies to
+	 * @throws IOException if the journal file cannot be opened
+	 */
+	public ProgramJournal(String journalFile, String snapshotFile) throws IOException {
+		this(journalFile, snapshotFile, DEFAULT_COMMIT_INTERVAL, DEFAULT_COMPACT_SIZE);
+	}
+
+	/**
+	 * ProgramJournal constructor
+	 * @param journalFile the name of the journal file
+	 * @param snapshotFile the name of the snapshot file the journal applies to
+	 * @param commitInterval most milliseconds a record waits before being forced to disk
+	 * @param compactSize journal size in bytes after which compactIfNeeded compacts
+	 * @throws IOException if the journal file cannot be opened
+	 */
+	public ProgramJournal(String journalFile, String snapshotFile, long commitInterval,
+			long compactSize) throws IOException {
+		this.snapshotFile = snapshotFile;
+		this.compactSize = compactSize;
+		channel = FileChannel.open(Paths.get(journalFile), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.READ);
+		channel.position(channel.size());
+		pending = new ByteArrayOutputStream();
+		payload = new ByteArrayOutputStream();
+		payloadOut = new DataOutputStream(payload);
+		crc = new CRC32();
+		committer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "journal-commit");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		committer.scheduleWithFixedDelay(commitTask, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * loads the snapshot and replays the journal on top of it. A damaged
+	 * or incomplete record at the end of the journal is cut off.
+	 * Must be called before attach, so the replay is not journalled again.
+	 * @return the recovered programme, or null if there is no snapshot
+	 * @throws IOException if the snapshot or journal cannot be read
+	 */
+	public FitnessProgram recover() throws IOException {
+		if(!new File(snapshotFile).exists())
+			return null;
+		FitnessProgram fp = ProgramSnapshot.load(snapshotFile);
+		synchronized(fileLock) {
+			synchronized(lock) {
+				long good = replay(fp, channel, crc);
+				if(good < channel.size()) //drop a record cut short by a crash
+					channel.truncate(good);
+				channel.position(good);
+			}
+		}
+		return fp;
+	}
+
+	/**
+	 * loads a snapshot and replays its journal on top of it as recover
+	 * does, but only reads the files: a damaged or incomplete record at
+	 * the end of the journal ends the replay but is left in place. So a
+	 * programme can be read while another process journals to the files.
+	 * If the snapshot is replaced while the files are read, for instance
+	 * by the other process compacting, they are read again.
+	 * @param journalFile the name of the journal file, which need not exist
+	 * @param snapshotFile the name of the snapshot file
+	 * @return the programme, or null if there is no snapshot
+	 * @throws IOException if the snapshot or journal cannot be read
+	 */
+	public static FitnessProgram read(String journalFile, String snapshotFile) throws IOException {
+		File snapshot = new File(snapshotFile);
+		while(true) {
+			long modified = snapshot.lastModified();
+			if(modified == 0) //no snapshot
+				return null;
+			FitnessProgram fp = ProgramSnapshot.load(snapshotFile);
+			if(new File(journalFile).exists()) {
+				FileChannel in = FileChannel.open(Paths.get(journalFile), StandardOpenOption.READ);
+				try {
+					replay(fp, in, new CRC32());
+				}
+				finally {
+					in.close();
+				}
+			}
+			if(snapshot.lastModified() == modified) //the journal went with the snapshot read
+				return fp;
+		}
+	}
+
+	/**
+	 * starts journalling the changes to a programme. The programme must
+	 * match the snapshot plus the journal, for instance as returned by
+	 * recover, or have just been compacted.
+	 * @param fp the programme
+	 */
+	public void attach(FitnessProgram fp) {
+		synchronized(lock) {
+			if(program != null)
+				program.removeProgramListener(this);
+			program = fp;
+			fp.addProgramListener(this);
+		}
+	}
+
+	/**
+	 * saves the attached programme as a snapshot and empties the journal
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public void compact() throws IOException {
+		FitnessProgram fp;
+		synchronized(lock) {
+			fp = program;
+		}
+		if(fp == null)
+			throw new IllegalStateException("No programme attached to the journal");
+		long stamp = fp.lockForReading(); //no change can be made until the journal is emptied
+		try {
+			synchronized(fileLock) {
+				commit();
+				ProgramSnapshot.write(ProgramSnapshot.encode(fp), snapshotFile);
+				channel.truncate(0);
+				channel.position(0);
+				channel.force(true);
+			}
+		}
+		finally {
+			fp.unlockForReading(stamp);
+		}
+	}
+
+	/**
+	 * compacts the journal if it has grown past the compaction size
+	 * @return true if the journal was compacted
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public boolean compactIfNeeded() throws IOException {
+		synchronized(lock) {
+			if(channel.size() + pending.size() < compactSize)
+				return false;
+		}
+		compact();
+		return true;
+	}
+
+	/**
+	 * writes and forces every waiting record to disk now
+	 * @throws IOException if this or an earlier group commit failed
+	 */
+	public void sync() throws IOException {
+		commit();
+	}
+
+	/**
+	 * syncs the journal, stops journalling and closes the file
+	 * @throws IOException if the last records could not be written
+	 */
+	public void close() throws IOException {
+		committer.shutdown();
+		synchronized(fileLock) {
+			try {
+				commit();
+			}
+			finally {
+				synchronized(lock) {
+					if(program != null)
+						program.removeProgramListener(this);
+					program = null;
+				}
+				channel.close();
+			}
+		}
+	}
+
+	//ProgramListener methods, each appending one record
+	public void classAdded(FitnessClass fc) {
+		synchronized(lock) {
+			try {
+				payloadOut.writeByte(ADD);
+				writeClass(fc);
+				endRecord();
+			}
+			catch(IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	public void classRemoved(FitnessClass fc) {
+		synchronized(lock) {
+			try {
+				payloadOut.writeByte(DELETE);
+				payloadOut.writeUTF(fc.getClassID());
+				endRecord();
+			}
+			catch(IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	public void attendanceChanged(FitnessClass fc, int week, int attendance) {
+		synchronized(lock) {
+			try {
+				payloadOut.writeByte(ATTENDANCE);
+				payloadOut.writeUTF(fc.getClassID());
+				payloadOut.writeInt(week);
+				payloadOut.writeInt(attendance);
+				endRecord();
+			}
+			catch(IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * appends one record for the whole batch, so that on recovery it is
+	 * replayed in full or, if cut short by a crash, not at all
+	 */
+	public void classesChanged(List<FitnessClass> removed, List<FitnessClass> added) {
+		synchronized(lock) {
+			try {
+				payloadOut.writeByte(BATCH);
+				payloadOut.writeInt(removed.size());
+				for(FitnessClass fc : removed)
+					payloadOut.writeUTF(fc.getClassID());
+				payloadOut.writeInt(added.size());
+				for(FitnessClass fc : added)
+					writeClass(fc);
+				endRecord();
+			}
+			catch(IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * appends one record for the whole batch of figures, each run of
+	 * figures of one class in consecutive weeks written after the class's
+	 * ID once. A batch too large for one record is split over several.
+	 */
+	public void attendancesChanged(FitnessClass [] classes, int [] weeks, int [] attendances, int count) {
+		synchronized(lock) {
+			try {
+				int i = 0;
+				while(i < count) {
+					payloadOut.writeByte(ATTENDANCES);
+					while(i < count && payload.size() < SPLIT_RECORD_BYTES) {
+						int end = i + 1; //end of the run starting at i
+						while(end < count && classes[end] == classes[i] && weeks[end] == weeks[end - 1] + 1)
+							end++;
+						payloadOut.writeUTF(classes[i].getClassID());
+						payloadOut.writeInt(weeks[i]);
+						payloadOut.writeInt(end - i);
+						for(; i < end; i++)
+							payloadOut.writeInt(attendances[i]);
+					}
+					endRecord();
+				}
+			}
+			catch(IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * writes the fields of a class and its attendances to the record being built
+	 */
+	private void writeClass(FitnessClass fc) throws IOException {
+		payloadOut.writeUTF(fc.getClassID());
+		payloadOut.writeUTF(fc.getClassName());
+		payloadOut.writeUTF(fc.getClassTutor());
+		payloadOut.writeInt(fc.getClassDay());
+		payloadOut.writeInt(fc.getClassRoom());
+		payloadOut.writeInt(fc.getClassTime());
+		int weeks = program.getNumWeeks();
+		payloadOut.writeInt(weeks);
+		for(int week = 1; week <= weeks; week++)
+			payloadOut.writeInt(fc.getAttendance(week));
+	}
+
+	/**
+	 * frames the record built in payload and queues it for the next group commit
+	 */
+	private void endRecord() throws IOException {
+		crc.reset();
+		crc.update(payload.toByteArray(), 0, payload.size());
+		DataOutputStream out = new DataOutputStream(pending);
+		out.writeInt(payload.size());
+		out.writeInt((int) crc.getValue());
+		payload.writeTo(pending);
+		payload.reset();
+		if(pending.size() >= GROUP_COMMIT_BYTES && !commitQueued) { //don't let too much wait
+			commitQueued = true;
+			try {
+				committer.execute(commitTask);
+			}
+			catch(RejectedExecutionException e) {
+				//closing, and close commits what is waiting
+			}
+		}
+	}
+
+	/**
+	 * writes the waiting records and forces them to disk. The records are
+	 * taken from the queue under lock, then written with only fileLock
+	 * held, so changes can go on queueing records meanwhile. If they cannot
+	 * be written they are put back at the head of the queue, to be written
+	 * again before any queued since.
+	 */
+	private void commit() throws IOException {
+		synchronized(fileLock) {
+			byte [] records;
+			synchronized(lock) {
+				commitQueued = false;
+				if(failure != null) {
+					IOException e = failure;
+					failure = null;
+					throw e;
+				}
+				if(pending.size() == 0)
+					return;
+				records = pending.toByteArray();
+				pending.reset();
+			}
+			long start = channel.position();
+			try {
+				ByteBuffer buf = ByteBuffer.wrap(records);
+				while(buf.hasRemaining())
+					channel.write(buf);
+				channel.force(false);
+			}
+			catch(IOException e) {
+				synchronized(lock) {
+					ByteArrayOutputStream kept = new ByteArrayOutputStream(records.length + pending.size());
+					kept.write(records, 0, records.length);
+					pending.writeTo(kept);
+					pending = kept;
+				}
+				try {
+					channel.position(start); //write over any part that was written
+				}
+				catch(IOException again) {
+					e.addSuppressed(again);
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * commits, keeping any failure to report from sync or close
+	 */
+	private void commitQuietly() {
+		synchronized(lock) {
+			if(!channel.isOpen() || failure != null)
+				return;
+		}
+		try {
+			commit();
+		}
+		catch(IOException e) {
+			fail(e);
+		}
+	}
+
+	private void fail(IOException e) {
+		synchronized(lock) {
+			if(failure == null)
+				failure = e;
+		}
+	}
+
+	/**
+	 * applies the records of a journal file to the programme in order
+	 * @param fp the programme
+	 * @param channel the journal file, read from its start
+	 * @param crc the checksum to check each record with
+	 * @return the position just after the last good record
+	 */
+	private static long replay(FitnessProgram fp, FileChannel channel, CRC32 crc) throws IOException {
+		long size = channel.size();
+		if(size == 0)
+			return 0;
+		ByteBuffer buf = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+		while(buf.hasRemaining()) {
+			if(channel.read(buf, buf.position()) <= 0) //cut short since its size was read
+				break;
+		}
+		buf.flip();
+		long good = 0;
+		while(buf.remaining() >= RECORD_HEADER_BYTES) {
+			int length = buf.getInt();
+			int expected = buf.getInt();
+			if(length < 1 || length > MAX_RECORD_BYTES || length > buf.remaining())
+				break; //cut short
+			byte [] record = new byte [length];
+			buf.get(record);
+			crc.reset();
+			crc.update(record, 0, length);
+			if((int) crc.getValue() != expected)
+				break; //damaged
+			apply(fp, new DataInputStream(new ByteArrayInputStream(record)));
+			good = buf.position();
+		}
+		return good;
+	}
+
+	/**
+	 * applies one record to the programme
+	 */
+	private static void apply(FitnessProgram fp, DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		if(type == ADD)
+			fp.addClass(readClass(in));
+		else if(type == DELETE) {
+			String id = in.readUTF();
+			if(fp.getClassFromId(id) != null)
+				fp.deleteClass(id);
+		}
+		else if(type == ATTENDANCE) {
+			String id = in.readUTF();
+			int week = in.readInt();
+			int att = in.readInt();
+			FitnessClass fc = fp.getClassFromId(id);
+			if(fc != null)
+				fc.setAttendance(week, att);
+		}
+		else if(type == BATCH) {
+			for(int removed = in.readInt(); removed > 0; removed--) {
+				String id = in.readUTF();
+				if(fp.getClassFromId(id) != null)
+					fp.deleteClass(id);
+			}
+			for(int added = in.readInt(); added > 0; added--)
+				fp.addClass(readClass(in));
+		}
+		else if(type == ATTENDANCES)
+			readAttendances(fp, in);
+		else
+			throw new IOException("Unknown journal record type " + type);
+	}
+
+	/**
+	 * sets the figures of a record written by attendancesChanged, as one change
+	 */
+	private static void readAttendances(FitnessProgram fp, DataInputStream in) throws IOException {
+		AttendanceBatch batch = new AttendanceBatch();
+		while(in.available() > 0) {
+			FitnessClass fc = fp.getClassFromId(in.readUTF());
+			int week = in.readInt();
+			int figures = in.readInt();
+			batch.startLine(fc, week);
+			for(; figures > 0; figures--)
+				batch.addWeek(in.readInt());
+		}
+		batch.apply();
+	}
+
+	/**
+	 * reads a class written by writeClass
+	 */
+	private static FitnessClass readClass(DataInputStream in) throws IOException {
+		FitnessClass fc = new FitnessClass(in.readUTF(), in.readUTF(), in.readUTF());
+		fc.setClassDay(in.readInt());
+		fc.setClassRoom(in.readInt());
+		fc.setClassTime(in.readInt());
+		int weeks = in.readInt();
+		for(int week = 1; week <= weeks; week++) {
+			int att = in.readInt();
+			if(att != 0)
+				fc.setAttendance(week, att);
+		}
+		return fc;
+	}
+}
@@ -0,0 +1,48 @@
+import java.util.*;
+
+/**
+ * Receives notice of each change made to a FitnessProgram.
+ * Listeners are called on the thread that made the change, after
+ * the change has been made.
+ */
+public interface ProgramListener {
+	/**
+	 * called when a class has been added to the programme
+	 * @param fc the class added
+	 */
+	void classAdded(FitnessClass fc);
+
+	/**
+	 * called when a class has been removed from the programme
+	 * @param fc the class removed
+	 */
+	void classRemoved(FitnessClass fc);
+
+	/**
+	 * called when an attendance figure of a class in the programme has changed
+	 * @param fc the class
+	 * @param week the week whose figure changed
+	 * @param attendance the new figure
+	 */
+	void attendanceChanged(FitnessClass fc, int week, int attendance);
+
+	/**
+	 * called once when a batch of attendance figures has been set as one
+	 * change, e.g. by AttendanceBatch.apply, in place of an
+	 * attendanceChanged call for each figure
+	 * @param classes the class of each figure
+	 * @param weeks the week of each figure
+	 * @param attendances the new figures, in the order they were set
+	 * @param count the number of figures; the arrays may be longer
+	 */
+	void attendancesChanged(FitnessClass [] classes, int [] weeks, int [] attendances, int count);
+
+	/**
+	 * called once when a batch of classes has been removed and added as
+	 * one change, e.g. by FitnessProgram.scheduleNewClasses, in place of a
+	 * classRemoved or classAdded call for each class
+	 * @param removed the classes removed, removed before the others were added
+	 * @param added the classes added
+	 */
+	void classesChanged(List<FitnessClass> removed, List<FitnessClass> added);
+}
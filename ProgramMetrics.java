@@ -0,0 +1,193 @@
+import java.io.*;
+import java.lang.management.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+
+/**
+ * Counters and latency histograms for the programme's load, lookup,
+ * sort, report, save and check-in paths. They are shared by every
+ * programme in the process and cost a few uncontended atomic adds to
+ * update. Lookups are counted every time but, as they take only
+ * nanoseconds, timed for one in LOOKUP_SAMPLE_RATE of them. The figures
+ * can be read over JMX, under the uniwork.gym domain, once register
+ * has been called, or printed every so often with startDump.
+ */
+public class ProgramMetrics implements ProgramMetricsMBean {
+	//class constants
+	public static final String DOMAIN = "uniwork.gym";
+	public static final int LOOKUP_SAMPLE_RATE = 64; //must be a power of two
+
+	//counters
+	public static final LongAdder LINES_PARSED = new LongAdder(); //lines holding data, from any file
+	public static final LongAdder PARSE_ERRORS = new LongAdder();
+	public static final LongAdder ATTENDANCE_LINES = new LongAdder(); //lines set by populateAttendances
+	public static final LongAdder LOOKUPS = new LongAdder();
+	public static final LongAdder LOOKUP_MISSES = new LongAdder();
+	public static final LongAdder CHECK_INS = new LongAdder(); //counted by CheckInIngester
+	public static final LongAdder CHECK_INS_REFUSED = new LongAdder(); //unknown class, bad time or bad line
+	public static final LongAdder REPORT_CACHE_HITS = new LongAdder(); //reports reused unchanged
+	public static final LongAdder REPORT_ROWS_BUILT = new LongAdder(); //rows laid out by ReportCache
+
+	//timers
+	public static final LatencyHistogram LOAD = new LatencyHistogram("load"); //one file
+	public static final LatencyHistogram POPULATE = new LatencyHistogram("populateAttendances");
+	public static final LatencyHistogram LOOKUP = new LatencyHistogram("lookup"); //sampled
+	public static final LatencyHistogram SORT = new LatencyHistogram("sort");
+	public static final LatencyHistogram REPORT = new LatencyHistogram("report");
+	public static final LatencyHistogram SAVE = new LatencyHistogram("save");
+	public static final LatencyHistogram CHECK_IN_FLUSH = new LatencyHistogram("checkInFlush");
+
+	private static final LatencyHistogram [] TIMERS = {LOAD, POPULATE, LOOKUP, SORT, REPORT, SAVE,
+			CHECK_IN_FLUSH};
+	private static final ProgramMetrics INSTANCE = new ProgramMetrics();
+	private static boolean registered;
+	private static ScheduledExecutorService dumper;
+
+	private ProgramMetrics() {
+	}
+
+	/**
+	 * returns true if this lookup should be timed
+	 */
+	static boolean sampleLookup() {
+		return (ThreadLocalRandom.current().nextInt() & (LOOKUP_SAMPLE_RATE - 1)) == 0;
+	}
+
+	/**
+	 * registers the counters and each timer with the platform MBean
+	 * server. Calling it again does nothing.
+	 * @throws IllegalStateException if the MBeans cannot be registered
+	 */
+	public static synchronized void register() {
+		if(registered)
+			return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(INSTANCE, new ObjectName(DOMAIN + ":type=ProgramMetrics"));
+			for(LatencyHistogram timer : TIMERS)
+				server.registerMBean(timer, new ObjectName(DOMAIN + ":type=Latency,name=" + timer.getName()));
+			registered = true;
+		}
+		catch(JMException e) {
+			throw new IllegalStateException("Could not register the metrics: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * prints the metrics to out every so often, on a daemon thread, until
+	 * stopDump is called. Any dump already running is stopped first.
+	 * @param periodSeconds the seconds between dumps
+	 * @param out where to print them
+	 */
+	public static synchronized void startDump(long periodSeconds, final PrintStream out) {
+		if(periodSeconds <= 0)
+			throw new IllegalArgumentException("The period must be positive");
+		stopDump();
+		dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "metrics-dump");
+				t.setDaemon(true); //don't keep the programme running
+				return t;
+			}
+		});
+		dumper.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				out.print(dump());
+				out.flush();
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * stops the periodic dump, if there is one
+	 */
+	public static synchronized void stopDump() {
+		if(dumper != null) {
+			dumper.shutdownNow();
+			dumper = null;
+		}
+	}
+
+	/**
+	 * returns the counters on one line and then each timer on a line of its own
+	 */
+	public static String dump() {
+		StringBuilder text = new StringBuilder();
+		text.append("metrics linesParsed=").append(LINES_PARSED.sum())
+			.append(" parseErrors=").append(PARSE_ERRORS.sum())
+			.append(" attendanceLines=").append(ATTENDANCE_LINES.sum())
+			.append(" lookups=").append(LOOKUPS.sum())
+			.append(" lookupMisses=").append(LOOKUP_MISSES.sum())
+			.append(" checkIns=").append(CHECK_INS.sum())
+			.append(" checkInsRefused=").append(CHECK_INS_REFUSED.sum())
+			.append(" reportCacheHits=").append(REPORT_CACHE_HITS.sum())
+			.append(" reportRowsBuilt=").append(REPORT_ROWS_BUILT.sum())
+			.append(System.lineSeparator());
+		for(LatencyHistogram timer : TIMERS)
+			text.append("  ").append(timer).append(System.lineSeparator());
+		return text.toString();
+	}
+
+	/**
+	 * clears all counters and timers
+	 */
+	public static void resetAll() {
+		LINES_PARSED.reset();
+		PARSE_ERRORS.reset();
+		ATTENDANCE_LINES.reset();
+		LOOKUPS.reset();
+		LOOKUP_MISSES.reset();
+		CHECK_INS.reset();
+		CHECK_INS_REFUSED.reset();
+		REPORT_CACHE_HITS.reset();
+		REPORT_ROWS_BUILT.reset();
+		for(LatencyHistogram timer : TIMERS)
+			timer.reset();
+	}
+
+	//ProgramMetricsMBean methods
+	public long getLinesParsed() {
+		return LINES_PARSED.sum();
+	}
+
+	public long getParseErrors() {
+		return PARSE_ERRORS.sum();
+	}
+
+	public long getAttendanceLines() {
+		return ATTENDANCE_LINES.sum();
+	}
+
+	public long getLookups() {
+		return LOOKUPS.sum();
+	}
+
+	public long getLookupMisses() {
+		return LOOKUP_MISSES.sum();
+	}
+
+	public long getCheckIns() {
+		return CHECK_INS.sum();
+	}
+
+	public long getCheckInsRefused() {
+		return CHECK_INS_REFUSED.sum();
+	}
+
+	public long getReportCacheHits() {
+		return REPORT_CACHE_HITS.sum();
+	}
+
+	public long getReportRowsBuilt() {
+		return REPORT_ROWS_BUILT.sum();
+	}
+
+	public String getSummary() {
+		return dump();
+	}
+
+	public void reset() {
+		resetAll();
+	}
+}
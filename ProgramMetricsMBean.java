@@ -0,0 +1,33 @@
+/**
+ * JMX view of the ProgramMetrics counters. The timers are registered as
+ * LatencyHistogramMBeans of their own.
+ */
+public interface ProgramMetricsMBean {
+	long getLinesParsed();
+
+	long getParseErrors();
+
+	long getAttendanceLines();
+
+	long getLookups();
+
+	long getLookupMisses();
+
+	long getCheckIns();
+
+	long getCheckInsRefused();
+
+	long getReportCacheHits();
+
+	long getReportRowsBuilt();
+
+	/**
+	 * returns all the counters and timers as text, as printed by the periodic dump
+	 */
+	String getSummary();
+
+	/**
+	 * clears all counters and timers
+	 */
+	void reset();
+}
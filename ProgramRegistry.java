@@ -0,0 +1,297 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Holds the FitnessPrograms of many centres in one process, one programme
+ * per centre, and answers questions across all of them. Operations on
+ * one centre are passed to its programme, which is safe to share between
+ * threads, so centres never wait for each other.
+ *
+ * Cross-centre figures are worked out as a RollUp: each centre's part is
+ * taken from its own programme's running figures and indexes, in
+ * parallel on a fork-join pool, and the parts are merged in pairs. Each
+ * part costs about the same however many centres there are, so with
+ * enough threads the time grows only with the depth of the merge. On a
+ * single thread a roll-up costs a little more than reading the centres
+ * one after another; RegistryBenchmark measures both.
+ */
+public class ProgramRegistry {
+	//instance variables
+	private final ConcurrentHashMap<String, FitnessProgram> centres =
+			new ConcurrentHashMap<String, FitnessProgram>();
+	private final ForkJoinPool pool;
+
+	/**
+	 * ProgramRegistry constructor using the common fork-join pool
+	 */
+	public ProgramRegistry() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * ProgramRegistry constructor
+	 * @param pool the pool to work out roll-ups on
+	 */
+	public ProgramRegistry(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * adds a centre with its programme
+	 * @param centre the centre's name
+	 * @param fp the centre's programme
+	 * @throws IllegalArgumentException if there is already a centre of that name
+	 */
+	public void addCentre(String centre, FitnessProgram fp) {
+		if(centres.putIfAbsent(centre, fp) != null)
+			throw new IllegalArgumentException("Centre " + centre + " already exists");
+	}
+
+	/**
+	 * removes a centre
+	 * @param centre the centre's name
+	 * @return the centre's programme, or null if there was no such centre
+	 */
+	public FitnessProgram removeCentre(String centre) {
+		return centres.remove(centre);
+	}
+
+	/**
+	 * returns the programme of a centre
+	 * @param centre the centre's name
+	 * @throws IllegalArgumentException if there is no such centre
+	 */
+	public FitnessProgram getProgram(String centre) {
+		FitnessProgram fp = centres.get(centre);
+		if(fp == null)
+			throw new IllegalArgumentException("No such centre: " + centre);
+		return fp;
+	}
+
+	/**
+	 * returns the names of the centres, in alphabetical order
+	 */
+	public SortedSet<String> getCentres() {
+		return new TreeSet<String>(centres.keySet());
+	}
+
+	public int getNumCentres() {
+		return centres.size();
+	}
+
+	/**
+	 * adds a class to a centre's programme, as FitnessProgram.addClass
+	 * @param centre the centre's name
+	 * @param fc the class
+	 */
+	public void addClass(String centre, FitnessClass fc) {
+		getProgram(centre).addClass(fc);
+	}
+
+	/**
+	 * deletes a class from a centre's programme
+	 * @param centre the centre's name
+	 * @param id the class's ID
+	 * @return true if the class was deleted, false if there was no such class
+	 */
+	public boolean deleteClass(String centre, String id) {
+		return getProgram(centre).deleteClass(id);
+	}
+
+	/**
+	 * returns a class of a centre's programme, or null if there is no such class
+	 * @param centre the centre's name
+	 * @param id the class's ID
+	 */
+	public FitnessClass getClassFromId(String centre, String id) {
+		return getProgram(centre).getClassFromId(id);
+	}
+
+	/**
+	 * sets an attendance figure of a class of a centre's programme
+	 * @param centre the centre's name
+	 * @param id the class's ID
+	 * @param week the week
+	 * @param attendance the figure
+	 * @return true if it was set, false if there is no such class
+	 */
+	public boolean setAttendance(String centre, String id, int week, int attendance) {
+		FitnessClass fc = getProgram(centre).getClassFromId(id);
+		if(fc == null)
+			return false;
+		fc.setAttendance(week, attendance);
+		return true;
+	}
+
+	/**
+	 * returns the attendance figures of all classes of all centres
+	 */
+	public AttendanceStats getOverallStats() {
+		return rollUp(new RollUp<AttendanceStats>() {
+			protected AttendanceStats part(String centre, FitnessProgram fp) {
+				return fp.getOverallStats();
+			}
+
+			protected AttendanceStats merge(AttendanceStats a, AttendanceStats b) {
+				return a.merge(b);
+			}
+
+			protected AttendanceStats empty() {
+				return AttendanceStats.EMPTY;
+			}
+		});
+	}
+
+	/**
+	 * returns the overall average attendance of all classes of all
+	 * centres, as FitnessProgram.getOverallAvg does for one
+	 * @return the average, or 0 if there are no classes
+	 */
+	public double getOverallAvg() {
+		return getOverallStats().getAverage();
+	}
+
+	/**
+	 * returns the k classes with the highest average attendance over all
+	 * centres, highest first. Each centre gives its own top k, and the
+	 * lists are merged keeping only the first k.
+	 * @param k the number of classes
+	 * @return the classes, fewer than k if there are fewer classes
+	 */
+	public List<CentreClass> getTopClasses(final int k) {
+		return rollUp(new RollUp<List<CentreClass>>() {
+			protected List<CentreClass> part(String centre, FitnessProgram fp) {
+				List<CentreClass> top = new ArrayList<CentreClass>();
+				for(FitnessClass fc : fp.getTopClasses(k))
+					top.add(new CentreClass(centre, fc));
+				return top;
+			}
+
+			protected List<CentreClass> merge(List<CentreClass> a, List<CentreClass> b) {
+				return mergeTop(a, b, k);
+			}
+
+			protected List<CentreClass> empty() {
+				return new ArrayList<CentreClass>();
+			}
+		});
+	}
+
+	/**
+	 * returns the attendance figures of each tutor's classes over all
+	 * centres, by tutor in alphabetical order
+	 */
+	public SortedMap<String, AttendanceStats> getStatsByTutor() {
+		return rollUp(new RollUp<SortedMap<String, AttendanceStats>>() {
+			protected SortedMap<String, AttendanceStats> part(String centre, FitnessProgram fp) {
+				return fp.getStatsByTutor();
+			}
+
+			protected SortedMap<String, AttendanceStats> merge(SortedMap<String, AttendanceStats> a,
+					SortedMap<String, AttendanceStats> b) {
+				if(a.size() < b.size()) { //merge the smaller into the larger
+					SortedMap<String, AttendanceStats> swap = a;
+					a = b;
+					b = swap;
+				}
+				for(Map.Entry<String, AttendanceStats> entry : b.entrySet()) {
+					AttendanceStats stats = a.get(entry.getKey());
+					a.put(entry.getKey(), (stats == null) ? entry.getValue() : stats.merge(entry.getValue()));
+				}
+				return a;
+			}
+
+			protected SortedMap<String, AttendanceStats> empty() {
+				return new TreeMap<String, AttendanceStats>();
+			}
+		});
+	}
+
+	/**
+	 * works out a roll-up over every centre on the registry's pool. Each
+	 * centre's programme is read at a moment of its own, as centres are
+	 * independent and are not stopped while the others are read.
+	 * @param rollUp the roll-up
+	 * @return the merged result, or the roll-up's empty result if there are no centres
+	 */
+	public <T> T rollUp(RollUp<T> rollUp) {
+		List<Map.Entry<String, FitnessProgram>> shards =
+				new ArrayList<Map.Entry<String, FitnessProgram>>(centres.entrySet());
+		if(shards.isEmpty())
+			return rollUp.empty();
+		return pool.invoke(new RollUpTask<T>(rollUp, shards, 0, shards.size()));
+	}
+
+	/**
+	 * returns the first k of two lists in CentreClass.RANKING_ORDER
+	 */
+	static List<CentreClass> mergeTop(List<CentreClass> a, List<CentreClass> b, int k) {
+		List<CentreClass> merged = new ArrayList<CentreClass>(Math.min(k, a.size() + b.size()));
+		int i = 0;
+		int j = 0;
+		while(merged.size() < k && (i < a.size() || j < b.size())) {
+			if(j == b.size() || (i < a.size() && CentreClass.RANKING_ORDER.compare(a.get(i), b.get(j)) <= 0))
+				merged.add(a.get(i++));
+			else
+				merged.add(b.get(j++));
+		}
+		return merged;
+	}
+
+	/**
+	 * A figure worked out over all centres from mergeable parts, one per
+	 * centre. merge must be associative, as parts are merged in pairs in
+	 * no fixed grouping, and may change and return either of its arguments.
+	 */
+	public abstract static class RollUp<T> {
+		/**
+		 * returns one centre's part
+		 * @param centre the centre's name
+		 * @param fp the centre's programme
+		 */
+		protected abstract T part(String centre, FitnessProgram fp);
+
+		/**
+		 * returns two parts merged into one
+		 */
+		protected abstract T merge(T a, T b);
+
+		/**
+		 * returns the result when there are no centres; null unless overridden
+		 */
+		protected T empty() {
+			return null;
+		}
+	}
+
+	/**
+	 * Fork-join task that works out the parts of a run of centres,
+	 * splitting the run in half until each task has one centre, and
+	 * merges the halves' results
+	 */
+	private static class RollUpTask<T> extends RecursiveTask<T> {
+		private final RollUp<T> rollUp;
+		private final List<Map.Entry<String, FitnessProgram>> shards;
+		private final int from;
+		private final int to;
+
+		RollUpTask(RollUp<T> rollUp, List<Map.Entry<String, FitnessProgram>> shards, int from, int to) {
+			this.rollUp = rollUp;
+			this.shards = shards;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected T compute() {
+			if(to - from == 1) {
+				Map.Entry<String, FitnessProgram> shard = shards.get(from);
+				return rollUp.part(shard.getKey(), shard.getValue());
+			}
+			int mid = (from + to) >>> 1;
+			RollUpTask<T> right = new RollUpTask<T>(rollUp, shards, mid, to);
+			right.fork();
+			T left = new RollUpTask<T>(rollUp, shards, from, mid).compute();
+			return rollUp.merge(left, right.join());
+		}
+	}
+}
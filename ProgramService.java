@@ -0,0 +1,543 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import com.sun.net.httpserver.*;
+
+/**
+ * Headless HTTP/JSON front-end to a FitnessProgram, on the JDK's built-in
+ * HTTP server. Each request runs on its own virtual thread where the JDK
+ * has them (Java 21 on), otherwise on a cached thread pool. FitnessProgram
+ * is safe to share between threads, so requests are not serialised here.
+ *
+ * The API:
+ * GET /classes - every class, in timetable order
+ * POST /classes - add a class given as {"id", "name", "tutor"}, in a slot
+ * chosen by ClassScheduler, or in the slot given by "day", "room" and "time" if
+ * present, which must be vacant
+ * GET /classes/{id} - one class
+ * DELETE /classes/{id} - delete a class
+ * PUT /classes/{id}/attendance/{week} - set an attendance, given as {"attendance"}
+ * POST /checkins - count turnstile check-ins, given as plain text lines of a
+ * class ID and a time in milliseconds since the epoch, with a CheckInIngester;
+ * answers {"counted"}, and the counts reach the attendances within a second
+ * GET /report - the attendance report, highest average first
+ */
+public class ProgramService {
+	//class constants
+	public static final int DEFAULT_PORT = 8080;
+	private static final int BACKLOG = 4096; //connections waiting to be accepted
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final long CHECK_IN_FLUSH_MILLIS = 1000; //most time before check-ins reach the programme
+	private static final Logger LOG = Logger.getLogger(ProgramService.class.getName());
+
+	//instance variables
+	private FitnessProgram program;
+	private ProgramJournal journal; //journal of changes, or null
+	private CheckInIngester checkIns; //counts check-ins into the programme
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * ProgramService constructor, for a term starting now
+	 * @param fp the programme to serve
+	 * @param journal the journal the programme's changes go to, or null
+	 * @param port the port to listen on
+	 * @throws IOException if the port cannot be opened
+	 */
+	public ProgramService(FitnessProgram fp, ProgramJournal journal, int port) throws IOException {
+		this(fp, journal, port, System.currentTimeMillis());
+	}
+
+	/**
+	 * ProgramService constructor
+	 * @param fp the programme to serve
+	 * @param journal the journal the programme's changes go to, or null
+	 * @param port the port to listen on
+	 * @param termStartMillis the time week 1 starts, for check-ins
+	 * @throws IOException if the port cannot be opened
+	 */
+	public ProgramService(FitnessProgram fp, ProgramJournal journal, int port, long termStartMillis)
+			throws IOException {
+		program = fp;
+		this.journal = journal;
+		checkIns = new CheckInIngester(fp, termStartMillis);
+		server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+		server.createContext("/classes", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleClasses(exchange);
+			}
+		});
+		server.createContext("/checkins", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleCheckIns(exchange);
+			}
+		});
+		server.createContext("/report", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleReport(exchange);
+			}
+		});
+		executor = newRequestExecutor();
+		server.setExecutor(executor);
+	}
+
+	/**
+	 * starts answering requests
+	 */
+	public void start() {
+		checkIns.start(CHECK_IN_FLUSH_MILLIS);
+		server.start();
+	}
+
+	/**
+	 * stops answering requests, waiting up to the given time for those
+	 * under way, and adds the check-ins counted to the programme
+	 * @param delaySeconds the longest to wait
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		executor.shutdown();
+		checkIns.close();
+	}
+
+	/**
+	 * returns the port the service is listening on
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * returns an executor that runs each task on a new virtual thread,
+	 * or a cached thread pool on JDKs without virtual threads
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			//looked up by reflection so that this still compiles and runs before Java 21
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+					.invoke(null);
+		}
+		catch(ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * handles /classes and the paths below it
+	 */
+	private void handleClasses(HttpExchange exchange) throws IOException {
+		try {
+			String [] path = exchange.getRequestURI().getPath().split("/"); //"", "classes", ...
+			String method = exchange.getRequestMethod();
+			if(path.length == 2) {
+				if(method.equals("GET"))
+					send(exchange, 200, classesJson(program.getClassesInTimetableOrder()));
+				else if(method.equals("POST"))
+					addClass(exchange);
+				else
+					sendError(exchange, 405, "Use GET or POST");
+				return;
+			}
+			String id = path[2];
+			FitnessClass fc = program.getClassFromId(id);
+			if(path.length == 3 && method.equals("GET")) {
+				if(fc == null)
+					sendError(exchange, 404, "No class with ID " + id);
+				else
+					send(exchange, 200, classJson(new StringBuilder(), fc).toString());
+			}
+			else if(path.length == 3 && method.equals("DELETE")) {
+				if(program.deleteClass(id)) {
+					changed();
+					send(exchange, 204, null);
+				}
+				else
+					sendError(exchange, 404, "No class with ID " + id);
+			}
+			else if(path.length == 5 && path[3].equals("attendance") && method.equals("PUT")) {
+				int week = Integer.parseInt(path[4]);
+				Map<String, String> body = readObject(exchange);
+				int att = Integer.parseInt(required(body, "attendance"));
+				if(week < 1 || week > AttendanceStore.MAX_WEEKS || att < 0)
+					sendError(exchange, 400, "Week must be 1 to " + AttendanceStore.MAX_WEEKS
+							+ " and attendance 0 upwards");
+				else if(fc == null)
+					sendError(exchange, 404, "No class with ID " + id);
+				else {
+					fc.setAttendance(week, att);
+					changed();
+					send(exchange, 200, classJson(new StringBuilder(), fc).toString());
+				}
+			}
+			else
+				sendError(exchange, 404, "No such resource");
+		}
+		catch(IllegalArgumentException e) { //includes NumberFormatException
+			sendError(exchange, 400, e.getMessage());
+		}
+		catch(RuntimeException e) { //the details are for the log, not the client
+			LOG.log(Level.SEVERE, "Could not answer " + exchange.getRequestMethod() + " "
+					+ exchange.getRequestURI(), e);
+			sendError(exchange, 500, "Internal error");
+		}
+	}
+
+	/**
+	 * adds the class given in the request body
+	 */
+	private void addClass(HttpExchange exchange) throws IOException {
+		Map<String, String> body = readObject(exchange);
+		String id = required(body, "id");
+		String name = required(body, "name");
+		String tutor = required(body, "tutor");
+		if(id.isEmpty() || name.isEmpty() || tutor.isEmpty()
+				|| (id + name + tutor).indexOf(' ') != -1) //must fit on a ClassesOut line
+			throw new IllegalArgumentException("ID, name and tutor must be single words");
+		if(body.containsKey("time")) { //given slot, which must be vacant
+			FitnessClass fc = new FitnessClass(id, name, tutor);
+			fc.setClassTime(Integer.parseInt(body.get("time")));
+			if(body.containsKey("day"))
+				fc.setClassDay(Integer.parseInt(body.get("day")));
+			if(body.containsKey("room"))
+				fc.setClassRoom(Integer.parseInt(body.get("room")));
+			if(fc.getClassRoom() < 1 || fc.getClassRoom() > Timetable.MAX_ROOMS)
+				throw new IllegalArgumentException("Room must be 1 to " + Timetable.MAX_ROOMS);
+			if(!program.addClassIfAbsent(fc)) { //checked and added in one step
+				if(program.getClassFromId(id) != null)
+					sendError(exchange, 409, "Class ID " + id + " is already in use");
+				else
+					sendError(exchange, 409, "There is already a class at day " + fc.getClassDay()
+							+ ", room " + fc.getClassRoom() + ", time " + fc.getClassTime());
+				return;
+			}
+		}
+		else {
+			try {
+				if(program.addClassFromGui(id, name, tutor) == null) {
+					sendError(exchange, 409, "There is no slot for another class when " + tutor + " is free");
+					return;
+				}
+			}
+			catch(IllegalArgumentException e) { //ID in use
+				sendError(exchange, 409, e.getMessage());
+				return;
+			}
+		}
+		changed();
+		send(exchange, 201, classJson(new StringBuilder(), program.getClassFromId(id)).toString());
+	}
+
+	/**
+	 * handles /checkins
+	 */
+	private void handleCheckIns(HttpExchange exchange) throws IOException {
+		if(!exchange.getRequestMethod().equals("POST")) {
+			sendError(exchange, 405, "Use POST");
+			return;
+		}
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), UTF8));
+			long counted = checkIns.readCheckIns(in);
+			send(exchange, 200, "{\"counted\":" + counted + "}");
+		}
+		catch(RuntimeException e) { //the details are for the log, not the client
+			LOG.log(Level.SEVERE, "Could not answer POST " + exchange.getRequestURI(), e);
+			sendError(exchange, 500, "Internal error");
+		}
+	}
+
+	/**
+	 * handles /report
+	 */
+	private void handleReport(HttpExchange exchange) throws IOException {
+		if(!exchange.getRequestMethod().equals("GET")) {
+			sendError(exchange, 405, "Use GET");
+			return;
+		}
+		FitnessClass [] sorted = program.makeSortedList();
+		StringBuilder json = new StringBuilder("{\"classes\":");
+		json.append(classesJson(Arrays.asList(sorted)));
+		json.append(",\"overallAverage\":").append(program.getOverallAvg()).append('}');
+		send(exchange, 200, json.toString());
+	}
+
+	/**
+	 * compacts the journal if it has grown large; called after each change
+	 */
+	private void changed() {
+		if(journal == null)
+			return;
+		try {
+			journal.compactIfNeeded();
+		}
+		catch(IOException e) {
+			LOG.log(Level.WARNING, "Could not compact the journal", e);
+		}
+	}
+
+	/**
+	 * writes a list of classes as a JSON array
+	 */
+	private static String classesJson(List<FitnessClass> classes) {
+		StringBuilder json = new StringBuilder(64 * classes.size() + 2).append('[');
+		for(int i = 0; i < classes.size(); i++) {
+			if(i > 0)
+				json.append(',');
+			classJson(json, classes.get(i));
+		}
+		return json.append(']').toString();
+	}
+
+	/**
+	 * writes one class as a JSON object
+	 */
+	private static StringBuilder classJson(StringBuilder json, FitnessClass fc) {
+		json.append("{\"id\":");
+		quote(json, fc.getClassID());
+		json.append(",\"name\":");
+		quote(json, fc.getClassName());
+		json.append(",\"tutor\":");
+		quote(json, fc.getClassTutor());
+		json.append(",\"day\":").append(fc.getClassDay());
+		json.append(",\"room\":").append(fc.getClassRoom());
+		json.append(",\"time\":").append(fc.getClassTime());
+		json.append(",\"attendances\":[");
+		for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++) {
+			if(week > 1)
+				json.append(',');
+			json.append(fc.getAttendance(week));
+		}
+		json.append("],\"average\":").append(fc.getAvgAttendance());
+		return json.append('}');
+	}
+
+	/**
+	 * writes a string as a JSON string
+	 */
+	private static void quote(StringBuilder json, String s) {
+		json.append('"');
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\')
+				json.append('\\').append(c);
+			else if(c < ' ')
+				json.append(String.format("\\u%04x", (int) c));
+			else
+				json.append(c);
+		}
+		json.append('"');
+	}
+
+	/**
+	 * reads a request body holding a flat JSON object of strings and numbers
+	 * @return the object's values as strings, by name
+	 * @throws IllegalArgumentException if the body is not such an object
+	 */
+	private static Map<String, String> readObject(HttpExchange exchange) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		InputStream in = exchange.getRequestBody();
+		byte [] buf = new byte [4096];
+		int n;
+		while((n = in.read(buf)) > 0)
+			bytes.write(buf, 0, n);
+		return parseObject(new String(bytes.toByteArray(), UTF8));
+	}
+
+	/**
+	 * parses a flat JSON object whose values are strings or numbers
+	 */
+	static Map<String, String> parseObject(String text) {
+		Map<String, String> values = new HashMap<String, String>();
+		int [] pos = {skipSpace(text, 0)};
+		expect(text, pos, '{');
+		if(peek(text, pos) == '}')
+			return values;
+		while(true) {
+			String name = parseString(text, pos);
+			expect(text, pos, ':');
+			String value;
+			if(peek(text, pos) == '"')
+				value = parseString(text, pos);
+			else { //a number
+				int start = pos[0];
+				while(pos[0] < text.length() && "+-.eE0123456789".indexOf(text.charAt(pos[0])) != -1)
+					pos[0]++;
+				value = text.substring(start, pos[0]);
+				if(value.isEmpty())
+					throw new IllegalArgumentException("Expected a string or number for " + name);
+			}
+			values.put(name, value);
+			if(peek(text, pos) == '}')
+				return values;
+			expect(text, pos, ',');
+		}
+	}
+
+	/**
+	 * parses a JSON string at pos, moving pos past it
+	 */
+	private static String parseString(String text, int [] pos) {
+		expect(text, pos, '"');
+		StringBuilder s = new StringBuilder();
+		int i = pos[0];
+		while(i < text.length() && text.charAt(i) != '"') {
+			char c = text.charAt(i++);
+			if(c == '\\') {
+				if(i >= text.length())
+					break;
+				char e = text.charAt(i++);
+				switch(e) {
+				case 'n': s.append('\n'); break;
+				case 't': s.append('\t'); break;
+				case 'r': s.append('\r'); break;
+				case 'b': s.append('\b'); break;
+				case 'f': s.append('\f'); break;
+				case 'u':
+					if(i + 4 > text.length())
+						throw new IllegalArgumentException("Bad escape in JSON string");
+					s.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+					i += 4;
+					break;
+				default: s.append(e);
+				}
+			}
+			else
+				s.append(c);
+		}
+		if(i >= text.length())
+			throw new IllegalArgumentException("Unterminated JSON string");
+		pos[0] = i + 1;
+		return s.toString();
+	}
+
+	/**
+	 * skips spaces, then checks for and skips the given character
+	 */
+	private static void expect(String text, int [] pos, char c) {
+		if(peek(text, pos) != c)
+			throw new IllegalArgumentException("Expected '" + c + "' in JSON at " + pos[0]);
+		pos[0] = skipSpace(text, pos[0] + 1);
+	}
+
+	/**
+	 * skips spaces and returns the next character, or 0 at the end
+	 */
+	private static char peek(String text, int [] pos) {
+		pos[0] = skipSpace(text, pos[0]);
+		return (pos[0] < text.length()) ? text.charAt(pos[0]) : 0;
+	}
+
+	private static int skipSpace(String text, int i) {
+		while(i < text.length() && Character.isWhitespace(text.charAt(i)))
+			i++;
+		return i;
+	}
+
+	private static String required(Map<String, String> body, String name) {
+		String value = body.get(name);
+		if(value == null)
+			throw new IllegalArgumentException("Missing \"" + name + "\"");
+		return value;
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		StringBuilder json = new StringBuilder("{\"error\":");
+		quote(json, (message == null) ? "Bad request" : message);
+		send(exchange, status, json.append('}').toString());
+	}
+
+	/**
+	 * sends a response with a JSON body, or none if body is null
+	 */
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		if(body == null) {
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+		byte [] bytes = body.getBytes(UTF8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	/**
+	 * loads the programme the same way as the GUI: from the snapshot and
+	 * journal if the snapshot is newer than the text input files,
+	 * otherwise from the text files, then journals its changes
+	 * @param classesIn the ClassesIn file
+	 * @param attendancesIn the AttendancesIn file
+	 * @param snapshotFile the snapshot file
+	 * @param journal the journal, or null
+	 * @return the programme
+	 * @throws IOException if the files cannot be read
+	 */
+	public static FitnessProgram load(String classesIn, String attendancesIn, String snapshotFile,
+			ProgramJournal journal) throws IOException {
+		if(isSnapshotCurrent(classesIn, attendancesIn, snapshotFile)) {
+			FitnessProgram fp = (journal != null) ? journal.recover() : ProgramSnapshot.load(snapshotFile);
+			if(journal != null)
+				journal.attach(fp);
+			return fp;
+		}
+		FitnessProgram fp = loadTextFiles(classesIn, attendancesIn);
+		if(journal != null) { //journal now starts from the text files
+			journal.attach(fp);
+			journal.compact();
+		}
+		return fp;
+	}
+
+	/**
+	 * loads the programme from the same files as load, but without
+	 * changing any of them: the journal is replayed on the snapshot but
+	 * neither cut short nor compacted, so a GUI or service journalling to
+	 * the same files meanwhile is not disturbed
+	 * @param classesIn the ClassesIn file
+	 * @param attendancesIn the AttendancesIn file
+	 * @param snapshotFile the snapshot file
+	 * @param journalFile the journal file, which need not exist
+	 * @return the programme
+	 * @throws IOException if the files cannot be read
+	 */
+	public static FitnessProgram read(String classesIn, String attendancesIn, String snapshotFile,
+			String journalFile) throws IOException {
+		if(isSnapshotCurrent(classesIn, attendancesIn, snapshotFile)) {
+			FitnessProgram fp = ProgramJournal.read(journalFile, snapshotFile);
+			if(fp != null) //unless removed since it was looked at
+				return fp;
+		}
+		return loadTextFiles(classesIn, attendancesIn);
+	}
+
+	/**
+	 * checks whether the snapshot exists and is newer than the text input files
+	 */
+	private static boolean isSnapshotCurrent(String classesIn, String attendancesIn, String snapshotFile) {
+		File snapshot = new File(snapshotFile);
+		return snapshot.exists() && snapshot.lastModified() >= new File(classesIn).lastModified()
+				&& snapshot.lastModified() >= new File(attendancesIn).lastModified();
+	}
+
+	/**
+	 * loads a new programme from the text input files
+	 */
+	private static FitnessProgram loadTextFiles(String classesIn, String attendancesIn) throws IOException {
+		FitnessProgram fp = new FitnessProgram();
+		try {
+			new ProgramFileLoader(fp).loadClasses(classesIn);
+			new AttendanceIngester(fp).ingest(Collections.singletonList(attendancesIn));
+		}
+		catch(NoSuchFileException e) {
+			System.out.println("File not found: " + e.getFile());
+		}
+		return fp;
+	}
+}
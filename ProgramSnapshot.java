@@ -0,0 +1,232 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Saves a whole FitnessProgram - its timetable shape, classes, slots and
+ * weekly attendances - to a compact binary file, and loads it back.
+ * The file is read in one go into a buffer and checked against a CRC32
+ * checksum before any of it is used; the class and attendance blocks are
+ * then read with bulk int reads. Snapshots are written to a temporary
+ * file which then replaces the old snapshot, so a crash while saving
+ * leaves the previous snapshot in place. The programme is copied into
+ * the buffer under its read lock, so the snapshot is of a single moment
+ * even while other threads change the programme.
+ *
+ * Layout (all ints big-endian):
+ * magic, version, days, rooms, first hour, last hour, weeks, classes,
+ * string count, then each string as a length and UTF-8 bytes,
+ * then per class: ID, name and tutor string numbers, day, room, time,
+ * then attendances week by week, one int per class in class order,
+ * then the CRC32 of everything before it.
+ */
+public class ProgramSnapshot {
+	//class constants
+	public static final int MAGIC = 0x46505331; //"FPS1"
+	public static final int VERSION = 1;
+	private static final int HEADER_INTS = 8;
+	private static final int INTS_PER_CLASS = 6;
+	private static final int CHECKSUM_BYTES = 8;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * writes a snapshot of the programme to a file
+	 * @param fp the programme to save
+	 * @param file the name of the snapshot file
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void save(FitnessProgram fp, String file) throws IOException {
+		ByteBuffer buf;
+		long stamp = fp.lockForReading();
+		try {
+			buf = encode(fp);
+		}
+		finally {
+			fp.unlockForReading(stamp);
+		}
+		write(buf, file);
+	}
+
+	/**
+	 * encodes the programme into a buffer ready to be written.
+	 * The caller must hold the programme's read lock.
+	 * @param fp the programme
+	 * @return the buffer, flipped
+	 * @throws IOException if the programme is too large for one snapshot
+	 */
+	static ByteBuffer encode(FitnessProgram fp) throws IOException {
+		List<FitnessClass> classes = new ArrayList<FitnessClass>(fp.getClasses());
+		int weeks = fp.getNumWeeks();
+
+		//number every distinct string, so repeated names and tutors are stored once
+		Map<String, Integer> stringNumbers = new HashMap<String, Integer>();
+		List<byte []> strings = new ArrayList<byte []>();
+		int [] classInts = new int [classes.size() * INTS_PER_CLASS];
+		int i = 0;
+		for(FitnessClass fc : classes) {
+			classInts[i++] = stringNumber(fc.getClassID(), stringNumbers, strings);
+			classInts[i++] = stringNumber(fc.getClassName(), stringNumbers, strings);
+			classInts[i++] = stringNumber(fc.getClassTutor(), stringNumbers, strings);
+			classInts[i++] = fc.getClassDay();
+			classInts[i++] = fc.getClassRoom();
+			classInts[i++] = fc.getClassTime();
+		}
+		int stringBytes = 0;
+		for(byte [] s : strings)
+			stringBytes += 4 + s.length;
+
+		long size = 4L * (HEADER_INTS + 1) + stringBytes + 4L * classInts.length
+				+ 4L * weeks * classes.size() + CHECKSUM_BYTES;
+		if(size > Integer.MAX_VALUE)
+			throw new IOException("Programme is too large for one snapshot file");
+		ByteBuffer buf = ByteBuffer.allocate((int) size);
+		buf.putInt(MAGIC).putInt(VERSION);
+		buf.putInt(fp.getNumDays()).putInt(fp.getNumRooms());
+		buf.putInt(fp.getFirstStartTime()).putInt(fp.getLastStartTime());
+		buf.putInt(weeks).putInt(classes.size());
+		buf.putInt(strings.size());
+		for(byte [] s : strings)
+			buf.putInt(s.length).put(s);
+		buf.asIntBuffer().put(classInts); //bulk write of the class block
+		buf.position(buf.position() + 4 * classInts.length);
+		int [] column = new int [classes.size()];
+		for(int week = 1; week <= weeks; week++) {
+			for(int c = 0; c < column.length; c++)
+				column[c] = classes.get(c).getAttendance(week);
+			buf.asIntBuffer().put(column);
+			buf.position(buf.position() + 4 * column.length);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), 0, buf.position());
+		buf.putLong(crc.getValue());
+		buf.flip();
+		return buf;
+	}
+
+	/**
+	 * writes an encoded snapshot to a temporary file and moves it over the old one
+	 * @param buf the encoded snapshot
+	 * @param file the name of the snapshot file
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(ByteBuffer buf, String file) throws IOException {
+		Path target = Paths.get(file).toAbsolutePath();
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			while(buf.hasRemaining())
+				channel.write(buf);
+			channel.force(true);
+		}
+		finally {
+			channel.close();
+		}
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * reads a programme back from a snapshot file
+	 * @param file the name of the snapshot file
+	 * @return the programme
+	 * @throws IOException if the file cannot be read, is not a snapshot,
+	 * is of an unknown version or fails its checksum
+	 */
+	public static FitnessProgram load(String file) throws IOException {
+		ByteBuffer buf = readFully(file);
+		if(buf.limit() < 4 * HEADER_INTS + CHECKSUM_BYTES)
+			throw new IOException(file + " is too short to be a snapshot");
+		if(buf.getInt(0) != MAGIC)
+			throw new IOException(file + " is not a programme snapshot");
+		if(buf.getInt(4) != VERSION)
+			throw new IOException(file + " is snapshot version " + buf.getInt(4)
+					+ ", expected " + VERSION);
+		int checked = buf.limit() - CHECKSUM_BYTES;
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), 0, checked);
+		if(crc.getValue() != buf.getLong(checked))
+			throw new IOException(file + " is damaged (checksum does not match)");
+
+		try {
+			buf.position(8);
+			int days = buf.getInt();
+			int rooms = buf.getInt();
+			int first = buf.getInt();
+			int last = buf.getInt();
+			int weeks = buf.getInt();
+			int numClasses = buf.getInt();
+			String [] strings = new String [buf.getInt()];
+			for(int i = 0; i < strings.length; i++) {
+				int length = buf.getInt();
+				strings[i] = new String(buf.array(), buf.position(), length, UTF8);
+				buf.position(buf.position() + length);
+			}
+			int [] classInts = new int [numClasses * INTS_PER_CLASS];
+			buf.asIntBuffer().get(classInts); //bulk read of the class block
+			buf.position(buf.position() + 4 * classInts.length);
+
+			FitnessProgram fp = new FitnessProgram(days, rooms, first, last);
+			FitnessClass [] classes = new FitnessClass [numClasses];
+			for(int c = 0, i = 0; c < numClasses; c++) {
+				FitnessClass fc = new FitnessClass(strings[classInts[i]], strings[classInts[i+1]],
+						strings[classInts[i+2]]);
+				fc.setClassDay(classInts[i+3]);
+				fc.setClassRoom(classInts[i+4]);
+				fc.setClassTime(classInts[i+5]);
+				i += INTS_PER_CLASS;
+				classes[c] = fc;
+			}
+			if(weeks > AttendanceStore.MAX_WEEKS)
+				throw new IllegalArgumentException("too many weeks: " + weeks);
+			int [][] columns = new int [weeks][numClasses];
+			for(int week = 1; week <= weeks; week++) {
+				buf.asIntBuffer().get(columns[week-1]); //bulk read of one week of attendances
+				buf.position(buf.position() + 4 * numClasses);
+			}
+			fp.loadClasses(classes, columns); //one lock, no figure set one at a time
+			return fp;
+		}
+		catch(BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+				| NegativeArraySizeException e) {
+			throw new IOException(file + " is not a valid snapshot: " + e, e);
+		}
+	}
+
+	/**
+	 * returns the number of a string, numbering it if it is new
+	 */
+	private static int stringNumber(String s, Map<String, Integer> numbers, List<byte []> strings) {
+		Integer number = numbers.get(s);
+		if(number == null) {
+			number = strings.size();
+			numbers.put(s, number);
+			strings.add(s.getBytes(UTF8));
+		}
+		return number;
+	}
+
+	/**
+	 * reads the whole file into a heap buffer with one bulk channel read
+	 */
+	private static ByteBuffer readFully(String file) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE)
+				throw new IOException(file + " is too large to be a snapshot");
+			ByteBuffer buf = ByteBuffer.allocate((int) size);
+			while(buf.hasRemaining())
+				if(channel.read(buf) < 0)
+					throw new EOFException(file + " ended early");
+			buf.flip();
+			return buf;
+		}
+		finally {
+			channel.close();
+		}
+	}
+}
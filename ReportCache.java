@@ -0,0 +1,218 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Keeps the attendance report of a FitnessProgram so that it is only
+ * made again after the programme changes. The report is kept with the
+ * programme version it was made at: while the version is the same the
+ * same text is returned. After a change only the rows of classes that
+ * were added or had an attendance changed are laid out again, and only
+ * those classes are sorted and merged into the previous ranking; the
+ * other rows are reused as they are. The overall average is worked out
+ * afresh. The text is the same as ReportWriter.makeReport gives for the
+ * programme as it is.
+ *
+ * The ranking and the new rows are worked out under the programme's read
+ * lock, as they are read from its ranking; the report text is then laid
+ * out from them without reading the programme, so changes are only held
+ * up while the changed rows are made.
+ */
+public class ReportCache implements ProgramListener {
+	//class constants
+	private static final int MERGE_LIMIT = 8; //sort afresh if more than 1/8 of the classes changed
+
+	//instance variables
+	private final FitnessProgram program;
+	//classes whose rows must be made again, with the programme version of
+	//their last change, added to by the programme's listener calls under its write lock
+	private final ConcurrentMap<FitnessClass, Long> changed = new ConcurrentHashMap<FitnessClass, Long>();
+	private final Map<FitnessClass, Row> rows = new HashMap<FitnessClass, Row>();
+	private FitnessClass [] ranking; //classes in the order of the report last made, or null
+	private String report; //the report last made, or null
+	private long reportVersion; //programme version the report was made at
+	private final StringWriter rowText = new StringWriter(); //where rows are laid out
+	private final ReportWriter rowWriter = new ReportWriter(rowText);
+
+	/**
+	 * ReportCache constructor. The cache listens to the programme until
+	 * dispose is called.
+	 * @param fp the programme
+	 */
+	public ReportCache(FitnessProgram fp) {
+		program = fp;
+		fp.addProgramListener(this);
+	}
+
+	/**
+	 * stops listening to the programme
+	 */
+	public void dispose() {
+		program.removeProgramListener(this);
+	}
+
+	/**
+	 * returns the programme reported on
+	 */
+	public FitnessProgram getProgram() {
+		return program;
+	}
+
+	/**
+	 * returns the report for the programme as it is now, making it again
+	 * only if the programme has changed since it was last made
+	 * @return the report text, as ReportFrame shows it
+	 */
+	public synchronized String getReport() {
+		if(report != null && program.getVersion() == reportVersion) {
+			ProgramMetrics.REPORT_CACHE_HITS.increment();
+			return report;
+		}
+		long start = System.nanoTime();
+		Plan plan = program.readLocked(new Supplier<Plan>() { //the programme must not change while planning
+			public Plan get() {
+				return makePlan();
+			}
+		});
+		for(FitnessClass fc : plan.changed.keySet()) //drop rows that are out of date, or of deleted classes
+			rows.remove(fc);
+		rows.putAll(plan.rows);
+		for(Map.Entry<FitnessClass, Long> entry : plan.changed.entrySet()) //unless changed again since
+			changed.remove(entry.getKey(), entry.getValue());
+		ranking = plan.ranking;
+		try {
+			StringWriter text = new StringWriter((report == null) ? 256 : report.length() + 256);
+			ReportWriter writer = new ReportWriter(text);
+			writer.writeHeader();
+			for(FitnessClass fc : ranking) {
+				Row row = rows.get(fc);
+				writer.writeRow(row.text, row.total);
+			}
+			writer.writeOverallAverage();
+			writer.flush();
+			report = text.toString();
+		}
+		catch(IOException e) { //a StringWriter never throws
+			throw new UncheckedIOException(e);
+		}
+		reportVersion = plan.version;
+		ProgramMetrics.REPORT.recordSince(start);
+		return report;
+	}
+
+	/**
+	 * works out the ranking and the rows to make again for the programme
+	 * as it is, changing nothing of the cache. Called with the read lock held.
+	 */
+	private Plan makePlan() {
+		Plan plan = new Plan();
+		plan.version = program.getVersion();
+		plan.changed = new HashMap<FitnessClass, Long>(changed);
+		if(ranking == null || plan.changed.size() > ranking.length / MERGE_LIMIT)
+			plan.ranking = program.makeSortedListLocked();
+		else
+			plan.ranking = mergeChanged(plan.changed.keySet());
+		plan.rows = new HashMap<FitnessClass, Row>();
+		try {
+			for(FitnessClass fc : plan.ranking)
+				if(plan.changed.containsKey(fc) || !rows.containsKey(fc))
+					plan.rows.put(fc, makeRow(fc));
+		}
+		catch(IOException e) { //a StringWriter never throws
+			throw new UncheckedIOException(e);
+		}
+		return plan;
+	}
+
+	/**
+	 * returns the classes in ranking order by taking the changed classes
+	 * out of the previous ranking, sorting those still in the programme,
+	 * and merging them back in. The other classes' totals and slots have
+	 * not changed, so they are still in order among themselves.
+	 */
+	private FitnessClass [] mergeChanged(Set<FitnessClass> stale) {
+		List<FitnessClass> moved = new ArrayList<FitnessClass>();
+		for(FitnessClass fc : stale)
+			if(fc.getProgram() == program) //not deleted
+				moved.add(fc);
+		Collections.sort(moved, FitnessClass.RANKING_ORDER);
+		FitnessClass [] merged = new FitnessClass [program.getNumClasses()];
+		int m = 0;
+		int n = 0;
+		for(FitnessClass fc : ranking) {
+			if(stale.contains(fc))
+				continue;
+			while(m < moved.size() && FitnessClass.RANKING_ORDER.compare(moved.get(m), fc) < 0)
+				merged[n++] = moved.get(m++);
+			merged[n++] = fc;
+		}
+		while(m < moved.size())
+			merged[n++] = moved.get(m++);
+		return merged;
+	}
+
+	/**
+	 * lays out the row of one class
+	 */
+	private Row makeRow(FitnessClass fc) throws IOException {
+		rowText.getBuffer().setLength(0);
+		rowWriter.writeRow(fc);
+		rowWriter.flush();
+		ProgramMetrics.REPORT_ROWS_BUILT.increment();
+		return new Row(rowText.toString(), fc.getAttendanceTotal());
+	}
+
+	//ProgramListener methods
+	public void classAdded(FitnessClass fc) {
+		changed.put(fc, program.getVersion());
+	}
+
+	public void classRemoved(FitnessClass fc) {
+		changed.put(fc, program.getVersion());
+	}
+
+	public void attendanceChanged(FitnessClass fc, int week, int attendance) {
+		if(week <= FitnessClass.NUM_WEEKS) //later weeks are not in the report
+			changed.put(fc, program.getVersion());
+	}
+
+	public void attendancesChanged(FitnessClass [] classes, int [] weeks, int [] attendances, int count) {
+		Long version = program.getVersion();
+		for(int i = 0; i < count; i++)
+			if(weeks[i] <= FitnessClass.NUM_WEEKS)
+				changed.put(classes[i], version);
+	}
+
+	public void classesChanged(List<FitnessClass> removed, List<FitnessClass> added) {
+		Long version = program.getVersion();
+		for(FitnessClass fc : removed)
+			changed.put(fc, version);
+		for(FitnessClass fc : added)
+			changed.put(fc, version);
+	}
+
+	/**
+	 * A report worked out from the programme, ready to be laid out: the
+	 * changed classes it takes in, the ranking and the rows made again
+	 */
+	private static class Plan {
+		private long version;
+		private Map<FitnessClass, Long> changed;
+		private FitnessClass [] ranking;
+		private Map<FitnessClass, Row> rows;
+	}
+
+	/**
+	 * The text of one class's row and the attendance total it shows
+	 */
+	private static class Row {
+		private final String text;
+		private final int total;
+
+		Row(String text, int total) {
+			this.text = text;
+			this.total = total;
+		}
+	}
+}
@@ -9,10 +9,22 @@ public class ReportFrame extends JFrame {
 	//instance variables
 	private JTextArea reportDisplay;
 	private FitnessProgram fitnessProg;
+	private ReportCache reportCache; //where the report is kept between views, or null
 	
 	//Constructor for ReportFrame
 	public ReportFrame(FitnessProgram fp) {
+		this(fp, null);
+	}
+
+	/**
+	 * ReportFrame constructor taking the report from a cache, so that
+	 * it is only made again if the programme has changed
+	 * @param fp the programme
+	 * @param cache the programme's report cache, or null to make the report afresh
+	 */
+	public ReportFrame(FitnessProgram fp, ReportCache cache) {
 		fitnessProg = fp;
+		reportCache = cache;
 		
 		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
 		setTitle("Attendance Report");
@@ -31,24 +43,9 @@ public class ReportFrame extends JFrame {
 	 * a table by the ReportFrame
 	 */
 	private void buildReport() {
-		//build the top line
-		String headLine = String.format("%-5s%-15s%-18s%-20s%-15s%n%n", "Id", "Class", "Tutor", "Attendances",
-				"Average Attendance");
-		//build the content of the table
-		StringBuilder tableContent = new StringBuilder();
-		//get array of classes sorted by avg attendance to use in report
-		FitnessClass [] reportArray = fitnessProg.makeSortedList();
-		for(int i=0; i < reportArray.length; i++) { //loop through sorted array
-			FitnessClass fc = reportArray[i];
-			String classLine = fc.makeReportLine(); //get line of report for each class
-			tableContent.append(classLine); //add each line to tableContent
-		}
-		//build the overall average part of report
-		double avgForAll = fitnessProg.getOverallAvg(); //get overall average
-		//format overall average line
-		String overallAvgLine = String.format("%n%70s %.2f", "Overall Average:", avgForAll);
-		//join report by concatenating the 3 parts
-		String report = headLine + tableContent + overallAvgLine;
+		//ReportWriter lays out the heading, a line per class sorted
+		//by avg attendance, and the overall average
+		String report = (reportCache != null) ? reportCache.getReport() : ReportWriter.makeReport(fitnessProg);
 		reportDisplay.setText(report); //display report on JTextArea
 	}
 	
@@ -0,0 +1,276 @@
+import java.io.*;
+import java.nio.charset.*;
+
+/**
+ * Writes the attendance report straight to a Writer, one row at a time,
+ * in exactly the layout ReportFrame has always shown. Columns are padded
+ * and numbers written by hand into a char buffer, so no Formatter or
+ * per-row String is made. Averages are worked out from the integer totals
+ * and rounded half up to two places, which gives the same digits as
+ * String.format("%.2f") of the average as a double.
+ * The overall average is taken from the rows written, so it always
+ * agrees with them even if the programme changes while writing.
+ */
+public class ReportWriter {
+	//class constants
+	private static final String LINE_SEPARATOR = System.lineSeparator(); //what %n writes
+	private static final int BUFFER_SIZE = 8192;
+	private static final int ID_WIDTH = 5;
+	private static final int NAME_WIDTH = 15;
+	private static final int TUTOR_WIDTH = 15;
+	private static final int ATTENDANCES_WIDTH = 25;
+	private static final int WEEK_WIDTH = 3;
+	private static final int AVERAGE_WIDTH = 15;
+	private static final int OVERALL_LABEL_WIDTH = 70;
+
+	//instance variables
+	private Writer out;
+	private char [] buf;
+	private char [] digits; //scratch space for writing numbers
+	private int [] figures; //scratch space for a row's weekly figures
+	private int count; //chars in buf
+	private long column; //chars written since the start of the line
+	private long total; //sum of the attendance totals of the rows written
+	private long rows; //number of rows written
+
+	/**
+	 * ReportWriter constructor
+	 * @param out where the report is written; not closed by this writer
+	 */
+	public ReportWriter(Writer out) {
+		this.out = out;
+		buf = new char [BUFFER_SIZE];
+		digits = new char [19];
+		figures = new int [FitnessClass.NUM_WEEKS];
+	}
+
+	/**
+	 * writes the whole report for a programme: heading, a row per class
+	 * with the highest average first, then the overall average
+	 * @param fp the programme
+	 * @throws IOException if the report cannot be written
+	 */
+	public void writeReport(FitnessProgram fp) throws IOException {
+		long start = System.nanoTime();
+		writeHeader();
+		for(FitnessClass fc : fp.makeSortedList())
+			writeRow(fc);
+		writeOverallAverage();
+		flush();
+		ProgramMetrics.REPORT.recordSince(start);
+	}
+
+	/**
+	 * writes the heading line and the blank line after it
+	 */
+	public void writeHeader() throws IOException {
+		//the headings have widths of their own, not quite those of the columns
+		pad("Id", 5);
+		pad("Class", 15);
+		pad("Tutor", 18);
+		pad("Attendances", 20);
+		pad("Average Attendance", 15);
+		newLine();
+		newLine();
+	}
+
+	/**
+	 * writes the report line for one class: ID, name, tutor,
+	 * attendance for each week and average attendance
+	 * @param fc the class
+	 */
+	public void writeRow(FitnessClass fc) throws IOException {
+		for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++)
+			figures[week - 1] = fc.getAttendance(week);
+		writeRow(fc.getClassID(), fc.getClassName(), fc.getClassTutor(), figures);
+	}
+
+	/**
+	 * writes the report line for a class given by its fields, e.g. read
+	 * from the arrays of a CompactProgram
+	 * @param id the class ID
+	 * @param name the class name
+	 * @param tutor the tutor
+	 * @param weekly the attendance of weeks 1 to NUM_WEEKS, from index 0
+	 */
+	void writeRow(String id, String name, String tutor, int [] weekly) throws IOException {
+		pad(id, ID_WIDTH);
+		pad(name, NAME_WIDTH);
+		pad(tutor, TUTOR_WIDTH);
+		long start = column;
+		long classTotal = 0;
+		for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++) {
+			int attendance = weekly[week - 1];
+			classTotal += attendance;
+			padLeft(attendance, WEEK_WIDTH);
+		}
+		spaces(start + ATTENDANCES_WIDTH - column);
+		start = column;
+		appendFixed2(classTotal, FitnessClass.NUM_WEEKS); //average from the figures just written
+		spaces(start + AVERAGE_WIDTH - column);
+		newLine();
+		total += classTotal;
+		rows++;
+	}
+
+	/**
+	 * writes a row made earlier by writeRow, e.g. kept by a ReportCache,
+	 * and counts it towards the overall average in the same way
+	 * @param row the text of the row, ending with its line separator
+	 * @param classTotal the sum of the weekly figures shown in the row
+	 */
+	void writeRow(String row, long classTotal) throws IOException {
+		append(row);
+		column = 0;
+		total += classTotal;
+		rows++;
+	}
+
+	/**
+	 * writes a blank line and the overall average of the rows written so far
+	 */
+	public void writeOverallAverage() throws IOException {
+		newLine();
+		spaces(OVERALL_LABEL_WIDTH - "Overall Average:".length());
+		append("Overall Average: ");
+		//the average of averages is the total attendance over NUM_WEEKS x rows
+		appendFixed2(total, (long) FitnessClass.NUM_WEEKS * rows);
+	}
+
+	/**
+	 * writes out whatever is buffered and flushes the underlying Writer
+	 */
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	/**
+	 * makes the whole report as one String, as shown by ReportFrame
+	 * @param fp the programme
+	 * @return the report text
+	 */
+	public static String makeReport(FitnessProgram fp) {
+		StringWriter text = new StringWriter();
+		try {
+			new ReportWriter(text).writeReport(fp);
+		}
+		catch(IOException e) { //a StringWriter never throws
+			throw new UncheckedIOException(e);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * writes the report to a stream, in the platform's default charset
+	 * like the rest of the programme's text files
+	 * @param fp the programme
+	 * @param stream the stream, e.g. System.out or a file; it is flushed but not closed
+	 * @throws IOException if the report cannot be written
+	 */
+	public static void export(FitnessProgram fp, OutputStream stream) throws IOException {
+		Writer writer = new OutputStreamWriter(stream, Charset.defaultCharset());
+		new ReportWriter(writer).writeReport(fp);
+	}
+
+	/**
+	 * writes s and pads it with spaces on the right to the given width,
+	 * like %-Ns (longer strings are not cut)
+	 */
+	private void pad(String s, int width) throws IOException {
+		long start = column;
+		append(s);
+		spaces(start + width - column);
+	}
+
+	/**
+	 * writes n padded with spaces on the left to the given width, like %Nd
+	 */
+	private void padLeft(int n, int width) throws IOException {
+		int length = (n < 0) ? 1 : 0; //room for the sign
+		for(long rest = Math.abs((long) n); ; rest /= 10) {
+			length++;
+			if(rest < 10)
+				break;
+		}
+		spaces(width - length);
+		appendLong(n);
+	}
+
+	/**
+	 * writes the fraction numerator/denominator rounded half up
+	 * (away from zero) to two decimal places, like %.2f
+	 */
+	private void appendFixed2(long numerator, long denominator) throws IOException {
+		if(denominator == 0) { //no rows: the average is taken as 0
+			append("0.00");
+			return;
+		}
+		boolean negative = (numerator < 0) != (denominator < 0) && numerator != 0;
+		long n = Math.abs(numerator);
+		long d = Math.abs(denominator);
+		long hundredths = (200 * n + d) / (2 * d); //n x 100 / d, rounded half up
+		if(negative)
+			put('-');
+		appendLong(hundredths / 100);
+		put('.');
+		long fraction = hundredths % 100;
+		put((char) ('0' + fraction / 10));
+		put((char) ('0' + fraction % 10));
+	}
+
+	/**
+	 * writes a whole number in decimal without making a String
+	 */
+	private void appendLong(long n) throws IOException {
+		if(n < 0) {
+			put('-');
+			if(n == Long.MIN_VALUE) { //has no positive counterpart
+				append("9223372036854775808");
+				return;
+			}
+			n = -n;
+		}
+		int i = digits.length;
+		do {
+			digits[--i] = (char) ('0' + n % 10);
+			n /= 10;
+		} while(n != 0);
+		while(i < digits.length)
+			put(digits[i++]);
+	}
+
+	private void spaces(long n) throws IOException {
+		for(long i = 0; i < n; i++)
+			put(' ');
+	}
+
+	private void newLine() throws IOException {
+		append(LINE_SEPARATOR);
+		column = 0;
+	}
+
+	private void append(String s) throws IOException {
+		for(int i = 0; i < s.length(); ) {
+			if(count == buf.length)
+				drain();
+			int n = Math.min(s.length() - i, buf.length - count);
+			s.getChars(i, i + n, buf, count);
+			count += n;
+			column += n;
+			i += n;
+		}
+	}
+
+	private void put(char c) throws IOException {
+		if(count == buf.length)
+			drain();
+		buf[count++] = c;
+		column++;
+	}
+
+	private void drain() throws IOException {
+		out.write(buf, 0, count);
+		count = 0;
+	}
+}
@@ -2,9 +2,13 @@ import java.awt.*;
 import java.awt.event.*;
 
 import javax.swing.*;
+import javax.swing.table.*;
 
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
 import java.io.*;
+import java.nio.file.*;
 
 /**
  * Defines a GUI that displays details of a FitnessProgram object
@@ -14,21 +18,53 @@ public class SportsCentreGUI extends JFrame implements ActionListener {
 
 	/** GUI JButtons */
 	private JButton closeButton, attendanceButton;
-	private JButton addButton, deleteButton;
+	private JButton addButton, deleteButton, importButton;
+	private JButton cancelButton;
+
+	/** Progress of loading or saving */
+	private JProgressBar progressBar;
+	private javax.swing.Timer progressTimer;
+
+	/** Progress of the load or save under way, or null */
+	private LoadProgress progress;
+
+	/** true once the programme has been loaded in full, so that it may be saved as a snapshot */
+	private boolean loaded;
 
 	/** GUI JTextFields */
 	private JTextField idIn, classIn, tutorIn;
 
 	/** Display of class timetable */
-	private JTextArea display;
+	private JTable display;
+
+	/** Model of the timetable shown in display */
+	private TimetableTableModel timetableModel;
 
 	/** Display of attendance information */
 	private ReportFrame report;
 
+	/** Report of fitProg, kept between views */
+	private ReportCache reportCache;
+
 	/** Names of input text files */
 	private final String classesInFile = "ClassesIn.txt";
 	private final String classesOutFile = "ClassesOut.txt";
 	private final String attendancesFile = "AttendancesIn.txt";
+	private final String attendancesOutFile = "AttendancesOut.txt";
+	private final String snapshotFile = "Programme.snap";
+	private final String journalFile = "Programme.journal";
+
+	/** Journal of changes since the last snapshot, or null if it could not be opened */
+	private ProgramJournal journal;
+
+	/** Compacts and closes the journal off the event dispatch thread, one job at a time */
+	private final ExecutorService journalWork = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "journal-work");
+			t.setDaemon(true);
+			return t;
+		}
+	});
 
 	/** FitnessProgram object */
 	FitnessProgram fitProg;
@@ -41,19 +77,254 @@ public class SportsCentreGUI extends JFrame implements ActionListener {
 		setTitle("Boyd-Orr Sports Centre");
 		setSize(750, 300);
 		setLocation(300,150);
-		display = new JTextArea();
+		display = new JTable();
 		display.setFont(new Font("Courier", Font.PLAIN, 14));
-		display.setEditable(false);
-		//add display to ScrollPane - n.b. useful only if max number of classes were to increase
+		display.setRowHeight(20);
+		display.setAutoResizeMode(JTable.AUTO_RESIZE_OFF); //keep columns readable when there are many
+		display.setDefaultEditor(Object.class, null); //timetable is read-only
+		//add display to ScrollPane, which only has the visible rows drawn
 		JScrollPane scroller = new JScrollPane(display);
 		add(scroller, BorderLayout.CENTER);
 		layoutTop();
 		layoutBottom();
 
-		fitProg = new FitnessProgram();
-		initLadiesDay();
-		initAttendances();
+		fitProg = new FitnessProgram(); //empty until the loader publishes the programme
 		updateDisplay();
+		startLoading(); //window appears at once and fills in as the programme loads
+	}
+
+	/**
+	 * Loads the programme on a background thread, from the snapshot and
+	 * journal or else from the text files. Only complete stages are
+	 * published: once every class has been read a copy of the timetable is
+	 * shown, which the background thread no longer touches, and the
+	 * programme itself is shown, and the buttons come back, once the
+	 * attendances are in too.
+	 * If the load is cancelled or fails, what was shown is kept but is
+	 * not journalled, and is never saved over the snapshot.
+	 */
+	private void startLoading() {
+		final LoadProgress loadProgress = new LoadProgress();
+		setBusy(loadProgress);
+		new SwingWorker<FitnessProgram, FitnessProgram>() {
+			protected FitnessProgram doInBackground() throws IOException {
+				openJournal();
+				FitnessProgram fp = initFromSnapshot();
+				if(fp == null) { //fall back on the text files
+					fp = new FitnessProgram();
+					initLadiesDay(fp, loadProgress);
+					publish(copyTimetable(fp)); //show the timetable while the attendances are read
+					initAttendances(fp, loadProgress);
+					loadProgress.checkCancelled();
+					startJournal(fp, true); //journal now starts from the text files
+				}
+				else
+					startJournal(fp, false);
+				return fp;
+			}
+
+			protected void process(java.util.List<FitnessProgram> published) {
+				fitProg = published.get(published.size() - 1);
+				updateDisplay();
+			}
+
+			protected void done() {
+				try {
+					fitProg = get();
+					loaded = true;
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				catch(ExecutionException e) {
+					closeJournal();
+					if(!(e.getCause() instanceof InterruptedIOException)) //not cancelled by the user
+						JOptionPane.showMessageDialog(null, "There has been a problem loading the programme: "
+								+ e.getCause().getMessage(), "Sorry", JOptionPane.ERROR_MESSAGE);
+				}
+				updateDisplay();
+				setIdle();
+			}
+		}.execute();
+	}
+
+	/**
+	 * Makes a copy of a programme's classes, without their attendances,
+	 * which can be shown while the programme itself goes on changing
+	 * @param fp the programme
+	 * @return the copy
+	 */
+	private static FitnessProgram copyTimetable(FitnessProgram fp) {
+		FitnessProgram copy = new FitnessProgram(fp.getNumDays(), fp.getNumRooms(), fp.getFirstStartTime(),
+				fp.getLastStartTime());
+		for(FitnessClass fc : fp.getClassesInTimetableOrder())
+			copy.addClass(new FitnessClass(fc.getClassesOutLine()));
+		return copy;
+	}
+
+	/**
+	 * Shows the progress bar and cancel button, and disables the other
+	 * buttons, while a load or save runs
+	 * @param work the progress of the load or save
+	 */
+	private void setBusy(final LoadProgress work) {
+		progress = work;
+		setButtonsEnabled(false);
+		progressBar.setValue(0);
+		progressBar.setVisible(true);
+		cancelButton.setVisible(true);
+		progressTimer = new javax.swing.Timer(100, new ActionListener() {
+			public void actionPerformed(ActionEvent ae) {
+				int percent = work.getPercent();
+				progressBar.setIndeterminate(percent < 0); //size not known, e.g. loading a snapshot
+				if(percent >= 0)
+					progressBar.setValue(percent);
+			}
+		});
+		progressTimer.start();
+	}
+
+	/**
+	 * Hides the progress bar and cancel button and enables the other buttons
+	 */
+	private void setIdle() {
+		progressTimer.stop();
+		progress = null;
+		progressBar.setVisible(false);
+		cancelButton.setVisible(false);
+		setButtonsEnabled(true);
+	}
+
+	private void setButtonsEnabled(boolean enabled) {
+		closeButton.setEnabled(enabled);
+		attendanceButton.setEnabled(enabled);
+		addButton.setEnabled(enabled);
+		deleteButton.setEnabled(enabled);
+		importButton.setEnabled(enabled);
+	}
+
+	/**
+	 * Opens the journal of changes, or carries on without one if it
+	 * cannot be opened
+	 */
+	private void openJournal() {
+		try {
+			journal = new ProgramJournal(journalFile, snapshotFile);
+		}
+		catch(IOException e) {
+			System.out.println("Could not open " + journalFile + ", changes will only be saved on exit");
+			journal = null;
+		}
+	}
+
+	/**
+	 * Closes the journal without journalling any more changes. The last
+	 * records are forced to disk on the journal's background thread.
+	 */
+	private void closeJournal() {
+		final ProgramJournal toClose = journal;
+		journal = null;
+		if(toClose == null)
+			return;
+		journalWork.execute(new Runnable() {
+			public void run() {
+				try {
+					toClose.close();
+				}
+				catch(IOException e) {
+					System.out.println("Could not close " + journalFile + ": " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits for the journal's background thread to finish the work
+	 * given to it so far
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	private void finishJournalWork() throws InterruptedIOException {
+		try {
+			journalWork.submit(new Runnable() {
+				public void run() {
+				}
+			}).get();
+		}
+		catch(InterruptedException e) {
+			throw new InterruptedIOException("Interrupted waiting for the journal");
+		}
+		catch(ExecutionException e) { //the empty job cannot fail
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Loads the FitnessProgram from the last snapshot plus the journal of
+	 * changes made since, if the snapshot is newer than both text input files
+	 * @return the programme, or null if it is to be read from the text files
+	 */
+	private FitnessProgram initFromSnapshot() {
+		File snapshot = new File(snapshotFile);
+		//File.lastModified is 0 for missing files, so missing inputs never win
+		if(!snapshot.exists() || snapshot.lastModified() < new File(classesInFile).lastModified()
+				|| snapshot.lastModified() < new File(attendancesFile).lastModified())
+			return null;
+		try {
+			if(journal != null)
+				return journal.recover();
+			return ProgramSnapshot.load(snapshotFile);
+		}
+		catch(IOException e) {
+			System.out.println("Could not load " + snapshotFile + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Starts journalling changes to a programme
+	 * @param fp the programme
+	 * @param fromText true if fp was just read from the text files,
+	 * in which case a new snapshot is taken and the old journal dropped
+	 */
+	private void startJournal(FitnessProgram fp, boolean fromText) {
+		if(journal == null)
+			return;
+		journal.attach(fp);
+		if(fromText) {
+			try {
+				journal.compact();
+			}
+			catch(IOException e) {
+				System.out.println("Could not save " + snapshotFile + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Compacts the journal into a new snapshot once it has grown large.
+	 * Called after each change; the snapshot is written on the journal's
+	 * background thread, and any problem is shown back on the event
+	 * dispatch thread.
+	 */
+	private void compactJournal() {
+		final ProgramJournal toCompact = journal;
+		if(toCompact == null)
+			return;
+		journalWork.execute(new Runnable() {
+			public void run() {
+				try {
+					toCompact.compactIfNeeded();
+				}
+				catch(final IOException e) {
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							JOptionPane.showMessageDialog(null, "There has been a problem saving the programme: "
+									+ e.getMessage(), "Sorry", JOptionPane.ERROR_MESSAGE);
+						}
+					});
+				}
+			}
+		});
 	}
 
 	/**
@@ -61,9 +332,12 @@ public class SportsCentreGUI extends JFrame implements ActionListener {
 	 * using data from the file ClassesIn.txt. Calls method
 	 * that reads from that file and passes contents to relevant
 	 * FitnessProgram method
+	 * @param fp the programme to load into
+	 * @param work the progress of the load
+	 * @throws InterruptedIOException if the load is cancelled
 	 */
-	public void initLadiesDay() {
-		readFromFile(classesInFile);
+	private void initLadiesDay(FitnessProgram fp, LoadProgress work) throws InterruptedIOException {
+		readFromFile(fp, classesInFile, work);
 	}
 
 	/**
@@ -71,82 +345,69 @@ public class SportsCentreGUI extends JFrame implements ActionListener {
 	 * from the file AttendancesIn.txt. Calls method
 	 * that reads from that file and passes contents to relevant
 	 * FitnessProgram method
+	 * @param fp the programme to load into
+	 * @param work the progress of the load
+	 * @throws InterruptedIOException if the load is cancelled
 	 */
-	public void initAttendances() {
-		readFromFile(attendancesFile);
+	private void initAttendances(FitnessProgram fp, LoadProgress work) throws InterruptedIOException {
+		readFromFile(fp, attendancesFile, work);
 	}
 	
 	/**
 	 * Opens and reads lines from file.
 	 * Depending on name of file, passes lines to relevant
 	 * FitnessProgram method to either add class to list or
-	 * populate attendances array of class
-	 * @param fileToRead the file to be read and passed to FitProg
+	 * populate attendances array of class. Classes are read by
+	 * a ProgramFileLoader and attendances by an AttendanceIngester,
+	 * which parses large files in parallel; both report any malformed line.
+	 * @param fp the programme to load into
+	 * @param fileToRead the file to be read and passed to fp
+	 * @param work the progress of the load
+	 * @throws InterruptedIOException if the load is cancelled
 	 */
-	private void readFromFile(String fileToRead) {
-		FileReader reader = null;
-		Scanner in = null;
-
+	private void readFromFile(FitnessProgram fp, String fileToRead, LoadProgress work)
+			throws InterruptedIOException {
 		try {
-			try {
-				reader = new FileReader(fileToRead);
-				in = new Scanner(reader);
-				while(in.hasNextLine()) {
-					String line = in.nextLine();
-					if(fileToRead.equals(classesInFile))
-						fitProg.addClassFromFile(line);
-					else if(fileToRead.equals(attendancesFile))
-						fitProg.populateAttendances(line);
-				}
+			if(fileToRead.equals(classesInFile)) {
+				ProgramFileLoader loader = new ProgramFileLoader(fp);
+				loader.setProgress(work);
+				loader.loadClasses(fileToRead);
 			}
-			finally {
-				if(reader != null)
-					reader.close();
-				if(in != null)
-					in.close(); 
+			else if(fileToRead.equals(attendancesFile)) {
+				AttendanceIngester ingester = new AttendanceIngester(fp);
+				ingester.setProgress(work);
+				ingester.ingest(Collections.singletonList(fileToRead));
 			}
 		}
-		catch(IOException e) {
+		catch(InterruptedIOException e) { //cancelled
+			throw e;
+		}
+		catch(NoSuchFileException e) {
 			System.out.println("File not found");
-		} 
+		}
+		catch(ProgramFileException e) {
+			System.out.println(e.getMessage()); //says which line of which file is wrong
+		}
+		catch(IOException e) {
+			System.out.println("Could not read " + fileToRead + ": " + e.getMessage());
+		}
 	}
 
 	/**
-	 * Instantiates timetable display and adds it to GUI
+	 * Shows the timetable of fitProg in the display table. The table
+	 * model follows later changes to fitProg by itself, so this is only
+	 * needed when fitProg is replaced.
 	 */
-	public void updateDisplay() {   
-		StringBuilder timeLine = new StringBuilder(); //first line of display
-		StringBuilder nameLine = new StringBuilder(); //second line of display
-		StringBuilder tutorLine = new StringBuilder(); //third line of display
-
-		int firstTime = FitnessProgram.FIRST_START_TIME;
-		int lastTime = FitnessProgram.LAST_START_TIME;
-
-		//cycle through each timeslot
-		for(int time = firstTime; time <= lastTime; time++) {
-			//add each timeslot to time line of display
-			timeLine.append(String.format(" %-12s", time + "-" + (time+1)));
-			//get FitnessClass object in relevant timeslot
-			FitnessClass fc = fitProg.getClassAtTime(time); 
-			if(fc != null) { //if there is a class at that time
-				//get and add class name to name line of display
-				String name = fc.getClassName();
-				nameLine.append(String.format(" %-12s", name));
-				//get and add tutor name to tutor line of display
-				String tutor = fc.getClassTutor();
-				tutorLine.append(String.format(" %-12s", tutor));
-			}
-			else { //if there is no class at that time
-				//display indication that timeslot is vacant
-				nameLine.append(String.format(" %-12s", "Available"));
-				tutorLine.append(String.format(" %-12s", ""));
-			}
-		}
-		timeLine.append("\n"); //add carriage return to first line
-		nameLine.append("\n"); //add carriage return to second line
-		//convert one of the StringBuilders to a String so they can all be concatenated
-		String timetable = timeLine.toString() + nameLine + tutorLine;
-		display.setText(timetable);
+	public void updateDisplay() {
+		if(timetableModel != null && timetableModel.getProgram() == fitProg)
+			return; //already showing fitProg
+		if(timetableModel != null) //stop following the old programme
+			timetableModel.dispose();
+		timetableModel = new TimetableTableModel(fitProg);
+		display.setModel(timetableModel);
+		TableColumnModel columns = display.getColumnModel();
+		for(int c = 0; c < columns.getColumnCount(); c++) //day and room are narrow
+			columns.getColumn(c).setPreferredWidth((c < 2) ? 45 : 130);
 	}
 
 	/**
@@ -160,6 +421,14 @@ public class SportsCentreGUI extends JFrame implements ActionListener {
 		attendanceButton = new JButton("View Attendances");
 		attendanceButton.addActionListener(this);
 		top.add(attendanceButton);
+		progressBar = new JProgressBar(0, 100);
+		progressBar.setStringPainted(true);
+		progressBar.setVisible(false); //only shown while loading or saving
+		top.add(progressBar);
+		cancelButton = new JButton("Cancel");
+		cancelButton.addActionListener(this);
+		cancelButton.setVisible(false);
+		top.add(cancelButton);
 		add(top, BorderLayout.NORTH);
 	}
 
@@ -197,12 +466,19 @@ public class SportsCentreGUI extends JFrame implements ActionListener {
 		bottom.add(tutLabel);
 		tutorIn = new JTextField();
 		bottom.add(tutorIn);
+		JPanel panel3 = new JPanel();
+		importButton = new JButton("Import");
+		importButton.addActionListener(this);
+		panel3.add(importButton);
+		bottom.add(panel3);
 
 		add(bottom, BorderLayout.SOUTH);
 	}
 
 	/**
-	 * Processes adding a class
+	 * Processes adding a class. The class is placed by the programme's
+	 * scheduler, so its tutor is not double-booked and the rooms are
+	 * kept evenly used.
 	 */
 	public void processAdding() {
 		//first check if there is room for another class
@@ -218,9 +494,14 @@ public class SportsCentreGUI extends JFrame implements ActionListener {
 			String cTutor = tutorIn.getText().trim();
 
 			if(checkInputInfo(idNum, cName, cTutor)) { //checkInputInfo returns true if info is OK
-				fitProg.addClassFromGui(idNum, cName, cTutor); //pass info to addNewClass of fitProg
-				clearTextFields();
-				updateDisplay(); //update display after new class is added
+				try {
+					fitProg.scheduleNewClasses(Collections.singletonList(new FitnessClass(idNum, cName, cTutor)));
+					compactJournal();
+				}
+				catch(ClassBatchException e) { //e.g. the tutor is busy at every free slot
+					showProblems(e.getProblems());
+				}
+				clearTextFields(); //the display repaints the new class's slot by itself
 			}
 		}
 	}
@@ -270,32 +551,128 @@ public class SportsCentreGUI extends JFrame implements ActionListener {
 
 
 	/**
-	 * Processes deleting a class
+	 * Processes importing classes from a file chosen by the user, with
+	 * an ID, name and tutor on each line like the text fields. The classes
+	 * are placed by the scheduler and added as one batch: if any line is
+	 * wrong or any class cannot be placed none are added, and every
+	 * problem is shown at once. The file is read and the classes added on
+	 * a background thread, with the buttons disabled until it is done.
+	 */
+	public void processImport() {
+		JFileChooser chooser = new JFileChooser(".");
+		if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+			return;
+		final File file = chooser.getSelectedFile();
+		final FitnessProgram fp = fitProg;
+		final ProgramJournal toCompact = journal;
+		setButtonsEnabled(false);
+		new SwingWorker<List<String>, Void>() {
+			protected List<String> doInBackground() {
+				List<FitnessClass> classes = new ArrayList<FitnessClass>();
+				List<String> problems = new ArrayList<String>();
+				try {
+					int lineNumber = 0;
+					for(String line : Files.readAllLines(file.toPath())) {
+						lineNumber++;
+						if(line.trim().isEmpty())
+							continue;
+						String [] tokens = line.trim().split("[ ]+");
+						if(tokens.length != 3)
+							problems.add("Line " + lineNumber + " does not have an ID, name and tutor");
+						else
+							classes.add(new FitnessClass(tokens[0], tokens[1], tokens[2]));
+					}
+				}
+				catch(IOException e) {
+					problems.add("Could not read " + file + ": " + e.getMessage());
+				}
+				if(!problems.isEmpty())
+					return problems;
+				try {
+					fp.scheduleNewClasses(classes); //the display is redrawn once for the whole batch
+				}
+				catch(ClassBatchException e) {
+					return e.getProblems();
+				}
+				try {
+					if(toCompact != null)
+						toCompact.compactIfNeeded();
+				}
+				catch(IOException e) {
+					problems.add("There has been a problem saving the programme: " + e.getMessage());
+				}
+				return problems;
+			}
+
+			protected void done() {
+				setButtonsEnabled(true);
+				try {
+					List<String> problems = get();
+					if(!problems.isEmpty())
+						showProblems(problems);
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				catch(ExecutionException e) {
+					showProblems(Collections.singletonList("Could not import " + file + ": "
+							+ e.getCause().getMessage()));
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Processes deleting classes. Several IDs can be given, separated by
+	 * spaces, and are deleted together; if any is not the ID of a class
+	 * none are deleted.
 	 */
 	public void processDeletion() {
-		String id = idIn.getText(); //get class ID input by user
+		String ids = idIn.getText().trim(); //get class IDs input by user
 		//check if no ID was input by user
-		if(id.isEmpty()) {
+		if(ids.isEmpty()) {
 			JOptionPane.showMessageDialog(null, "Please enter the ID of the class you wish to delete", 
 					"Need ID info", JOptionPane.ERROR_MESSAGE);
 		}
-		//check if input ID belongs to existing class or not
-		else if(fitProg.getClassFromId(id) == null) { //no such class exists
-			JOptionPane.showMessageDialog(null, "There is no class with the ID " + id, 
-					"Sorry", JOptionPane.ERROR_MESSAGE);
-		}
-		else { //if class with input ID exists, call deleteClass method of fitProg
-			fitProg.deleteClass(id);
-			updateDisplay(); //update display after deletion of class
+		else {
+			try {
+				fitProg.deleteClasses(Arrays.asList(ids.split("[ ]+"))); //the display repaints by itself
+				compactJournal();
+			}
+			catch(ClassBatchException e) { //e.g. no class has one of the IDs
+				showProblems(e.getProblems());
+			}
 		}
 		clearTextFields();
 	}
 
 	/**
-	 * Instantiates a new window and displays the attendance report
+	 * Shows the problems found with a batch of classes, the first few
+	 * in full and a count of the rest
+	 * @param problems the problems
+	 */
+	private void showProblems(List<String> problems) {
+		final int shown = 10;
+		StringBuilder message = new StringBuilder();
+		for(int i = 0; i < problems.size() && i < shown; i++)
+			message.append(problems.get(i)).append('\n');
+		if(problems.size() > shown)
+			message.append("... and ").append(problems.size() - shown).append(" more");
+		JOptionPane.showMessageDialog(null, message.toString().trim(), "Sorry", JOptionPane.ERROR_MESSAGE);
+	}
+
+	/**
+	 * Instantiates a new window and displays the attendance report.
+	 * The report is kept by a ReportCache, so it is only made again
+	 * (and then only the rows that changed) after fitProg changes.
 	 */
 	public void displayReport() {
-		report = new ReportFrame(fitProg); //instantiate new ReportFrame object
+		if(reportCache == null || reportCache.getProgram() != fitProg) { //fitProg has been replaced
+			if(reportCache != null)
+				reportCache.dispose();
+			reportCache = new ReportCache(fitProg);
+		}
+		report = new ReportFrame(fitProg, reportCache); //instantiate new ReportFrame object
 		report.setVisible(true);
 	}
 
@@ -310,25 +687,74 @@ public class SportsCentreGUI extends JFrame implements ActionListener {
 
 	/**
 	 * Writes lines to file representing class name, 
-	 * tutor and start time and then exits from the program
+	 * tutor and start time, and the attendances of each class,
+	 * and then exits from the program. Changes are already in the
+	 * journal, so it only needs its last records forcing to disk; without
+	 * a journal a full snapshot is saved instead, unless the load did not
+	 * finish. The files are written on a background thread, and the save
+	 * can be cancelled until the journal is closed.
 	 */
 	public void processSaveAndClose() {
-		PrintWriter classWriter = null;
-		try {
-			try{
-				classWriter = new PrintWriter(classesOutFile);
-				String text = fitProg.makeClassesOutText(); //get text to write to file
-				classWriter.write(text); //write text to file
+		final FitnessProgram fp = fitProg;
+		final boolean saveSnapshot = loaded;
+		final LoadProgress saveProgress = new LoadProgress();
+		saveProgress.addTotal(3); //three steps, one per file
+		setBusy(saveProgress);
+		new SwingWorker<Void, Void>() {
+			protected Void doInBackground() throws IOException {
+				long start = System.nanoTime();
+				writeToFile(classesOutFile, fp.makeClassesOutText());
+				saveProgress.advance(1);
+				saveProgress.checkCancelled();
+				writeToFile(attendancesOutFile, fp.makeAttendancesOutText());
+				saveProgress.advance(1);
+				saveProgress.checkCancelled();
+				if(journal != null) {
+					finishJournalWork(); //a compaction may still be running
+					journal.close();
+				}
+				else if(saveSnapshot)
+					ProgramSnapshot.save(fp, snapshotFile);
+				saveProgress.advance(1);
+				ProgramMetrics.SAVE.recordSince(start);
+				return null;
 			}
-			finally {
-				if(classWriter != null)
-					classWriter.close();
+
+			protected void done() {
+				try {
+					get();
+					System.exit(0); //if IO operations successful, exit program
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				catch(ExecutionException e) {
+					if(!(e.getCause() instanceof InterruptedIOException)) //not cancelled by the user
+						JOptionPane.showMessageDialog(null, "There has been a problem saving the programme: "
+								+ e.getCause().getMessage(), "Sorry", JOptionPane.ERROR_MESSAGE);
+				}
+				setIdle();
 			}
-			System.exit(0); //if IO operations successful, exit program
+		}.execute();
+	}
+
+	/**
+	 * Writes text to a file, replacing anything already in it
+	 * @param fileName the file to write
+	 * @param text the text to write
+	 * @throws IOException if the file cannot be written
+	 */
+	private void writeToFile(String fileName, String text) throws IOException {
+		PrintWriter writer = null;
+		try {
+			writer = new PrintWriter(fileName);
+			writer.write(text); //write text to file
+			if(writer.checkError())
+				throw new IOException("Could not write " + fileName);
 		}
-		catch(IOException e) {
-			JOptionPane.showMessageDialog(null, "There has been a problem with the classes out file", 
-					"Sorry", JOptionPane.ERROR_MESSAGE);
+		finally {
+			if(writer != null)
+				writer.close();
 		}
 	}
 
@@ -343,6 +769,12 @@ public class SportsCentreGUI extends JFrame implements ActionListener {
 			processAdding();
 		else if(ae.getSource() == deleteButton)
 			processDeletion();
+		else if(ae.getSource() == importButton)
+			processImport();
+		else if(ae.getSource() == cancelButton) {
+			if(progress != null) //stops at the loader's or saver's next check
+				progress.cancel();
+		}
 		else
 			processSaveAndClose();
 	}
@@ -0,0 +1,74 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Dictionary of Strings, such as class names or tutors, each stored once
+ * and given a code: 0 for the first String added, 1 for the next and so
+ * on. Objects can then hold the int code instead of a String of their
+ * own, and two Strings are equal exactly when their codes are. Codes are
+ * never taken back, so a table should only be used for values that
+ * repeat a lot. null is given the code -1 without being stored. Safe to
+ * use from many threads; looking up a String that is already in the
+ * table takes no lock.
+ */
+public class SymbolTable {
+	//instance variables
+	private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<String, Integer>();
+	private volatile String [] symbols = new String [16]; //symbols[code] is the String with that code
+	private int size; //number of codes given out, changed only under this table's lock
+
+	/**
+	 * returns the code of a String, adding it to the table if it is not already there
+	 * @param s the String
+	 * @return its code
+	 */
+	public int encode(String s) {
+		if(s == null)
+			return -1;
+		Integer code = codes.get(s);
+		if(code != null)
+			return code;
+		return add(s);
+	}
+
+	private synchronized int add(String s) {
+		Integer code = codes.get(s);
+		if(code != null) //added by another thread meanwhile
+			return code;
+		if(size == symbols.length)
+			symbols = Arrays.copyOf(symbols, size * 2);
+		symbols[size] = s;
+		codes.put(s, size); //the String is in symbols before its code can be found
+		return size++;
+	}
+
+	/**
+	 * returns the code of a String without adding it
+	 * @param s the String
+	 * @return its code, or -1 if it is not in the table
+	 */
+	public int codeOf(String s) {
+		if(s == null)
+			return -1;
+		Integer code = codes.get(s);
+		return (code == null) ? -1 : code;
+	}
+
+	/**
+	 * returns the String with a code
+	 * @param code a code given out by this table, or -1
+	 * @return the String
+	 */
+	public String decode(int code) {
+		if(code == -1)
+			return null;
+		return symbols[code];
+	}
+
+	/**
+	 * returns the number of Strings in the table
+	 */
+	public int size() {
+		return codes.size();
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Defines an immutable timeslot in a timetable, given by
+ * a day, a room and a start hour. Days and rooms are numbered
+ * from 1, in the same way as weeks of attendance.
+ */
+public class TimeSlot implements Comparable<TimeSlot> {
+	//instance variables
+	private final int day;
+	private final int room;
+	private final int hour;
+
+	/**
+	 * TimeSlot constructor
+	 * @param day the day of the slot (1 upwards)
+	 * @param room the room of the slot (1 upwards)
+	 * @param hour the start hour of the slot
+	 */
+	public TimeSlot(int day, int room, int hour) {
+		this.day = day;
+		this.room = room;
+		this.hour = hour;
+	}
+
+	//accessor methods
+	public int getDay() {
+		return day;
+	}
+
+	public int getRoom() {
+		return room;
+	}
+
+	public int getHour() {
+		return hour;
+	}
+
+	/**
+	 * orders slots by day, then room, then hour
+	 * @param other the TimeSlot being compared to this one
+	 */
+	public int compareTo(TimeSlot other) {
+		if(day != other.day)
+			return Integer.compare(day, other.day);
+		if(room != other.room)
+			return Integer.compare(room, other.room);
+		return Integer.compare(hour, other.hour);
+	}
+
+	public boolean equals(Object o) {
+		if(!(o instanceof TimeSlot))
+			return false;
+		TimeSlot other = (TimeSlot) o;
+		return day == other.day && room == other.room && hour == other.hour;
+	}
+
+	public int hashCode() {
+		return (day * 31 + room) * 31 + hour;
+	}
+
+	public String toString() {
+		return "day " + day + ", room " + room + ", " + hour + "-" + (hour + 1);
+	}
+}
@@ -0,0 +1,197 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Maps timeslots, keyed by (day, room, hour), to FitnessClass objects.
+ * Only occupied slots are stored, so memory grows with the number of
+ * classes rather than with the size of the grid, and each slot is
+ * found with a single hash lookup. The number of rooms grows on demand
+ * when a class is placed in a room beyond the current count.
+ * A FreeSlotMap is kept in step with the slots so that vacant
+ * slots can be found without scanning.
+ * Classes can be looked up from any thread while the timetable is being
+ * changed, but changes must be made by one thread at a time (FitnessProgram
+ * makes them under its write lock), and the free slot map must only be
+ * read under that lock.
+ */
+public class Timetable {
+	//class constants
+	public static final int DAYS_PER_WEEK = 7;
+	/** most rooms a timetable can have: the free slot map holds a word per room and day, so a
+	 * stray room number must not be able to size it, yet a million classes must still fit */
+	public static final int MAX_ROOMS = 1 << 16;
+	public static final int LATEST_HOUR = 23;
+
+	//instance variables
+	private int numDays; //number of days in the timetable (1 to DAYS_PER_WEEK)
+	private volatile int numRooms; //number of rooms currently in the timetable
+	private int firstHour; //start hour of the first slot of each day
+	private int lastHour; //start hour of the last slot of each day
+	private Map<Long, FitnessClass> slots; //occupied slots, keyed by slotKey
+	private FreeSlotMap freeSlots; //bitmap of occupied slots
+
+	/**
+	 * Timetable constructor
+	 * @param days the number of days
+	 * @param rooms the initial number of rooms
+	 * @param first the start hour of the first slot of each day
+	 * @param last the start hour of the last slot of each day
+	 */
+	public Timetable(int days, int rooms, int first, int last) {
+		if(days < 1 || days > DAYS_PER_WEEK)
+			throw new IllegalArgumentException("Number of days must be 1 to " + DAYS_PER_WEEK);
+		if(rooms < 1 || rooms > MAX_ROOMS)
+			throw new IllegalArgumentException("Number of rooms must be 1 to " + MAX_ROOMS);
+		if(first < 0 || last > LATEST_HOUR || first > last)
+			throw new IllegalArgumentException("Invalid hours " + first + " to " + last);
+		numDays = days;
+		numRooms = rooms;
+		firstHour = first;
+		lastHour = last;
+		slots = new ConcurrentHashMap<Long, FitnessClass>();
+		freeSlots = new FreeSlotMap(days, rooms, first, getHoursPerDay());
+	}
+
+	//accessor methods
+	public int getNumDays() {
+		return numDays;
+	}
+
+	public int getNumRooms() {
+		return numRooms;
+	}
+
+	public int getFirstHour() {
+		return firstHour;
+	}
+
+	public int getLastHour() {
+		return lastHour;
+	}
+
+	public int getHoursPerDay() {
+		return lastHour - firstHour + 1;
+	}
+
+	/**
+	 * returns the total number of slots in the grid
+	 * @return days x rooms x hours per day
+	 */
+	public long getNumSlots() {
+		return (long) numDays * numRooms * getHoursPerDay();
+	}
+
+	/**
+	 * returns the number of occupied slots
+	 * @return the number of classes in the timetable
+	 */
+	public int getNumOccupied() {
+		return slots.size();
+	}
+
+	/**
+	 * returns the bitmap of vacant slots, for vacancy queries.
+	 * It must not be changed except through this timetable.
+	 * @return the free slot map
+	 */
+	public FreeSlotMap getFreeSlots() {
+		return freeSlots;
+	}
+
+	/**
+	 * grows the number of rooms so that the given room exists.
+	 * The number of rooms never shrinks.
+	 * @param room the room that must exist
+	 */
+	public void ensureRoom(int room) {
+		if(room < 1 || room > MAX_ROOMS)
+			throw new IllegalArgumentException("No such room " + room);
+		if(room > numRooms) {
+			numRooms = room;
+			freeSlots.addRooms(room);
+		}
+	}
+
+	/**
+	 * checks whether the given slot lies within the grid
+	 * @return true if the day, room and hour are all in range
+	 */
+	public boolean isValidSlot(int day, int room, int hour) {
+		return day >= 1 && day <= numDays && room >= 1 && room <= numRooms
+				&& hour >= firstHour && hour <= lastHour;
+	}
+
+	/**
+	 * checks whether the given slot would lie within the grid once rooms
+	 * are added up to its room, without adding any
+	 * @return true if the day and hour are in range and the room is 1 to MAX_ROOMS
+	 */
+	public boolean canHoldSlot(int day, int room, int hour) {
+		return day >= 1 && day <= numDays && room >= 1 && room <= MAX_ROOMS
+				&& hour >= firstHour && hour <= lastHour;
+	}
+
+	/**
+	 * returns the class in the given slot, or null if the slot is vacant
+	 * or lies outside the grid
+	 */
+	public FitnessClass getClass(int day, int room, int hour) {
+		if(!isValidSlot(day, room, hour))
+			return null;
+		return slots.get(slotKey(day, room, hour));
+	}
+
+	/**
+	 * puts a class in the given slot
+	 * @return the class previously in that slot, or null if it was vacant
+	 */
+	public FitnessClass put(int day, int room, int hour, FitnessClass fc) {
+		if(!isValidSlot(day, room, hour))
+			throw new IllegalArgumentException("No such slot: day " + day + ", room " + room
+					+ ", hour " + hour);
+		freeSlots.occupy(day, room, hour);
+		return slots.put(slotKey(day, room, hour), fc);
+	}
+
+	/**
+	 * vacates the given slot
+	 * @return the class that was in the slot, or null if it was already vacant
+	 */
+	public FitnessClass remove(int day, int room, int hour) {
+		if(!isValidSlot(day, room, hour))
+			return null;
+		freeSlots.release(day, room, hour);
+		return slots.remove(slotKey(day, room, hour));
+	}
+
+	/**
+	 * returns all the classes in the timetable in slot order
+	 * (by day, then room, then hour)
+	 * @return list of classes
+	 */
+	public List<FitnessClass> classesInSlotOrder() {
+		Long [] keys = slots.keySet().toArray(new Long [0]);
+		Arrays.sort(keys); //slot keys sort in day, room, hour order
+		List<FitnessClass> ordered = new ArrayList<FitnessClass>(keys.length);
+		for(Long key : keys) {
+			FitnessClass fc = slots.get(key);
+			if(fc != null) //unless removed since the keys were copied
+				ordered.add(fc);
+		}
+		return ordered;
+	}
+
+	/**
+	 * returns all the classes in the timetable, in no particular order
+	 */
+	public Collection<FitnessClass> classes() {
+		return slots.values();
+	}
+
+	/**
+	 * packs a slot into a single long so that keys sort by day, then room, then hour
+	 */
+	static long slotKey(int day, int room, int hour) {
+		return ((long) day << 40) | ((long) room << 8) | hour;
+	}
+}
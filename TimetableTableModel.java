@@ -0,0 +1,132 @@
+import java.util.*;
+
+import javax.swing.*;
+import javax.swing.table.*;
+
+/**
+ * Table model showing a FitnessProgram's timetable, with a row for each
+ * room of each day and a column for each start time. Cells are read from
+ * the programme only when the table draws them, so only the visible part
+ * of a large timetable is ever rendered. The model listens to the
+ * programme and repaints just the slot that changed; changes made on
+ * other threads are passed to the Swing event thread.
+ */
+public class TimetableTableModel extends AbstractTableModel implements ProgramListener {
+	//class constants
+	private static final int SLOT_COLUMN = 2; //first column holding a slot, after day and room
+
+	//instance variables
+	private FitnessProgram program;
+	private int firstTime;
+	private int numTimes;
+	private int numRooms; //number of rooms shown, only changed on the event thread
+
+	/**
+	 * TimetableTableModel constructor. The model listens to the programme
+	 * until dispose is called.
+	 * @param fp the programme to show
+	 */
+	public TimetableTableModel(FitnessProgram fp) {
+		program = fp;
+		firstTime = fp.getFirstStartTime();
+		numTimes = fp.getLastStartTime() - firstTime + 1;
+		numRooms = fp.getNumRooms();
+		fp.addProgramListener(this);
+	}
+
+	/**
+	 * stops listening to the programme
+	 */
+	public void dispose() {
+		program.removeProgramListener(this);
+	}
+
+	/**
+	 * returns the programme shown
+	 */
+	public FitnessProgram getProgram() {
+		return program;
+	}
+
+	public int getRowCount() {
+		return program.getNumDays() * numRooms;
+	}
+
+	public int getColumnCount() {
+		return SLOT_COLUMN + numTimes;
+	}
+
+	public String getColumnName(int column) {
+		if(column == 0)
+			return "Day";
+		if(column == 1)
+			return "Room";
+		int time = firstTime + column - SLOT_COLUMN;
+		return time + "-" + (time + 1);
+	}
+
+	public Object getValueAt(int row, int column) {
+		int day = row / numRooms + 1;
+		int room = row % numRooms + 1;
+		if(column == 0)
+			return day;
+		if(column == 1)
+			return room;
+		FitnessClass fc = program.getClassAtSlot(day, room, firstTime + column - SLOT_COLUMN);
+		if(fc == null) //display indication that timeslot is vacant
+			return "Available";
+		return fc.getClassName() + " (" + fc.getClassTutor() + ")";
+	}
+
+	//ProgramListener methods
+	public void classAdded(FitnessClass fc) {
+		slotChanged(fc.getClassDay(), fc.getClassRoom(), fc.getClassTime());
+	}
+
+	public void classRemoved(FitnessClass fc) {
+		slotChanged(fc.getClassDay(), fc.getClassRoom(), fc.getClassTime());
+	}
+
+	public void attendanceChanged(FitnessClass fc, int week, int attendance) {
+		//attendances are not shown in the timetable
+	}
+
+	public void attendancesChanged(FitnessClass [] classes, int [] weeks, int [] attendances, int count) {
+		//attendances are not shown in the timetable
+	}
+
+	public void classesChanged(List<FitnessClass> removed, List<FitnessClass> added) {
+		Runnable update = new Runnable() { //a batch may touch any slot, so redraw the table once
+			public void run() {
+				numRooms = program.getNumRooms();
+				fireTableDataChanged();
+			}
+		};
+		if(SwingUtilities.isEventDispatchThread())
+			update.run();
+		else
+			SwingUtilities.invokeLater(update);
+	}
+
+	/**
+	 * repaints the cell of one slot, on the event thread. If rooms have
+	 * been added the rows move, so the whole table is redrawn instead.
+	 */
+	private void slotChanged(final int day, final int room, final int time) {
+		Runnable update = new Runnable() {
+			public void run() {
+				int rooms = program.getNumRooms();
+				if(rooms != numRooms) {
+					numRooms = rooms;
+					fireTableDataChanged();
+				}
+				else
+					fireTableCellUpdated((day - 1) * numRooms + (room - 1), SLOT_COLUMN + time - firstTime);
+			}
+		};
+		if(SwingUtilities.isEventDispatchThread())
+			update.run();
+		else
+			SwingUtilities.invokeLater(update);
+	}
+}
@@ -0,0 +1,98 @@
+import java.util.*;
+
+/**
+ * Bitmap of the hours each tutor is teaching, used to schedule classes
+ * without double-booking a tutor. Tutors are given by their code in
+ * FitnessClass.TUTORS, and each tutor has one long word per day with a
+ * bit per hour, in the same layout as FreeSlotMap's words for a room,
+ * so whether a tutor and a room are both free at some hour of a day is
+ * one AND of two words. A tutor may be given more than one class at
+ * the same hour (e.g. by a ClassesIn file); those are counted apart, so
+ * the bit stays set until the last of them is released.
+ * Changes must be made by one thread at a time (FitnessProgram makes
+ * them under its write lock).
+ */
+public class TutorOccupancy {
+	//instance variables
+	private final int numDays;
+	private final int firstHour;
+	private long [][] busy; //busy[tutor][day-1] has a bit set for each hour taught, or is null
+	private final Map<Long, Integer> doubled; //classes beyond the first at one hour, by tutor, day and hour
+
+	/**
+	 * TutorOccupancy constructor. No tutor is teaching at first.
+	 * @param days the number of days
+	 * @param first the start hour of the first slot of each day
+	 */
+	public TutorOccupancy(int days, int first) {
+		numDays = days;
+		firstHour = first;
+		busy = new long [16][];
+		doubled = new HashMap<Long, Integer>();
+	}
+
+	/**
+	 * marks a tutor as teaching at an hour
+	 * @param tutor the tutor's code
+	 * @param day the day
+	 * @param hour the start hour
+	 */
+	public void occupy(int tutor, int day, int hour) {
+		if(tutor >= busy.length)
+			busy = Arrays.copyOf(busy, Math.max(tutor + 1, busy.length * 2));
+		if(busy[tutor] == null)
+			busy[tutor] = new long [numDays];
+		long bit = 1L << (hour - firstHour);
+		if((busy[tutor][day - 1] & bit) != 0) { //a second class at the same hour
+			Long key = key(tutor, day, hour);
+			Integer count = doubled.get(key);
+			doubled.put(key, (count == null) ? 1 : count + 1);
+		}
+		busy[tutor][day - 1] |= bit;
+	}
+
+	/**
+	 * marks a tutor as no longer teaching one class at an hour
+	 * @param tutor the tutor's code
+	 * @param day the day
+	 * @param hour the start hour
+	 */
+	public void release(int tutor, int day, int hour) {
+		if(tutor >= busy.length || busy[tutor] == null)
+			return;
+		Long key = key(tutor, day, hour);
+		Integer count = doubled.get(key);
+		if(count != null) { //another class is still at that hour
+			if(count == 1)
+				doubled.remove(key);
+			else
+				doubled.put(key, count - 1);
+			return;
+		}
+		busy[tutor][day - 1] &= ~(1L << (hour - firstHour));
+	}
+
+	/**
+	 * returns the bitmap of the hours a tutor is teaching on a day,
+	 * with bit 0 standing for the first hour of the day
+	 * @param tutor the tutor's code
+	 * @param day the day
+	 */
+	public long getBusyHours(int tutor, int day) {
+		if(tutor < 0 || tutor >= busy.length || busy[tutor] == null)
+			return 0;
+		return busy[tutor][day - 1];
+	}
+
+	/**
+	 * checks whether a tutor is free at an hour
+	 * @return true if the tutor has no class at that hour
+	 */
+	public boolean isFree(int tutor, int day, int hour) {
+		return (getBusyHours(tutor, day) & (1L << (hour - firstHour))) == 0;
+	}
+
+	private static Long key(int tutor, int day, int hour) {
+		return ((long) tutor << 16) | (day << 8) | hour;
+	}
+}
@@ -0,0 +1,141 @@
+package benchmarks;
+
+import java.lang.management.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A FitnessProgram against a CompactProgram of the same classes and
+ * attendances: the whole-programme scans (the report, the ClassesOut
+ * text and a week total) on each, and the heap each takes once loaded,
+ * given as the heapBytes counter of the load benchmarks (IDs included).
+ * The time of a load is mostly collecting garbage and means little.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class CompactBenchmark {
+	@Param({"100000", "1000000"})
+	public int classes;
+
+	//instance variables
+	private String [] classLines;
+	private String [] attendanceLines;
+	private Object program;
+	private Object compact;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		classLines = ProgrammeData.makeClassLines(classes);
+		attendanceLines = ProgrammeData.makeAttendanceLines(classes, 1);
+		program = loadProgram();
+		compact = loadCompact();
+	}
+
+	/**
+	 * the bytes of heap in use with a programme loaded
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Heap {
+		public long heapBytes;
+
+		@Setup(Level.Iteration)
+		public void clean() {
+			heapBytes = 0;
+		}
+	}
+
+	@Benchmark
+	public String programReport() throws Throwable {
+		return (String) Gym.MAKE_REPORT.invokeExact(program);
+	}
+
+	@Benchmark
+	public String compactReport() throws Throwable {
+		return (String) Gym.COMPACT_MAKE_REPORT.invokeExact(compact);
+	}
+
+	@Benchmark
+	public String programClassesOutText() throws Throwable {
+		return (String) Gym.MAKE_CLASSES_OUT_TEXT.invokeExact(program);
+	}
+
+	@Benchmark
+	public String compactClassesOutText() throws Throwable {
+		return (String) Gym.COMPACT_MAKE_CLASSES_OUT_TEXT.invokeExact(compact);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long programWeekTotal() throws Throwable {
+		return (long) Gym.GET_WEEK_TOTAL.invokeExact(program, 1);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long compactWeekTotal() throws Throwable {
+		return (long) Gym.COMPACT_GET_WEEK_TOTAL.invokeExact(compact, 1);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 1) //the counter adds up over the shots, so one shot is counted
+	public Object loadProgram(Heap heap) throws Throwable {
+		long base = usedHeap();
+		Object loaded = loadProgram();
+		heap.heapBytes = usedHeap() - base;
+		return loaded;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 1)
+	public Object loadCompact(Heap heap) throws Throwable {
+		long base = usedHeap();
+		Object loaded = loadCompact();
+		heap.heapBytes = usedHeap() - base;
+		return loaded;
+	}
+
+	/**
+	 * loads the class lines then the attendance lines into a new FitnessProgram
+	 */
+	private Object loadProgram() throws Throwable {
+		Object loaded = (Object) Gym.NEW_PROGRAMME.invokeExact(ProgrammeData.DAYS, 1,
+				Gym.FIRST_START_TIME, Gym.LAST_START_TIME);
+		for(String line : classLines)
+			Gym.ADD_CLASS_FROM_FILE.invokeExact(loaded, line);
+		for(String line : attendanceLines)
+			Gym.POPULATE_ATTENDANCES.invokeExact(loaded, line);
+		return loaded;
+	}
+
+	/**
+	 * loads the class lines then the attendance lines into a new CompactProgram
+	 */
+	private Object loadCompact() throws Throwable {
+		Object loaded = (Object) Gym.NEW_COMPACT.invokeExact(ProgrammeData.DAYS, 1,
+				Gym.FIRST_START_TIME, Gym.LAST_START_TIME);
+		for(String line : classLines)
+			Gym.COMPACT_ADD_CLASS_FROM_FILE.invokeExact(loaded, line);
+		for(String line : attendanceLines)
+			Gym.COMPACT_POPULATE_ATTENDANCES.invokeExact(loaded, line);
+		return loaded;
+	}
+
+	/**
+	 * returns the bytes of heap in use after collecting garbage
+	 */
+	private static long usedHeap() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for(int i = 0; i < 3; i++) //a few rounds, so that what is unreachable is gone
+			memory.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A FitnessProgram shared by many threads, as with several booking desks
+ * and kiosks on one programme. Each operation is one of a mix of lookups,
+ * attendance reads, average reads, attendance updates and delete/add
+ * pairs, on a programme half full of classes. Lookups and reads take no
+ * lock, so the throughput should grow with the threads while the share
+ * of writes stays small; run with -t 1, -t 2, -t 4 and -t 8 to compare.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+	//class constants
+	private static final int ROOMS = 100;
+	private static final int CLASSES = ProgrammeData.DAYS * ROOMS * Gym.MAX_CLASSES / 2; //half full
+	private static final int ADD_DELETE_PERCENT = 1; //a delete then an add
+
+	/** the percentage of operations that are attendance updates */
+	@Param({"10"})
+	public int writePercent;
+
+	//instance variables
+	private Object program;
+	private AtomicLong nextId;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		program = (Object) Gym.NEW_PROGRAMME.invokeExact(ProgrammeData.DAYS, ROOMS,
+				Gym.FIRST_START_TIME, Gym.LAST_START_TIME);
+		for(int i = 0; i < CLASSES; i++) {
+			Object slot = (Object) Gym.ADD_CLASS_FROM_GUI.invokeExact(program, "ID" + i,
+					"Class" + (i % 50), "Tutor" + (i % 200));
+		}
+		nextId = new AtomicLong(CLASSES);
+	}
+
+	/**
+	 * each thread's own random numbers
+	 */
+	@State(Scope.Thread)
+	public static class Dice {
+		Random random;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			random = new Random(Thread.currentThread().getId());
+		}
+	}
+
+	@Benchmark
+	public Object mix(Dice dice) throws Throwable {
+		Random random = dice.random;
+		int op = random.nextInt(100);
+		Object fc = (Object) Gym.GET_CLASS_FROM_ID.invokeExact(program, "ID" + random.nextInt(CLASSES));
+		if(op < ADD_DELETE_PERCENT) { //delete the class and add another in its place
+			if(fc != null && (boolean) Gym.DELETE_CLASS.invokeExact(program, (String) Gym.GET_CLASS_ID.invokeExact(fc)))
+				return (Object) Gym.ADD_CLASS_FROM_GUI.invokeExact(program, "ID" + nextId.getAndIncrement(),
+						"New", "Tutor");
+		}
+		else if(op < ADD_DELETE_PERCENT + writePercent) {
+			if(fc != null)
+				Gym.SET_ATTENDANCE.invokeExact(fc, random.nextInt(Gym.NUM_WEEKS) + 1, random.nextInt(20));
+		}
+		else if(op % 2 == 0)
+			return (double) Gym.GET_OVERALL_AVG.invokeExact(program);
+		else if(fc != null)
+			return (int) Gym.GET_ATTENDANCE.invokeExact(fc, random.nextInt(Gym.NUM_WEEKS) + 1);
+		return fc;
+	}
+}
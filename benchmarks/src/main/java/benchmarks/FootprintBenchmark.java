@@ -0,0 +1,96 @@
+package benchmarks;
+
+import java.lang.management.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The heap taken by a programme's class names and tutors. Each shot loads
+ * the classes from ClassesIn style lines, each split into Strings of its
+ * own as they are when read from a file, and counts the heap in use with
+ * the programme loaded. Classes hold codes into FitnessClass.CLASS_NAMES
+ * and TUTORS; before, each kept the name and tutor Strings of its own
+ * line. That layout is measured by keeping those Strings reachable
+ * alongside the programme, so the difference between the two counters,
+ * lineStringBytes and codeBytes, is what the symbol tables save. The
+ * time of a shot is mostly collecting garbage and means little.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1) //the counters add up over the shots, so one shot is counted
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-XX:+UseParallelGC"})
+@State(Scope.Benchmark)
+public class FootprintBenchmark {
+	//class constants
+	private static final int NAMES = 300; //distinct class names
+	private static final int TUTORS = 200; //distinct tutors
+
+	@Param({"10000", "100000", "1000000"})
+	public int classes;
+
+	/**
+	 * the bytes of heap in use with the programme loaded, with and
+	 * without the Strings of each class's own line
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Heap {
+		public long lineStringBytes;
+		public long codeBytes;
+
+		@Setup(Level.Iteration)
+		public void clean() {
+			lineStringBytes = 0;
+			codeBytes = 0;
+		}
+	}
+
+	@Benchmark
+	public Object load(Heap heap) throws Throwable {
+		long base = usedHeap();
+		String [] strings = new String [2 * classes]; //each line's name and tutor, as the old fields held them
+		Object program = load(strings);
+		heap.lineStringBytes = usedHeap() - base;
+		//an empty array of the same size stands in for the references the
+		//old fields held, so only the Strings themselves are let go
+		strings = new String [2 * classes];
+		heap.codeBytes = usedHeap() - base;
+		return new Object [] {program, strings}; //keep both reachable until measured
+	}
+
+	/**
+	 * loads ClassesIn style lines filling the slots of each room of each
+	 * day in turn into a new programme, keeping the name and tutor
+	 * Strings each line was split into
+	 * @param strings where each class's name and tutor are kept
+	 * @return the loaded programme
+	 */
+	private Object load(String [] strings) throws Throwable {
+		int hours = Gym.MAX_CLASSES;
+		Object program = (Object) Gym.NEW_PROGRAMME.invokeExact(ProgrammeData.DAYS, 1,
+				Gym.FIRST_START_TIME, Gym.LAST_START_TIME);
+		for(int i = 0; i < classes; i++) {
+			int time = Gym.FIRST_START_TIME + i % hours;
+			int day = (i / hours) % ProgrammeData.DAYS + 1;
+			int room = i / (hours * ProgrammeData.DAYS) + 1;
+			String line = "ID" + i + " Class" + (i % NAMES) + " Tutor" + (i % TUTORS) + " " + time
+					+ " " + day + " " + room;
+			String [] tokens = line.split("[ ]+");
+			strings[2 * i] = tokens[1];
+			strings[2 * i + 1] = tokens[2];
+			Gym.ADD_CLASS_FROM_FILE.invokeExact(program, line);
+		}
+		return program;
+	}
+
+	/**
+	 * returns the bytes of heap in use after collecting garbage
+	 */
+	private static long usedHeap() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for(int i = 0; i < 3; i++) //a few rounds, so that what is unreachable is gone
+			memory.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
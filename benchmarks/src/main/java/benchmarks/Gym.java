@@ -0,0 +1,185 @@
+package benchmarks;
+
+import java.lang.invoke.*;
+import java.util.*;
+
+/**
+ * Calls into the programme's classes. They are in the default package,
+ * which cannot be named from a package (and JMH will not run benchmarks
+ * from the default package), so they are reached through method handles.
+ * The handles are held in static final fields, so the JIT inlines them
+ * like direct calls. Programmes and classes are passed around as Objects.
+ */
+final class Gym {
+	//class constants
+	static final int MAX_CLASSES = intConstant("FitnessProgram", "MAX_CLASSES");
+	static final int FIRST_START_TIME = intConstant("FitnessProgram", "FIRST_START_TIME");
+	static final int LAST_START_TIME = intConstant("FitnessProgram", "LAST_START_TIME");
+	static final int NUM_WEEKS = intConstant("FitnessClass", "NUM_WEEKS");
+
+	/** new FitnessClass(String): (String)Object */
+	static final MethodHandle NEW_CLASS = constructor("FitnessClass", String.class);
+	/** new FitnessProgram(days, rooms, firstStart, lastStart): (int, int, int, int)Object */
+	static final MethodHandle NEW_PROGRAMME = constructor("FitnessProgram",
+			int.class, int.class, int.class, int.class);
+	/** FitnessProgram.addClassFromFile: (Object, String)void */
+	static final MethodHandle ADD_CLASS_FROM_FILE = method("FitnessProgram", "addClassFromFile",
+			void.class, String.class);
+	/** FitnessProgram.populateAttendances: (Object, String)void */
+	static final MethodHandle POPULATE_ATTENDANCES = method("FitnessProgram", "populateAttendances",
+			void.class, String.class);
+	/** FitnessProgram.addClassFromGui: (Object, String, String, String)Object */
+	static final MethodHandle ADD_CLASS_FROM_GUI = method("FitnessProgram", "addClassFromGui",
+			cls("TimeSlot"), String.class, String.class, String.class);
+	/** FitnessProgram.deleteClass: (Object, String)boolean */
+	static final MethodHandle DELETE_CLASS = method("FitnessProgram", "deleteClass",
+			boolean.class, String.class);
+	/** FitnessProgram.getClassFromId: (Object, String)Object */
+	static final MethodHandle GET_CLASS_FROM_ID = method("FitnessProgram", "getClassFromId",
+			cls("FitnessClass"), String.class);
+	/** FitnessProgram.getOverallAvg: (Object)double */
+	static final MethodHandle GET_OVERALL_AVG = method("FitnessProgram", "getOverallAvg", double.class);
+	/** FitnessProgram.makeSortedList: (Object)Object */
+	static final MethodHandle MAKE_SORTED_LIST = method("FitnessProgram", "makeSortedList",
+			cls("[LFitnessClass;"));
+	/** FitnessProgram.makeClassesOutText: (Object)String */
+	static final MethodHandle MAKE_CLASSES_OUT_TEXT = method("FitnessProgram", "makeClassesOutText",
+			String.class);
+	/** FitnessClass.getClassID: (Object)String */
+	static final MethodHandle GET_CLASS_ID = method("FitnessClass", "getClassID", String.class);
+	/** FitnessClass.getAttendance: (Object, int)int */
+	static final MethodHandle GET_ATTENDANCE = method("FitnessClass", "getAttendance",
+			int.class, int.class);
+	/** FitnessClass.setAttendance: (Object, int, int)void */
+	static final MethodHandle SET_ATTENDANCE = method("FitnessClass", "setAttendance",
+			void.class, int.class, int.class);
+	/** FitnessProgram.getWeekTotal: (Object, int)long */
+	static final MethodHandle GET_WEEK_TOTAL = method("FitnessProgram", "getWeekTotal", long.class, int.class);
+	/** ReportWriter.makeReport, as ReportFrame builds its report: (Object)String */
+	static final MethodHandle MAKE_REPORT = staticMethod("ReportWriter", "makeReport",
+			String.class, cls("FitnessProgram"));
+
+	/** FitnessProgram.getOverallStats: (Object)Object */
+	static final MethodHandle GET_OVERALL_STATS = method("FitnessProgram", "getOverallStats",
+			cls("AttendanceStats"));
+	/** AttendanceStats.merge: (Object, Object)Object */
+	static final MethodHandle MERGE_STATS = method("AttendanceStats", "merge",
+			cls("AttendanceStats"), cls("AttendanceStats"));
+
+	/** new ProgramRegistry(): ()Object */
+	static final MethodHandle NEW_REGISTRY = constructor("ProgramRegistry");
+	/** ProgramRegistry.addCentre: (Object, String, Object)void */
+	static final MethodHandle ADD_CENTRE = method("ProgramRegistry", "addCentre",
+			void.class, String.class, cls("FitnessProgram"));
+	/** ProgramRegistry.getOverallStats: (Object)Object */
+	static final MethodHandle REGISTRY_OVERALL_STATS = method("ProgramRegistry", "getOverallStats",
+			cls("AttendanceStats"));
+	/** ProgramRegistry.getTopClasses: (Object, int)List */
+	static final MethodHandle REGISTRY_TOP_CLASSES = method("ProgramRegistry", "getTopClasses",
+			List.class, int.class);
+	/** ProgramRegistry.getStatsByTutor: (Object)SortedMap */
+	static final MethodHandle REGISTRY_STATS_BY_TUTOR = method("ProgramRegistry", "getStatsByTutor",
+			SortedMap.class);
+
+	/** new CompactProgram(days, rooms, firstStart, lastStart): (int, int, int, int)Object */
+	static final MethodHandle NEW_COMPACT = constructor("CompactProgram",
+			int.class, int.class, int.class, int.class);
+	/** CompactProgram.addClassFromFile: (Object, String)void */
+	static final MethodHandle COMPACT_ADD_CLASS_FROM_FILE = method("CompactProgram", "addClassFromFile",
+			void.class, String.class);
+	/** CompactProgram.populateAttendances: (Object, String)void */
+	static final MethodHandle COMPACT_POPULATE_ATTENDANCES = method("CompactProgram", "populateAttendances",
+			void.class, String.class);
+	/** CompactProgram.makeReport: (Object)String */
+	static final MethodHandle COMPACT_MAKE_REPORT = method("CompactProgram", "makeReport", String.class);
+	/** CompactProgram.makeClassesOutText: (Object)String */
+	static final MethodHandle COMPACT_MAKE_CLASSES_OUT_TEXT = method("CompactProgram", "makeClassesOutText",
+			String.class);
+	/** CompactProgram.getWeekTotal: (Object, int)long */
+	static final MethodHandle COMPACT_GET_WEEK_TOTAL = method("CompactProgram", "getWeekTotal",
+			long.class, int.class);
+
+	private Gym() {
+	}
+
+	private static Class<?> cls(String name) {
+		try {
+			return Class.forName(name);
+		}
+		catch(ClassNotFoundException e) {
+			throw new IllegalStateException("Programme class " + name + " is not on the class path", e);
+		}
+	}
+
+	private static int intConstant(String className, String field) {
+		try {
+			return cls(className).getField(field).getInt(null);
+		}
+		catch(ReflectiveOperationException e) {
+			throw new IllegalStateException("No constant " + className + "." + field, e);
+		}
+	}
+
+	/**
+	 * looks up a constructor, typed to return Object
+	 */
+	private static MethodHandle constructor(String className, Class<?>... params) {
+		try {
+			MethodHandle handle = MethodHandles.publicLookup().findConstructor(cls(className),
+					MethodType.methodType(void.class, params));
+			return handle.asType(handle.type().changeReturnType(Object.class));
+		}
+		catch(ReflectiveOperationException e) {
+			throw new IllegalStateException("No constructor for " + className, e);
+		}
+	}
+
+	/**
+	 * looks up an instance method, typed to take its receiver as an Object
+	 * and to return Object for any reference type
+	 */
+	private static MethodHandle method(String className, String name, Class<?> returns,
+			Class<?>... params) {
+		try {
+			MethodHandle handle = MethodHandles.publicLookup().findVirtual(cls(className), name,
+					MethodType.methodType(returns, params));
+			return handle.asType(erase(handle.type()));
+		}
+		catch(ReflectiveOperationException e) {
+			throw new IllegalStateException("No method " + className + "." + name, e);
+		}
+	}
+
+	/**
+	 * looks up a static method, typed with Object for the programme's classes
+	 */
+	private static MethodHandle staticMethod(String className, String name, Class<?> returns,
+			Class<?>... params) {
+		try {
+			MethodHandle handle = MethodHandles.publicLookup().findStatic(cls(className), name,
+					MethodType.methodType(returns, params));
+			return handle.asType(erase(handle.type()));
+		}
+		catch(ReflectiveOperationException e) {
+			throw new IllegalStateException("No method " + className + "." + name, e);
+		}
+	}
+
+	/**
+	 * replaces the programme's own classes in a method type with Object
+	 */
+	private static MethodType erase(MethodType type) {
+		for(int i = 0; i < type.parameterCount(); i++)
+			if(isProgrammeType(type.parameterType(i)))
+				type = type.changeParameterType(i, Object.class);
+		if(isProgrammeType(type.returnType()))
+			type = type.changeReturnType(Object.class);
+		return type;
+	}
+
+	private static boolean isProgrammeType(Class<?> c) {
+		while(c.isArray())
+			c = c.getComponentType();
+		return !c.isPrimitive() && c.getPackageName().isEmpty();
+	}
+}
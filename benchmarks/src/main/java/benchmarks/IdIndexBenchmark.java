@@ -0,0 +1,43 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Loading a programme through the class ID index: the classes, then one
+ * attendance line per class, into a new programme that starts with one
+ * room. With the ID index the cost per class should stay flat as the
+ * programme grows, so the time of a load over the number of classes is
+ * what to compare across the sizes.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class IdIndexBenchmark {
+	@Param({"7", "1000", "10000", "100000", "1000000"})
+	public int classes;
+
+	//instance variables
+	private String [] classLines;
+	private String [] attendanceLines;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		classLines = ProgrammeData.makeClassLines(classes);
+		attendanceLines = ProgrammeData.makeAttendanceLines(classes, 1);
+	}
+
+	@Benchmark
+	public Object load() throws Throwable {
+		Object program = (Object) Gym.NEW_PROGRAMME.invokeExact(ProgrammeData.DAYS, 1,
+				Gym.FIRST_START_TIME, Gym.LAST_START_TIME);
+		for(String line : classLines)
+			Gym.ADD_CLASS_FROM_FILE.invokeExact(program, line);
+		for(String line : attendanceLines)
+			Gym.POPULATE_ATTENDANCES.invokeExact(program, line);
+		return program;
+	}
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parsing a line of the classes file into a FitnessClass. The cost does
+ * not depend on the size of the programme, so this runs over a fixed set
+ * of lines rather than the programme sizes of ProgrammeBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+	//class constants
+	private static final int LINES = 4096; //power of two, so the next line is found with a mask
+
+	//instance variables
+	private String [] lines;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		lines = ProgrammeData.makeClassLines(LINES);
+	}
+
+	@Benchmark
+	public Object parseClassLine() throws Throwable {
+		String line = lines[next++ & (LINES - 1)];
+		return (Object) Gym.NEW_CLASS.invokeExact(line);
+	}
+}
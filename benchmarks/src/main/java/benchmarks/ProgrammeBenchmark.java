@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The FitnessProgram operations that run over the whole programme, or
+ * once per class on loading, for programmes from the original 7 classes
+ * up to a million. A programme is built once per trial and shared by the
+ * benchmarks, which only read it apart from populateAttendances.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ProgrammeBenchmark {
+	@Param({"7", "1000", "10000", "100000", "1000000"})
+	public int classes;
+
+	//instance variables
+	private Object program;
+	private String [] lookupIds;
+	private String [][] attendanceLines; //two sets of figures, so each round changes the totals
+	private int nextId;
+	private int round;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		program = ProgrammeData.makeProgramme(classes);
+		lookupIds = ProgrammeData.makeLookupIds(classes);
+		attendanceLines = new String [][] {ProgrammeData.makeAttendanceLines(classes, 2),
+				ProgrammeData.makeAttendanceLines(classes, 3)};
+	}
+
+	/**
+	 * one lookup of a class by ID, in a random order over all classes
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Object getClassFromId() throws Throwable {
+		String id = lookupIds[nextId];
+		if(++nextId == lookupIds.length)
+			nextId = 0;
+		return (Object) Gym.GET_CLASS_FROM_ID.invokeExact(program, id);
+	}
+
+	/**
+	 * a full attendances file, one populateAttendances call per class
+	 */
+	@Benchmark
+	public void populateAttendances() throws Throwable {
+		String [] lines = attendanceLines[round++ & 1];
+		for(String line : lines)
+			Gym.POPULATE_ATTENDANCES.invokeExact(program, line);
+	}
+
+	@Benchmark
+	public double getOverallAvg() throws Throwable {
+		return (double) Gym.GET_OVERALL_AVG.invokeExact(program);
+	}
+
+	@Benchmark
+	public Object makeSortedList() throws Throwable {
+		return (Object) Gym.MAKE_SORTED_LIST.invokeExact(program);
+	}
+
+	@Benchmark
+	public String makeClassesOutText() throws Throwable {
+		return (String) Gym.MAKE_CLASSES_OUT_TEXT.invokeExact(program);
+	}
+
+	/**
+	 * the attendance report, as ReportFrame builds it
+	 */
+	@Benchmark
+	public String buildReport() throws Throwable {
+		return (String) Gym.MAKE_REPORT.invokeExact(program);
+	}
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.util.*;
+
+/**
+ * Synthetic programmes for the benchmarks. Classes are numbered ID0, ID1, ...
+ * and fill the timetable day by day and room by room, with enough rooms
+ * for the number of classes asked for. Attendance lines give NUM_WEEKS
+ * random figures per class.
+ */
+final class ProgrammeData {
+	//class constants
+	static final int DAYS = 7;
+	private static final String [] NAMES = {"Spin", "Yoga", "Pilates", "Zumba", "Boxercise",
+			"Aerobics", "Circuits", "Kettlebells"};
+	private static final String [] TUTORS = {"Smith", "Jones", "Brown", "Taylor", "Wilson",
+			"Evans", "Thomas", "Roberts", "Walker"};
+
+	private ProgrammeData() {
+	}
+
+	/**
+	 * returns the number of rooms needed to hold n classes over DAYS days
+	 */
+	static int roomsFor(int n) {
+		int perRoom = DAYS * Gym.MAX_CLASSES;
+		return Math.max(1, (n + perRoom - 1) / perRoom);
+	}
+
+	/**
+	 * makes classes file lines for n classes, with day and room given
+	 */
+	static String [] makeClassLines(int n) {
+		int rooms = roomsFor(n);
+		String [] lines = new String [n];
+		for(int i = 0; i < n; i++) {
+			int time = Gym.FIRST_START_TIME + i % Gym.MAX_CLASSES;
+			int room = i / Gym.MAX_CLASSES % rooms + 1;
+			int day = i / (Gym.MAX_CLASSES * rooms) + 1;
+			lines[i] = "ID" + i + " " + NAMES[i % NAMES.length] + " " + TUTORS[i % TUTORS.length]
+					+ " " + time + " " + day + " " + room;
+		}
+		return lines;
+	}
+
+	/**
+	 * makes attendance file lines for n classes
+	 * @param seed seed for the attendance figures
+	 */
+	static String [] makeAttendanceLines(int n, long seed) {
+		Random random = new Random(seed);
+		String [] lines = new String [n];
+		StringBuilder line = new StringBuilder();
+		for(int i = 0; i < n; i++) {
+			line.setLength(0);
+			line.append("ID").append(i);
+			for(int week = 0; week < Gym.NUM_WEEKS; week++)
+				line.append(' ').append(random.nextInt(50));
+			lines[i] = line.toString();
+		}
+		return lines;
+	}
+
+	/**
+	 * returns the IDs of n classes in a fixed random order, so lookups
+	 * do not walk the table in insertion order
+	 */
+	static String [] makeLookupIds(int n) {
+		List<String> ids = new ArrayList<String>(n);
+		for(int i = 0; i < n; i++)
+			ids.add("ID" + i);
+		Collections.shuffle(ids, new Random(42));
+		return ids.toArray(new String [n]);
+	}
+
+	/**
+	 * builds a FitnessProgram of n classes with attendances set
+	 */
+	static Object makeProgramme(int n) throws Throwable {
+		Object fp = (Object) Gym.NEW_PROGRAMME.invokeExact(DAYS, roomsFor(n),
+				Gym.FIRST_START_TIME, Gym.LAST_START_TIME);
+		for(String line : makeClassLines(n))
+			Gym.ADD_CLASS_FROM_FILE.invokeExact(fp, line);
+		for(String line : makeAttendanceLines(n, 1))
+			Gym.POPULATE_ATTENDANCES.invokeExact(fp, line);
+		return fp;
+	}
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cross-centre roll-ups of a ProgramRegistry, worked out in parallel on
+ * the common fork-join pool, against the same overall figures folded one
+ * centre after another. Each centre has the same programme size, so the
+ * sequential fold grows with the number of centres; the roll-up should
+ * grow much more slowly while there are threads to spare.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistryBenchmark {
+	@Param({"1", "8", "64"})
+	public int centres;
+
+	@Param({"1000"})
+	public int classes; //per centre
+
+	//instance variables
+	private Object registry;
+	private Object [] programmes;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		registry = (Object) Gym.NEW_REGISTRY.invokeExact();
+		programmes = new Object [centres];
+		for(int c = 0; c < centres; c++) {
+			programmes[c] = ProgrammeData.makeProgramme(classes);
+			Gym.ADD_CENTRE.invokeExact(registry, "Centre" + c, programmes[c]);
+		}
+	}
+
+	@Benchmark
+	public Object overallStats() throws Throwable {
+		return (Object) Gym.REGISTRY_OVERALL_STATS.invokeExact(registry);
+	}
+
+	@Benchmark
+	public Object overallStatsSequential() throws Throwable {
+		Object stats = (Object) Gym.GET_OVERALL_STATS.invokeExact(programmes[0]);
+		for(int c = 1; c < centres; c++) {
+			Object part = (Object) Gym.GET_OVERALL_STATS.invokeExact(programmes[c]);
+			stats = (Object) Gym.MERGE_STATS.invokeExact(stats, part);
+		}
+		return stats;
+	}
+
+	@Benchmark
+	public Object topClasses() throws Throwable {
+		return (List<?>) Gym.REGISTRY_TOP_CLASSES.invokeExact(registry, 10);
+	}
+
+	@Benchmark
+	public Object statsByTutor() throws Throwable {
+		return (SortedMap<?, ?>) Gym.REGISTRY_STATS_BY_TUTOR.invokeExact(registry);
+	}
+}
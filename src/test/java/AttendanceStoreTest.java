@@ -0,0 +1,78 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.*;
+
+/**
+ * Tests the columnar attendance store: weeks added on demand up to
+ * MAX_WEEKS, rows cleared and reused, and sums over rows and weeks.
+ */
+public class AttendanceStoreTest {
+	private AttendanceStore store;
+
+	@BeforeEach
+	public void setUp() {
+		store = new AttendanceStore(FitnessClass.NUM_WEEKS, 2);
+	}
+
+	@Test
+	public void weeksAreAddedOnDemand() {
+		int row = store.allocateRow();
+		store.set(row, 9, 4);
+		assertEquals(9, store.getNumWeeks());
+		assertEquals(4, store.get(row, 9));
+		assertEquals(0, store.get(row, 12)); //no column yet
+	}
+
+	@Test
+	public void weeksBeyondTheLastAreRefused() {
+		final int row = store.allocateRow();
+		store.set(row, AttendanceStore.MAX_WEEKS, 1);
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			public void execute() {
+				store.set(row, AttendanceStore.MAX_WEEKS + 1, 1);
+			}
+		});
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			public void execute() {
+				store.set(row, 2000000000, 1);
+			}
+		});
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			public void execute() {
+				store.set(row, 0, 1);
+			}
+		});
+		assertEquals(AttendanceStore.MAX_WEEKS, store.getNumWeeks());
+	}
+
+	@Test
+	public void aRefusedWeekLeavesAClassAsItWas() {
+		FitnessProgram fp = ProgramSnapshotTest.makeProgramme();
+		final FitnessClass fc = fp.getClassFromId("SP1");
+		String report = ReportWriter.makeReport(fp);
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			public void execute() {
+				fc.setAttendance(0, 5);
+			}
+		});
+		assertEquals(report, ReportWriter.makeReport(fp));
+		assertEquals(fp.getNumClasses(), fp.makeSortedList().length);
+	}
+
+	@Test
+	public void releasedRowsAreClearedAndReused() {
+		int first = store.allocateRow();
+		int second = store.allocateRow();
+		int third = store.allocateRow(); //past the rows allowed for at first
+		store.set(second, 1, 7);
+		store.set(third, 1, 3);
+		store.releaseRow(second);
+		assertEquals(second, store.allocateRow());
+		assertEquals(0, store.get(second, 1));
+		assertEquals(3, store.sumWeek(1));
+		store.set(first, 2, 5);
+		store.set(first, 3, 6);
+		assertEquals(11, store.sumRow(first, 1, 3));
+	}
+}
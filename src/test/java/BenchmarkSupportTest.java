@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests the support code of the JMH benchmarks: that every method handle
+ * in Gym still finds the programme method it names, and that the
+ * synthetic programmes of ProgrammeData hold the classes asked for. The
+ * benchmarks are only built by the jmh profile, so without it these
+ * tests are skipped; run them with mvn -P jmh test.
+ */
+public class BenchmarkSupportTest {
+	/**
+	 * returns a class of the benchmarks package, initialised
+	 */
+	private static Class<?> benchmarkClass(String name) {
+		try {
+			return Class.forName("benchmarks." + name);
+		}
+		catch(ClassNotFoundException e) {
+			assumeTrue(false, "the benchmarks are only built by the jmh profile");
+			return null;
+		}
+	}
+
+	private static Object callStatic(Class<?> c, String name, Class<?> param, Object arg) throws Exception {
+		Method method = c.getDeclaredMethod(name, param);
+		method.setAccessible(true);
+		return method.invoke(null, arg);
+	}
+
+	@Test
+	public void everyHandleFindsItsMethod() throws Exception {
+		Class<?> gym = benchmarkClass("Gym"); //a handle that is not found fails initialisation
+		int handles = 0;
+		for(Field field : gym.getDeclaredFields())
+			if(Modifier.isStatic(field.getModifiers()) && field.getType() == MethodHandle.class) {
+				field.setAccessible(true);
+				assertNotNull(field.get(null), field.getName());
+				handles++;
+			}
+		assertTrue(handles > 0);
+	}
+
+	@Test
+	public void syntheticProgrammesHoldTheirClasses() throws Exception {
+		Class<?> data = benchmarkClass("ProgrammeData");
+		for(int n : new int [] {1, 49, 1000}) {
+			FitnessProgram fp = (FitnessProgram) callStatic(data, "makeProgramme", int.class, n);
+			assertEquals(n, fp.getNumClasses());
+			assertEquals(callStatic(data, "roomsFor", int.class, n), fp.getNumRooms());
+			assertNotNull(fp.getClassFromId("ID" + (n - 1)));
+			assertTrue(fp.getOverallAvg() > 0);
+			String [] lines = (String []) callStatic(data, "makeClassLines", int.class, n);
+			Set<String> slots = new HashSet<String>();
+			for(String line : lines) { //no two classes share a slot, so none is replaced
+				String [] items = line.split(" ");
+				assertTrue(slots.add(items[3] + " " + items[4] + " " + items[5]), line);
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that check-ins counted by many threads at once, while being
+ * flushed, reach the right weekly figures, and that refused check-ins
+ * and lines are counted.
+ */
+public class CheckInIngesterTest {
+	private static final long TERM_START = 1000000L;
+
+	/**
+	 * returns the time of a check-in in the middle of a week
+	 */
+	private static long inWeek(int week) {
+		return TERM_START + (week - 1) * CheckInIngester.WEEK_MILLIS + CheckInIngester.WEEK_MILLIS / 2;
+	}
+
+	@Test
+	public void weeksAreCountedFromTheTermStart() {
+		CheckInIngester ingester = new CheckInIngester(new FitnessProgram(), TERM_START);
+		assertEquals(0, ingester.weekOf(TERM_START - 1));
+		assertEquals(1, ingester.weekOf(TERM_START));
+		assertEquals(2, ingester.weekOf(TERM_START + CheckInIngester.WEEK_MILLIS));
+		assertEquals(0, ingester.weekOf(inWeek(CheckInIngester.MAX_WEEK + 1)));
+	}
+
+	@Test
+	public void concurrentCheckInsReachTheirWeeks() throws Exception {
+		final FitnessProgram fp = ProgramSnapshotTest.makeProgramme();
+		final String [] ids = {"SP1", "YO2", "PI3", "ZU4"};
+		int [][] expected = new int [ids.length][8];
+		for(int c = 0; c < ids.length; c++)
+			for(int week = 1; week <= 7; week++)
+				expected[c][week] = fp.getClassFromId(ids[c]).getAttendance(week);
+		final CheckInIngester ingester = new CheckInIngester(fp, TERM_START);
+		ingester.start(1); //flushing all the while
+		final int threads = 8;
+		final int perThread = 2000;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Long>> counted = new ArrayList<Future<Long>>();
+		for(int t = 0; t < threads; t++) {
+			final int seed = t;
+			counted.add(pool.submit(new Callable<Long>() {
+				public Long call() throws IOException {
+					StringBuilder lines = new StringBuilder();
+					for(int i = 0; i < perThread; i++) {
+						int c = (seed + i) % ids.length;
+						int week = 1 + (seed * 3 + i) % 7;
+						lines.append(ids[c]).append(' ').append(inWeek(week)).append('\n');
+					}
+					lines.append("XX9 ").append(inWeek(1)).append('\n'); //no such class
+					lines.append("SP1 ").append(TERM_START - 1).append('\n'); //before the term
+					lines.append("SP1\n"); //no time
+					lines.append("SP1 soon\n");
+					lines.append('\n'); //blank, skipped
+					return ingester.readCheckIns(new BufferedReader(new StringReader(lines.toString())));
+				}
+			}));
+		}
+		long total = 0;
+		for(Future<Long> future : counted)
+			total += future.get();
+		pool.shutdown();
+		ingester.close(); //flushes what is left
+		for(int t = 0; t < threads; t++)
+			for(int i = 0; i < perThread; i++)
+				expected[(t + i) % ids.length][1 + (t * 3 + i) % 7]++;
+		for(int c = 0; c < ids.length; c++)
+			for(int week = 1; week <= 7; week++)
+				assertEquals(expected[c][week], fp.getClassFromId(ids[c]).getAttendance(week),
+						ids[c] + " week " + week);
+		assertEquals(threads * perThread, total);
+		assertEquals(threads * perThread, ingester.getNumCounted());
+		assertEquals(threads * 4, ingester.getNumRefused());
+	}
+
+	@Test
+	public void checkInsToADeletedClassAreDropped() {
+		FitnessProgram fp = ProgramSnapshotTest.makeProgramme();
+		CheckInIngester ingester = new CheckInIngester(fp, TERM_START);
+		assertTrue(ingester.checkIn("SP1", inWeek(2)));
+		assertTrue(ingester.checkIn("YO2", inWeek(2)));
+		int before = fp.getClassFromId("YO2").getAttendance(2);
+		fp.deleteClass("SP1");
+		assertEquals(1, ingester.flush());
+		assertEquals(before + 1, fp.getClassFromId("YO2").getAttendance(2));
+		assertFalse(ingester.checkIn("SP1", inWeek(2)));
+		assertEquals(1, ingester.getNumRefused());
+	}
+}
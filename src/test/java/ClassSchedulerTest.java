@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that classes placed automatically never give a tutor two
+ * classes at once, that rooms are used evenly, and that a class is only
+ * refused when its tutor is busy at every vacant slot.
+ */
+public class ClassSchedulerTest {
+	/**
+	 * checks that no tutor has two classes at the same hour of the same day
+	 */
+	private static void assertNoClashes(FitnessProgram fp) {
+		Set<String> taught = new HashSet<String>();
+		for(FitnessClass fc : fp.getClassesInTimetableOrder())
+			assertTrue(taught.add(fc.getClassTutor() + " " + fc.getClassDay() + " " + fc.getClassTime()),
+					fc.getClassTutor() + " has two classes at once");
+	}
+
+	/**
+	 * returns the number of classes in each room
+	 */
+	private static int [] roomLoads(FitnessProgram fp) {
+		int [] loads = new int [fp.getNumRooms()];
+		for(FitnessClass fc : fp.getClassesInTimetableOrder())
+			loads[fc.getClassRoom() - 1]++;
+		return loads;
+	}
+
+	@Test
+	public void aBatchIsPlacedWithoutClashes() {
+		FitnessProgram fp = new FitnessProgram(5, 6, 9, 15);
+		fp.addClassFromFile("SP1 Spin Tutor0 9 1 1"); //classes already there are clashes to avoid
+		fp.addClassFromFile("SP2 Spin Tutor1 9 1 2");
+		List<FitnessClass> classes = new ArrayList<FitnessClass>();
+		for(int i = 0; i < 150; i++) //30 classes a tutor, of the 35 hours in the week
+			classes.add(new FitnessClass("ID" + i, "Class" + i % 4, "Tutor" + i % 5));
+		fp.scheduleNewClasses(classes);
+		assertEquals(152, fp.getNumClasses());
+		assertNoClashes(fp);
+	}
+
+	@Test
+	public void roomsAreUsedEvenly() {
+		FitnessProgram fp = new FitnessProgram(7, 4, 9, 15);
+		List<FitnessClass> classes = new ArrayList<FitnessClass>();
+		for(int i = 0; i < 50; i++)
+			classes.add(new FitnessClass("ID" + i, "Spin", "Tutor" + i));
+		fp.scheduleNewClasses(classes);
+		int [] loads = roomLoads(fp);
+		int min = Integer.MAX_VALUE;
+		int max = 0;
+		for(int load : loads) {
+			min = Math.min(min, load);
+			max = Math.max(max, load);
+		}
+		assertTrue(max - min <= 1, "room loads " + Arrays.toString(loads));
+	}
+
+	@Test
+	public void aTutorCanTeachEveryHourOfTheWeek() {
+		FitnessProgram fp = new FitnessProgram(2, 3, 9, 11);
+		List<FitnessClass> classes = new ArrayList<FitnessClass>();
+		for(int i = 0; i < 6; i++)
+			classes.add(new FitnessClass("ID" + i, "Spin", "Smith"));
+		fp.scheduleNewClasses(classes);
+		assertNoClashes(fp);
+		assertNull(fp.addClassFromGui("ID6", "Spin", "Smith")); //rooms are free but Smith is not
+		assertNotNull(fp.addClassFromGui("ID7", "Spin", "Jones"));
+		assertEquals(7, fp.getNumClasses());
+	}
+
+	@Test
+	public void classesAddedOneAtATimeArePlacedWithoutClashes() {
+		FitnessProgram fp = new FitnessProgram(3, 2, 9, 15);
+		Random random = new Random(5);
+		int added = 0;
+		for(int i = 0; i < 60; i++) {
+			TimeSlot slot = fp.addClassFromGui("ID" + i, "Spin", "Tutor" + random.nextInt(3));
+			if(slot != null)
+				added++;
+		}
+		assertEquals(fp.getNumClasses(), added);
+		assertEquals(fp.getCapacity(), added); //3 tutors can fill the 2 rooms
+		assertNoClashes(fp);
+	}
+
+	@Test
+	public void roomsEmptiedOrAddedAreUsedFirst() {
+		FitnessProgram fp = new FitnessProgram(2, 3, 9, 15);
+		for(int i = 0; i < 12; i++)
+			fp.addClassFromGui("ID" + i, "Spin", "Tutor" + i);
+		for(FitnessClass fc : fp.getClassesInTimetableOrder())
+			if(fc.getClassRoom() == 2)
+				fp.deleteClass(fc.getClassID());
+		List<FitnessClass> refused = new ArrayList<FitnessClass>();
+		for(int i = 0; i < 15; i++) //Smith can teach only 14 hours of the week
+			refused.add(new FitnessClass("SM" + i, "Spin", "Smith"));
+		assertThrows(ClassBatchException.class, new org.junit.jupiter.api.function.Executable() {
+			public void execute() {
+				fp.scheduleNewClasses(refused); //its plans must not count against any room
+			}
+		});
+		for(int i = 0; i < 4; i++)
+			assertEquals(2, fp.addClassFromGui("NEW" + i, "Spin", "Jones" + i).getRoom());
+		fp.ensureRooms(4);
+		assertEquals(4, fp.addClassFromGui("NEW4", "Spin", "Jones4").getRoom());
+		assertArrayEquals(new int [] {4, 4, 4, 1}, roomLoads(fp));
+		assertNoClashes(fp);
+	}
+}
@@ -0,0 +1,154 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.*;
+
+/**
+ * Tests that a CompactProgram gives the same output as a FitnessProgram
+ * that has been given the same classes and changes.
+ */
+public class CompactProgramTest {
+	private FitnessProgram fp;
+	private CompactProgram cp;
+
+	/**
+	 * loads the same few hundred classes, over several rooms, with
+	 * attendances that tie, into both programmes
+	 */
+	@BeforeEach
+	public void setUp() {
+		fp = new FitnessProgram(7, 1, 9, 15);
+		cp = new CompactProgram(7, 1, 9, 15);
+		Random random = new Random(1);
+		for(int i = 0; i < 300; i++) {
+			String line = "ID" + i + " Class" + (i % 5) + " Tutor" + (i % 7) + " " + (9 + i % 7)
+					+ " " + (1 + (i / 7) % 7) + " " + (1 + i / 49);
+			fp.addClassFromFile(line);
+			cp.addClassFromFile(line);
+			String att = "ID" + i;
+			for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++)
+				att += " " + random.nextInt(4);
+			fp.populateAttendances(att);
+			cp.populateAttendances(att);
+		}
+	}
+
+	private void assertSameOutput() {
+		assertEquals(fp.getNumClasses(), cp.getNumClasses());
+		assertEquals(fp.getNumRooms(), cp.getNumRooms());
+		assertEquals(fp.makeClassesOutText(), cp.makeClassesOutText());
+		assertEquals(fp.makeAttendancesOutText(), cp.makeAttendancesOutText());
+		assertEquals(ReportWriter.makeReport(fp), cp.makeReport());
+		assertEquals(fp.getOverallAvg(), cp.getOverallAvg(), 1e-9);
+		for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++)
+			assertEquals(fp.getWeekTotal(week), cp.getWeekTotal(week));
+		FitnessClass [] sorted = fp.makeSortedList();
+		FitnessClass [] compactSorted = cp.makeSortedList();
+		assertEquals(sorted.length, compactSorted.length);
+		for(int i = 0; i < sorted.length; i++)
+			assertEquals(sorted[i].getClassID(), compactSorted[i].getClassID());
+	}
+
+	@Test
+	public void loadsTheSameProgramme() {
+		assertSameOutput();
+	}
+
+	@Test
+	public void addsReplacesAndDeletesTheSame() {
+		String [] lines = {"ID5 New Tutor1 9 1 1", "NEW1 New Tutor2 9 1 1", "NEW2 New Tutor3 12 4 9"};
+		for(String line : lines) {
+			fp.addClassFromFile(line);
+			cp.addClassFromFile(line);
+		}
+		for(String id : new String [] {"ID7", "ID100", "NEW2", "ID299"})
+			assertEquals(fp.deleteClass(id), cp.deleteClass(id));
+		assertFalse(cp.deleteClass("ID7"));
+		fp.getClassFromId("ID8").setAttendance(3, 50);
+		cp.getClassFromId("ID8").setAttendance(3, 50);
+		fp.getClassFromId("ID9").setAttendance(8, 2);
+		cp.getClassFromId("ID9").setAttendance(8, 2);
+		assertSameOutput();
+	}
+
+	@Test
+	public void changesThroughViewsTheSame() {
+		Random random = new Random(7);
+		for(int i = 0; i < 2000; i++) {
+			String id = "ID" + random.nextInt(400);
+			int field = random.nextInt(6);
+			int value = random.nextInt(600);
+			assertEquals(change(fp.getClassFromId(id), field, value), change(cp.getClassFromId(id), field, value));
+		}
+		assertSameOutput();
+	}
+
+	@Test
+	public void aBadSlotAddsNoRooms() {
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			public void execute() {
+				cp.addClass("X1", "New", "Tutor", 1, 50, 99);
+			}
+		});
+		assertEquals(fp.getNumRooms(), cp.getNumRooms());
+		assertSameOutput();
+	}
+
+	@Test
+	public void aViewOfADeletedClassCannotBeRead() {
+		final FitnessClass view = cp.getClassFromId("ID3");
+		cp.deleteClass("ID3");
+		cp.addClassFromFile("ID3B New Tutor 12 1 1"); //may be given the same row
+		assertThrows(IllegalStateException.class, new Executable() {
+			public void execute() {
+				view.getClassTime();
+			}
+		});
+	}
+
+	@Test
+	public void aViewOfAClassReaddedWithTheSameIdIsStale() {
+		String id = "SAME1"; //the very same String for both classes
+		cp.addClass(id, "New", "Tutor", 1, 8, 9);
+		final FitnessClass view = cp.getClassFromId(id);
+		cp.deleteClass(id);
+		cp.addClass(id, "Other", "Tutor", 2, 8, 10); //given the row just freed
+		assertThrows(IllegalStateException.class, new Executable() {
+			public void execute() {
+				view.getClassTime();
+			}
+		});
+		assertThrows(IllegalStateException.class, new Executable() {
+			public void execute() {
+				view.setClassName("Renamed"); //must not change the new class
+			}
+		});
+		FitnessClass now = cp.getClassFromId(id);
+		assertEquals(2, now.getClassDay());
+		assertEquals("Other", now.getClassName());
+	}
+
+	/**
+	 * makes one change to a class, or to nothing if there is no class
+	 * @return what came of it, to compare between the programmes
+	 */
+	private static String change(FitnessClass fc, int field, int value) {
+		if(fc == null)
+			return "none";
+		try {
+			switch(field) {
+				case 0: fc.setClassTime(8 + value % 9); break;
+				case 1: fc.setClassDay(value % 9); break;
+				case 2: fc.setClassRoom(value % 9); break;
+				case 3: fc.setClassID("ID" + value); break;
+				case 4: fc.setClassName("Class" + value % 8); break;
+				default: fc.setAttendance(1 + value % 6, value % 30);
+			}
+			return fc.getClassesOutLine();
+		}
+		catch(IllegalArgumentException e) {
+			return e.getMessage();
+		}
+	}
+}
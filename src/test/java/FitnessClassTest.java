@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.*;
+
+/**
+ * Tests that changing the details of a class in a programme moves it in
+ * the programme's timetable, indexes and groups, and that a change the
+ * programme cannot hold is refused with the class left as it was.
+ */
+public class FitnessClassTest {
+	private FitnessProgram fp;
+	private FitnessClass spin;
+
+	@BeforeEach
+	public void setUp() {
+		fp = new FitnessProgram(7, 2, 9, 15);
+		fp.addClassFromFile("SP1 Spin Smith 9");
+		fp.addClassFromFile("YO2 Yoga Jones 10");
+		spin = fp.getClassFromId("SP1");
+		spin.setAttendance(1, 10);
+	}
+
+	@Test
+	public void changingTheSlotMovesTheClass() {
+		spin.setClassTime(11);
+		spin.setClassDay(3);
+		assertSame(spin, fp.getClassAtSlot(3, 1, 11));
+		assertNull(fp.getClassAtSlot(1, 1, 9));
+		assertTrue(fp.getClassesByTime(11).contains(spin));
+		assertTrue(fp.getClassesByTime(9).isEmpty());
+		assertTrue(fp.isTutorFree("Smith", 1, 9));
+		assertFalse(fp.isTutorFree("Smith", 3, 11));
+		assertEquals(10, spin.getAttendance(1));
+		assertEquals(2, fp.getNumClasses());
+	}
+
+	@Test
+	public void changingTheRoomAddsRooms() {
+		spin.setClassRoom(5);
+		assertEquals(5, fp.getNumRooms());
+		assertSame(spin, fp.getClassAtSlot(1, 5, 9));
+	}
+
+	@Test
+	public void changingTheNameAndTutorRegroupsTheClass() {
+		spin.setClassName("Boxing");
+		spin.setClassTutor("Evans");
+		assertTrue(fp.getClassesByName("Spin").isEmpty());
+		assertTrue(fp.getClassesByName("Boxing").contains(spin));
+		assertTrue(fp.getClassesByTutor("Smith").isEmpty());
+		assertEquals(10, fp.getTutorStats("Evans").getTotal());
+	}
+
+	@Test
+	public void changingTheIdRekeysTheClass() {
+		spin.setClassID("SP9");
+		assertSame(spin, fp.getClassFromId("SP9"));
+		assertNull(fp.getClassFromId("SP1"));
+	}
+
+	@Test
+	public void aChangeTheProgrammeCannotHoldIsRefused() {
+		assertRefused(new Executable() {
+			public void execute() {
+				spin.setClassTime(10); //Yoga's slot
+			}
+		});
+		assertRefused(new Executable() {
+			public void execute() {
+				spin.setClassDay(8);
+			}
+		});
+		assertRefused(new Executable() {
+			public void execute() {
+				spin.setClassID("YO2");
+			}
+		});
+		assertSame(spin, fp.getClassAtSlot(1, 1, 9));
+		assertSame(spin, fp.getClassFromId("SP1"));
+		assertEquals("SP1 Spin Smith 9\r\nYO2 Yoga Jones 10", fp.makeClassesOutText());
+	}
+
+	@Test
+	public void aClassOutOfAProgrammeIsChangedStraightAway() {
+		FitnessClass fc = new FitnessClass("ZU3", "Zumba", "Brown");
+		fc.setClassTime(12);
+		fc.setClassRoom(3);
+		fc.setClassID("ZU4");
+		assertEquals("ZU4 Zumba Brown 12 1 3", fc.getClassesOutLine());
+	}
+
+	private void assertRefused(Executable change) {
+		assertThrows(IllegalArgumentException.class, change);
+	}
+}
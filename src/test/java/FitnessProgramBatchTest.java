@@ -0,0 +1,162 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.*;
+
+/**
+ * Tests that a batch of classes is added or deleted whole or not at all,
+ * with every problem with a refused batch listed, and that the listeners
+ * are told of a batch once.
+ */
+public class FitnessProgramBatchTest {
+	private FitnessProgram fp;
+	private String before;
+	private List<String> told; //what the listeners were told, one item per call
+
+	@BeforeEach
+	public void setUp() {
+		fp = ProgramSnapshotTest.makeProgramme();
+		before = fp.makeClassesOutText();
+		told = new ArrayList<String>();
+		fp.addProgramListener(new ProgramListener() {
+			public void classAdded(FitnessClass fc) {
+				told.add("added " + fc.getClassID());
+			}
+
+			public void classRemoved(FitnessClass fc) {
+				told.add("removed " + fc.getClassID());
+			}
+
+			public void attendanceChanged(FitnessClass fc, int week, int attendance) {
+				told.add("attendance " + fc.getClassID());
+			}
+
+			public void attendancesChanged(FitnessClass [] classes, int [] weeks, int [] attendances, int count) {
+				told.add("attendances " + count);
+			}
+
+			public void classesChanged(List<FitnessClass> removed, List<FitnessClass> added) {
+				told.add("batch " + removed.size() + " " + added.size());
+			}
+		});
+	}
+
+	/**
+	 * tries a batch that must be refused
+	 * @return the problems listed
+	 */
+	private List<String> refused(final List<FitnessClass> classes) {
+		ClassBatchException e = assertThrows(ClassBatchException.class, new Executable() {
+			public void execute() {
+				fp.scheduleNewClasses(classes);
+			}
+		});
+		assertEquals(before, fp.makeClassesOutText());
+		assertTrue(told.isEmpty());
+		for(FitnessClass fc : classes)
+			assertNull(fc.getProgram());
+		return e.getProblems();
+	}
+
+	@Test
+	public void aBatchIsAddedWhole() {
+		List<FitnessClass> classes = Arrays.asList(new FitnessClass("KB6", "Kettlebells", "Jones"),
+				new FitnessClass("CI7", "Circuits", "Smith"), new FitnessClass("AE8", "Aerobics", "Brown"));
+		List<TimeSlot> slots = fp.scheduleNewClasses(classes);
+		assertEquals(3, slots.size());
+		for(int i = 0; i < classes.size(); i++) {
+			TimeSlot slot = slots.get(i);
+			assertSame(classes.get(i), fp.getClassAtSlot(slot.getDay(), slot.getRoom(), slot.getHour()));
+		}
+		assertEquals(7, fp.getNumClasses());
+		assertEquals(Arrays.asList("batch 0 3"), told);
+	}
+
+	@Test
+	public void anAttendanceBatchIsOneChange() {
+		AttendanceBatch batch = new AttendanceBatch();
+		batch.startLine(fp.getClassFromId("SP1"));
+		for(int week = 1; week <= 5; week++)
+			batch.addWeek(10 * week);
+		batch.startLine(fp.getClassFromId("YO2"), 3);
+		batch.addWeek(7);
+		batch.apply();
+		assertEquals(Arrays.asList("attendances 6"), told);
+		assertEquals(50, fp.getClassFromId("SP1").getAttendance(5));
+		assertEquals(7, fp.getClassFromId("YO2").getAttendance(3));
+	}
+
+	@Test
+	public void anAttendanceBatchWithABadWeekSetsNothing() {
+		final AttendanceBatch batch = new AttendanceBatch();
+		batch.startLine(fp.getClassFromId("SP1"));
+		batch.addWeek(99);
+		batch.startLine(fp.getClassFromId("YO2"), AttendanceStore.MAX_WEEKS);
+		batch.addWeek(1);
+		batch.addWeek(1); //week MAX_WEEKS + 1
+		final String attendances = fp.makeAttendancesOutText();
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			public void execute() {
+				batch.apply();
+			}
+		});
+		assertEquals(attendances, fp.makeAttendancesOutText());
+		assertTrue(told.isEmpty());
+	}
+
+	@Test
+	public void everyProblemWithABatchIsListed() {
+		FitnessClass inProgramme = fp.getClassFromId("SP1");
+		List<String> problems = refused(Arrays.asList(new FitnessClass("KB6", "Kettlebells", "Jones"),
+				new FitnessClass("YO2", "Yoga", "Jones"), //ID in use
+				new FitnessClass("CI7", "Circuits", "Smith"),
+				new FitnessClass("CI7", "Circuits", "Brown"), //twice in the batch
+				new FitnessClass("AE8", "Step Aerobics", "Brown"))); //more than one word
+		assertEquals(3, problems.size());
+		assertTrue(problems.get(0).contains("YO2"));
+		assertTrue(problems.get(1).contains("CI7"));
+		assertTrue(problems.get(2).contains("AE8"));
+		assertSame(fp, inProgramme.getProgram());
+	}
+
+	@Test
+	public void aBatchTooBigForTheTimetableIsRefused() {
+		List<FitnessClass> classes = new ArrayList<FitnessClass>();
+		for(long i = 0; i <= fp.getCapacity(); i++)
+			classes.add(new FitnessClass("N" + i, "Spin", "Tutor" + i));
+		refused(classes);
+	}
+
+	@Test
+	public void aBatchWithAClassThatCannotBePlacedIsRefused() {
+		List<FitnessClass> classes = new ArrayList<FitnessClass>();
+		classes.add(new FitnessClass("KB6", "Kettlebells", "Jones"));
+		int hours = fp.getNumDays() * (fp.getLastStartTime() - fp.getFirstStartTime() + 1);
+		for(int i = 0; i < hours; i++) //Smith already teaches two of these hours
+			classes.add(new FitnessClass("SM" + i, "Spin", "Smith"));
+		List<String> problems = refused(classes);
+		assertEquals(2, problems.size());
+	}
+
+	@Test
+	public void aBatchIsDeletedWhole() {
+		List<FitnessClass> removed = fp.deleteClasses(Arrays.asList("SP1", "ZU4"));
+		assertEquals(2, removed.size());
+		assertEquals(2, fp.getNumClasses());
+		assertNull(fp.getClassFromId("SP1"));
+		assertEquals(Arrays.asList("batch 2 0"), told);
+	}
+
+	@Test
+	public void aBatchToDeleteWithABadIdDeletesNothing() {
+		ClassBatchException e = assertThrows(ClassBatchException.class, new Executable() {
+			public void execute() {
+				fp.deleteClasses(Arrays.asList("SP1", "XX9", "ZU4", "SP1"));
+			}
+		});
+		assertEquals(2, e.getProblems().size());
+		assertEquals(before, fp.makeClassesOutText());
+		assertTrue(told.isEmpty());
+	}
+}
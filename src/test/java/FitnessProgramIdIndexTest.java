@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that the ID index finds every class in the programme and nothing
+ * else: classes added from the file or the GUI are found, and classes
+ * deleted, replaced in their slot or replaced by a class of the same ID
+ * are not.
+ */
+public class FitnessProgramIdIndexTest {
+	private FitnessProgram fp;
+
+	@BeforeEach
+	public void setUp() {
+		fp = new FitnessProgram(7, 2, 9, 15);
+		fp.addClassFromFile("SP1 Spin Smith 9 1 1");
+		fp.addClassFromFile("YO2 Yoga Jones 10 2 2");
+	}
+
+	@Test
+	public void addedClassesAreFound() {
+		assertEquals("Spin", fp.getClassFromId("SP1").getClassName());
+		assertEquals(2, fp.getClassFromId("YO2").getClassDay());
+		TimeSlot slot = fp.addClassFromGui("PI3", "Pilates", "Brown");
+		FitnessClass fc = fp.getClassFromId("PI3");
+		assertSame(fc, fp.getClassAtSlot(slot.getDay(), slot.getRoom(), slot.getHour()));
+	}
+
+	@Test
+	public void otherIdsAreMisses() {
+		assertNull(fp.getClassFromId("SP2"));
+		assertNull(fp.getClassFromId("sp1")); //IDs are case sensitive
+		assertNull(fp.getClassFromId(" SP1"));
+		assertNull(fp.getClassFromId(""));
+		assertNull(new FitnessProgram().getClassFromId("SP1"));
+	}
+
+	@Test
+	public void deletedClassesAreMisses() {
+		assertTrue(fp.deleteClass("SP1"));
+		assertNull(fp.getClassFromId("SP1"));
+		assertFalse(fp.deleteClass("SP1"));
+		assertNotNull(fp.getClassFromId("YO2"));
+		fp.addClassFromFile("SP1 Boxercise Taylor 11 1 1"); //the ID can be used again
+		assertEquals("Boxercise", fp.getClassFromId("SP1").getClassName());
+	}
+
+	@Test
+	public void aClassReplacedInItsSlotIsAMiss() {
+		fp.addClassFromFile("ZU4 Zumba Wilson 9 1 1"); //SP1's slot
+		assertNull(fp.getClassFromId("SP1"));
+		assertSame(fp.getClassAtSlot(1, 1, 9), fp.getClassFromId("ZU4"));
+		assertEquals(2, fp.getNumClasses());
+	}
+
+	@Test
+	public void aReusedIdFindsTheNewClass() {
+		fp.addClassFromFile("SP1 Spin Evans 14 3 2");
+		assertEquals("Evans", fp.getClassFromId("SP1").getClassTutor());
+		assertNull(fp.getClassAtSlot(1, 1, 9)); //the older class is gone from its slot
+		assertEquals(2, fp.getNumClasses());
+	}
+
+	@Test
+	public void everyClassOfALargeProgrammeIsFound() {
+		FitnessProgram large = new FitnessProgram(7, 1, 9, 15);
+		int classes = 7 * 7 * 40;
+		for(int i = 0; i < classes; i++)
+			large.addClassFromFile("ID" + i + " Spin Smith " + (9 + i % 7) + " " + (1 + i / 7 % 7) + " " + (1 + i / 49));
+		assertEquals(40, large.getNumRooms());
+		for(int i = 0; i < classes; i++) {
+			FitnessClass fc = large.getClassFromId("ID" + i);
+			assertEquals(9 + i % 7, fc.getClassTime());
+			assertEquals(1 + i / 49, fc.getClassRoom());
+		}
+		assertNull(large.getClassFromId("ID" + classes));
+	}
+}
@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that the top and bottom classes are the first and last classes
+ * of the full ranking, with classes of equal average in timetable order,
+ * both with and without the ranking index and as the programme changes.
+ */
+public class FitnessProgramRankingTest {
+	/**
+	 * makes a programme of 30 classes with only three different totals, so
+	 * most classes tie with others
+	 */
+	private static FitnessProgram makeTiedProgramme() {
+		FitnessProgram fp = new FitnessProgram(3, 2, 9, 14); //hour 14 is left vacant
+		for(int i = 0; i < 30; i++) {
+			fp.addClassFromFile("ID" + i + " Spin Smith " + (9 + i % 5) + " " + (1 + i / 10) + " " + (1 + i / 5 % 2));
+			fp.getClassFromId("ID" + i).setAttendance(1, i * 7 % 3);
+		}
+		return fp;
+	}
+
+	private static List<String> ids(FitnessClass [] classes) {
+		List<String> ids = new ArrayList<String>();
+		for(FitnessClass fc : classes)
+			ids.add(fc.getClassID());
+		return ids;
+	}
+
+	/**
+	 * checks the top and bottom k for every k against the full ranking
+	 */
+	private static void assertTopAndBottom(FitnessProgram fp) {
+		List<String> ranking = ids(fp.makeSortedList());
+		int n = ranking.size();
+		for(int k = 0; k <= n + 1; k++) {
+			int m = Math.min(k, n);
+			assertEquals(ranking.subList(0, m), ids(fp.getTopClasses(k)), "top " + k);
+			assertEquals(ranking.subList(n - m, n), ids(fp.getBottomClasses(k)), "bottom " + k);
+		}
+		assertEquals(0, fp.getTopClasses(-1).length);
+	}
+
+	@Test
+	public void tiesAreInTimetableOrder() {
+		FitnessProgram fp = makeTiedProgramme();
+		FitnessClass [] ranking = fp.makeSortedList();
+		for(int i = 1; i < ranking.length; i++) {
+			FitnessClass a = ranking[i - 1];
+			FitnessClass b = ranking[i];
+			assertTrue(a.getAttendanceTotal() >= b.getAttendanceTotal());
+			if(a.getAttendanceTotal() == b.getAttendanceTotal()) //by day, room, then time
+				assertTrue(a.getClassDay() < b.getClassDay() || a.getClassDay() == b.getClassDay()
+						&& (a.getClassRoom() < b.getClassRoom() || a.getClassRoom() == b.getClassRoom()
+						&& a.getClassTime() < b.getClassTime()), a.getClassID() + " before " + b.getClassID());
+		}
+		assertEquals(Arrays.asList("ID2", "ID5", "ID8"), ids(fp.getTopClasses(3)));
+		assertEquals(Arrays.asList("ID24", "ID27"), ids(fp.getBottomClasses(2)));
+	}
+
+	@Test
+	public void topAndBottomAreTheEndsOfTheRanking() {
+		FitnessProgram fp = makeTiedProgramme();
+		assertTopAndBottom(fp);
+		fp.setRankingIndexed(true);
+		assertTrue(fp.isRankingIndexed());
+		assertTopAndBottom(fp);
+	}
+
+	@Test
+	public void theIndexFollowsChanges() {
+		FitnessProgram fp = makeTiedProgramme();
+		fp.setRankingIndexed(true);
+		FitnessClass id29 = fp.getClassFromId("ID29"); //last of the top tie
+		id29.setClassTime(14);
+		id29.setClassDay(1);
+		id29.setClassRoom(1);
+		assertEquals(Arrays.asList("ID2", "ID29", "ID5"), ids(fp.getTopClasses(3)));
+		fp.deleteClass("ID0");
+		id29.setClassTime(9);
+		assertEquals("ID29", fp.getTopClasses(1)[0].getClassID()); //now the earliest of the tie
+		fp.getClassFromId("ID3").setAttendance(2, 3); //a total of 3, above every other
+		assertEquals("ID3", fp.getTopClasses(1)[0].getClassID());
+		fp.getClassFromId("ID3").setAttendance(2, 0);
+		fp.addClassFromFile("NEW Spin Smith 14 2 2");
+		assertTopAndBottom(fp);
+		Random random = new Random(8);
+		for(int i = 0; i < 200; i++)
+			fp.getClassFromId("ID" + (1 + random.nextInt(29))).setAttendance(1 + random.nextInt(5), random.nextInt(3));
+		assertTopAndBottom(fp);
+		fp.setRankingIndexed(false);
+		assertTopAndBottom(fp);
+	}
+}
@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that the running attendance totals of the classes and the
+ * programme stay equal to the totals summed afresh from the figures, as
+ * figures are set and added to, classes are moved to other slots, and
+ * classes are added and deleted.
+ */
+public class FitnessProgramTotalsTest {
+	/**
+	 * checks every running total of a programme against the figures
+	 */
+	private static void assertTotals(FitnessProgram fp) {
+		List<FitnessClass> classes = fp.getClassesInTimetableOrder();
+		long total = 0;
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		long [] weekTotals = new long [FitnessClass.NUM_WEEKS + 1];
+		Map<String, Long> tutorTotals = new TreeMap<String, Long>();
+		for(FitnessClass fc : classes) {
+			int classTotal = 0;
+			for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++) {
+				classTotal += fc.getAttendance(week);
+				weekTotals[week] += fc.getAttendance(week);
+			}
+			assertEquals(classTotal, fc.getAttendanceTotal(), fc.getClassID());
+			assertEquals(classTotal / (double) FitnessClass.NUM_WEEKS, fc.getAvgAttendance(), 1e-12);
+			total += classTotal;
+			min = Math.min(min, classTotal);
+			max = Math.max(max, classTotal);
+			Long tutorTotal = tutorTotals.get(fc.getClassTutor());
+			tutorTotals.put(fc.getClassTutor(), ((tutorTotal == null) ? 0 : tutorTotal) + classTotal);
+		}
+		assertEquals(classes.size(), fp.getNumClasses());
+		assertEquals(classes.isEmpty() ? 0 : total / (FitnessClass.NUM_WEEKS * (double) classes.size()),
+				fp.getOverallAvg(), 1e-12);
+		for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++)
+			assertEquals(weekTotals[week], fp.getWeekTotal(week), "week " + week);
+		AttendanceStats stats = fp.getOverallStats();
+		assertEquals(classes.size(), stats.getCount());
+		assertEquals(total, stats.getTotal());
+		if(!classes.isEmpty()) {
+			assertEquals(min, stats.getMinTotal());
+			assertEquals(max, stats.getMaxTotal());
+		}
+		for(Map.Entry<String, AttendanceStats> entry : fp.getStatsByTutor().entrySet())
+			assertEquals(tutorTotals.get(entry.getKey()).longValue(), entry.getValue().getTotal(), entry.getKey());
+	}
+
+	@Test
+	public void totalsFollowSetsAndAdds() {
+		FitnessProgram fp = new FitnessProgram(7, 1, 9, 15);
+		fp.addClassFromFile("SP1 Spin Smith 9 1 1");
+		fp.addClassFromFile("YO2 Yoga Jones 10 1 1");
+		FitnessClass sp1 = fp.getClassFromId("SP1");
+		sp1.setAttendance(1, 10);
+		sp1.setAttendance(1, 4); //setting a week again replaces its figure
+		sp1.addAttendance(2, 3);
+		sp1.addAttendance(2, 3);
+		fp.getClassFromId("YO2").setAttendance(5, 20);
+		assertEquals(10, sp1.getAttendanceTotal());
+		assertEquals(2.0, sp1.getAvgAttendance(), 0);
+		assertEquals(3.0, fp.getOverallAvg(), 1e-12);
+		sp1.setAttendance(FitnessClass.NUM_WEEKS + 1, 50); //later weeks are kept but not counted
+		assertEquals(10, sp1.getAttendanceTotal());
+		assertTotals(fp);
+	}
+
+	@Test
+	public void aClassKeepsItsTotalWhenAddedAndMoved() {
+		FitnessProgram fp = new FitnessProgram(7, 1, 9, 15);
+		FitnessClass fc = new FitnessClass("SP1 Spin Smith 9 1 1");
+		for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++)
+			fc.setAttendance(week, week);
+		fp.addClass(fc); //figures set before the class joined count too
+		assertEquals(15, fp.getOverallStats().getTotal());
+		fc.setClassTime(14);
+		fc.setClassDay(3);
+		fc.setClassRoom(4); //a room that is added for it
+		assertSame(fc, fp.getClassAtSlot(3, 4, 14));
+		assertEquals(15, fc.getAttendanceTotal());
+		assertEquals(15, fp.getStatsByTime().get(14).getTotal());
+		assertNull(fp.getStatsByTime().get(9));
+		assertTotals(fp);
+		fp.deleteClass("SP1");
+		assertEquals(0, fp.getOverallAvg(), 0);
+		assertTotals(fp);
+	}
+
+	@Test
+	public void totalsFollowRandomChanges() {
+		Random random = new Random(4);
+		FitnessProgram fp = new FitnessProgram(3, 2, 9, 12);
+		String [] tutors = {"Smith", "Jones", "Brown"};
+		for(int i = 0; i < 3000; i++) {
+			String id = "ID" + random.nextInt(30);
+			FitnessClass fc = fp.getClassFromId(id);
+			int day = 1 + random.nextInt(3);
+			int room = 1 + random.nextInt(2);
+			int time = 9 + random.nextInt(4);
+			switch(random.nextInt(5)) {
+			case 0: //add, replacing any class in the slot or with the ID
+				fp.addClassFromFile(id + " Spin " + tutors[random.nextInt(3)] + " " + time + " " + day + " " + room);
+				break;
+			case 1:
+				fp.deleteClass(id);
+				break;
+			case 2: //move to a vacant hour of the same day and room
+				if(fc != null && fp.getClassAtSlot(fc.getClassDay(), fc.getClassRoom(), time) == null)
+					fc.setClassTime(time);
+				break;
+			case 3:
+				if(fc != null)
+					fc.setAttendance(1 + random.nextInt(FitnessClass.NUM_WEEKS), random.nextInt(40));
+				break;
+			default:
+				if(fc != null)
+					fc.addAttendance(1 + random.nextInt(FitnessClass.NUM_WEEKS), random.nextInt(5));
+			}
+			if(i % 50 == 0)
+				assertTotals(fp);
+		}
+		assertTotals(fp);
+	}
+}
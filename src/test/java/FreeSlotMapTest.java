@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that the free-slot bitmap finds the same earliest vacant slot as
+ * a scan of every slot, by day, then room, then hour, as slots are taken
+ * and given back and rooms are added, and that the programme's earliest
+ * slot is the one a class was just deleted from.
+ */
+public class FreeSlotMapTest {
+	/**
+	 * returns the earliest vacant slot by scanning, or null if there is none
+	 * @param day the day to look in, or 0 for any day
+	 * @param room the room to look in, or 0 for any room
+	 */
+	private static TimeSlot scan(boolean [][][] taken, int day, int room) {
+		for(int d = 1; d <= taken.length; d++)
+			for(int r = 1; r <= taken[d - 1].length; r++)
+				for(int h = 0; h < taken[d - 1][r - 1].length; h++)
+					if((day == 0 || day == d) && (room == 0 || room == r) && !taken[d - 1][r - 1][h])
+						return new TimeSlot(d, r, 9 + h);
+		return null;
+	}
+
+	@Test
+	public void theFirstFreeSlotIsTheOneAScanFinds() {
+		Random random = new Random(5);
+		int days = 3;
+		int rooms = 70; //more words than one summary word covers
+		FreeSlotMap map = new FreeSlotMap(days, 1, 9, 7);
+		map.addRooms(rooms);
+		boolean [][][] taken = new boolean [days][rooms][7];
+		long free = days * rooms * 7;
+		for(int i = 0; i < 20000; i++) {
+			int day = 1 + random.nextInt(days);
+			int room = 1 + random.nextInt(rooms);
+			int hour = random.nextInt(7);
+			boolean take = random.nextInt(10) < 7; //mostly fill, so full rooms and days are tried
+			if(taken[day - 1][room - 1][hour] != take)
+				free += take ? -1 : 1;
+			taken[day - 1][room - 1][hour] = take;
+			if(take)
+				map.occupy(day, room, 9 + hour);
+			else
+				map.release(day, room, 9 + hour);
+			assertEquals(free, map.getNumFree());
+			assertEquals(scan(taken, 0, 0), map.firstFree());
+			assertEquals(scan(taken, day, 0), map.firstFreeOnDay(day));
+			assertEquals(scan(taken, 0, room), map.firstFreeInRoom(room));
+		}
+	}
+
+	@Test
+	public void aFullMapHasNoFreeSlot() {
+		FreeSlotMap map = new FreeSlotMap(2, 1, 9, 3);
+		for(int day = 1; day <= 2; day++)
+			for(int hour = 9; hour <= 11; hour++)
+				map.occupy(day, 1, hour);
+		assertTrue(map.isFull());
+		assertNull(map.firstFree());
+		assertTrue(map.isDayFull(2));
+		map.addRooms(2); //a new room starts vacant
+		assertEquals(new TimeSlot(1, 2, 9), map.firstFree());
+		assertFalse(map.isRoomFull(2));
+		assertTrue(map.isRoomFull(1));
+	}
+
+	@Test
+	public void theEarliestSlotIsTheOneJustDeletedFrom() {
+		FitnessProgram fp = new FitnessProgram(2, 2, 9, 11);
+		for(int day = 1; day <= 2; day++)
+			for(int room = 1; room <= 2; room++)
+				for(int hour = 9; hour <= 11; hour++)
+					fp.addClassFromFile("C" + day + room + hour + " Spin Tutor" + room + " " + hour + " " + day + " " + room);
+		assertTrue(fp.isFull());
+		assertNull(fp.getEarliestSlot());
+		fp.deleteClass("C2210");
+		assertEquals(new TimeSlot(2, 2, 10), fp.getEarliestSlot());
+		fp.deleteClass("C1211");
+		assertEquals(new TimeSlot(1, 2, 11), fp.getEarliestSlot()); //an earlier day comes first
+		assertEquals(new TimeSlot(2, 2, 10), fp.getEarliestSlotOnDay(2));
+		assertEquals(new TimeSlot(1, 2, 11), fp.getEarliestSlotInRoom(2));
+		assertNull(fp.getEarliestSlotInRoom(1));
+		assertEquals(11, fp.getEarliestTime());
+		assertEquals(new TimeSlot(1, 2, 11), fp.addClassFromGui("NEW", "Yoga", "Brown"));
+		assertEquals(new TimeSlot(2, 2, 10), fp.getEarliestSlot());
+	}
+}
@@ -0,0 +1,109 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * Tests the progress of loads run off the event thread: loaders count
+ * every byte of their files, including when shards are parsed on many
+ * threads, and a cancelled load stops at its next check, with the
+ * parallel ingester applying nothing.
+ */
+public class LoadProgressTest {
+	private static final int LINES = 200000; //several progress checks' worth
+
+	@TempDir
+	Path dir;
+
+	private FitnessProgram fp;
+	private String attendancesFile;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		fp = new FitnessProgram();
+		fp.addClassFromFile("SP1 Spin Smith 9");
+		fp.addClassFromFile("YO2 Yoga Jones 10");
+		StringBuilder text = new StringBuilder();
+		for(int i = 0; i < LINES; i++)
+			text.append((i % 2 == 0) ? "SP1" : "YO2").append(" 1 2 3 4 ").append(i % 10).append('\n');
+		attendancesFile = dir.resolve("AttendancesIn.txt").toString();
+		Files.write(Paths.get(attendancesFile), text.toString().getBytes(Charset.defaultCharset()));
+	}
+
+	@Test
+	public void percentFollowsTheBytesRead() {
+		LoadProgress progress = new LoadProgress();
+		assertEquals(-1, progress.getPercent()); //nothing to read yet
+		progress.addTotal(200);
+		progress.advance(50);
+		assertEquals(25, progress.getPercent());
+		progress.addTotal(200); //a second file
+		assertEquals(12, progress.getPercent());
+		progress.advance(400);
+		assertEquals(100, progress.getPercent());
+	}
+
+	@Test
+	public void aLoaderCountsEveryByte() throws IOException {
+		LoadProgress progress = new LoadProgress();
+		ProgramFileLoader loader = new ProgramFileLoader(fp);
+		loader.setProgress(progress);
+		assertEquals(LINES, loader.loadAttendances(attendancesFile));
+		long size = Files.size(Paths.get(attendancesFile));
+		assertEquals(size, progress.getTotal());
+		assertEquals(size, progress.getDone());
+	}
+
+	@Test
+	public void parallelShardsCountEveryByte() throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			LoadProgress progress = new LoadProgress();
+			AttendanceIngester ingester = new AttendanceIngester(fp, pool);
+			ingester.setProgress(progress);
+			assertEquals(2 * LINES, ingester.ingest(Arrays.asList(attendancesFile, attendancesFile), 4));
+			long size = Files.size(Paths.get(attendancesFile));
+			assertEquals(2 * size, progress.getTotal());
+			assertEquals(2 * size, progress.getDone());
+			assertEquals(9, fp.getClassFromId("YO2").getAttendance(5)); //the last line of the last file
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void aCancelledLoaderStops() {
+		final LoadProgress progress = new LoadProgress();
+		progress.cancel();
+		final ProgramFileLoader loader = new ProgramFileLoader(fp);
+		loader.setProgress(progress);
+		assertThrows(InterruptedIOException.class, new Executable() {
+			public void execute() throws IOException {
+				loader.loadAttendances(attendancesFile);
+			}
+		});
+		assertTrue(progress.getDone() < progress.getTotal());
+	}
+
+	@Test
+	public void aCancelledIngestAppliesNothing() {
+		final LoadProgress progress = new LoadProgress();
+		progress.cancel();
+		final AttendanceIngester ingester = new AttendanceIngester(fp);
+		ingester.setProgress(progress);
+		String before = fp.makeAttendancesOutText();
+		assertThrows(InterruptedIOException.class, new Executable() {
+			public void execute() throws IOException {
+				ingester.ingest(Arrays.asList(attendancesFile));
+			}
+		});
+		assertEquals(before, fp.makeAttendancesOutText());
+	}
+}
@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * Tests that the memory-mapped loader reads the files as the line by
+ * line methods of FitnessProgram do, and that a bad line is reported
+ * with its line number in the file, counting blank lines, including
+ * when a file is split into shards parsed in parallel.
+ */
+public class ProgramFileLoaderTest {
+	@TempDir
+	Path dir;
+
+	private String write(String name, String text) throws IOException {
+		Path file = dir.resolve(name);
+		Files.write(file, text.getBytes(Charset.defaultCharset()));
+		return file.toString();
+	}
+
+	/**
+	 * loads a ClassesIn file that must be refused
+	 * @return the exception
+	 */
+	private ProgramFileException refusedClasses(String text) throws IOException {
+		final String file = write("ClassesIn.txt", text);
+		final FitnessProgram fp = new FitnessProgram();
+		return assertThrows(ProgramFileException.class, new Executable() {
+			public void execute() throws IOException {
+				new ProgramFileLoader(fp).loadClasses(file);
+			}
+		});
+	}
+
+	/**
+	 * loads an AttendancesIn file that must be refused, into a programme of
+	 * two classes
+	 * @return the exception
+	 */
+	private ProgramFileException refusedAttendances(String text) throws IOException {
+		final String file = write("AttendancesIn.txt", text);
+		final FitnessProgram fp = new FitnessProgram();
+		fp.addClassFromFile("SP1 Spin Smith 9");
+		fp.addClassFromFile("YO2 Yoga Jones 10");
+		return assertThrows(ProgramFileException.class, new Executable() {
+			public void execute() throws IOException {
+				new ProgramFileLoader(fp).loadAttendances(file);
+			}
+		});
+	}
+
+	@Test
+	public void loadsWhatTheLineMethodsLoad() throws IOException {
+		String classes = "SP1 Spin Smith 9\r\n\r\nYO2\tYoga  Jones 10 2 3\n  \nPI3 Pilates Brown 14";
+		String attendances = "SP1 10 20 30 40 50\n\nYO2 1 2 3 4 5 6 7\r\n";
+		FitnessProgram loaded = new FitnessProgram(7, 1, 9, 15);
+		ProgramFileLoader loader = new ProgramFileLoader(loaded);
+		assertEquals(3, loader.loadClasses(write("ClassesIn.txt", classes)));
+		assertEquals(2, loader.loadAttendances(write("AttendancesIn.txt", attendances)));
+		FitnessProgram expected = new FitnessProgram(7, 1, 9, 15);
+		expected.addClassFromFile("SP1 Spin Smith 9");
+		expected.addClassFromFile("YO2 Yoga Jones 10 2 3");
+		expected.addClassFromFile("PI3 Pilates Brown 14");
+		expected.populateAttendances("SP1 10 20 30 40 50");
+		expected.populateAttendances("YO2 1 2 3 4 5 6 7");
+		assertEquals(expected.makeClassesOutText(), loaded.makeClassesOutText());
+		assertEquals(expected.makeAttendancesOutText(), loaded.makeAttendancesOutText());
+	}
+
+	@Test
+	public void badClassLinesGiveTheirLineNumbers() throws IOException {
+		ProgramFileException e = refusedClasses("SP1 Spin Smith 9\n\nYO2 Yoga Jones ten\n");
+		assertEquals(3, e.getLineNumber());
+		assertTrue(e.getProblem().contains("start time"), e.getProblem());
+		assertTrue(e.getFileName().endsWith("ClassesIn.txt"));
+		assertEquals(1, refusedClasses("SP1 Spin Smith\n").getLineNumber());
+		assertEquals(2, refusedClasses("SP1 Spin Smith 9\r\nYO2 Yoga Jones 10 1 1 7\r\n").getLineNumber());
+		assertEquals(4, refusedClasses("\n\n\nSP1 Spin Smith 99999999999\n").getLineNumber());
+		assertEquals(2, refusedClasses("SP1 Spin Smith 9 1 1\nYO2 Yoga Jones 9 1 99999\n").getLineNumber());
+	}
+
+	@Test
+	public void badAttendanceLinesGiveTheirLineNumbers() throws IOException {
+		ProgramFileException e = refusedAttendances("SP1 1 2 3 4 5\n\nXX9 1 2 3 4 5\n");
+		assertEquals(3, e.getLineNumber());
+		assertTrue(e.getProblem().contains("XX9"), e.getProblem());
+		assertEquals(2, refusedAttendances("SP1 1 2 3 4 5\r\nYO2 1 2 -3 4 5\r\n").getLineNumber());
+		assertEquals(1, refusedAttendances("YO2\n").getLineNumber());
+	}
+
+	@Test
+	public void aBadLineInALaterShardGivesItsLineInTheFile() throws IOException {
+		FitnessProgram fp = new FitnessProgram();
+		fp.addClassFromFile("SP1 Spin Smith 9");
+		StringBuilder text = new StringBuilder();
+		int lines = (int) (4 * AttendanceIngester.MIN_SHARD_SIZE / 14); //most lines are 14 bytes, so about four shards
+		for(int i = 1; i < lines; i++)
+			text.append((i % 100 == 0) ? "\n" : "SP1 1 2 3 4 " + (i % 10) + "\n");
+		text.append("SP1 1 2 3 4 x\n");
+		final String file = write("AttendancesIn.txt", text.toString());
+		final AttendanceIngester ingester = new AttendanceIngester(fp);
+		final String before = fp.makeAttendancesOutText();
+		ProgramFileException e = assertThrows(ProgramFileException.class, new Executable() {
+			public void execute() throws IOException {
+				ingester.ingest(Arrays.asList(file), 4);
+			}
+		});
+		assertEquals(lines, e.getLineNumber());
+		assertEquals(before, fp.makeAttendancesOutText()); //nothing is applied
+	}
+}
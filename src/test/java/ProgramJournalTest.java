@@ -0,0 +1,140 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * Tests that the changes journalled since the last snapshot are replayed
+ * on recovery, and that a record cut short at the end of the journal is
+ * dropped: cut off by recover, and left in place by read.
+ */
+public class ProgramJournalTest {
+	@TempDir
+	Path dir;
+
+	private String journalFile;
+	private String snapshotFile;
+
+	@BeforeEach
+	public void setUp() {
+		journalFile = dir.resolve("p.journal").toString();
+		snapshotFile = dir.resolve("p.snap").toString();
+	}
+
+	/**
+	 * starts journalling a new programme from a snapshot of it
+	 */
+	private ProgramJournal start(FitnessProgram fp) throws IOException {
+		ProgramJournal journal = new ProgramJournal(journalFile, snapshotFile);
+		journal.attach(fp);
+		journal.compact();
+		return journal;
+	}
+
+	/**
+	 * makes changes of every kind journalled
+	 */
+	private static void change(FitnessProgram fp) {
+		fp.addClassFromFile("BO5 Boxing Evans 11 2 3"); //adds a room
+		fp.deleteClass("YO2");
+		fp.getClassFromId("SP1").setAttendance(2, 40);
+		fp.getClassFromId("BO5").setAttendance(7, 3); //beyond NUM_WEEKS
+		AttendanceBatch batch = new AttendanceBatch(); //one record
+		batch.startLine(fp.getClassFromId("SP1"));
+		batch.addWeek(9);
+		batch.addWeek(8);
+		batch.startLine(fp.getClassFromId("BO5"), 6);
+		batch.addWeek(4);
+		batch.addWeek(5);
+		batch.apply();
+		fp.scheduleNewClasses(Arrays.asList(new FitnessClass("KB6", "Kettlebells", "Jones"),
+				new FitnessClass("CI7", "Circuits", "Smith")));
+		fp.deleteClasses(Arrays.asList("ZU4", "PI3"));
+		fp.getClassFromId("CI7").setClassID("CI8");
+	}
+
+	@Test
+	public void recoverReplaysTheChangesSinceTheSnapshot() throws IOException {
+		FitnessProgram fp = ProgramSnapshotTest.makeProgramme();
+		ProgramJournal journal = start(fp);
+		change(fp);
+		journal.close();
+
+		ProgramJournal again = new ProgramJournal(journalFile, snapshotFile);
+		FitnessProgram back = again.recover();
+		again.close();
+		assertEquals(fp.getNumRooms(), back.getNumRooms());
+		assertEquals(fp.makeClassesOutText(), back.makeClassesOutText());
+		assertEquals(fp.makeAttendancesOutText(), back.makeAttendancesOutText());
+	}
+
+	@Test
+	public void compactEmptiesTheJournal() throws IOException {
+		FitnessProgram fp = ProgramSnapshotTest.makeProgramme();
+		ProgramJournal journal = start(fp);
+		change(fp);
+		journal.sync();
+		assertTrue(Files.size(Paths.get(journalFile)) > 0);
+		journal.compact();
+		assertEquals(0, Files.size(Paths.get(journalFile)));
+		journal.close();
+		assertEquals(fp.makeAttendancesOutText(), ProgramSnapshot.load(snapshotFile).makeAttendancesOutText());
+	}
+
+	@Test
+	public void recoverCutsOffARecordCutShort() throws IOException {
+		FitnessProgram fp = ProgramSnapshotTest.makeProgramme();
+		ProgramJournal journal = start(fp);
+		change(fp);
+		journal.close();
+		long whole = Files.size(Paths.get(journalFile));
+		tearTail();
+
+		ProgramJournal again = new ProgramJournal(journalFile, snapshotFile);
+		FitnessProgram back = again.recover();
+		assertEquals(whole, Files.size(Paths.get(journalFile)));
+		assertEquals(fp.makeAttendancesOutText(), back.makeAttendancesOutText());
+		//changes after recovery follow on from the last whole record
+		again.attach(back);
+		back.getClassFromId("SP1").setAttendance(1, 99);
+		again.close();
+		FitnessProgram third = ProgramJournal.read(journalFile, snapshotFile);
+		assertEquals(99, third.getClassFromId("SP1").getAttendance(1));
+	}
+
+	@Test
+	public void readLeavesTheFilesAsTheyWere() throws IOException {
+		FitnessProgram fp = ProgramSnapshotTest.makeProgramme();
+		ProgramJournal journal = start(fp);
+		change(fp);
+		journal.close();
+		tearTail();
+		byte [] journalBytes = Files.readAllBytes(Paths.get(journalFile));
+		byte [] snapshotBytes = Files.readAllBytes(Paths.get(snapshotFile));
+
+		FitnessProgram back = ProgramJournal.read(journalFile, snapshotFile);
+		assertEquals(fp.makeClassesOutText(), back.makeClassesOutText());
+		assertEquals(fp.makeAttendancesOutText(), back.makeAttendancesOutText());
+		assertArrayEquals(journalBytes, Files.readAllBytes(Paths.get(journalFile)));
+		assertArrayEquals(snapshotBytes, Files.readAllBytes(Paths.get(snapshotFile)));
+	}
+
+	@Test
+	public void thereIsNothingToRecoverWithoutASnapshot() throws IOException {
+		ProgramJournal journal = new ProgramJournal(journalFile, snapshotFile);
+		assertNull(journal.recover());
+		journal.close();
+		assertNull(ProgramJournal.read(journalFile, snapshotFile));
+	}
+
+	/**
+	 * appends the start of a record, as a crash while writing one leaves
+	 */
+	private void tearTail() throws IOException {
+		Files.write(Paths.get(journalFile), new byte [] {0, 0, 0, 40, 1, 2, 3},
+				StandardOpenOption.APPEND);
+	}
+}
@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.*;
+import javax.management.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests the metrics: that latency percentiles are within the histogram's
+ * stated accuracy, that the counters follow lookups, attendance lines and
+ * reports, and that the figures can be read over JMX. The counters are
+ * shared by the whole process, so only their changes are checked.
+ */
+public class ProgramMetricsTest {
+	@Test
+	public void bucketsHoldTheirValuesToWithinThreePercent() {
+		for(long value = 0; value < 1L << 40; value = value * 5 / 4 + 1) {
+			long middle = LatencyHistogram.middleOf(LatencyHistogram.bucketOf(value));
+			assertTrue(Math.abs(middle - value) <= value / 32 + 1, value + " held as " + middle);
+		}
+	}
+
+	@Test
+	public void percentilesAreWithinTheStatedAccuracy() {
+		LatencyHistogram histogram = new LatencyHistogram("test");
+		assertEquals(0, histogram.getPercentile(50));
+		for(long nanos = 1; nanos <= 100000; nanos++)
+			histogram.record(nanos);
+		histogram.record(-5); //counted as 0
+		assertEquals(100001, histogram.getCount());
+		assertEquals(50.0, histogram.getMeanMicros(), 0.01);
+		assertEquals(100.0, histogram.getMaxMicros(), 0);
+		assertEquals(50000, histogram.getPercentile(50), 50000 / 32);
+		assertEquals(99000, histogram.getPercentile(99), 99000 / 32);
+		assertEquals(100000, histogram.getPercentile(100), 100000 / 32); //the middle of its bucket, not the max
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMaxMicros(), 0);
+	}
+
+	@Test
+	public void countersFollowTheProgramme() {
+		FitnessProgram fp = new FitnessProgram(7, 1, 9, 15);
+		fp.addClassFromFile("SP1 Spin Smith 9");
+		fp.addClassFromFile("YO2 Yoga Jones 10");
+		long lookups = ProgramMetrics.LOOKUPS.sum();
+		long misses = ProgramMetrics.LOOKUP_MISSES.sum();
+		fp.getClassFromId("SP1");
+		fp.getClassFromId("XX9");
+		fp.getClassFromId("YO3");
+		assertEquals(3, ProgramMetrics.LOOKUPS.sum() - lookups);
+		assertEquals(2, ProgramMetrics.LOOKUP_MISSES.sum() - misses);
+
+		long lines = ProgramMetrics.ATTENDANCE_LINES.sum();
+		fp.populateAttendances("SP1 1 2 3 4 5");
+		fp.populateAttendances("YO2 5 4 3 2 1");
+		assertEquals(2, ProgramMetrics.ATTENDANCE_LINES.sum() - lines);
+
+		ReportCache cache = new ReportCache(fp);
+		long hits = ProgramMetrics.REPORT_CACHE_HITS.sum();
+		long rows = ProgramMetrics.REPORT_ROWS_BUILT.sum();
+		long reports = ProgramMetrics.REPORT.getCount();
+		cache.getReport();
+		cache.getReport();
+		fp.getClassFromId("YO2").setAttendance(1, 50);
+		cache.getReport();
+		assertEquals(1, ProgramMetrics.REPORT_CACHE_HITS.sum() - hits);
+		assertEquals(2 + 1, ProgramMetrics.REPORT_ROWS_BUILT.sum() - rows); //every row, then the changed one
+		assertEquals(2, ProgramMetrics.REPORT.getCount() - reports);
+		cache.dispose();
+	}
+
+	@Test
+	public void figuresCanBeReadOverJmx() throws JMException {
+		ProgramMetrics.register();
+		ProgramMetrics.register(); //again does nothing
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		new FitnessProgram().getClassFromId("XX9");
+		ObjectName counters = new ObjectName(ProgramMetrics.DOMAIN + ":type=ProgramMetrics");
+		assertEquals(ProgramMetrics.LOOKUP_MISSES.sum(), server.getAttribute(counters, "LookupMisses"));
+		assertTrue(((String) server.getAttribute(counters, "Summary")).startsWith("metrics "));
+		ObjectName sort = new ObjectName(ProgramMetrics.DOMAIN + ":type=Latency,name=sort");
+		new FitnessProgram().makeSortedList();
+		assertEquals(ProgramMetrics.SORT.getCount(), server.getAttribute(sort, "Count"));
+	}
+}
@@ -0,0 +1,173 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that the registry's parallel roll-ups give what a plain sequential
+ * fold over the centres gives, including the merged top classes with
+ * ties, and that each centre is rolled up at a single moment while the
+ * centres are changed.
+ */
+public class ProgramRegistryTest {
+	private static final int CENTRES = 12;
+	private static final int CLASSES = 60; //per centre
+
+	private ForkJoinPool pool;
+	private ProgramRegistry registry;
+
+	@BeforeEach
+	public void setUp() {
+		pool = new ForkJoinPool(4);
+		registry = new ProgramRegistry(pool);
+		Random random = new Random(3);
+		for(int c = 0; c < CENTRES; c++)
+			registry.addCentre("Centre" + c, makeProgramme(random, CLASSES));
+	}
+
+	@AfterEach
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * makes a programme whose figures are few and small, so many classes tie
+	 * @param random where the figures come from, or null for none
+	 */
+	private static FitnessProgram makeProgramme(Random random, int classes) {
+		FitnessProgram fp = new FitnessProgram(7, 2, 9, 15);
+		for(int i = 0; i < classes; i++) {
+			fp.addClassFromFile("ID" + i + " Class" + (i % 4) + " Tutor" + (i % 5) + " " + (9 + i % 7)
+					+ " " + (1 + i / 14) + " " + (1 + i / 7 % 2));
+			if(random != null)
+				for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++)
+					fp.getClassFromId("ID" + i).setAttendance(week, random.nextInt(3));
+		}
+		return fp;
+	}
+
+	/**
+	 * returns the top k classes of every centre, worked out one class at a time
+	 */
+	private List<String> sequentialTop(int k) {
+		List<CentreClass> all = new ArrayList<CentreClass>();
+		for(String centre : registry.getCentres())
+			for(FitnessClass fc : registry.getProgram(centre).getClassesInTimetableOrder())
+				all.add(new CentreClass(centre, fc));
+		Collections.sort(all, CentreClass.RANKING_ORDER);
+		List<String> top = new ArrayList<String>();
+		for(CentreClass cc : all.subList(0, Math.min(k, all.size())))
+			top.add(cc.toString());
+		return top;
+	}
+
+	private static List<String> names(List<CentreClass> classes) {
+		List<String> names = new ArrayList<String>();
+		for(CentreClass cc : classes)
+			names.add(cc.toString());
+		return names;
+	}
+
+	@Test
+	public void rollUpsMatchASequentialFold() {
+		AttendanceStats overall = AttendanceStats.EMPTY;
+		SortedMap<String, AttendanceStats> byTutor = new TreeMap<String, AttendanceStats>();
+		for(String centre : registry.getCentres()) {
+			FitnessProgram fp = registry.getProgram(centre);
+			overall = overall.merge(fp.getOverallStats());
+			for(Map.Entry<String, AttendanceStats> entry : fp.getStatsByTutor().entrySet()) {
+				AttendanceStats stats = byTutor.get(entry.getKey());
+				byTutor.put(entry.getKey(), (stats == null) ? entry.getValue() : stats.merge(entry.getValue()));
+			}
+		}
+		assertEquals(overall.toString(), registry.getOverallStats().toString());
+		assertEquals(overall.getAverage(), registry.getOverallAvg(), 1e-12);
+		assertEquals(byTutor.toString(), registry.getStatsByTutor().toString());
+		for(int k : new int [] {0, 1, 5, 37, CENTRES * CLASSES, CENTRES * CLASSES + 10})
+			assertEquals(sequentialTop(k), names(registry.getTopClasses(k)), "top " + k);
+	}
+
+	@Test
+	public void tiesAreMergedInCentreOrder() {
+		ProgramRegistry tied = new ProgramRegistry(pool);
+		for(String centre : new String [] {"B", "A", "C"})
+			tied.addCentre(centre, makeProgramme(null, 3)); //every class of every centre ties
+		assertEquals(Arrays.asList("A ID0", "B ID0", "C ID0", "A ID1"), names(tied.getTopClasses(4)));
+		List<CentreClass> a = Arrays.asList(new CentreClass("A", new FitnessClass("X1", "Spin", "Smith")));
+		assertEquals(1, ProgramRegistry.mergeTop(a, new ArrayList<CentreClass>(), 3).size());
+		assertTrue(ProgramRegistry.mergeTop(a, a, 0).isEmpty());
+	}
+
+	@Test
+	public void anEmptyRegistryRollsUpToNothing() {
+		ProgramRegistry empty = new ProgramRegistry(pool);
+		assertEquals(0, empty.getOverallStats().getCount());
+		assertEquals(0, empty.getOverallAvg(), 0);
+		assertTrue(empty.getTopClasses(5).isEmpty());
+		assertTrue(empty.getStatsByTutor().isEmpty());
+	}
+
+	@Test
+	public void eachCentreIsRolledUpAtOneMoment() throws Exception {
+		final long total = registry.getOverallStats().getTotal();
+		final AtomicBoolean stop = new AtomicBoolean();
+		List<Thread> writers = new ArrayList<Thread>();
+		for(final String centre : registry.getCentres()) {
+			final FitnessProgram fp = registry.getProgram(centre);
+			writers.add(new Thread() {
+				public void run() { //moves attendance between classes of the centre in one change
+					Random random = new Random(centre.hashCode());
+					while(!stop.get()) {
+						FitnessClass from = fp.getClassFromId("ID" + random.nextInt(CLASSES));
+						FitnessClass to = fp.getClassFromId("ID" + random.nextInt(CLASSES));
+						int week = 1 + random.nextInt(FitnessClass.NUM_WEEKS);
+						if(from == to || from.getAttendance(week) == 0)
+							continue;
+						AttendanceBatch batch = new AttendanceBatch();
+						batch.startLine(from, week);
+						batch.addWeek(from.getAttendance(week) - 1);
+						batch.startLine(to, week);
+						batch.addWeek(to.getAttendance(week) + 1);
+						batch.apply();
+					}
+				}
+			});
+		}
+		writers.add(new Thread() {
+			public void run() { //a centre of classes with no attendance comes and goes
+				while(!stop.get()) {
+					registry.addCentre("Extra", makeProgramme(null, 10));
+					registry.removeCentre("Extra");
+				}
+			}
+		});
+		for(Thread writer : writers)
+			writer.start();
+		try {
+			for(int i = 0; i < 300; i++) {
+				AttendanceStats overall = registry.getOverallStats();
+				assertEquals(total, overall.getTotal());
+				assertTrue(overall.getCount() == CENTRES * CLASSES || overall.getCount() == CENTRES * CLASSES + 10,
+						"count " + overall.getCount());
+				long tutorTotal = 0;
+				for(AttendanceStats stats : registry.getStatsByTutor().values())
+					tutorTotal += stats.getTotal();
+				assertEquals(total, tutorTotal);
+				List<CentreClass> top = registry.getTopClasses(20);
+				assertEquals(20, top.size());
+				for(int j = 1; j < top.size(); j++) //figures move between reads, so only the order is checked
+					assertNotEquals(top.get(j - 1).toString(), top.get(j).toString());
+			}
+		}
+		finally {
+			stop.set(true);
+			for(Thread writer : writers)
+				writer.join();
+		}
+		registry.removeCentre("Extra");
+		assertEquals(total, registry.getOverallStats().getTotal());
+		assertEquals(sequentialTop(20), names(registry.getTopClasses(20)));
+	}
+}
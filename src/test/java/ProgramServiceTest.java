@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests the HTTP service's answers to requests it must refuse, on a
+ * programme served from a free port.
+ */
+public class ProgramServiceTest {
+	private FitnessProgram fp;
+	private ProgramService service;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		fp = ProgramSnapshotTest.makeProgramme();
+		service = new ProgramService(fp, null, 0);
+		service.start();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		service.stop(0);
+	}
+
+	/**
+	 * sends a request
+	 * @param body the JSON body, or null for none
+	 * @return the status of the answer
+	 */
+	int send(String method, String path, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:"
+				+ service.getPort() + path).openConnection();
+		connection.setRequestMethod(method);
+		if(body != null) {
+			connection.setDoOutput(true);
+			OutputStream out = connection.getOutputStream();
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+			out.close();
+		}
+		int status = connection.getResponseCode();
+		connection.disconnect();
+		return status;
+	}
+
+	@Test
+	public void anAttendanceIsSet() throws IOException {
+		assertEquals(200, send("PUT", "/classes/SP1/attendance/7", "{\"attendance\": \"4\"}"));
+		assertEquals(4, fp.getClassFromId("SP1").getAttendance(7));
+	}
+
+	@Test
+	public void aWeekBeyondTheLastIsRefused() throws IOException {
+		int weeks = fp.getNumWeeks();
+		assertEquals(400, send("PUT", "/classes/SP1/attendance/2000000000", "{\"attendance\": \"4\"}"));
+		assertEquals(400, send("PUT", "/classes/SP1/attendance/" + (AttendanceStore.MAX_WEEKS + 1),
+				"{\"attendance\": \"4\"}"));
+		assertEquals(400, send("PUT", "/classes/SP1/attendance/0", "{\"attendance\": \"4\"}"));
+		assertEquals(weeks, fp.getNumWeeks());
+	}
+
+	@Test
+	public void aClassIsNotAddedOverAnother() throws IOException {
+		assertEquals(409, send("POST", "/classes",
+				"{\"id\": \"NEW1\", \"name\": \"Boxing\", \"tutor\": \"Evans\", \"time\": 9}"));
+		assertSame(fp.getClassFromId("SP1"), fp.getClassAtSlot(1, 1, 9));
+		assertNull(fp.getClassFromId("NEW1"));
+		assertEquals(409, send("POST", "/classes",
+				"{\"id\": \"SP1\", \"name\": \"Boxing\", \"tutor\": \"Evans\", \"time\": 13}"));
+		assertEquals(201, send("POST", "/classes",
+				"{\"id\": \"NEW1\", \"name\": \"Boxing\", \"tutor\": \"Evans\", \"time\": 13}"));
+		assertEquals(5, fp.getNumClasses());
+	}
+
+	@Test
+	public void ofTwoClassesPostedToOneSlotOnlyOneIsAdded() throws Exception {
+		final int desks = 8;
+		ExecutorService pool = Executors.newFixedThreadPool(desks);
+		List<Future<Integer>> answers = new ArrayList<Future<Integer>>();
+		for(int i = 0; i < desks; i++) {
+			final String id = "DESK" + i;
+			answers.add(pool.submit(new Callable<Integer>() {
+				public Integer call() throws IOException {
+					return send("POST", "/classes", "{\"id\": \"" + id
+							+ "\", \"name\": \"Spin\", \"tutor\": \"Smith\", \"time\": 14, \"day\": 2}");
+				}
+			}));
+		}
+		int added = 0;
+		for(Future<Integer> answer : answers) {
+			int status = answer.get();
+			assertTrue(status == 201 || status == 409);
+			if(status == 201)
+				added++;
+		}
+		pool.shutdown();
+		assertEquals(1, added);
+		assertEquals(5, fp.getNumClasses());
+	}
+
+	@Test
+	public void aRoomBeyondTheLastIsRefused() throws IOException {
+		int rooms = fp.getNumRooms();
+		assertEquals(400, send("POST", "/classes",
+				"{\"id\": \"NEW1\", \"name\": \"Boxing\", \"tutor\": \"Evans\", \"time\": 9, \"room\": 16777216}"));
+		assertEquals(rooms, fp.getNumRooms());
+		assertNull(fp.getClassFromId("NEW1"));
+	}
+
+	@Test
+	public void checkInsReachTheAttendances() throws Exception {
+		long now = System.currentTimeMillis() + 60000; //inside week 1 of a term starting when the service did
+		int before = fp.getClassFromId("SP1").getAttendance(1);
+		assertEquals(200, send("POST", "/checkins", "SP1 " + now + "\nSP1 " + now + "\nXX9 " + now
+				+ "\nnot a check-in\n"));
+		for(int tries = 0; fp.getClassFromId("SP1").getAttendance(1) == before && tries < 100; tries++)
+			Thread.sleep(50); //flushed every second
+		assertEquals(before + 2, fp.getClassFromId("SP1").getAttendance(1));
+		assertEquals(405, send("GET", "/checkins", null));
+	}
+}
@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * Tests that a programme saved as a snapshot loads back the same, and
+ * that a damaged snapshot is refused rather than loaded.
+ */
+public class ProgramSnapshotTest {
+	@TempDir
+	Path dir;
+
+	/**
+	 * makes a programme over several days and rooms, with attendances
+	 * beyond NUM_WEEKS for one class
+	 */
+	static FitnessProgram makeProgramme() {
+		FitnessProgram fp = new FitnessProgram(3, 2, 9, 15);
+		fp.addClassFromFile("SP1 Spin Smith 9");
+		fp.addClassFromFile("YO2 Yoga Jones 10 2 1");
+		fp.addClassFromFile("PI3 Pilates Smith 15 3 4");
+		fp.addClassFromFile("ZU4 Zumba Brown 12 1 2");
+		fp.populateAttendances("SP1 10 12 14 16 18");
+		fp.populateAttendances("YO2 5 0 7 3 1");
+		fp.populateAttendances("PI3 20 20 20 20 20 9");
+		return fp;
+	}
+
+	@Test
+	public void loadsWhatWasSaved() throws IOException {
+		FitnessProgram fp = makeProgramme();
+		String file = dir.resolve("p.snap").toString();
+		ProgramSnapshot.save(fp, file);
+		FitnessProgram back = ProgramSnapshot.load(file);
+		assertEquals(fp.getNumDays(), back.getNumDays());
+		assertEquals(fp.getNumRooms(), back.getNumRooms());
+		assertEquals(fp.getFirstStartTime(), back.getFirstStartTime());
+		assertEquals(fp.getLastStartTime(), back.getLastStartTime());
+		assertEquals(fp.getNumWeeks(), back.getNumWeeks());
+		assertEquals(fp.makeClassesOutText(), back.makeClassesOutText());
+		assertEquals(fp.makeAttendancesOutText(), back.makeAttendancesOutText());
+		assertEquals(ReportWriter.makeReport(fp), ReportWriter.makeReport(back));
+	}
+
+	@Test
+	public void aLoadedProgrammeKeepsItsTotalsAndIndexes() throws IOException {
+		FitnessProgram fp = makeProgramme();
+		String file = dir.resolve("p.snap").toString();
+		ProgramSnapshot.save(fp, file);
+		FitnessProgram back = ProgramSnapshot.load(file);
+		assertEquals(fp.getWeekTotal(1), back.getWeekTotal(1));
+		assertEquals(fp.getStatsByTutor().toString(), back.getStatsByTutor().toString());
+		assertEquals("PI3", back.getTopClasses(1)[0].getClassID());
+		assertEquals(100, back.getClassFromId("PI3").getAttendanceTotal());
+		back.getClassFromId("YO2").setAttendance(1, 95); //figures loaded are still set as usual
+		assertEquals("YO2", back.getTopClasses(1)[0].getClassID());
+		assertEquals(106, back.getClassFromId("YO2").getAttendanceTotal());
+		assertEquals(fp.getClassesByTutor("Smith").size(), back.getClassesByTutor("Smith").size());
+	}
+
+	@Test
+	public void loadsAnEmptyProgramme() throws IOException {
+		String file = dir.resolve("p.snap").toString();
+		ProgramSnapshot.save(new FitnessProgram(), file);
+		FitnessProgram back = ProgramSnapshot.load(file);
+		assertEquals(0, back.getNumClasses());
+	}
+
+	@Test
+	public void refusesADamagedSnapshot() throws IOException {
+		final Path file = dir.resolve("p.snap");
+		ProgramSnapshot.save(makeProgramme(), file.toString());
+		byte [] bytes = Files.readAllBytes(file);
+		bytes[bytes.length / 2] ^= 1; //one bit flipped in the middle
+		Files.write(file, bytes);
+		IOException e = assertThrows(IOException.class, new Executable() {
+			public void execute() throws IOException {
+				ProgramSnapshot.load(file.toString());
+			}
+		});
+		assertTrue(e.getMessage().contains("checksum"));
+	}
+
+	@Test
+	public void refusesAFileThatIsNotASnapshot() throws IOException {
+		final Path file = dir.resolve("p.snap");
+		Files.write(file, "SP1 Spin Smith 9\r\nYO2 Yoga Jones 10 2 1\r\n".getBytes("UTF-8"));
+		assertThrows(IOException.class, new Executable() {
+			public void execute() throws IOException {
+				ProgramSnapshot.load(file.toString());
+			}
+		});
+	}
+}
@@ -0,0 +1,115 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that the report cache gives back the same report while the
+ * programme's version is unchanged, and after a change of any kind
+ * gives the report ReportWriter makes afresh, laying out again only the
+ * rows of the classes that changed.
+ */
+public class ReportCacheTest {
+	private FitnessProgram fp;
+	private ReportCache cache;
+
+	@BeforeEach
+	public void setUp() {
+		fp = ProgramSnapshotTest.makeProgramme();
+		cache = new ReportCache(fp);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		cache.dispose();
+	}
+
+	/**
+	 * checks the cached report against a fresh one
+	 * @return the number of rows laid out again
+	 */
+	private long assertFresh() {
+		long rows = ProgramMetrics.REPORT_ROWS_BUILT.sum();
+		assertEquals(ReportWriter.makeReport(fp), cache.getReport());
+		return ProgramMetrics.REPORT_ROWS_BUILT.sum() - rows;
+	}
+
+	@Test
+	public void anUnchangedVersionGivesTheSameReport() {
+		String report = cache.getReport();
+		long version = fp.getVersion();
+		fp.getClassFromId("SP1").getAttendance(1); //reads change nothing
+		fp.makeSortedList();
+		assertEquals(version, fp.getVersion());
+		assertSame(report, cache.getReport());
+	}
+
+	@Test
+	public void everyChangeMakesANewVersion() {
+		long version = fp.getVersion();
+		fp.getClassFromId("SP1").setAttendance(1, 77);
+		assertTrue(fp.getVersion() > version);
+		version = fp.getVersion();
+		fp.addClassFromFile("BO5 Boxing Evans 11 2 1");
+		assertTrue(fp.getVersion() > version);
+		version = fp.getVersion();
+		fp.deleteClass("BO5");
+		assertTrue(fp.getVersion() > version);
+		version = fp.getVersion();
+		fp.getClassFromId("YO2").setClassID("YO9");
+		assertTrue(fp.getVersion() > version);
+	}
+
+	@Test
+	public void onlyChangedRowsAreMadeAgain() {
+		assertEquals(fp.getNumClasses(), assertFresh());
+		fp.getClassFromId("SP1").setAttendance(3, 99);
+		assertEquals(1, assertFresh());
+		fp.addClassFromFile("BO5 Boxing Evans 11 2 1");
+		assertEquals(1, assertFresh());
+		fp.getClassFromId("YO2").setAttendance(FitnessClass.NUM_WEEKS + 2, 5); //not in the report
+		assertEquals(0, assertFresh());
+		fp.getClassFromId("SP1").setAttendance(3, 99); //the same figure again
+		assertEquals(0, assertFresh());
+	}
+
+	@Test
+	public void everyKindOfChangeIsReported() {
+		cache.getReport();
+		fp.getClassFromId("SP1").setClassID("SP9");
+		assertFresh();
+		fp.getClassFromId("YO2").setClassTutor("Walker");
+		assertFresh();
+		fp.getClassFromId("YO2").setClassTime(15);
+		assertFresh();
+		fp.deleteClass("SP9");
+		assertFresh();
+		fp.scheduleNewClasses(Arrays.asList(new FitnessClass("KB6", "Kettlebells", "Jones")));
+		assertFresh();
+		AttendanceBatch batch = new AttendanceBatch();
+		batch.startLine(fp.getClassFromId("KB6"));
+		batch.addWeek(12);
+		batch.addWeek(30);
+		batch.apply();
+		assertFresh();
+		fp.deleteClasses(Arrays.asList("KB6", "YO2"));
+		assertFresh();
+	}
+
+	@Test
+	public void randomChangesAreReported() {
+		Random random = new Random(20);
+		for(int i = 0; i < 300; i++) {
+			List<FitnessClass> classes = fp.getClassesInTimetableOrder();
+			if(classes.isEmpty() || random.nextInt(8) == 0)
+				fp.addClassFromGui("R" + i, "Spin", "Tutor" + random.nextInt(20));
+			else if(random.nextInt(8) == 0)
+				fp.deleteClass(classes.get(random.nextInt(classes.size())).getClassID());
+			else
+				classes.get(random.nextInt(classes.size())).setAttendance(1 + random.nextInt(5), random.nextInt(30));
+			if(random.nextInt(3) == 0)
+				assertFresh();
+		}
+		assertFresh();
+	}
+}
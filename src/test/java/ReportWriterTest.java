@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that the report ReportWriter and ReportCache write is the same,
+ * byte for byte, as the report made with String.format as ReportFrame
+ * and FitnessClass.makeReportLine first made it.
+ */
+public class ReportWriterTest {
+	/**
+	 * makes the report with String.format, in the original layout
+	 */
+	private static String formattedReport(FitnessProgram fp) {
+		StringBuilder report = new StringBuilder(String.format("%-5s%-15s%-18s%-20s%-15s%n%n", "Id", "Class",
+				"Tutor", "Attendances", "Average Attendance"));
+		for(FitnessClass fc : fp.makeSortedList()) {
+			StringBuilder attendances = new StringBuilder();
+			for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++)
+				attendances.append(String.format("%3d", fc.getAttendance(week)));
+			report.append(String.format("%-5s%-15s%-15s%-25s%-15.2f%n", fc.getClassID(), fc.getClassName(),
+					fc.getClassTutor(), attendances, fc.getAvgAttendance()));
+		}
+		report.append(String.format("%n%70s %.2f", "Overall Average:", fp.getOverallAvg()));
+		return report.toString();
+	}
+
+	/**
+	 * checks the report of a programme against the original layout
+	 */
+	private static void assertSameReport(FitnessProgram fp) {
+		String expected = formattedReport(fp);
+		assertEquals(expected, ReportWriter.makeReport(fp));
+		assertEquals(expected, new ReportCache(fp).getReport());
+	}
+
+	/**
+	 * makes a programme of the given number of classes, all with no attendances
+	 */
+	private static FitnessProgram makeProgramme(int classes) {
+		FitnessProgram fp = new FitnessProgram(7, 10, 9, 15);
+		for(int i = 0; i < classes; i++)
+			fp.addClassFromFile("C" + i + " Spin Smith " + (9 + i % 7) + " " + (1 + i / 70) + " " + (1 + i / 7 % 10));
+		return fp;
+	}
+
+	@Test
+	public void anEmptyProgrammeIsTheSame() {
+		assertSameReport(new FitnessProgram());
+	}
+
+	@Test
+	public void wideFieldsAreTheSame() {
+		FitnessProgram fp = new FitnessProgram(3, 2, 9, 15);
+		fp.addClassFromFile("WIDECLASSID1 Spin Smith 9"); //wider than every column
+		fp.addClassFromFile("SP2 AVeryLongClassNameIndeed AVeryLongTutorNameIndeed 10");
+		fp.addClassFromFile("Y3 Yoga Jones 11");
+		fp.populateAttendances("WIDECLASSID1 1234 5 67890 0 12");
+		fp.populateAttendances("SP2 999 1000 1 2 3");
+		fp.populateAttendances("Y3 1 1 1 1 1");
+		assertSameReport(fp);
+	}
+
+	@Test
+	public void negativeFiguresAreTheSame() {
+		FitnessProgram fp = makeProgramme(3);
+		fp.getClassFromId("C0").setAttendance(1, -1); //average -0.20
+		fp.getClassFromId("C1").setAttendance(2, -123);
+		fp.getClassFromId("C2").setAttendance(3, 7);
+		assertSameReport(fp);
+	}
+
+	@Test
+	public void halfWayAveragesRoundTheSame() {
+		FitnessProgram fp = makeProgramme(40);
+		fp.getClassFromId("C0").setAttendance(1, 1); //overall average 1 / 200 = 0.005
+		assertSameReport(fp);
+		fp.getClassFromId("C0").setAttendance(1, 201); //1.005
+		assertSameReport(fp);
+		fp.getClassFromId("C0").setAttendance(1, -1); //-0.005
+		assertSameReport(fp);
+		fp.getClassFromId("C0").setAttendance(1, -403); //-2.015
+		assertSameReport(fp);
+	}
+
+	@Test
+	public void randomProgrammesAreTheSame() {
+		Random random = new Random(13);
+		for(int trial = 0; trial < 50; trial++) {
+			FitnessProgram fp = makeProgramme(1 + random.nextInt(60));
+			for(FitnessClass fc : fp.getClassesInTimetableOrder())
+				for(int week = 1; week <= FitnessClass.NUM_WEEKS; week++)
+					fc.setAttendance(week, random.nextInt(2000) - 100);
+			assertSameReport(fp);
+		}
+	}
+}
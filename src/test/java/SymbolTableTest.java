@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that a symbol table gives each String one code, in the order
+ * they are first added, also when many threads add at once, and that
+ * classes are grouped by name and tutor through the codes without
+ * looking a name up adding it to the table.
+ */
+public class SymbolTableTest {
+	@Test
+	public void equalStringsShareACode() {
+		SymbolTable table = new SymbolTable();
+		assertEquals(0, table.encode("Spin"));
+		assertEquals(1, table.encode("Yoga"));
+		assertEquals(0, table.encode(new String("Spin"))); //equal, not the same object
+		assertEquals("Yoga", table.decode(1));
+		assertEquals(2, table.size());
+		for(int i = 0; i < 100; i++) //past the first array's length
+			assertEquals(2 + i, table.encode("Name" + i));
+		assertEquals("Name99", table.decode(101));
+		assertEquals("Spin", table.decode(0));
+	}
+
+	@Test
+	public void nullAndUnknownStringsAreNotAdded() {
+		SymbolTable table = new SymbolTable();
+		table.encode("Spin");
+		assertEquals(-1, table.encode(null));
+		assertNull(table.decode(-1));
+		assertEquals(-1, table.codeOf("Yoga"));
+		assertEquals(-1, table.codeOf(null));
+		assertEquals(0, table.codeOf("Spin"));
+		assertEquals(1, table.size());
+	}
+
+	@Test
+	public void concurrentAddsGiveOneCodeEach() throws Exception {
+		final SymbolTable table = new SymbolTable();
+		final int names = 2000;
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		List<Future<int []>> results = new ArrayList<Future<int []>>();
+		try {
+			for(int t = 0; t < 8; t++) {
+				final int offset = t * 251;
+				results.add(threads.submit(new Callable<int []>() {
+					public int [] call() throws InterruptedException {
+						start.await();
+						int [] codes = new int [names];
+						for(int i = 0; i < names; i++) { //each thread adds the names in its own order
+							int name = (i + offset) % names;
+							codes[name] = table.encode("Tutor" + name);
+						}
+						return codes;
+					}
+				}));
+			}
+			start.countDown();
+			int [] first = results.get(0).get();
+			for(Future<int []> result : results)
+				assertArrayEquals(first, result.get());
+		}
+		finally {
+			threads.shutdown();
+		}
+		assertEquals(names, table.size());
+		boolean [] used = new boolean [names];
+		for(int name = 0; name < names; name++) {
+			int code = table.codeOf("Tutor" + name);
+			assertFalse(used[code], "code " + code + " given twice");
+			used[code] = true;
+			assertEquals("Tutor" + name, table.decode(code));
+		}
+	}
+
+	@Test
+	public void classesAreGroupedByTheirCodes() {
+		FitnessProgram fp = new FitnessProgram(7, 1, 9, 15);
+		fp.addClassFromFile("SP1 Spin Smith 9");
+		fp.addClassFromFile("SP2 Spin Jones 10");
+		fp.addClassFromFile("YO3 Yoga Smith 11");
+		FitnessClass sp1 = fp.getClassFromId("SP1");
+		assertEquals(sp1.getClassNameCode(), fp.getClassFromId("SP2").getClassNameCode());
+		assertEquals(sp1.getClassTutorCode(), fp.getClassFromId("YO3").getClassTutorCode());
+		assertNotEquals(sp1.getClassTutorCode(), fp.getClassFromId("SP2").getClassTutorCode());
+		assertEquals(2, fp.getClassesByTutor("Smith").size());
+		assertEquals(2, fp.getClassesByName(new String("Spin")).size());
+
+		String unknown = "NoSuchTutor" + System.nanoTime();
+		assertTrue(fp.getClassesByTutor(unknown).isEmpty());
+		assertEquals(0, fp.getTutorStats(unknown).getCount());
+		assertEquals(-1, FitnessClass.TUTORS.codeOf(unknown)); //looking up added nothing
+
+		sp1.setClassTutor("Jones");
+		assertEquals("Jones", sp1.getClassTutor());
+		assertEquals(1, fp.getClassesByTutor("Smith").size());
+		assertEquals(2, fp.getClassesByTutor("Jones").size());
+	}
+}
@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import javax.swing.*;
+import javax.swing.event.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests that the timetable table model reads its cells straight from the
+ * programme, with a row per room of each day, and that a change to one
+ * slot repaints just that cell, on the event thread, while added rooms
+ * and batches redraw the table.
+ */
+public class TimetableTableModelTest {
+	private FitnessProgram fp;
+	private TimetableTableModel model;
+	private List<String> events; //the model's events, one item per event
+
+	@BeforeEach
+	public void setUp() {
+		fp = new FitnessProgram(7, 2, 9, 15);
+		fp.addClassFromFile("SP1 Spin Smith 9 1 1");
+		model = new TimetableTableModel(fp);
+		events = Collections.synchronizedList(new ArrayList<String>());
+		model.addTableModelListener(new TableModelListener() {
+			public void tableChanged(TableModelEvent e) {
+				if(!SwingUtilities.isEventDispatchThread()) //failing here would not fail the test
+					events.add("off the event thread");
+				else if(e.getFirstRow() == TableModelEvent.HEADER_ROW || e.getLastRow() == Integer.MAX_VALUE)
+					events.add("all");
+				else
+					events.add(e.getFirstRow() + "," + e.getColumn());
+			}
+		});
+	}
+
+	@AfterEach
+	public void tearDown() {
+		model.dispose();
+	}
+
+	/**
+	 * waits until the event thread has run everything passed to it so far
+	 */
+	private static void waitForEvents() throws Exception {
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+			}
+		});
+	}
+
+	@Test
+	public void cellsAreReadFromTheProgramme() {
+		assertEquals(7 * 2, model.getRowCount());
+		assertEquals(2 + 7, model.getColumnCount());
+		assertEquals("Day", model.getColumnName(0));
+		assertEquals("Room", model.getColumnName(1));
+		assertEquals("9-10", model.getColumnName(2));
+		assertEquals("15-16", model.getColumnName(8));
+		assertEquals("Spin (Smith)", model.getValueAt(0, 2));
+		assertEquals("Available", model.getValueAt(0, 3));
+		assertEquals(4, model.getValueAt(7, 0)); //row 7 is day 4, room 2
+		assertEquals(2, model.getValueAt(7, 1));
+		fp.addClassFromFile("YO2 Yoga Jones 12 4 2");
+		assertEquals("Yoga (Jones)", model.getValueAt(7, 5)); //read again, not kept
+	}
+
+	@Test
+	public void aChangedSlotRepaintsItsCell() throws Exception {
+		fp.addClassFromFile("YO2 Yoga Jones 12 4 2");
+		fp.deleteClass("SP1");
+		waitForEvents();
+		assertEquals(Arrays.asList("7,5", "0,2"), events);
+		fp.getClassFromId("YO2").setAttendance(1, 10); //attendances are not shown
+		waitForEvents();
+		assertEquals(2, events.size());
+	}
+
+	@Test
+	public void addedRoomsAndBatchesRedrawTheTable() throws Exception {
+		fp.addClassFromFile("BO3 Boxing Evans 10 1 5");
+		waitForEvents();
+		assertEquals(Arrays.asList("all"), events);
+		assertEquals(7 * 5, model.getRowCount());
+		assertEquals("Boxing (Evans)", model.getValueAt(4, 3));
+		fp.deleteClasses(Arrays.asList("SP1", "BO3"));
+		waitForEvents();
+		assertEquals(Arrays.asList("all", "all"), events);
+	}
+
+	@Test
+	public void aDisposedModelIsNotTold() throws Exception {
+		model.dispose();
+		fp.addClassFromFile("YO2 Yoga Jones 12 4 2");
+		waitForEvents();
+		assertTrue(events.isEmpty());
+	}
+
+	@Test
+	public void aLargeTimetableIsNotReadUntilShown() {
+		FitnessProgram large = new FitnessProgram(7, 1, 9, 15);
+		large.addClassFromFile("LAST Spin Smith 15 7 " + Timetable.MAX_ROOMS);
+		TimetableTableModel view = new TimetableTableModel(large);
+		try {
+			assertEquals(7 * Timetable.MAX_ROOMS, view.getRowCount());
+			assertEquals("Spin (Smith)", view.getValueAt(view.getRowCount() - 1, view.getColumnCount() - 1));
+			assertEquals("Available", view.getValueAt(0, 2));
+		}
+		finally {
+			view.dispose();
+		}
+	}
+}
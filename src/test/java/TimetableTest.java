@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.*;
+
+/**
+ * Tests the multi-day, multi-room timetable: slots found by day, room
+ * and hour, rooms added on demand up to MAX_ROOMS, and slots outside
+ * the timetable refused without adding any rooms.
+ */
+public class TimetableTest {
+	@Test
+	public void classesAreFoundBySlot() {
+		Timetable timetable = new Timetable(3, 2, 9, 15);
+		FitnessClass fc = new FitnessClass("SP1 Spin Smith 10 2 1");
+		assertNull(timetable.put(2, 1, 10, fc));
+		assertSame(fc, timetable.getClass(2, 1, 10));
+		assertNull(timetable.getClass(1, 1, 10));
+		assertNull(timetable.getClass(4, 1, 10)); //outside the timetable
+		assertEquals(1, timetable.getNumOccupied());
+		assertSame(fc, timetable.remove(2, 1, 10));
+		assertEquals(0, timetable.getNumOccupied());
+	}
+
+	@Test
+	public void roomsAreAddedOnDemand() {
+		FitnessProgram fp = new FitnessProgram(7, 1, 9, 15);
+		fp.addClassFromFile("SP1 Spin Smith 9 1 6");
+		assertEquals(6, fp.getNumRooms());
+		assertEquals(7L * 6 * 7 - 1, fp.getCapacity() - fp.getNumClasses());
+		fp.addClassFromFile("SP2 Spin Smith 9 1 " + Timetable.MAX_ROOMS);
+		assertEquals(Timetable.MAX_ROOMS, fp.getNumRooms());
+	}
+
+	@Test
+	public void roomsBeyondTheLastAreRefused() {
+		final FitnessProgram fp = new FitnessProgram(7, 2, 9, 15);
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			public void execute() {
+				fp.addClassFromFile("SP1 Spin Smith 9 1 " + (Timetable.MAX_ROOMS + 1));
+			}
+		});
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			public void execute() {
+				fp.addClassFromFile("SP1 Spin Smith 9 1 16777216");
+			}
+		});
+		assertEquals(2, fp.getNumRooms());
+		final CompactProgram cp = new CompactProgram(7, 2, 9, 15);
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			public void execute() {
+				cp.addClassFromFile("SP1 Spin Smith 9 1 16777216");
+			}
+		});
+		assertEquals(2, cp.getNumRooms());
+	}
+
+	@Test
+	public void aBadSlotAddsNoRooms() {
+		final FitnessProgram fp = new FitnessProgram(7, 2, 9, 15);
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			public void execute() {
+				fp.addClassFromFile("SP1 Spin Smith 20 1 40"); //good room, bad hour
+			}
+		});
+		assertEquals(2, fp.getNumRooms());
+	}
+}